@@ -33,6 +33,7 @@ import org.json.simple.JSONObject;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import com.fujitsu.dc.client.http.AsyncRestAdapter;
 import com.fujitsu.dc.client.http.BatchAdapter;
 import com.fujitsu.dc.client.http.DcResponse;
 import com.fujitsu.dc.client.http.RestAdapter;
@@ -296,6 +297,15 @@ public class Accessor implements Cloneable {
         return this.batchAdapter;
     }
 
+    /**
+     * This method creates an adapter that sends requests asynchronously with this accessor.
+     * The response headers of asynchronous requests are not set to this accessor; use the headers of each DcResponse.
+     * @return AsyncRestAdapter object
+     */
+    public AsyncRestAdapter getAsyncAdapter() {
+        return new AsyncRestAdapter(this);
+    }
+
     // /**
     // * Unit昇格.
     // * @return 昇格後のAccessor(OwnerAccessor)
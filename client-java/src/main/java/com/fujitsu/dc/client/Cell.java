@@ -389,6 +389,8 @@ public class Cell extends AbstractODataContext {
         IRestAdapter rest = RestAdapterFactory.create(tmpAccessor);
         DcResponse resp = rest.get(url, RestAdapter.CONTENT_TYPE_JSON);
         String locationHeader = resp.getHeader(HttpHeaders.LOCATION);
+        /** Only the Location header is used. Release the connection without reading the body. */
+        resp.close();
         /** Extract the box name from box URL */
         String[] params = locationHeader.split("/");
         String boxName = null;
@@ -422,6 +424,8 @@ public class Cell extends AbstractODataContext {
             IRestAdapter rest = RestAdapterFactory.create(tmpAccessor);
             DcResponse resp = rest.get(url, RestAdapter.CONTENT_TYPE_JSON);
             String locationHeader = resp.getHeader(HttpHeaders.LOCATION);
+            /** Only the Location header is used. Release the connection without reading the body. */
+            resp.close();
             String[] params = locationHeader.split("/");
             if (locationHeader.endsWith("/")) {
                 boxName = params[params.length - 2];
@@ -514,7 +518,11 @@ public class Cell extends AbstractODataContext {
      */
     public Box installBox(String boxName, String barFileUrl) throws DaoException {
         DcResponse res = RestAdapterFactory.create(this.accessor).get(barFileUrl, "application/octet-stream");
-        InputStream barFile = res.bodyAsStream();
-        return this.installBox(boxName, barFile);
+        try {
+            InputStream barFile = res.bodyAsStream();
+            return this.installBox(boxName, barFile);
+        } finally {
+            res.close();
+        }
     }
 }
@@ -16,8 +16,11 @@
  */
 package com.fujitsu.dc.client;
 
+import java.util.concurrent.Executor;
+
 import org.apache.http.client.HttpClient;
 
+import com.fujitsu.dc.client.http.InProcessDispatcher;
 import com.fujitsu.dc.client.http.RestAdapter;
 
 ///**
@@ -59,6 +62,16 @@ public class DaoConfig {
     /** Proxy password. */
     private String proxyPassword = null;
 
+    /** Executor that runs asynchronous requests. */
+    private Executor asyncExecutor = null;
+
+    /** Base URL whose requests are sent to the internal URL. */
+    private String internalRouteBaseUrl = null;
+    /** URL of the co-located server that receives the requests for the base URL. */
+    private String internalRouteUrl = null;
+    /** Dispatcher that processes the requests for the base URL in the same JVM. */
+    private InProcessDispatcher inProcessDispatcher = null;
+
     // /**
     // * HTTPタイムアウト値を習得.
     // * @return タイムアウト値
@@ -261,4 +274,87 @@ public class DaoConfig {
     public final void setMockRestAdapter(final RestAdapter value) {
         this.mockRestAdapter = value;
     }
+
+    /**
+     * This method gets the executor that runs asynchronous requests.
+     * @return Executor (null if the default executor is used)
+     */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * This method sets the executor that runs asynchronous requests.
+     * @param value Executor (null to use the default executor)
+     */
+    public void setAsyncExecutor(Executor value) {
+        this.asyncExecutor = value;
+    }
+
+    /**
+     * This method sends the requests for a base URL to a co-located server instead, for example a core on the same
+     * host, bypassing the load balancer and TLS termination in front of the public URL. The original scheme, host and
+     * path are passed in the Host and X-Forwarded-* headers so that the server builds the same URLs as for the public
+     * request. Requests for other URLs are not affected.
+     * @param baseUrl Public base URL (null to disable the internal route)
+     * @param internalUrl URL of the server that receives the requests for the base URL
+     */
+    public void setInternalRoute(String baseUrl, String internalUrl) {
+        this.inProcessDispatcher = null;
+        if (baseUrl == null || internalUrl == null) {
+            this.internalRouteBaseUrl = null;
+            this.internalRouteUrl = null;
+            return;
+        }
+        this.internalRouteBaseUrl = withTrailingSlash(baseUrl);
+        this.internalRouteUrl = withTrailingSlash(internalUrl);
+    }
+
+    /**
+     * This method processes the requests for a base URL in a server running in the same JVM, for example a core
+     * that embeds the engine, without using sockets. The requests are routed as by
+     * {@link #setInternalRoute(String, String)} with the URL of the dispatcher as the internal URL, and then passed
+     * to the dispatcher instead of the HttpClient.
+     * @param baseUrl Public base URL (null to disable the dispatcher)
+     * @param dispatcher Dispatcher (null to disable the dispatcher)
+     */
+    public void setInProcessDispatcher(String baseUrl, InProcessDispatcher dispatcher) {
+        if (baseUrl == null || dispatcher == null) {
+            setInternalRoute(null, null);
+            return;
+        }
+        setInternalRoute(baseUrl, dispatcher.getUrl());
+        this.inProcessDispatcher = dispatcher;
+    }
+
+    /**
+     * This method gets the dispatcher that processes the requests for the base URL in the same JVM.
+     * @return Dispatcher (null if the requests are sent by the HttpClient)
+     */
+    public InProcessDispatcher getInProcessDispatcher() {
+        return inProcessDispatcher;
+    }
+
+    /**
+     * This method gets the base URL whose requests are sent to the internal URL.
+     * @return Base URL ending with a slash (null if the internal route is disabled)
+     */
+    public String getInternalRouteBaseUrl() {
+        return internalRouteBaseUrl;
+    }
+
+    /**
+     * This method gets the URL of the server that receives the requests for the base URL.
+     * @return Internal URL ending with a slash (null if the internal route is disabled)
+     */
+    public String getInternalRouteUrl() {
+        return internalRouteUrl;
+    }
+
+    private static String withTrailingSlash(String url) {
+        if (url.endsWith("/")) {
+            return url;
+        }
+        return url + "/";
+    }
 }
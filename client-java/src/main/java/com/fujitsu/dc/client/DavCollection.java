@@ -20,7 +20,12 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -311,6 +316,7 @@ public class DavCollection extends DcCollection {
     // */
     /**
      * This method requests the GET method for the DAV and returns in stream format.
+     * The stream must be read to the end or closed so that the connection returns to the pool.
      * @param pathValue Path
      * @return GET Response as Stream
      * @throws DaoException Exception thrown
@@ -325,6 +331,23 @@ public class DavCollection extends DcCollection {
         return res.bodyAsStream();
     }
 
+    /**
+     * This method requests the GET method for the DAV asynchronously and returns the body as a stream.
+     * The stream must be read to the end or closed so that the connection returns to the pool.
+     * @param pathValue Path
+     * @return Future of the GET Response as Stream
+     */
+    public CompletableFuture<InputStream> getStreamAsync(String pathValue) {
+        String url = UrlUtils.append(this.getPath(), pathValue);
+        return this.accessor.getAsyncAdapter().get(url, "application/octet-stream").thenApply(
+                new Function<DcResponse, InputStream>() {
+                    @Override
+                    public InputStream apply(DcResponse res) {
+                        return res.bodyAsStream();
+                    }
+                });
+    }
+
     // /**
     // * DAVに対するGETメソッドをリクエストする.
     // * @param pathValue 取得するパス
@@ -361,7 +384,14 @@ public class DavCollection extends DcCollection {
         // まずはキャッシュから検索する
         /** First search from cache. */
         CacheMap cm = this.accessor.getContext().getCacheMap();
-        CacheEntry ce = cm.search(url);
+        String credential = getCacheCredential();
+        CacheEntry ce = cm.search(url, credential);
+        if (ce != null && ce.isFresh(System.currentTimeMillis())) {
+            // Cache-Controlのmax-age内であればリクエストせずにキャッシュの値を返却する
+            /** Within max-age of Cache-Control, return the value of the cache without a request. */
+            cm.recordHit();
+            return createCachedWebDAV(ce, HttpStatus.SC_OK);
+        }
 
         IRestAdapter rest = RestAdapterFactory.create(this.accessor);
         DcResponse res;
@@ -379,11 +409,8 @@ public class DavCollection extends DcCollection {
             // 304 NOT_MODIFIEDの場合は、キャッシュの値を返却する
             /** In the case of 304 NOT_MODIFIED, to return the value of the cache. */
             if (Integer.parseInt(e.getCode()) == HttpStatus.SC_NOT_MODIFIED && ce != null) {
-                WebDAV webDAVCache = new WebDAV();
-                webDAVCache.setStringBody(ce.getBody());
-                webDAVCache.setResHeaders(ce.getHeaders());
-                webDAVCache.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
-                return webDAVCache;
+                cm.recordRevalidation();
+                return createCachedWebDAV(ce, HttpStatus.SC_NOT_MODIFIED);
             }
             throw e;
         }
@@ -397,19 +424,48 @@ public class DavCollection extends DcCollection {
         webDAV.setResHeaders(res.getHeaderList());
         webDAV.setStatusCode(res.getStatusCode());
 
-        if (ce == null) {
-            // キャッシュになければ新規にキャッシュに保存
-            /** Save the new one to cache. */
-            cm.appendEntry(new CacheEntry(url, res.getHeaderList(), body));
-        } else {
-            // キャッシュにあれば、キャッシュ情報を更新
-            /** If was present on the cache, then update its new value. */
-            ce.setHeaders(res.getHeaderList());
-            ce.setBody(body);
-        }
+        // キャッシュに保存する. キャッシュにあれば新しいエントリーで置き換える
+        /** Save to cache. If was present on the cache, then replace it with the new entry. */
+        cm.recordMiss();
+        cm.appendEntry(new CacheEntry(url, credential, res.getHeaderList(), body));
         return webDAV;
     }
 
+    /**
+     * This method returns the Authorization header value sent with the requests of this accessor.
+     * The cache may be shared by accessors with other credentials, so entries are looked up with it.
+     * @return Authorization header value (null if none)
+     */
+    private String getCacheCredential() {
+        String token = this.accessor.getAccessToken();
+        if (token != null) {
+            return "Bearer " + token;
+        }
+        HashMap<String, String> defaultHeaders = this.accessor.getDefaultHeaders();
+        if (defaultHeaders != null) {
+            for (Map.Entry<String, String> header : defaultHeaders.entrySet()) {
+                if (HttpHeaders.AUTHORIZATION.equalsIgnoreCase(header.getKey())) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method creates a WebDAV object from the cached response.
+     * @param ce CacheEntry object
+     * @param statusCode Status code
+     * @return WebDAV object
+     */
+    private WebDAV createCachedWebDAV(CacheEntry ce, int statusCode) {
+        WebDAV webDAVCache = new WebDAV();
+        webDAVCache.setStringBody(ce.getBody());
+        webDAVCache.setResHeaders(new HashMap<String, String>(ce.getHeaders()));
+        webDAVCache.setStatusCode(statusCode);
+        return webDAVCache;
+    }
+
     // /**
     // * DAVに対するGETメソッドをリクエストする<br>
     // * ETag値がnull以外の場合は、If-None-Matchヘッダを付加する.
@@ -476,6 +532,7 @@ public class DavCollection extends DcCollection {
     // */
     /**
      * This method requests the GET method for the DAV.
+     * The stream must be read to the end or closed so that the connection returns to the pool.
      * @param pathValue Path
      * @return WebDAV object that contains the stream
      * @throws DaoException Exception thrown
@@ -504,6 +561,7 @@ public class DavCollection extends DcCollection {
     // */
     /**
      * This method requests the GET method for the DAV. If the ETag value is non-null, add an If-None-Match header.
+     * The stream must be read to the end or closed so that the connection returns to the pool.
      * @param pathValue Path
      * @param eTag ETag Value
      * @return WebDAV object that contains the stream If no update, then return null.
@@ -589,6 +647,7 @@ public class DavCollection extends DcCollection {
         String url = UrlUtils.append(this.getPath(), pathValue);
         DcResponse res = ((RestAdapter) RestAdapterFactory.create(this.accessor)).putStream(url, contentType, is,
                 etagValue);
+        this.accessor.getContext().getCacheMap().remove(url);
         WebDAV webDAV = new WebDAV();
         webDAV.setResHeaders(res.getHeaderList());
         webDAV.setStatusCode(res.getStatusCode());
@@ -624,6 +683,7 @@ public class DavCollection extends DcCollection {
         String url = UrlUtils.append(this.getPath(), pathValue);
         DcResponse res = ((RestAdapter) RestAdapterFactory.create(this.accessor)).putStream(url, contentType, is,
                 etagValue);
+        this.accessor.getContext().getCacheMap().remove(url);
         WebDAV webDAV = new WebDAV();
         webDAV.setResHeaders(res.getHeaderList());
         webDAV.setStatusCode(res.getStatusCode());
@@ -664,6 +724,7 @@ public class DavCollection extends DcCollection {
         InputStream is = new ByteArrayInputStream(bs);
         String url = UrlUtils.append(this.getPath(), pathValue);
         DcResponse res = ((RestAdapter) RestAdapterFactory.create(this.accessor)).putStream(url, contentType, is, etag);
+        this.accessor.getContext().getCacheMap().remove(url);
         WebDAV webDAV = new WebDAV();
         webDAV.setResHeaders(res.getHeaderList());
         webDAV.setStatusCode(res.getStatusCode());
@@ -683,6 +744,7 @@ public class DavCollection extends DcCollection {
     public void del(String pathValue) throws DaoException {
         String url = UrlUtils.append(this.getPath(), pathValue);
         RestAdapterFactory.create(this.accessor).del(url, "*");
+        this.accessor.getContext().getCacheMap().remove(url);
     }
 
     // /**
@@ -700,5 +762,6 @@ public class DavCollection extends DcCollection {
     public void del(String pathValue, String etagValue) throws DaoException {
         String url = UrlUtils.append(this.getPath(), pathValue);
         RestAdapterFactory.create(this.accessor).del(url, etagValue);
+        this.accessor.getContext().getCacheMap().remove(url);
     }
 }
@@ -337,6 +337,7 @@ public class DcContext {
     // */
     /**
      * This method sets cache of objects (CacheMap).
+     * To share the cache with other DcContext objects, set {@link CacheMap#getShared()} or the same instance.
      * @param value CacheMap object
      */
     public final void setCacheMap(final CacheMap value) {
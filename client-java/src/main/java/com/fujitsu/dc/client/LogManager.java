@@ -117,6 +117,7 @@ public abstract class LogManager {
     // */
     /**
      * This method is used to get event log in the Stream format.
+     * The stream must be read to the end or closed so that the connection returns to the pool.
      * @param filename File Name
      * @param dcRequestKey X-Dc-RequestKey Header
      * @return Event Log Information
@@ -16,6 +16,12 @@
  */
 package com.fujitsu.dc.client;
 
+import java.util.concurrent.CompletableFuture;
+
+import com.fujitsu.dc.client.http.DcResponse;
+import com.fujitsu.dc.client.http.IRestAdapter;
+import com.fujitsu.dc.client.utils.UrlUtils;
+
 ///**
 // * ODataへアクセスするためのクラス.
 // */
@@ -102,4 +108,15 @@ public class ODataCollection extends DcCollection {
     public ODataBatch makeODataBatch(final boolean sync) {
         return new ODataBatch(this.accessor, super.getPath());
     }
+
+    /**
+     * This method requests the GET method for a resource under this collection (such as an EntitySet with a query)
+     * asynchronously. The response body is not buffered and can be read with {@link DcResponse#bodyAsStream()}.
+     * @param pathValue Path under this collection
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> getAsync(String pathValue) {
+        String url = UrlUtils.append(super.getPath(), pathValue);
+        return this.accessor.getAsyncAdapter().get(url, IRestAdapter.CONTENT_TYPE_JSON);
+    }
 }
@@ -138,7 +138,7 @@ public class ServiceCollection extends DcCollection {
         HttpResponse response = null;
         try {
             HttpUriRequest req = drb.build();
-            response = rest.getHttpClient().execute(req);
+            response = rest.execute(req);
         } catch (DaoException e) {
             throw new RuntimeException(e);
         } catch (ClientProtocolException e) {
@@ -0,0 +1,247 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoException;
+
+/**
+ * This class is the asynchronous variant of {@link RestAdapter}.
+ * Each request is executed on an executor with a connection taken from the shared pool, and the result is returned
+ * as a CompletableFuture. A failed request completes the future exceptionally with a CompletionException whose cause
+ * is the DaoException. The body of a GET response is not buffered; read it to the end or close
+ * {@link DcResponse#bodyAsStream()} so that the connection returns to the pool.
+ * Requests run concurrently, so the response headers are not set to the Accessor; read them from each DcResponse.
+ */
+public class AsyncRestAdapter {
+
+    /** Default number of threads that execute asynchronous requests. */
+    private static final int DEFAULT_THREADS = 16;
+
+    private static ExecutorService defaultExecutor;
+
+    private final RestAdapter rest;
+    private final Executor executor;
+
+    /**
+     * Constructor. The executor set in DaoConfig is used, or the default executor if none is set.
+     * @param as Accessor
+     */
+    public AsyncRestAdapter(Accessor as) {
+        this(createRestAdapter(as), as.getDaoConfig().getAsyncExecutor());
+    }
+
+    /**
+     * Constructor. The adapter is shared by concurrent requests, so it should be created with
+     * {@link RestAdapter#RestAdapter(Accessor, boolean)} so that it does not set the response headers to the Accessor.
+     * @param rest Adapter that executes the request
+     * @param executor Executor that runs the requests (the default executor is used if null)
+     */
+    public AsyncRestAdapter(RestAdapter rest, Executor executor) {
+        this.rest = rest;
+        if (executor == null) {
+            this.executor = getDefaultExecutor();
+        } else {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * This is the asynchronous GET method.
+     * @param url Target Request URL
+     * @param accept Accept Header Value
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> get(final String url, final String accept) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.get(url, accept);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous GET method with request headers.
+     * @param url Target Request URL
+     * @param headers Request headers
+     * @param etag ETag value
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> get(final String url, final Map<String, String> headers, final String etag) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.get(url, headers, etag);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous HEAD method.
+     * @param url Target Request URL
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> head(final String url) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.head(url);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous PUT method.
+     * @param url Target Request URL
+     * @param data Data to be written
+     * @param etag ETag value
+     * @param contentType Content-Type value
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> put(final String url, final String data, final String etag,
+            final String contentType) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.put(url, data, etag, contentType);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous MERGE method.
+     * @param url Target Request URL
+     * @param data Data to be written
+     * @param etag ETag value
+     * @param contentType Content-Type value
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> merge(final String url, final String data, final String etag,
+            final String contentType) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.merge(url, data, etag, contentType);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous POST method.
+     * @param url Target Request URL
+     * @param data Data to be written
+     * @param contentType Content-Type value
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> post(final String url, final String data, final String contentType) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.post(url, data, contentType);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous DELETE method.
+     * @param url Target Request URL
+     * @param etag ETag value
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> del(final String url, final String etag) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.del(url, etag);
+            }
+        });
+    }
+
+    /**
+     * This is the asynchronous PROPFIND method.
+     * @param url Target Request URL
+     * @return Future of DcResponse
+     */
+    public CompletableFuture<DcResponse> propfind(final String url) {
+        return execute(new Request() {
+            @Override
+            public DcResponse call() throws DaoException {
+                return rest.propfind(url);
+            }
+        });
+    }
+
+    /**
+     * A request executed on the executor.
+     */
+    private interface Request {
+        /**
+         * Executes the request.
+         * @return DcResponse object
+         * @throws DaoException Library Exception
+         */
+        DcResponse call() throws DaoException;
+    }
+
+    private CompletableFuture<DcResponse> execute(final Request request) {
+        return CompletableFuture.supplyAsync(new Supplier<DcResponse>() {
+            @Override
+            public DcResponse get() {
+                try {
+                    return request.call();
+                } catch (DaoException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, executor);
+    }
+
+    private static RestAdapter createRestAdapter(Accessor as) {
+        RestAdapter mock = as.getDaoConfig().getMockRestAdapter();
+        if (mock != null) {
+            return mock;
+        }
+        return new RestAdapter(as, false);
+    }
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(DEFAULT_THREADS, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "dc-client-async-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+}
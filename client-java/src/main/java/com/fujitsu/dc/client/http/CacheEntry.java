@@ -16,7 +16,9 @@
  */
 package com.fujitsu.dc.client.http;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
@@ -26,17 +28,29 @@ import org.apache.http.HttpHeaders;
 // */
 /**
  * It creates a new object of CacheEntry.
+ * An entry is not modified once it is in a CacheMap so that it can be shared by threads; a new entry replaces the old
+ * one in the CacheMap. The setters are kept only for compatibility.
+ * It holds the credential of the request, since a response to one credential must not be returned to another.
  */
 public class CacheEntry {
     // /** レスポンスヘッダー値. */
+    /** Milliseconds in a second. */
+    private static final long MILLISECS_IN_A_SEC = 1000L;
+
     /** Response header value. */
-    private HashMap<String, String> headers = new HashMap<String, String>();
+    private volatile Map<String, String> headers;
     // /** URL値. */
     /** URL value. */
-    private String url;
+    private volatile String url;
+    /** Authorization header value of the request (empty string if none). */
+    private final String credential;
     // /** Body値. */
     /** Body value. */
-    private String body;
+    private volatile String body;
+    /** Time (in milliseconds) when the response was stored. */
+    private final long storedAt;
+    /** Size counted by the CacheMap holding this entry. */
+    private long accountedSize;
 
     // /**
     // * コンストラクタ.
@@ -51,11 +65,126 @@ public class CacheEntry {
      * @param paramBody Body Value
      */
     public CacheEntry(final String paramUrl, final Header[] paramHeader, final String paramBody) {
+        this(paramUrl, null, paramHeader, paramBody);
+    }
+
+    /**
+     * This is the parameterized constructor used for initializing various class variables.
+     * @param paramUrl URL Value
+     * @param paramCredential Authorization header value of the request (null if none)
+     * @param paramHeader Response header value
+     * @param paramBody Body Value
+     */
+    public CacheEntry(final String paramUrl, final String paramCredential, final Header[] paramHeader,
+            final String paramBody) {
         this.url = paramUrl;
+        this.credential = CacheMap.normalizeCredential(paramCredential);
+        this.headers = toMap(paramHeader);
+        this.body = paramBody;
+        this.storedAt = System.currentTimeMillis();
+    }
+
+    private static Map<String, String> toMap(Header[] paramHeader) {
+        HashMap<String, String> map = new HashMap<String, String>();
         for (Header header : paramHeader) {
-            this.headers.put(header.getName(), header.getValue());
+            map.put(header.getName(), header.getValue());
         }
-        this.body = paramBody;
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * This method returns the size counted by the CacheMap holding this entry.
+     * @return Size in bytes
+     */
+    final long getAccountedSize() {
+        return accountedSize;
+    }
+
+    /**
+     * This method sets the size counted by the CacheMap holding this entry.
+     * @param size Size in bytes
+     */
+    final void setAccountedSize(long size) {
+        this.accountedSize = size;
+    }
+
+    /**
+     * This method checks whether the response may be stored in the cache.
+     * The cache may be shared by several DcContext objects, so responses for a single user are not stored either.
+     * @return false if Cache-Control has no-store or private
+     */
+    public final boolean isStorable() {
+        return !hasDirective("no-store") && !hasDirective("private");
+    }
+
+    /**
+     * This method checks whether the response may be used without revalidation.
+     * Only responses with Cache-Control max-age, and without no-cache, are fresh until max-age elapses.
+     * @param now Current time (in milliseconds)
+     * @return true if the entry is fresh
+     */
+    public final boolean isFresh(long now) {
+        if (hasDirective("no-cache")) {
+            return false;
+        }
+        String cacheControl = getHeaderIgnoreCase(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null) {
+            return false;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase();
+            if (d.startsWith("max-age=")) {
+                try {
+                    long maxAge = Long.parseLong(d.substring("max-age=".length()).trim());
+                    return now < storedAt + maxAge * MILLISECS_IN_A_SEC;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method returns the approximate memory size of this entry.
+     * @return Size in bytes
+     */
+    public final long size() {
+        long size = 0;
+        if (url != null) {
+            size += url.length();
+        }
+        size += credential.length();
+        if (body != null) {
+            size += body.length();
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            size += header.getKey().length() + header.getValue().length();
+        }
+        // Java strings hold two bytes per character
+        return size * 2;
+    }
+
+    private boolean hasDirective(String directive) {
+        String cacheControl = getHeaderIgnoreCase(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl == null) {
+            return false;
+        }
+        for (String d : cacheControl.split(",")) {
+            if (d.trim().toLowerCase().startsWith(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getHeaderIgnoreCase(String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
     }
 
     // /**
@@ -67,7 +196,7 @@ public class CacheEntry {
      * @return Etag value
      */
     public final String getEtag() {
-        return headers.get(HttpHeaders.ETAG);
+        return getHeaderIgnoreCase(HttpHeaders.ETAG);
     }
 
     // /**
@@ -76,10 +205,10 @@ public class CacheEntry {
     // */
     /**
      * This method is used to get response headers.
-     * @return Response header value
+     * @return Copy of the response header value
      */
     public HashMap<String, String> getHeaders() {
-        return headers;
+        return new HashMap<String, String>(headers);
     }
 
     // /**
@@ -87,14 +216,13 @@ public class CacheEntry {
     // * @param value レスポンスヘッダー値
     // */
     /**
-     * This method is used to set the response headers using Header Array.
+     * This method is used to set response headers.
      * @param value Response header value
+     * @deprecated An entry in a CacheMap is shared by threads. Append a new CacheEntry to the CacheMap instead.
      */
+    @Deprecated
     public void setHeaders(Header[] value) {
-        this.headers.clear();
-        for (Header header : value) {
-            this.headers.put(header.getName(), header.getValue());
-        }
+        this.headers = toMap(value);
     }
 
     // /**
@@ -102,11 +230,13 @@ public class CacheEntry {
     // * @param value レスポンスヘッダー値
     // */
     /**
-     * This method is used to set the response headers using Header Map.
+     * This method is used to set response headers.
      * @param value Response header value
+     * @deprecated An entry in a CacheMap is shared by threads. Append a new CacheEntry to the CacheMap instead.
      */
+    @Deprecated
     public void setHeaders(HashMap<String, String> value) {
-        this.headers = value;
+        this.headers = Collections.unmodifiableMap(new HashMap<String, String>(value));
     }
 
     // /**
@@ -128,11 +258,21 @@ public class CacheEntry {
     /**
      * This method is used to set the URL value.
      * @param value URL
+     * @deprecated An entry in a CacheMap is shared by threads. Append a new CacheEntry to the CacheMap instead.
      */
+    @Deprecated
     public final void setUrl(final String value) {
         this.url = value;
     }
 
+    /**
+     * This method is used to get the Authorization header value of the request.
+     * @return Credential (empty string if none)
+     */
+    public final String getCredential() {
+        return credential;
+    }
+
     // /**
     // * Bodyの取得.
     // * @return Body値
@@ -152,7 +292,9 @@ public class CacheEntry {
     /**
      * This method is used to set the Body value.
      * @param value Body
+     * @deprecated An entry in a CacheMap is shared by threads. Append a new CacheEntry to the CacheMap instead.
      */
+    @Deprecated
     public final void setBody(final String value) {
         this.body = value;
     }
@@ -17,26 +17,72 @@
 package com.fujitsu.dc.client.http;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 ///**
 // * CacheMapクラス.
 // */
 /**
  * It creates a new object of CacheMap.
+ * This is a thread-safe LRU cache of GET responses bounded by the number of entries and their total size.
+ * The least recently used entries are evicted first. An instance can be shared by several DcContext objects.
+ * Entries are keyed by the credential (Authorization header value) and the URL, so that a response is returned only
+ * to requests with the same credential.
  */
 public class CacheMap {
+    /** Default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    /** Default maximum total size (in bytes) of entries. */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static CacheMap shared;
+
     // /** キャッシュハッシュ. */
-    /** Cache hash. */
-    private HashMap<String, CacheEntry> map;
+    /** Cache hash keyed by the credential and the URL. */
+    private final LinkedHashMap<String, CacheEntry> map;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private long bytes;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
 
     // /**
     // * コンストラクタ.
     // */
     /**
-     * This is the default constructor used to initialize map.
+     * This is the default constructor used to initialize map with the default limits.
      */
     public CacheMap() {
-        map = new HashMap<String, CacheEntry>();
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructor.
+     * @param maxEntries Maximum number of entries
+     * @param maxBytes Maximum total size (in bytes) of entries
+     */
+    public CacheMap(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.map = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+    }
+
+    /**
+     * This method returns the instance shared by DcContext objects that set it with DcContext#setCacheMap.
+     * @return Shared CacheMap object
+     */
+    public static synchronized CacheMap getShared() {
+        if (shared == null) {
+            shared = new CacheMap();
+        }
+        return shared;
     }
 
     // /**
@@ -46,11 +92,24 @@ public class CacheMap {
     // */
     /**
      * This method is used to search a URL as key from the cache hash as CacheEntry.
-     * @param key URL as Key
+     * @param url URL as Key
+     * @param credential Authorization header value of the request (null if none)
+     * @return CacheEntry as the extracted object
+     */
+    public final synchronized CacheEntry search(final String url, final String credential) {
+        return map.get(key(url, normalizeCredential(credential)));
+    }
+
+    /**
+     * This method is used to search a URL as key from the cache hash as CacheEntry.
+     * Only entries stored for requests without an Authorization header are returned.
+     * @param url URL as Key
      * @return CacheEntry as the extracted object
+     * @deprecated Entries are keyed by the credential as well. Use {@link #search(String, String)}.
      */
-    public final CacheEntry search(final String key) {
-        return map.get(key);
+    @Deprecated
+    public final CacheEntry search(final String url) {
+        return search(url, null);
     }
 
     // /**
@@ -58,16 +117,120 @@ public class CacheMap {
     // * @param value CacheEntryオブジェクト
     // */
     /**
-     * This method is used to add an entry to the cache hash.
+     * This method is used to add an entry to the cache hash. An existing entry for the same URL and credential is
+     * replaced. Responses with Cache-Control no-store or private, or larger than the maximum size, are not stored.
      * @param value CacheEntry object
      */
-    public final void appendEntry(final CacheEntry value) {
-        CacheEntry ce = map.get(value.getUrl());
-        if (ce == null) {
-            map.put(value.getUrl(), value);
-        } else {
-            ce.setBody(value.getBody());
-            ce.setHeaders(value.getHeaders());
+    public final synchronized void appendEntry(final CacheEntry value) {
+        String key = key(value.getUrl(), value.getCredential());
+        CacheEntry old = map.remove(key);
+        if (old != null) {
+            bytes -= old.getAccountedSize();
+        }
+        long size = value.size();
+        if (!value.isStorable() || size > maxBytes || maxEntries <= 0) {
+            return;
+        }
+        // Count the size at the time of appending, in case the entry is modified by the deprecated setters
+        value.setAccountedSize(size);
+        map.put(key, value);
+        bytes += size;
+        evict();
+    }
+
+    /**
+     * This method removes the entries of the URL for all credentials.
+     * @param url URL as Key
+     */
+    public final synchronized void remove(final String url) {
+        Iterator<CacheEntry> it = map.values().iterator();
+        while (it.hasNext()) {
+            CacheEntry entry = it.next();
+            if (entry.getUrl().equals(url)) {
+                it.remove();
+                bytes -= entry.getAccountedSize();
+            }
+        }
+    }
+
+    /**
+     * This method removes all entries.
+     */
+    public final synchronized void clear() {
+        map.clear();
+        bytes = 0;
+    }
+
+    /**
+     * This method returns the credential used in the key for the Authorization header value.
+     * @param credential Authorization header value (null if none)
+     * @return Credential (empty string if none)
+     */
+    static String normalizeCredential(String credential) {
+        if (credential == null) {
+            return "";
+        }
+        return credential;
+    }
+
+    private static String key(String url, String credential) {
+        // A URL does not contain a line break, so the key is unique for each pair
+        return credential + "\n" + url;
+    }
+
+    private void evict() {
+        Iterator<CacheEntry> it = map.values().iterator();
+        while ((map.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            CacheEntry eldest = it.next();
+            it.remove();
+            bytes -= eldest.getAccountedSize();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * This method records that a cached response was used without a request.
+     */
+    public final void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    /**
+     * This method records that a cached response was revalidated by the server (304 Not Modified).
+     */
+    public final void recordRevalidation() {
+        revalidationCount.incrementAndGet();
+    }
+
+    /**
+     * This method records that the response was not in the cache or had been modified.
+     */
+    public final void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /**
+     * This method returns the number of entries.
+     * @return Number of entries
+     */
+    public final synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * This method returns the usage of the cache.
+     * @return Map of the hit, revalidation, miss and eviction counts, the number of entries and their size in bytes
+     */
+    public final Map<String, Long> getStatistics() {
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put("hit", hitCount.get());
+        stats.put("revalidation", revalidationCount.get());
+        stats.put("miss", missCount.get());
+        stats.put("eviction", evictionCount.get());
+        synchronized (this) {
+            stats.put("size", (long) map.size());
+            stats.put("bytes", bytes);
         }
+        return stats;
     }
 }
@@ -30,6 +30,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -137,6 +138,21 @@ public class DcResponse {
         return is;
     }
 
+    /**
+     * This method discards the rest of the response body so that the connection returns to the pool.
+     * Call it when a streamed GET response is not read to the end. It does nothing if the body has already been read.
+     */
+    public final void close() {
+        if (this.response == null) {
+            return;
+        }
+        try {
+            EntityUtils.consume(this.response.getEntity());
+        } catch (IOException e) {
+            log.debug("failed to consume the response body: " + e.getMessage());
+        }
+    }
+
     // /**
     // * レスポンスボディを文字列で取得.
     // * @return ボディテキスト
@@ -22,31 +22,43 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.impl.conn.SingleClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.fujitsu.dc.common.http.PooledConnectionManager;
 
 ///**
 // * HttpClientの実装を切り替えてNewする.
 // */
 /**
  * This class is used for switching the implementation of HttpClient.
+ * For the default and insecure types, connections are taken from a pool shared per type and reused with keep-alive.
+ * The response body must be read to the end or closed so that the connection returns to the pool.
  */
 public class HttpClientFactory extends DefaultHttpClient {
     // /** HTTP通信のタイプ. */
@@ -68,6 +80,38 @@ public class HttpClientFactory extends DefaultHttpClient {
     /** (No time-out in the case of 0) connection timeout value of default. */
     private static final int TIMEOUT = 0;
 
+    /** Default maximum number of pooled connections. */
+    private static final int DEFAULT_MAX_TOTAL = 100;
+    /** Default maximum number of pooled connections per route. */
+    private static final int DEFAULT_MAX_PER_ROUTE = 50;
+    /** Default time (in milliseconds) before an idle connection is closed. */
+    private static final long DEFAULT_IDLE_TIMEOUT = 10000L;
+    /** Default keep-alive duration (in milliseconds) when the response has no Keep-Alive header. */
+    private static final long DEFAULT_KEEP_ALIVE = 10000L;
+    /** Default time (in milliseconds) to wait for a connection from the pool. */
+    private static final long DEFAULT_POOL_TIMEOUT = 60000L;
+
+    private static int maxTotal = DEFAULT_MAX_TOTAL;
+    private static int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+    private static long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private static volatile long keepAlive = DEFAULT_KEEP_ALIVE;
+    private static volatile long poolTimeout = DEFAULT_POOL_TIMEOUT;
+
+    /** Connection pool per type of communication. */
+    private static final Map<String, PooledConnectionManager> MANAGERS = new HashMap<String, PooledConnectionManager>();
+
+    /** Uses the configured duration when the response has no Keep-Alive header. */
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new DefaultConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            if (duration < 0) {
+                return keepAlive;
+            }
+            return duration;
+        }
+    };
+
     // /**
     // * HTTPClientオブジェクトを作成.
     // * @param type 通信タイプ
@@ -83,17 +127,17 @@ public class HttpClientFactory extends DefaultHttpClient {
     @SuppressWarnings("deprecation")
     public static HttpClient create(final String type, final int connectionTimeout) {
         if (TYPE_DEFAULT.equalsIgnoreCase(type)) {
-            return new DefaultHttpClient();
+            DefaultHttpClient hc = new DefaultHttpClient(getConnectionManager(TYPE_DEFAULT));
+            hc.setKeepAliveStrategy(KEEP_ALIVE_STRATEGY);
+            HttpConnectionParams.setStaleCheckingEnabled(hc.getParams(), false);
+            ConnManagerParams.setTimeout(hc.getParams(), poolTimeout);
+            return hc;
         }
 
         SSLSocketFactory sf = null;
         Scheme httpScheme = null;
         Scheme httpsScheme = null;
-        if (TYPE_INSECURE.equalsIgnoreCase(type)) {
-            sf = createInsecureSSLSocketFactory();
-            httpScheme = new Scheme("https", PORTHTTPS, sf);
-            httpsScheme = new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory());
-        } else if (TYPE_ANDROID.equalsIgnoreCase(type)) {
+        if (TYPE_ANDROID.equalsIgnoreCase(type)) {
             try {
                 sf = new InsecureSSLSocketFactory(null);
             } catch (KeyManagementException e) {
@@ -109,17 +153,28 @@ public class HttpClientFactory extends DefaultHttpClient {
             httpsScheme = new Scheme("http", PlainSocketFactory.getSocketFactory(), PORTHTTP);
         }
 
-        SchemeRegistry schemeRegistry = new SchemeRegistry();
-        schemeRegistry.register(httpScheme);
-        schemeRegistry.register(httpsScheme);
         HttpParams params = new BasicHttpParams();
         ClientConnectionManager cm = null;
         if (TYPE_INSECURE.equalsIgnoreCase(type)) {
-            cm = new SingleClientConnManager(schemeRegistry);
+            cm = getConnectionManager(TYPE_INSECURE);
         } else if (TYPE_ANDROID.equalsIgnoreCase(type)) {
+            // The HttpClient bundled with Android does not have the pool API used by PooledConnectionManager.
+            SchemeRegistry schemeRegistry = new SchemeRegistry();
+            schemeRegistry.register(httpScheme);
+            schemeRegistry.register(httpsScheme);
             cm = new SingleClientConnManager(params, schemeRegistry);
         }
-        HttpClient hc = new DefaultHttpClient(cm, params);
+        DefaultHttpClient hc = new DefaultHttpClient(cm, params);
+        if (cm instanceof PooledConnectionManager) {
+            hc.setKeepAliveStrategy(KEEP_ALIVE_STRATEGY);
+            // Nagle's algorithm combined with delayed ACK stalls requests on a reused connection.
+            HttpConnectionParams.setTcpNoDelay(params, true);
+            // The stale check blocks on a read for every reuse. Stale connections are dropped by the keep-alive
+            // duration and the idle eviction instead.
+            HttpConnectionParams.setStaleCheckingEnabled(params, false);
+            // Do not wait forever when the pool is exhausted.
+            ConnManagerParams.setTimeout(params, poolTimeout);
+        }
 
         HttpParams params2 = hc.getParams();
         int timeout = TIMEOUT;
@@ -138,6 +193,72 @@ public class HttpClientFactory extends DefaultHttpClient {
         return hc;
     }
 
+    /**
+     * This method changes the settings of the shared connection pools.
+     * @param total Maximum number of connections per type of communication
+     * @param perRoute Maximum number of connections per route
+     * @param idleTimeoutMillis Time (in milliseconds) before an idle connection is closed
+     * @param keepAliveMillis Keep-alive duration (in milliseconds) when the response has no Keep-Alive header
+     */
+    public static void configurePool(int total, int perRoute, long idleTimeoutMillis, long keepAliveMillis) {
+        configurePool(total, perRoute, idleTimeoutMillis, keepAliveMillis, poolTimeout);
+    }
+
+    /**
+     * This method changes the settings of the shared connection pools.
+     * @param total Maximum number of connections per type of communication
+     * @param perRoute Maximum number of connections per route
+     * @param idleTimeoutMillis Time (in milliseconds) before an idle connection is closed
+     * @param keepAliveMillis Keep-alive duration (in milliseconds) when the response has no Keep-Alive header
+     * @param poolTimeoutMillis Time (in milliseconds) to wait for a connection when the pool is exhausted
+     */
+    public static void configurePool(int total, int perRoute, long idleTimeoutMillis, long keepAliveMillis,
+            long poolTimeoutMillis) {
+        synchronized (MANAGERS) {
+            maxTotal = total;
+            maxPerRoute = perRoute;
+            idleTimeout = idleTimeoutMillis;
+            keepAlive = keepAliveMillis;
+            poolTimeout = poolTimeoutMillis;
+            for (PooledConnectionManager cm : MANAGERS.values()) {
+                cm.configure(total, perRoute, idleTimeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * This method returns the usage of the shared connection pools.
+     * @return Map of leased, pending and available connection counts per type of communication
+     */
+    public static Map<String, Object> getPoolStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        synchronized (MANAGERS) {
+            for (Map.Entry<String, PooledConnectionManager> entry : MANAGERS.entrySet()) {
+                stats.put(entry.getKey(), entry.getValue().getStatistics());
+            }
+        }
+        return stats;
+    }
+
+    private static PooledConnectionManager getConnectionManager(final String type) {
+        synchronized (MANAGERS) {
+            PooledConnectionManager cm = MANAGERS.get(type);
+            if (cm == null) {
+                SchemeRegistry schemeRegistry;
+                if (TYPE_DEFAULT.equals(type)) {
+                    schemeRegistry = SchemeRegistryFactory.createDefault();
+                } else {
+                    schemeRegistry = new SchemeRegistry();
+                    schemeRegistry.register(new Scheme("https", PORTHTTPS, createInsecureSSLSocketFactory()));
+                    schemeRegistry.register(new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory()));
+                }
+                cm = new PooledConnectionManager(schemeRegistry, maxTotal, maxPerRoute, idleTimeout);
+                MANAGERS.put(type, cm);
+            }
+            return cm;
+        }
+    }
+
     // /**
     // * SSLSocketを生成.
     // * @return 生成したSSLSocket
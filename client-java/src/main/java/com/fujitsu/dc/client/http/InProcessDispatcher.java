@@ -0,0 +1,43 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * It dispatches the requests for a server running in the same JVM without using sockets.
+ * It is set by {@link com.fujitsu.dc.client.DaoConfig#setInProcessDispatcher(String, InProcessDispatcher)}.
+ */
+public interface InProcessDispatcher {
+
+    /**
+     * This method gets the URL of the server that this dispatcher handles.
+     * @return URL ending with a slash
+     */
+    String getUrl();
+
+    /**
+     * This method processes a request in the server and returns the response.
+     * @param request HTTP request for a URL under {@link #getUrl()}
+     * @return HTTP response whose body has been read completely
+     * @throws IOException Exception thrown
+     */
+    HttpResponse dispatch(HttpUriRequest request) throws IOException;
+}
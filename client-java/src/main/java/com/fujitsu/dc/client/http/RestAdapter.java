@@ -18,19 +18,23 @@ package com.fujitsu.dc.client.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.impl.client.AbstractHttpClient;
 
 import com.fujitsu.dc.client.Accessor;
@@ -45,6 +49,15 @@ import com.fujitsu.dc.client.DcContext;
  * It creates a new object of RestAdapter. This class is used for REST access.
  */
 public class RestAdapter implements IRestAdapter {
+    /** Host header. */
+    static final String HEADER_HOST = "Host";
+    /** Header that carries the original scheme of a request sent to the internal URL. */
+    static final String HEADER_X_FORWARDED_PROTO = "X-Forwarded-Proto";
+    /** Header that carries the original host of a request sent to the internal URL. */
+    static final String HEADER_X_FORWARDED_HOST = "X-Forwarded-Host";
+    /** Header that carries the original path of a request sent to the internal URL. */
+    static final String HEADER_X_FORWARDED_PATH = "X-Forwarded-Path";
+
     // /** ログオブジェクト. */
     // private static Log log = LogFactory.getLog(RestAdapter.class);
 
@@ -53,6 +66,8 @@ public class RestAdapter implements IRestAdapter {
     // /** アクセス主体. */
     /** Reference to Accessor. */
     private Accessor accessor;
+    /** Whether the response headers are set to the accessor. */
+    private boolean keepResHeaders = true;
 
     // /**
     // * コンストラクタ.
@@ -63,7 +78,19 @@ public class RestAdapter implements IRestAdapter {
      * @param as Accessor
      */
     public RestAdapter(Accessor as) {
+        this(as, true);
+    }
+
+    /**
+     * This is the parameterized constructor to initialize various fields.
+     * An adapter shared by concurrent requests should not set the response headers to the accessor, since the
+     * headers of the requests would be mixed in it. The headers are always available from each DcResponse.
+     * @param as Accessor
+     * @param keepResHeaders true to set the response headers to the accessor
+     */
+    public RestAdapter(Accessor as, boolean keepResHeaders) {
         this.accessor = as;
+        this.keepResHeaders = keepResHeaders;
         DaoConfig config = accessor.getDaoConfig();
         httpClient = config.getHttpClient();
         if (httpClient == null) {
@@ -639,11 +666,20 @@ public class RestAdapter implements IRestAdapter {
      */
     private DcResponse request(HttpUriRequest httpReq) throws DaoException {
         try {
-            HttpResponse objResponse = httpClient.execute(httpReq);
+            HttpResponse objResponse = execute(httpReq);
+            HttpEntity entity = objResponse.getEntity();
+            int statusCode = objResponse.getStatusLine().getStatusCode();
+            if (entity != null && (statusCode >= STATUS300 || !"GET".equals(httpReq.getMethod()))) {
+                // Only successful GET responses may be read as a stream. Others are read into memory here so
+                // that the pooled connection is released even if the caller ignores the response body.
+                // The caller of a streamed GET must read the body or call DcResponse#close().
+                objResponse.setEntity(new BufferedHttpEntity(entity));
+            }
             DcResponse dcRes = new DcResponse(objResponse);
 
-            this.accessor.setResHeaders(objResponse.getAllHeaders());
-            int statusCode = objResponse.getStatusLine().getStatusCode();
+            if (this.keepResHeaders) {
+                this.accessor.setResHeaders(objResponse.getAllHeaders());
+            }
             if (statusCode >= STATUS300 && statusCode != HttpStatus.SC_MOVED_TEMPORARILY) {
                 throw DaoException.create(dcRes.bodyAsString(), statusCode);
             }
@@ -653,6 +689,40 @@ public class RestAdapter implements IRestAdapter {
         }
     }
 
+    /**
+     * This method executes a request with the HttpClient of this adapter. A request for the base URL set by
+     * {@link DaoConfig#setInternalRoute(String, String)} is sent to the internal URL, and a request for the base URL
+     * set by {@link DaoConfig#setInProcessDispatcher(String, InProcessDispatcher)} is processed by the dispatcher.
+     * @param httpReq HTTP request
+     * @return HTTP response
+     * @throws IOException Exception thrown
+     */
+    public HttpResponse execute(HttpUriRequest httpReq) throws IOException {
+        DaoConfig config = this.accessor.getDaoConfig();
+        String baseUrl = config.getInternalRouteBaseUrl();
+        String internalUrl = config.getInternalRouteUrl();
+        if (baseUrl != null && internalUrl != null && httpReq instanceof HttpRequestBase) {
+            String url = httpReq.getURI().toString();
+            if (url.startsWith(baseUrl)) {
+                URI base = URI.create(baseUrl);
+                URI internal = URI.create(internalUrl);
+                ((HttpRequestBase) httpReq).setURI(URI.create(internalUrl + url.substring(baseUrl.length())));
+                // The server builds its URLs from these headers as it does for the public request
+                httpReq.setHeader(HEADER_HOST, base.getRawAuthority());
+                httpReq.setHeader(HEADER_X_FORWARDED_PROTO, base.getScheme());
+                httpReq.setHeader(HEADER_X_FORWARDED_HOST, base.getHost());
+                if (!base.getRawPath().equals(internal.getRawPath())) {
+                    httpReq.setHeader(HEADER_X_FORWARDED_PATH, URI.create(url).getRawPath());
+                }
+                InProcessDispatcher dispatcher = config.getInProcessDispatcher();
+                if (dispatcher != null) {
+                    return dispatcher.dispatch(httpReq);
+                }
+            }
+        }
+        return httpClient.execute(httpReq);
+    }
+
     // /**
     // * Accessorからトークンを取得する.
     // * @return トークン
@@ -0,0 +1,108 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fujitsu.dc.client.http.CacheMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that DavCollection#getStringWebDAV does not return a response cached for another credential when DcContext
+ * objects share one CacheMap. The server returns the Authorization header of each request as the body.
+ */
+public class DavCollectionCacheTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private AtomicInteger requests;
+    private CacheMap cacheMap;
+
+    /**
+     * Starts the server.
+     * @throws Exception failed to start the server
+     */
+    @Before
+    public void before() throws Exception {
+        requests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                if (authorization == null) {
+                    authorization = "anonymous";
+                }
+                exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                exchange.getResponseHeaders().set("ETag", "\"1\"");
+                byte[] body = authorization.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        cacheMap = new CacheMap();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    /**
+     * A fresh response is reused for the same credential and requested again for another one.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void freshResponseIsReusedOnlyForTheSameCredential() throws DaoException {
+        DavCollection alice = collection("alice");
+        DavCollection bob = collection("bob");
+
+        assertEquals("Bearer alice", alice.getStringWebDAV("file").getStringBody());
+        assertEquals("Bearer bob", bob.getStringWebDAV("file").getStringBody());
+        assertEquals(2, requests.get());
+
+        assertEquals("Bearer alice", alice.getStringWebDAV("file").getStringBody());
+        assertEquals("Bearer bob", bob.getStringWebDAV("file").getStringBody());
+        assertEquals(2, requests.get());
+        assertEquals(2L, (long) cacheMap.getStatistics().get("hit"));
+    }
+
+    private DavCollection collection(String token) throws DaoException {
+        DcContext dc = new DcContext(baseUrl, "cell", "", "box");
+        dc.setCacheMap(cacheMap);
+        return new DavCollection(dc.withToken(token), baseUrl + "cell/box/col");
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoException;
+import com.fujitsu.dc.client.DcContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that AsyncRestAdapter completes, fails and cancels its futures like the blocking RestAdapter calls.
+ * The server answers each request with its path in the body and in the X-Request-Path header.
+ */
+public class AsyncRestAdapterTest {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+    private static final int CONCURRENT_REQUESTS = 20;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String baseUrl;
+    private Accessor accessor;
+    private List<String> paths;
+    private CountDownLatch slowReceived;
+    private CountDownLatch slowGate;
+
+    /**
+     * Starts the server.
+     * @throws Exception failed to start the server
+     */
+    @Before
+    public void before() throws Exception {
+        paths = Collections.synchronizedList(new ArrayList<String>());
+        slowReceived = new CountDownLatch(1);
+        slowGate = new CountDownLatch(1);
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                paths.add(path);
+                int status = 200;
+                if (path.endsWith("/slow")) {
+                    slowReceived.countDown();
+                    await(slowGate);
+                } else if (path.endsWith("/missing")) {
+                    status = 404;
+                }
+                exchange.getResponseHeaders().set("X-Request-Path", path);
+                byte[] body = path.getBytes("UTF-8");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        accessor = new DcContext(baseUrl, "cell", "", "box").withToken("token");
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        slowGate.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * A successful request completes the future with the response.
+     * @throws Exception request failed
+     */
+    @Test
+    public void successfulRequestCompletesTheFuture() throws Exception {
+        DcResponse res = accessor.getAsyncAdapter().get(baseUrl + "cell/box/file", "application/octet-stream")
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(200, res.getStatusCode());
+        assertEquals("/cell/box/file", res.bodyAsString());
+    }
+
+    /**
+     * An error response completes the future exceptionally with the DaoException of the blocking call.
+     * @throws Exception request failed
+     */
+    @Test
+    public void errorResponseCompletesTheFutureExceptionally() throws Exception {
+        CompletableFuture<DcResponse> future = accessor.getAsyncAdapter().del(baseUrl + "cell/box/missing", "*");
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Not thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DaoException);
+            assertEquals("404", ((DaoException) e.getCause()).getCode());
+        }
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    /**
+     * A request cancelled while it waits for the executor is never sent.
+     * @throws Exception request failed
+     */
+    @Test
+    public void requestCancelledBeforeItStartsIsNotSent() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            AsyncRestAdapter async = new AsyncRestAdapter(new RestAdapter(accessor, false), single);
+            CompletableFuture<DcResponse> running = async.get(baseUrl + "cell/box/slow", "application/json");
+            assertTrue(slowReceived.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            CompletableFuture<DcResponse> queued = async.get(baseUrl + "cell/box/queued", "application/json");
+
+            assertTrue(queued.cancel(true));
+            slowGate.countDown();
+            DcResponse res = running.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertEquals(200, res.getStatusCode());
+            res.close();
+            single.shutdown();
+            assertTrue(single.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            assertTrue(queued.isCancelled());
+            assertFalse(paths.contains("/cell/box/queued"));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    /**
+     * Concurrent requests return their own headers in each response and do not write them to the Accessor.
+     * @throws Exception request failed
+     */
+    @Test
+    public void concurrentRequestsDoNotShareResponseHeaders() throws Exception {
+        AsyncRestAdapter async = accessor.getAsyncAdapter();
+        List<CompletableFuture<DcResponse>> futures = new ArrayList<CompletableFuture<DcResponse>>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            futures.add(async.get(baseUrl + "cell/box/file" + i, "application/json"));
+        }
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            DcResponse res = futures.get(i).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertEquals("/cell/box/file" + i, res.getHeader("X-Request-Path"));
+            res.close();
+        }
+        assertNull(accessor.getResHeaders().get("X-Request-Path"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
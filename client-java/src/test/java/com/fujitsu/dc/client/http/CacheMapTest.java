@@ -0,0 +1,218 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+/**
+ * Tests the bounds, the credential isolation and the thread safety of CacheMap.
+ */
+public class CacheMapTest {
+
+    private static final String URL = "http://localhost/cell/box/col/file";
+    private static final String ALICE = "Bearer alice";
+    private static final String BOB = "Bearer bob";
+
+    /**
+     * Responses with Cache-Control no-store or private are not stored.
+     */
+    @Test
+    public void privateAndNoStoreResponsesAreNotStored() {
+        CacheMap cm = new CacheMap();
+        cm.appendEntry(entry(URL, ALICE, "no-store", "body"));
+        cm.appendEntry(entry(URL + "2", ALICE, "private, max-age=60", "body"));
+        assertEquals(0, cm.size());
+
+        cm.appendEntry(entry(URL, ALICE, "max-age=60", "body"));
+        assertEquals(1, cm.size());
+    }
+
+    /**
+     * An entry is returned only for the credential of the request that stored it.
+     */
+    @Test
+    public void entryIsReturnedOnlyForTheSameCredential() {
+        CacheMap cm = new CacheMap();
+        cm.appendEntry(entry(URL, ALICE, "max-age=60", "alice's"));
+
+        assertEquals("alice's", cm.search(URL, ALICE).getBody());
+        assertNull(cm.search(URL, BOB));
+        assertNull(cm.search(URL, null));
+
+        cm.appendEntry(entry(URL, BOB, "max-age=60", "bob's"));
+        assertEquals("alice's", cm.search(URL, ALICE).getBody());
+        assertEquals("bob's", cm.search(URL, BOB).getBody());
+    }
+
+    /**
+     * The deprecated search by URL only returns the entry stored without a credential.
+     */
+    @SuppressWarnings("deprecation")
+    @Test
+    public void deprecatedSearchReturnsTheAnonymousEntry() {
+        CacheMap cm = new CacheMap();
+        cm.appendEntry(entry(URL, ALICE, "max-age=60", "alice's"));
+        assertNull(cm.search(URL));
+
+        cm.appendEntry(new CacheEntry(URL, new Header[] {new BasicHeader("Cache-Control", "max-age=60")}, "anon"));
+        assertEquals("anon", cm.search(URL).getBody());
+    }
+
+    /**
+     * Modifying a stored entry with the deprecated setters does not break the size accounting.
+     */
+    @SuppressWarnings("deprecation")
+    @Test
+    public void deprecatedSettersKeepTheSizeAccounting() {
+        CacheMap cm = new CacheMap();
+        CacheEntry entry = entry(URL, ALICE, "max-age=60", "body");
+        cm.appendEntry(entry);
+        entry.setBody("a much longer body than before");
+        cm.remove(URL);
+        assertEquals(Long.valueOf(0), cm.getStatistics().get("bytes"));
+    }
+
+    /**
+     * Removing a URL removes its entries for all credentials.
+     */
+    @Test
+    public void removeDropsTheUrlForAllCredentials() {
+        CacheMap cm = new CacheMap();
+        cm.appendEntry(entry(URL, ALICE, "max-age=60", "body"));
+        cm.appendEntry(entry(URL, BOB, "max-age=60", "body"));
+        cm.appendEntry(entry(URL + "2", ALICE, "max-age=60", "body"));
+
+        cm.remove(URL);
+        assertNull(cm.search(URL, ALICE));
+        assertNull(cm.search(URL, BOB));
+        assertNotNull(cm.search(URL + "2", ALICE));
+        assertEquals(cm.search(URL + "2", ALICE).size(), (long) cm.getStatistics().get("bytes"));
+    }
+
+    /**
+     * The least recently used entry is evicted when the number of entries exceeds the limit.
+     */
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedFirst() {
+        CacheMap cm = new CacheMap(2, CacheMap.DEFAULT_MAX_BYTES);
+        cm.appendEntry(entry(URL + "a", ALICE, "max-age=60", "a"));
+        cm.appendEntry(entry(URL + "b", ALICE, "max-age=60", "b"));
+        cm.search(URL + "a", ALICE);
+        cm.appendEntry(entry(URL + "c", ALICE, "max-age=60", "c"));
+
+        assertEquals(2, cm.size());
+        assertNotNull(cm.search(URL + "a", ALICE));
+        assertNull(cm.search(URL + "b", ALICE));
+        assertNotNull(cm.search(URL + "c", ALICE));
+        assertEquals(1L, (long) cm.getStatistics().get("eviction"));
+    }
+
+    /**
+     * The total size of the entries stays within the limit, and an entry larger than the limit is not stored.
+     */
+    @Test
+    public void totalSizeStaysWithinTheLimit() {
+        long entrySize = entry(URL + "0", ALICE, "max-age=60", "0123456789").size();
+        long maxBytes = entrySize * 3;
+        CacheMap cm = new CacheMap(CacheMap.DEFAULT_MAX_ENTRIES, maxBytes);
+        for (int i = 0; i < 10; i++) {
+            cm.appendEntry(entry(URL + i, ALICE, "max-age=60", "0123456789"));
+            assertTrue(cm.getStatistics().get("bytes") <= maxBytes);
+        }
+        assertEquals(3, cm.size());
+        assertNotNull(cm.search(URL + "9", ALICE));
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < maxBytes; i++) {
+            large.append('x');
+        }
+        cm.appendEntry(entry(URL + "large", ALICE, "max-age=60", large.toString()));
+        assertNull(cm.search(URL + "large", ALICE));
+        assertEquals(3, cm.size());
+    }
+
+    /**
+     * Concurrent appends, searches and removals keep the bounds and the size accounting.
+     * @throws Exception a thread failed
+     */
+    @Test
+    public void concurrentAccessKeepsTheBounds() throws Exception {
+        final int maxEntries = 20;
+        final int urls = 50;
+        final String[] credentials = {ALICE, BOB, null };
+        final CacheMap cm = new CacheMap(maxEntries, CacheMap.DEFAULT_MAX_BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int t = 0; t < 8; t++) {
+            final Random random = new Random(t);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 5000; i++) {
+                        String url = URL + random.nextInt(urls);
+                        String credential = credentials[random.nextInt(credentials.length)];
+                        int op = random.nextInt(10);
+                        if (op < 4) {
+                            cm.appendEntry(entry(url, credential, "max-age=60", url));
+                        } else if (op < 9) {
+                            CacheEntry ce = cm.search(url, credential);
+                            if (ce != null) {
+                                assertEquals(url, ce.getBody());
+                            }
+                        } else {
+                            cm.remove(url);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(cm.size() <= maxEntries);
+        for (int i = 0; i < urls; i++) {
+            cm.remove(URL + i);
+        }
+        assertEquals(0, cm.size());
+        assertEquals(0L, (long) cm.getStatistics().get("bytes"));
+    }
+
+    private static CacheEntry entry(String url, String credential, String cacheControl, String body) {
+        Header[] headers = {new BasicHeader("Cache-Control", cacheControl), new BasicHeader("ETag", "\"1\"") };
+        return new CacheEntry(url, credential, headers, body);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.Box;
+import com.fujitsu.dc.client.Cell;
+import com.fujitsu.dc.client.DaoException;
+import com.fujitsu.dc.client.DcContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that responses ignored by the caller do not keep pooled connections leased.
+ * The pool allows only {@link #MAX_PER_ROUTE} connections to the test server, and each test sends more requests
+ * than that. A leaked connection makes the next request fail with a pool timeout.
+ */
+public class RestAdapterConnectionReleaseTest {
+
+    private static final int MAX_PER_ROUTE = 2;
+    private static final int REQUESTS = MAX_PER_ROUTE * 3;
+    private static final long POOL_TIMEOUT = 1000L;
+
+    private HttpServer server;
+    private String baseUrl;
+    private Accessor accessor;
+
+    /**
+     * Starts an HTTP server and limits the shared pool.
+     * @throws Exception failed to start the server
+     */
+    @Before
+    public void before() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                int status = 200;
+                if (path.endsWith("/redirect")) {
+                    status = 302;
+                    exchange.getResponseHeaders().set("Location", baseUrl + "cell/box");
+                } else if (path.endsWith("/__box")) {
+                    exchange.getResponseHeaders().set("Location", baseUrl + "cell/box");
+                }
+                byte[] body = "{\"d\":{\"results\":{}}}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        HttpClientFactory.configurePool(MAX_PER_ROUTE * 2, MAX_PER_ROUTE, 10000L, 10000L, POOL_TIMEOUT);
+        accessor = new DcContext(baseUrl, "cell", "", "box").withToken("token");
+    }
+
+    /**
+     * Stops the server and restores the pool settings.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+        HttpClientFactory.configurePool(100, 50, 10000L, 10000L, 60000L);
+    }
+
+    /**
+     * Looking up a box by its schema reads only the Location header and still releases the connection.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void boxLookupBySchemaReleasesTheConnection() throws DaoException {
+        Cell cell = new Cell(accessor, "cell");
+        for (int i = 0; i < REQUESTS; i++) {
+            Box box = cell.box("http://localhost/schema/");
+            assertEquals("box", box.getName());
+        }
+        assertLeased(0);
+    }
+
+    /**
+     * A redirect response to GET is buffered so that the connection is released without reading the body.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void redirectResponseIsReleasedWithoutReadingTheBody() throws DaoException {
+        RestAdapter rest = new RestAdapter(accessor);
+        for (int i = 0; i < REQUESTS; i++) {
+            DcResponse res = rest.get(baseUrl + "redirect", RestAdapter.CONTENT_TYPE_JSON);
+            assertEquals(302, res.getStatusCode());
+        }
+        assertLeased(0);
+    }
+
+    /**
+     * A streamed GET response is released by close() without reading the body.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void streamedResponseIsReleasedByClose() throws DaoException {
+        RestAdapter rest = new RestAdapter(accessor);
+        for (int i = 0; i < REQUESTS; i++) {
+            DcResponse res = rest.get(baseUrl + "stream", "application/octet-stream");
+            assertLeased(1);
+            res.close();
+        }
+        assertLeased(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void assertLeased(int expected) {
+        Map<String, Object> stats = (Map<String, Object>) HttpClientFactory.getPoolStatistics()
+                .get(DcContext.getPlatform());
+        assertEquals(expected, stats.get("leased"));
+    }
+}
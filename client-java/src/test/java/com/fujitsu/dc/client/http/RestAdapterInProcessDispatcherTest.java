@@ -0,0 +1,161 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoException;
+import com.fujitsu.dc.client.DcContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that requests for the base URL are processed by the in-process dispatcher set in DaoConfig.
+ * The public base URL is not resolvable, so a request that is sent by the HttpClient fails.
+ */
+public class RestAdapterInProcessDispatcherTest {
+
+    private static final String PUBLIC_BASE_URL = "https://public.example.invalid/";
+    private static final String DISPATCHER_URL = "https://public.example.invalid/dc1-core/";
+
+    private List<HttpUriRequest> dispatched;
+    private int dispatchStatus;
+    private InProcessDispatcher dispatcher;
+    private HttpServer server;
+    private List<String> paths;
+
+    /**
+     * Creates the dispatcher that stands for the core in the same JVM, and the server for other URLs.
+     * @throws Exception failed to start the server
+     */
+    @Before
+    public void before() throws Exception {
+        dispatched = Collections.synchronizedList(new ArrayList<HttpUriRequest>());
+        dispatchStatus = 200;
+        dispatcher = new InProcessDispatcher() {
+            @Override
+            public String getUrl() {
+                return DISPATCHER_URL;
+            }
+
+            @Override
+            public HttpResponse dispatch(HttpUriRequest request) throws IOException {
+                dispatched.add(request);
+                BasicHttpResponse res = new BasicHttpResponse(HttpVersion.HTTP_1_1, dispatchStatus, null);
+                res.setEntity(new StringEntity("{}", "UTF-8"));
+                return res;
+            }
+        };
+        paths = Collections.synchronizedList(new ArrayList<String>());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                paths.add(exchange.getRequestURI().getRawPath());
+                byte[] body = "{}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    /**
+     * A request for the base URL is passed to the dispatcher with the public host and path in the headers.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void requestForTheBaseUrlIsDispatchedInProcess() throws DaoException {
+        DcContext dc = new DcContext(PUBLIC_BASE_URL, "cell", "", "box");
+        dc.getDaoConfig().setInProcessDispatcher(PUBLIC_BASE_URL, dispatcher);
+        Accessor as = dc.withToken("token");
+
+        DcResponse res = new RestAdapter(as).get(PUBLIC_BASE_URL + "cell/box/col?q=1", "application/json");
+        assertEquals(200, res.getStatusCode());
+        assertEquals(1, dispatched.size());
+        HttpUriRequest req = dispatched.get(0);
+        assertEquals(DISPATCHER_URL + "cell/box/col?q=1", req.getURI().toString());
+        assertEquals("public.example.invalid", req.getFirstHeader("Host").getValue());
+        assertEquals("https", req.getFirstHeader("X-Forwarded-Proto").getValue());
+        assertEquals("/cell/box/col", req.getFirstHeader("X-Forwarded-Path").getValue());
+        assertEquals("Bearer token", req.getFirstHeader("Authorization").getValue());
+    }
+
+    /**
+     * An error status returned by the dispatcher is thrown as a DaoException as for a remote server.
+     * @throws DaoException failed to create the accessor
+     */
+    @Test
+    public void errorStatusOfTheDispatcherIsThrown() throws DaoException {
+        dispatchStatus = 404;
+        DcContext dc = new DcContext(PUBLIC_BASE_URL, "cell", "", "box");
+        dc.getDaoConfig().setInProcessDispatcher(PUBLIC_BASE_URL, dispatcher);
+        Accessor as = dc.withToken("token");
+
+        try {
+            new RestAdapter(as).del(PUBLIC_BASE_URL + "cell/box/col/file", "*");
+            fail("Not thrown exception.");
+        } catch (DaoException e) {
+            assertEquals("404", e.getCode());
+        }
+    }
+
+    /**
+     * Requests for other URLs are sent by the HttpClient.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void requestForAnotherUrlIsNotDispatched() throws DaoException {
+        String otherBaseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        DcContext dc = new DcContext(otherBaseUrl, "cell", "", "box");
+        dc.getDaoConfig().setInProcessDispatcher(PUBLIC_BASE_URL, dispatcher);
+        Accessor as = dc.withToken("token");
+
+        new RestAdapter(as).get(otherBaseUrl + "cell/box", "application/json");
+        assertEquals(0, dispatched.size());
+        assertEquals("/cell/box", paths.get(0));
+    }
+}
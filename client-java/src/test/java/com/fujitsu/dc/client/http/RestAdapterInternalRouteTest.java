@@ -0,0 +1,139 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoException;
+import com.fujitsu.dc.client.DcContext;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that requests for the base URL are sent to the internal URL set in DaoConfig.
+ * The public base URL is not resolvable, so a request that is not routed fails.
+ */
+public class RestAdapterInternalRouteTest {
+
+    private static final String PUBLIC_BASE_URL = "https://public.example.invalid/";
+
+    private HttpServer server;
+    private String internalUrl;
+    private List<String> paths;
+    private List<Headers> headers;
+
+    /**
+     * Starts the server that stands for the co-located core.
+     * @throws Exception failed to start the server
+     */
+    @Before
+    public void before() throws Exception {
+        paths = Collections.synchronizedList(new ArrayList<String>());
+        headers = Collections.synchronizedList(new ArrayList<Headers>());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                paths.add(exchange.getRequestURI().getRawPath());
+                headers.add(exchange.getRequestHeaders());
+                byte[] body = "{}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        internalUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    /**
+     * A request for the base URL reaches the internal URL with the public host and scheme in the headers.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void requestForTheBaseUrlIsSentToTheInternalUrl() throws DaoException {
+        DcContext dc = new DcContext(PUBLIC_BASE_URL, "cell", "", "box");
+        dc.getDaoConfig().setInternalRoute(PUBLIC_BASE_URL, internalUrl);
+        Accessor as = dc.withToken("token");
+
+        DcResponse res = new RestAdapter(as).get(PUBLIC_BASE_URL + "cell/box/col?q=1", "application/json");
+        assertEquals(200, res.getStatusCode());
+        assertEquals("/cell/box/col", paths.get(0));
+        Headers received = headers.get(0);
+        assertEquals("public.example.invalid", received.getFirst("Host"));
+        assertEquals("https", received.getFirst("X-Forwarded-Proto"));
+        assertEquals("public.example.invalid", received.getFirst("X-Forwarded-Host"));
+        // The internal URL has the same path as the base URL
+        assertNull(received.getFirst("X-Forwarded-Path"));
+        assertEquals("Bearer token", received.getFirst("Authorization"));
+    }
+
+    /**
+     * When the internal URL has another context path, the original path is passed in X-Forwarded-Path.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void originalPathIsPassedWhenTheContextPathDiffers() throws DaoException {
+        DcContext dc = new DcContext(PUBLIC_BASE_URL, "cell", "", "box");
+        dc.getDaoConfig().setInternalRoute(PUBLIC_BASE_URL, internalUrl + "/dc1-core");
+        Accessor as = dc.withToken("token");
+
+        new RestAdapter(as).del(PUBLIC_BASE_URL + "cell/box/col/file", "*");
+        assertEquals("/dc1-core/cell/box/col/file", paths.get(0));
+        assertEquals("/cell/box/col/file", headers.get(0).getFirst("X-Forwarded-Path"));
+    }
+
+    /**
+     * Requests for other URLs are sent as they are.
+     * @throws DaoException request failed
+     */
+    @Test
+    public void requestForAnotherUrlIsNotRouted() throws DaoException {
+        String otherBaseUrl = internalUrl + "/";
+        DcContext dc = new DcContext(otherBaseUrl, "cell", "", "box");
+        dc.getDaoConfig().setInternalRoute(PUBLIC_BASE_URL, "http://localhost:1/");
+        Accessor as = dc.withToken("token");
+
+        new RestAdapter(as).get(otherBaseUrl + "cell/box", "application/json");
+        assertEquals("/cell/box", paths.get(0));
+        assertNull(headers.get(0).getFirst("X-Forwarded-Proto"));
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.performance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoException;
+import com.fujitsu.dc.client.DcContext;
+import com.fujitsu.dc.client.http.AsyncRestAdapter;
+import com.fujitsu.dc.client.http.DcResponse;
+import com.fujitsu.dc.client.http.RestAdapter;
+import com.fujitsu.dc.client.test.categories.Performance;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures the time to send requests one by one with RestAdapter and all at once with AsyncRestAdapter.
+ * The server waits {@link #SERVER_LATENCY_MILLIS} before each response, which stands for the latency of the core.
+ * Excluded from the default test run; the results are logged, not asserted.
+ */
+@Category({Performance.class })
+public class AsyncRestAdapterPerformanceTest {
+    static Logger log = LoggerFactory.getLogger(AsyncRestAdapterPerformanceTest.class);
+
+    private static final long SERVER_LATENCY_MILLIS = 50L;
+    private static final int REQUEST_COUNT = 40;
+    private static final long TIMEOUT_SECONDS = 30L;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String baseUrl;
+    private Accessor accessor;
+
+    /**
+     * Starts the server.
+     * @throws Exception failed to start the server
+     */
+    @Before
+    public void before() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(SERVER_LATENCY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "{\"d\":{\"results\":[]}}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        accessor = new DcContext(baseUrl, "cell", "", "box").withToken("token");
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Measures sending the requests one by one and asynchronously.
+     * @throws Exception request failed
+     */
+    @Test
+    public void measureSequentialAndAsyncRequests() throws Exception {
+        long sequential = runSequential();
+        long async = runAsync();
+        log.info(String.format("[sequential] %d requests in %d ms", REQUEST_COUNT, sequential));
+        log.info(String.format("[async] %d requests in %d ms", REQUEST_COUNT, async));
+    }
+
+    private long runSequential() throws DaoException {
+        RestAdapter rest = new RestAdapter(accessor);
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            DcResponse res = rest.get(baseUrl + "cell/box/odata/entity" + i, RestAdapter.CONTENT_TYPE_JSON);
+            assertEquals(200, res.getStatusCode());
+            res.close();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private long runAsync() throws Exception {
+        AsyncRestAdapter async = accessor.getAsyncAdapter();
+        long start = System.nanoTime();
+        List<CompletableFuture<DcResponse>> futures = new ArrayList<CompletableFuture<DcResponse>>();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            futures.add(async.get(baseUrl + "cell/box/odata/entity" + i, RestAdapter.CONTENT_TYPE_JSON));
+        }
+        for (CompletableFuture<DcResponse> future : futures) {
+            DcResponse res = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertEquals(200, res.getStatusCode());
+            res.close();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -214,15 +214,21 @@ public abstract class AbstractOAuth2Token {
     public final boolean isExpired() {
         long now = new Date().getTime();
 
-        // 有効期限のリミット=認証した時刻＋有効期限
-        long expiresLimit = this.issuedAt + this.expiresIn() * MILLISECS_IN_A_SEC;
-
-        if (now > expiresLimit) {
+        if (now > this.getExpiresAt()) {
             return true;
         }
         return false;
     }
 
+    /**
+     * トークンの有効期限を返します.
+     * @return 有効期限(epochからのミリ秒)
+     */
+    public final long getExpiresAt() {
+        // 有効期限のリミット=認証した時刻＋有効期限
+        return this.issuedAt + this.expiresIn() * MILLISECS_IN_A_SEC;
+    }
+
     /**
      * リフレッシュトークン失効までの秒数を返します.
      * @return リフレッシュトークン失効までの秒数
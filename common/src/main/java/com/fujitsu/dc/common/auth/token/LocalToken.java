@@ -49,6 +49,23 @@ public abstract class LocalToken extends AbstractOAuth2Token {
     private static byte[] keyBytes;
     private static SecretKey aesKey;
 
+    /**
+     * Cipher.getInstanceはプロバイダの探索を伴い高コストなため、スレッド毎に生成したインスタンスを使い回す.
+     * 利用の都度initで鍵とIVを設定し直すため、スレッド内で状態が持ち越されることはない.
+     */
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance(AES_CBC_PKCS5_PADDING);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            } catch (NoSuchPaddingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     /**
      * Key文字列を設定します。
      * @param keyString キー文字列.
@@ -150,9 +167,8 @@ public abstract class LocalToken extends AbstractOAuth2Token {
      */
     public static String encode(final String in, final byte[] ivBytes) {
         // IVに、発行CELLのURL逆順を入れることで、より短いトークンに。
-        Cipher cipher;
         try {
-            cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
+            Cipher cipher = CIPHER.get();
             cipher.init(Cipher.ENCRYPT_MODE, aesKey, new IvParameterSpec(ivBytes));
             byte[] cipherBytes = cipher.doFinal(in.getBytes(CharEncoding.UTF_8));
             return DcCoreUtils.encodeBase64Url(cipherBytes);
@@ -173,10 +189,8 @@ public abstract class LocalToken extends AbstractOAuth2Token {
         byte[] inBytes = DcCoreUtils.decodeBase64Url(in);
         Cipher cipher;
         try {
-            cipher = Cipher.getInstance(AES_CBC_PKCS5_PADDING);
-        } catch (NoSuchAlgorithmException e) {
-            throw AbstractOAuth2Token.PARSE_EXCEPTION;
-        } catch (NoSuchPaddingException e) {
+            cipher = CIPHER.get();
+        } catch (RuntimeException e) {
             throw AbstractOAuth2Token.PARSE_EXCEPTION;
         }
         try {
@@ -103,6 +103,34 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
     private static KeyInfo keyInfo;
     private static PrivateKey privKey;
 
+    /**
+     * DocumentBuilderFactoryの探索とDocumentBuilderの生成は高コストなため、スレッド毎に生成したインスタンスを使い回す.
+     * DocumentBuilderはスレッドセーフではないため、スレッド間では共有しない.
+     */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            try {
+                return dbf.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                // 重大な異常なので非チェックにして上に上げる
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    /**
+     * スレッド毎のDocumentBuilderを初期状態に戻して返す.
+     * @return DocumentBuilder
+     */
+    private static DocumentBuilder getDocumentBuilder() {
+        DocumentBuilder builder = DOCUMENT_BUILDER.get();
+        builder.reset();
+        return builder;
+    }
+
     /**
      * コンストラクタ.
      * @param id トークンの一意識別子
@@ -245,16 +273,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
          * http://docs.oasis-open.org/security/saml/v2.0/saml-core-2.0-os.pdf
          */
 
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        DocumentBuilder builder = null;
-        try {
-            builder = dbf.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            // 重大な異常なので非チェックにして上に上げる
-            throw new RuntimeException(e);
-        }
-        Document doc = builder.newDocument();
+        Document doc = getDocumentBuilder().newDocument();
         Element assertion = doc.createElementNS(URN_OASIS_NAMES_TC_SAML_2_0_ASSERTION, "Assertion");
         doc.appendChild(assertion);
         assertion.setAttribute("ID", this.id);
@@ -366,17 +385,7 @@ public final class TransCellAccessToken extends AbstractOAuth2Token implements I
         try {
             byte[] samlBytes = DcCoreUtils.decodeBase64Url(token);
             ByteArrayInputStream bais = new ByteArrayInputStream(samlBytes);
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder builder = null;
-            try {
-                builder = dbf.newDocumentBuilder();
-            } catch (ParserConfigurationException e) {
-                // 重大な異常なので非チェックにして上に上げる
-                throw new RuntimeException(e);
-            }
-
-            Document doc = builder.parse(bais);
+            Document doc = getDocumentBuilder().parse(bais);
 
             Element assertion = doc.getDocumentElement();
             Element issuer = (Element) (doc.getElementsByTagName("Issuer").item(0));
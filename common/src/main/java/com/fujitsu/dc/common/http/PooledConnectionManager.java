@@ -0,0 +1,147 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.http;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ConnPoolByRoute;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+/**
+ * 複数のHttpClientで共有するコネクションプール.
+ * ルート毎の上限付きでコネクションを再利用し、一定時間使用されないコネクションはバックグラウンドで閉じる.
+ * dc1-coreとdc1-clientの双方から利用する.
+ */
+public class PooledConnectionManager extends ThreadSafeClientConnManager {
+
+    /** アイドルコネクションを確認する間隔(ミリ秒). */
+    private static final long EVICTION_INTERVAL = 5000L;
+
+    private static final List<PooledConnectionManager> MANAGERS = new CopyOnWriteArrayList<PooledConnectionManager>();
+    private static Timer evictor;
+
+    private volatile long idleTimeoutMillis;
+
+    /**
+     * コンストラクタ.
+     * @param schemeRegistry スキーマレジストリ
+     * @param maxTotal 最大コネクション数
+     * @param maxPerRoute ルート毎の最大コネクション数
+     * @param idleTimeoutMillis アイドルコネクションを閉じるまでの時間(ミリ秒)
+     */
+    public PooledConnectionManager(SchemeRegistry schemeRegistry, int maxTotal, int maxPerRoute,
+            long idleTimeoutMillis) {
+        super(schemeRegistry);
+        setMaxTotal(maxTotal);
+        setDefaultMaxPerRoute(maxPerRoute);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        register(this);
+    }
+
+    @Override
+    protected ConnPoolByRoute createConnectionPool(long connTTL, TimeUnit connTTLTimeUnit) {
+        return new StatisticsConnPool(connOperator, connPerRoute, connTTL, connTTLTimeUnit);
+    }
+
+    /**
+     * プールの設定を変更する.
+     * @param maxTotal 最大コネクション数
+     * @param maxPerRoute ルート毎の最大コネクション数
+     * @param idleTimeout アイドルコネクションを閉じるまでの時間(ミリ秒)
+     */
+    public void configure(int maxTotal, int maxPerRoute, long idleTimeout) {
+        setMaxTotal(maxTotal);
+        setDefaultMaxPerRoute(maxPerRoute);
+        this.idleTimeoutMillis = idleTimeout;
+    }
+
+    /**
+     * 有効期限切れのコネクションと、タイムアウトを超えてアイドル状態のコネクションを閉じる.
+     */
+    public void evictIdleConnections() {
+        closeExpiredConnections();
+        closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * プールの使用状況を返却する.
+     * @return 貸出中・待機中・空きコネクション数と上限値のMap
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = ((StatisticsConnPool) pool).getStatistics();
+        stats.put("maxTotal", getMaxTotal());
+        stats.put("maxPerRoute", getDefaultMaxPerRoute());
+        return stats;
+    }
+
+    @Override
+    public void shutdown() {
+        MANAGERS.remove(this);
+        super.shutdown();
+    }
+
+    private static synchronized void register(PooledConnectionManager manager) {
+        MANAGERS.add(manager);
+        if (evictor != null) {
+            return;
+        }
+        evictor = new Timer("dc-connection-evictor", true);
+        evictor.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                for (PooledConnectionManager m : MANAGERS) {
+                    m.evictIdleConnections();
+                }
+            }
+        }, EVICTION_INTERVAL, EVICTION_INTERVAL);
+    }
+
+    /**
+     * 使用状況を参照できるコネクションプール.
+     */
+    static final class StatisticsConnPool extends ConnPoolByRoute {
+        /** ThreadSafeClientConnManagerのデフォルト値. 実際の上限はsetMaxTotalで設定する. */
+        private static final int DEFAULT_MAX_TOTAL = 20;
+
+        StatisticsConnPool(ClientConnectionOperator operator, ConnPerRoute connPerRoute, long connTTL,
+                TimeUnit connTTLTimeUnit) {
+            super(operator, connPerRoute, DEFAULT_MAX_TOTAL, connTTL, connTTLTimeUnit);
+        }
+
+        Map<String, Object> getStatistics() {
+            Map<String, Object> stats = new HashMap<String, Object>();
+            getLock().lock();
+            try {
+                stats.put("leased", leasedConnections.size());
+                stats.put("pending", waitingThreads.size());
+                stats.put("available", freeConnections.size());
+            } finally {
+                getLock().unlock();
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.inprocess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * HTTPクライアントのリクエストを、ソケットを使用せずに同一JVM内のサーブレットで処理するクラス.
+ * サーブレットは呼び出し元のスレッドで実行し、レスポンスボディはメモリ上に保持して返却する.
+ */
+public class InProcessServletInvoker {
+
+    private final Servlet servlet;
+    private final String contextPath;
+
+    /**
+     * コンストラクタ.
+     * @param servlet 初期化済みのサーブレット(/* にマッピングされているものとして扱う)
+     * @param contextPath サーブレットのコンテキストパス(ルートの場合は空文字)
+     */
+    public InProcessServletInvoker(Servlet servlet, String contextPath) {
+        this.servlet = servlet;
+        this.contextPath = contextPath;
+    }
+
+    /**
+     * @return サーブレットのコンテキストパス
+     */
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    /**
+     * リクエストをサーブレットで処理する.
+     * リクエストURIのパスはコンテキストパスから始まること. ホスト名とポートはサーブレットへそのまま渡す.
+     * @param request リクエスト
+     * @return レスポンス
+     * @throws IOException サーブレットの処理に失敗した場合
+     */
+    public HttpResponse invoke(HttpUriRequest request) throws IOException {
+        URI uri = request.getURI();
+        InputStream body = null;
+        HttpEntity reqEntity = null;
+        if (request instanceof HttpEntityEnclosingRequest) {
+            reqEntity = ((HttpEntityEnclosingRequest) request).getEntity();
+        }
+        if (reqEntity != null) {
+            body = reqEntity.getContent();
+        }
+        ServletContext servletContext = servlet.getServletConfig().getServletContext();
+        InProcessServletRequest req = new InProcessServletRequest(servletContext, contextPath,
+                request.getRequestLine().getMethod(), uri, body);
+        for (Header header : request.getAllHeaders()) {
+            req.addHeader(header.getName(), header.getValue());
+        }
+        if (reqEntity != null) {
+            if (reqEntity.getContentType() != null && req.getHeader("Content-Type") == null) {
+                req.addHeader("Content-Type", reqEntity.getContentType().getValue());
+            }
+            if (reqEntity.getContentLength() >= 0 && req.getHeader("Content-Length") == null) {
+                req.addHeader("Content-Length", Long.toString(reqEntity.getContentLength()));
+            }
+        }
+        InProcessServletResponse res = new InProcessServletResponse();
+        try {
+            servlet.service(req, res);
+        } catch (ServletException e) {
+            throw new IOException(e);
+        } finally {
+            if (body != null) {
+                body.close();
+            }
+        }
+        return toHttpResponse(res);
+    }
+
+    private static HttpResponse toHttpResponse(InProcessServletResponse res) {
+        int status = res.getStatus();
+        String reason = res.getReason();
+        if (reason == null) {
+            reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+        }
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, reason);
+        for (String name : res.getHeaderNames()) {
+            for (String value : res.getHeaders(name)) {
+                response.addHeader(name, value);
+            }
+        }
+        if (status != HttpStatus.SC_NO_CONTENT && status != HttpStatus.SC_NOT_MODIFIED) {
+            ByteArrayEntity entity = new ByteArrayEntity(res.getBody());
+            entity.setContentType(res.getContentType());
+            response.setEntity(entity);
+        }
+        return response;
+    }
+}
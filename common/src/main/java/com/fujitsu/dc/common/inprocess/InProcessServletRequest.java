@@ -0,0 +1,578 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.inprocess;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.Part;
+
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
+
+/**
+ * 同一JVM内でサーブレットを呼び出すためのメモリ上のリクエスト.
+ * サーブレットは /* にマッピングされているものとし、コンテキストパス以降をパス情報とする.
+ * セッション、認証、非同期処理には対応しない.
+ */
+public class InProcessServletRequest implements HttpServletRequest {
+
+    private static final String DEFAULT_CHARSET = "ISO-8859-1";
+    private static final String LOCAL_ADDR = "127.0.0.1";
+    private static final String LOCAL_HOST = "localhost";
+    private static final String HTTPS = "https";
+    private static final int PORT_HTTP = 80;
+    private static final int PORT_HTTPS = 443;
+
+    private final ServletContext servletContext;
+    private final String contextPath;
+    private final String method;
+    private final URI uri;
+    private final Map<String, List<String>> headers =
+            new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private final InputStream body;
+    private String characterEncoding;
+    private boolean bodyAccessed = false;
+
+    /**
+     * コンストラクタ.
+     * @param servletContext 呼び出し先のサーブレットコンテキスト
+     * @param contextPath 呼び出し先のコンテキストパス(ルートの場合は空文字)
+     * @param method HTTPメソッド
+     * @param uri リクエストURI(パスはコンテキストパスから始まること)
+     * @param body リクエストボディ(無い場合はnull)
+     */
+    public InProcessServletRequest(ServletContext servletContext, String contextPath, String method, URI uri,
+            InputStream body) {
+        this.servletContext = servletContext;
+        this.contextPath = contextPath;
+        this.method = method;
+        this.uri = uri;
+        if (body == null) {
+            this.body = new ByteArrayInputStream(new byte[0]);
+        } else {
+            this.body = body;
+        }
+    }
+
+    /**
+     * ヘッダを追加する.
+     * @param name ヘッダ名
+     * @param value 値
+     */
+    public void addHeader(String name, String value) {
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = new ArrayList<String>();
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        if (characterEncoding != null) {
+            return characterEncoding;
+        }
+        String contentType = getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.toLowerCase(Locale.ENGLISH).startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+        if (!bodyAccessed) {
+            this.characterEncoding = env;
+        }
+    }
+
+    @Override
+    public int getContentLength() {
+        return getIntHeader("Content-Length");
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        bodyAccessed = true;
+        return new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return body.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return body.read(b, off, len);
+            }
+
+            @Override
+            public int available() throws IOException {
+                return body.available();
+            }
+
+            @Override
+            public void close() throws IOException {
+                body.close();
+            }
+        };
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = getParameterMap().get(name);
+        if (values == null) {
+            return null;
+        }
+        return values[0];
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(getParameterMap().keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return getParameterMap().get(name);
+    }
+
+    /**
+     * クエリ文字列のパラメタを返す. リクエストボディのフォームパラメタは含まない.
+     * @return パラメタ
+     */
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        Map<String, List<String>> params = new LinkedHashMap<String, List<String>>();
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.length() == 0) {
+                    continue;
+                }
+                int idx = pair.indexOf('=');
+                String name;
+                String value = "";
+                if (idx < 0) {
+                    name = decode(pair);
+                } else {
+                    name = decode(pair.substring(0, idx));
+                    value = decode(pair.substring(idx + 1));
+                }
+                List<String> values = params.get(name);
+                if (values == null) {
+                    values = new ArrayList<String>();
+                    params.put(name, values);
+                }
+                values.add(value);
+            }
+        }
+        Map<String, String[]> result = new LinkedHashMap<String, String[]>();
+        for (Map.Entry<String, List<String>> entry : params.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public String getScheme() {
+        return uri.getScheme();
+    }
+
+    @Override
+    public String getServerName() {
+        return uri.getHost();
+    }
+
+    @Override
+    public int getServerPort() {
+        if (uri.getPort() >= 0) {
+            return uri.getPort();
+        }
+        if (HTTPS.equalsIgnoreCase(uri.getScheme())) {
+            return PORT_HTTPS;
+        }
+        return PORT_HTTP;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        String charset = getCharacterEncoding();
+        if (charset == null) {
+            charset = DEFAULT_CHARSET;
+        }
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+
+    @Override
+    public String getRemoteAddr() {
+        return LOCAL_ADDR;
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return LOCAL_HOST;
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if (o == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, o);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+    }
+
+    @Override
+    public boolean isSecure() {
+        return HTTPS.equalsIgnoreCase(uri.getScheme());
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public String getRealPath(String path) {
+        return servletContext.getRealPath(path);
+    }
+
+    @Override
+    public int getRemotePort() {
+        return 0;
+    }
+
+    @Override
+    public String getLocalName() {
+        return LOCAL_HOST;
+    }
+
+    @Override
+    public String getLocalAddr() {
+        return LOCAL_ADDR;
+    }
+
+    @Override
+    public int getLocalPort() {
+        return getServerPort();
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Async is not supported.");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Async is not supported.");
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        throw new IllegalStateException("Async is not supported.");
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        return null;
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) {
+            return -1L;
+        }
+        try {
+            Date date = DateUtils.parseDate(value);
+            return date.getTime();
+        } catch (DateParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        if (values == null) {
+            return Collections.enumeration(Collections.<String>emptyList());
+        }
+        return Collections.enumeration(values);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(new ArrayList<String>(headers.keySet()));
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getPathInfo() {
+        String path = decode(getRequestURI().substring(contextPath.length()));
+        if (path.length() == 0) {
+            return null;
+        }
+        return path;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    @Override
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    @Override
+    public String getQueryString() {
+        return uri.getRawQuery();
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return false;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+    @Override
+    public String getRequestURI() {
+        String path = uri.getRawPath();
+        if (path == null || path.length() == 0) {
+            return "/";
+        }
+        return path;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer();
+        url.append(uri.getScheme()).append("://").append(uri.getRawAuthority());
+        url.append(getRequestURI());
+        return url;
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        if (create) {
+            throw new IllegalStateException("Session is not supported.");
+        }
+        return null;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return false;
+    }
+
+    @Override
+    public boolean authenticate(HttpServletResponse response) throws IOException, ServletException {
+        return false;
+    }
+
+    @Override
+    public void login(String username, String password) throws ServletException {
+        throw new ServletException("Login is not supported.");
+    }
+
+    @Override
+    public void logout() throws ServletException {
+    }
+
+    @Override
+    public Collection<Part> getParts() throws IOException, ServletException {
+        throw new ServletException("Multipart is not supported.");
+    }
+
+    @Override
+    public Part getPart(String name) throws IOException, ServletException {
+        throw new ServletException("Multipart is not supported.");
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.inprocess;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 同一JVM内で呼び出し可能なサーブレットを登録するクラス.
+ * Engineを組み込んで動作させる場合に、CoreとEngineが互いのサーブレットを参照するために使用する.
+ */
+public final class InProcessServlets {
+
+    /** Coreのサーブレットの登録名. */
+    public static final String CORE = "core";
+
+    private static final ConcurrentMap<String, InProcessServletInvoker> INVOKERS =
+            new ConcurrentHashMap<String, InProcessServletInvoker>();
+
+    private InProcessServlets() {
+    }
+
+    /**
+     * サーブレットを登録する.
+     * @param name 登録名
+     * @param invoker サーブレットを呼び出すオブジェクト
+     */
+    public static void register(String name, InProcessServletInvoker invoker) {
+        INVOKERS.put(name, invoker);
+    }
+
+    /**
+     * サーブレットの登録を解除する.
+     * @param name 登録名
+     */
+    public static void unregister(String name) {
+        INVOKERS.remove(name);
+    }
+
+    /**
+     * 登録されたサーブレットを取得する.
+     * @param name 登録名
+     * @return サーブレットを呼び出すオブジェクト(登録されていない場合はnull)
+     */
+    public static InProcessServletInvoker get(String name) {
+        return INVOKERS.get(name);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * PooledConnectionManagerのテストクラス.
+ */
+public class PooledConnectionManagerTest {
+
+    private HttpServer server;
+    private PooledConnectionManager manager;
+    private String url;
+
+    /**
+     * 固定のレスポンスを返却するHTTPサーバを起動する.
+     * @throws IOException サーバの起動失敗時
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "ok".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        manager = new PooledConnectionManager(schemeRegistry, 10, 5, 30000L);
+    }
+
+    /**
+     * サーバとプールを停止する.
+     */
+    @After
+    public void after() {
+        manager.shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * ボディを読み終えたコネクションがプールに返却され再利用されること.
+     * @throws IOException 通信失敗時
+     */
+    @Test
+    public void ボディを読み終えたコネクションがプールに返却され再利用されること() throws IOException {
+        DefaultHttpClient client = new DefaultHttpClient(manager);
+
+        HttpResponse res = client.execute(new HttpGet(url));
+        Map<String, Object> stats = manager.getStatistics();
+        assertEquals(1, stats.get("leased"));
+        assertEquals(0, stats.get("available"));
+
+        assertEquals("ok", EntityUtils.toString(res.getEntity()));
+        stats = manager.getStatistics();
+        assertEquals(0, stats.get("leased"));
+        assertEquals(1, stats.get("available"));
+
+        // 別のHttpClientからの2回目のリクエストでも新しいコネクションは作られない.
+        EntityUtils.consume(new DefaultHttpClient(manager).execute(new HttpGet(url)).getEntity());
+        stats = manager.getStatistics();
+        assertEquals(0, stats.get("leased"));
+        assertEquals(1, stats.get("available"));
+        assertEquals(0, stats.get("pending"));
+        assertEquals(10, stats.get("maxTotal"));
+        assertEquals(5, stats.get("maxPerRoute"));
+    }
+
+    /**
+     * タイムアウトを超えてアイドル状態のコネクションが閉じられること.
+     * @throws Exception 通信失敗時
+     */
+    @Test
+    public void タイムアウトを超えてアイドル状態のコネクションが閉じられること() throws Exception {
+        manager.configure(10, 5, 1L);
+        EntityUtils.consume(new DefaultHttpClient(manager).execute(new HttpGet(url)).getEntity());
+        assertEquals(1, manager.getStatistics().get("available"));
+
+        Thread.sleep(10);
+        manager.evictIdleConnections();
+        assertEquals(0, manager.getStatistics().get("available"));
+    }
+}
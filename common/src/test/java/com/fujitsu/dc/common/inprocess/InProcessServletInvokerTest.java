@@ -0,0 +1,149 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.inprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * InProcessServletInvokerのテストクラス.
+ */
+public class InProcessServletInvokerTest {
+
+    private InProcessServletInvoker invoker;
+
+    /**
+     * リクエストの内容を返却するサーブレットを初期化する.
+     * @throws ServletException 初期化失敗時
+     */
+    @Before
+    public void before() throws ServletException {
+        HttpServlet servlet = new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+                if ("DELETE".equals(req.getMethod())) {
+                    res.setStatus(HttpServletResponse.SC_NO_CONTENT);
+                    return;
+                }
+                if (req.getPathInfo().startsWith("/missing")) {
+                    res.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                StringBuilder sb = new StringBuilder();
+                sb.append(req.getMethod()).append('|');
+                sb.append(req.getRequestURL()).append('|');
+                sb.append(req.getContextPath()).append('|');
+                sb.append(req.getPathInfo()).append('|');
+                sb.append(req.getQueryString()).append('|');
+                sb.append(req.getParameter("a")).append('|');
+                sb.append(req.getHeader("x-test")).append('|');
+                sb.append(IOUtils.toString(req.getInputStream(), "UTF-8"));
+                res.setStatus(HttpServletResponse.SC_CREATED);
+                res.addHeader("X-Result", "1");
+                res.addHeader("X-Result", "2");
+                res.setContentType("text/plain; charset=UTF-8");
+                res.getWriter().write(sb.toString());
+            }
+        };
+        servlet.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "test";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.enumeration(Collections.<String>emptyList());
+            }
+        });
+        invoker = new InProcessServletInvoker(servlet, "/ctx");
+    }
+
+    /**
+     * リクエストの内容がサーブレットに渡りレスポンスが返却されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void リクエストの内容がサーブレットに渡りレスポンスが返却されること() throws Exception {
+        HttpPost post = new HttpPost("https://example.com:8443/ctx/cell/box/svc?a=b%20c&d=e");
+        post.setHeader("X-Test", "value");
+        post.setEntity(new StringEntity("body", "UTF-8"));
+
+        HttpResponse res = invoker.invoke(post);
+
+        assertEquals(HttpServletResponse.SC_CREATED, res.getStatusLine().getStatusCode());
+        assertEquals(2, res.getHeaders("X-Result").length);
+        assertEquals("text/plain; charset=UTF-8", res.getEntity().getContentType().getValue());
+        assertEquals("POST|https://example.com:8443/ctx/cell/box/svc|/ctx|/cell/box/svc|a=b%20c&d=e|b c|value|body",
+                EntityUtils.toString(res.getEntity(), "UTF-8"));
+    }
+
+    /**
+     * sendErrorで返却したステータスが返却されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void sendErrorで返却したステータスが返却されること() throws Exception {
+        HttpResponse res = invoker.invoke(new HttpGet("http://localhost/ctx/missing"));
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, res.getStatusLine().getStatusCode());
+        assertEquals("Not Found", res.getStatusLine().getReasonPhrase());
+    }
+
+    /**
+     * ステータスが204の場合はレスポンスボディが無いこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ステータスが204の場合はレスポンスボディが無いこと() throws Exception {
+        HttpResponse res = invoker.invoke(new HttpDelete("http://localhost/ctx/cell"));
+        assertEquals(HttpServletResponse.SC_NO_CONTENT, res.getStatusLine().getStatusCode());
+        assertNull(res.getEntity());
+    }
+}
@@ -105,6 +105,11 @@ public class DcCoreConfig {
          */
         public static final String BATCH_SLEEP_INTERVAL_IN_MILLIS = KEY_ROOT + "odata.batch.sleepIntervalInMillis";
 
+        /**
+         * $batchのリクエストボディをメモリ上に保持する最大サイズ(バイト). 超えた分は一時ファイルに保持する.
+         */
+        public static final String BATCH_SPOOL_THRESHOLD = KEY_ROOT + "odata.batch.spoolThresholdInBytes";
+
         /**
          * リクエストボディのプロパティの最大要素数.
          */
@@ -145,6 +150,23 @@ public class DcCoreConfig {
          */
         public static final String TOP_DEFAULT_NUM = KEY_ROOT + "odata.query.top.defaultnum";
 
+        /**
+         * $skiptokenによるページングでスクロールを保持する時間(ms).
+         */
+        public static final String SKIPTOKEN_KEEP_ALIVE_IN_MILLIS =
+                KEY_ROOT + "odata.query.skiptoken.keepAliveInMillis";
+
+        /**
+         * $skiptokenによるページングで1ノードが同時に開くスクロールの最大数.
+         */
+        public static final String SKIPTOKEN_MAX_CONTEXTS = KEY_ROOT + "odata.query.skiptoken.maxContexts";
+
+        /**
+         * $skiptokenによるページングで1ノードがセル毎に同時に開くスクロールの最大数.
+         */
+        public static final String SKIPTOKEN_MAX_CONTEXTS_PER_CELL =
+                KEY_ROOT + "odata.query.skiptoken.maxContextsPerCell";
+
         /**
          * $expandのプロパティの最大値数（一覧取得時）.
          */
@@ -187,6 +209,26 @@ public class DcCoreConfig {
          * コレクションの階層の深さの最大数.
          */
         public static final String COLLECTION_DEPTH_MAX_NUM = KEY_ROOT + "dav.depth.maxnum";
+
+        /**
+         * コレクション毎に子要素名のインデックスファイルを使用するか否か.
+         */
+        public static final String CHILD_INDEX_ENABLED = KEY_ROOT + "dav.childIndex.enabled";
+
+        /**
+         * インデックスファイルを作成しない、直近に更新されたコレクションの更新日時からの期間(ms).
+         */
+        public static final String CHILD_INDEX_MTIME_GRANULARITY = KEY_ROOT + "dav.childIndex.mtimeGranularityInMillis";
+
+        /**
+         * ノード内に保持するDavメタデータのキャッシュの最大件数.
+         */
+        public static final String METADATA_CACHE_MAX_SIZE = KEY_ROOT + "dav.metadata.cache.maxsize";
+
+        /**
+         * Davメタデータの保存時にディスクへの同期書き込み(fsync)を行うか否か.
+         */
+        public static final String METADATA_FSYNC = KEY_ROOT + "dav.metadata.fsync";
     }
 
     /**
@@ -239,6 +281,11 @@ public class DcCoreConfig {
          */
         public static final String CELL_RETRY_INTERVAL = KEY_ROOT + "lock.cell.retry.interval";
 
+        /**
+         * ロックの保持期間(s). 保持期間を過ぎたロックは解放されたものとして扱う. 0の場合はリリースされるまで保持する.
+         */
+        public static final String LEASE_TIME = KEY_ROOT + "lock.leaseTimeInSeconds";
+
         /**
          * ロックをmemcachedに保持する際のmemcachedホスト名.
          */
@@ -298,6 +345,23 @@ public class DcCoreConfig {
          */
         public static final String RETRY_INTERVAL = KEY_ROOT + "es.retryInterval";
 
+        /**
+         * 登録/更新/削除時のrefresh方針.
+         * 許容値： immediate/deferred/coalesced
+         */
+        public static final String REFRESH_POLICY = KEY_ROOT + "es.refresh.policy";
+
+        /**
+         * バルク登録時のrefresh方針.
+         * 許容値： immediate/deferred/coalesced
+         */
+        public static final String REFRESH_BULK_POLICY = KEY_ROOT + "es.refresh.bulkPolicy";
+
+        /**
+         * refresh方針coalesced指定時にrefreshをまとめる時間(ms).
+         */
+        public static final String REFRESH_COALESCE_WINDOW = KEY_ROOT + "es.refresh.coalesceWindowInMillis";
+
         /**
          * AuthenticDataStoreの設定.
          */
@@ -352,6 +416,55 @@ public class DcCoreConfig {
              * コネクションプールのvalidationQuery.
              */
             public static final String CP_VALIDATION_QUERY = ADS_ROOT + "jdbc.cp.validationQuery";
+            /**
+             * コネクションプールでPreparedStatementをキャッシュするかどうか.
+             */
+            public static final String CP_POOL_PREPARED_STATEMENTS = ADS_ROOT + "jdbc.cp.poolPreparedStatements";
+            /**
+             * コネクション毎にキャッシュするPreparedStatementの最大数.
+             */
+            public static final String CP_MAX_OPEN_PREPARED_STATEMENTS =
+                    ADS_ROOT + "jdbc.cp.maxOpenPreparedStatements";
+            /**
+             * JDBCドライバに渡す接続プロパティ(「名前=値」を「;」で区切って指定する).
+             */
+            public static final String JDBC_CONNECTION_PROPERTIES = ADS_ROOT + "jdbc.connectionProperties";
+            /**
+             * 一括登録/更新で1つのINSERT文にまとめる最大行数.
+             */
+            public static final String BULK_ROWS_PER_STATEMENT = ADS_ROOT + "jdbc.bulk.rowsPerStatement";
+            /**
+             * 一括登録/更新でコミットする行数. 0の場合は一括登録/更新全体を1トランザクションとする.
+             */
+            public static final String BULK_TRANSACTION_SIZE = ADS_ROOT + "jdbc.bulk.transactionSize";
+            /**
+             * ADSへの書込みを非同期で行うかどうか.
+             */
+            public static final String ASYNC_ENABLED = ADS_ROOT + "async.enabled";
+            /**
+             * 非同期書込みのワーカー数.
+             */
+            public static final String ASYNC_WORKERS = ADS_ROOT + "async.workers";
+            /**
+             * 非同期書込みのワーカー毎のキューに保持する要求の最大数.
+             */
+            public static final String ASYNC_QUEUE_SIZE = ADS_ROOT + "async.queueSize";
+            /**
+             * 非同期書込みでワーカーが一度に書き込む要求の最大数.
+             */
+            public static final String ASYNC_BATCH_SIZE = ADS_ROOT + "async.batchSize";
+            /**
+             * 非同期書込みのジャーナルファイル1つに記録する要求の最大数.
+             */
+            public static final String ASYNC_JOURNAL_SEGMENT_SIZE = ADS_ROOT + "async.journal.segmentSize";
+            /**
+             * 非同期書込みのジャーナルファイル名に含めるノードID. 未指定の場合はホスト名を使用する.
+             */
+            public static final String ASYNC_JOURNAL_NODE_ID = ADS_ROOT + "async.journal.nodeId";
+            /**
+             * キューを経由しない書込みの前に非同期書込みの完了を待つ最大時間(ms).
+             */
+            public static final String ASYNC_FLUSH_TIMEOUT = ADS_ROOT + "async.flushTimeoutInMillis";
         }
     }
 
@@ -433,6 +546,31 @@ public class DcCoreConfig {
          * 最新のイベントログファイルの格納ディレクトリ.
          */
         public static final String EVENT_LOG_CURRENT_DIR = KEY_ROOT + "event.log.current.dir";
+
+        /**
+         * イベントログを非同期で出力するか否か.
+         */
+        public static final String EVENT_LOG_ASYNC_ENABLED = KEY_ROOT + "event.log.async.enabled";
+
+        /**
+         * 非同期出力の待ち行列に保持するイベントの最大数.
+         */
+        public static final String EVENT_LOG_ASYNC_QUEUE_SIZE = KEY_ROOT + "event.log.async.queueSize";
+
+        /**
+         * 書き込みスレッドが一度に出力するイベントの最大数.
+         */
+        public static final String EVENT_LOG_ASYNC_BATCH_SIZE = KEY_ROOT + "event.log.async.batchSize";
+
+        /**
+         * 待ち行列が満杯の場合の動作. sync: 呼び出し元スレッドで出力する, drop: 破棄する.
+         */
+        public static final String EVENT_LOG_ASYNC_OVERFLOW = KEY_ROOT + "event.log.async.overflow";
+
+        /**
+         * ログ取得APIがファイルを読み出す前に、未出力のイベントの出力を待つ最大時間(ms).
+         */
+        public static final String EVENT_LOG_ASYNC_FLUSH_TIMEOUT = KEY_ROOT + "event.log.async.flushTimeoutInMillis";
     }
 
     /**
@@ -457,12 +595,63 @@ public class DcCoreConfig {
          */
         public static final String BOX_CACHE_ENABLED = KEY_ROOT + "cache.box.enabled";
 
+        /**
+         * セル情報をノード内に保持する最大件数.
+         */
+        public static final String CELL_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.cell.local.maxSize";
+
+        /**
+         * ノード内に保持したセル情報を再検証せずに使用する期間(ms).
+         */
+        public static final String CELL_LOCAL_CACHE_TTL = KEY_ROOT + "cache.cell.local.ttlInMillis";
+
+        /**
+         * ボックス情報をノード内に保持する最大件数.
+         */
+        public static final String BOX_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.box.local.maxSize";
+
+        /**
+         * ノード内に保持したボックス情報を再検証せずに使用する期間(ms).
+         */
+        public static final String BOX_LOCAL_CACHE_TTL = KEY_ROOT + "cache.box.local.ttlInMillis";
+
         /**
          * スキーマのキャッシュを有効とするか否か.
          * 許容値： true/false
          */
         public static final String SCHEMA_CACHE_ENABLED = KEY_ROOT + "cache.schema.enabled";
 
+        /**
+         * パース済みスキーマをノード内に保持する最大件数.
+         */
+        public static final String SCHEMA_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.schema.local.maxSize";
+
+        /**
+         * 検証済みのアクセストークンをノード内に保持する最大件数.
+         */
+        public static final String TOKEN_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.token.local.maxSize";
+
+        /**
+         * アクセス主体毎のロール一覧のキャッシュを有効とするか否か.
+         * 許容値： true/false
+         */
+        public static final String ROLE_CACHE_ENABLED = KEY_ROOT + "cache.role.enabled";
+
+        /**
+         * ロール一覧をノード内に保持する最大件数.
+         */
+        public static final String ROLE_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.role.local.maxSize";
+
+        /**
+         * ノード内に保持したロール一覧を再検証せずに使用する期間(ms).
+         */
+        public static final String ROLE_LOCAL_CACHE_TTL = KEY_ROOT + "cache.role.local.ttlInMillis";
+
+        /**
+         * ロールIDを変換済みのACLをノード内に保持する最大件数.
+         */
+        public static final String ACL_LOCAL_CACHE_MAX_SIZE = KEY_ROOT + "cache.acl.local.maxSize";
+
         /**
          * memcachedホスト名.
          */
@@ -508,6 +697,82 @@ public class DcCoreConfig {
          * EngineのPathキー.
          */
         public static final String PATH = KEY_ROOT + "engine.path";
+
+        /**
+         * Engineを同一JVM内で実行するかどうか. Engineのクラスがクラスパス上に無い場合は無効.
+         * 許容値： true/false
+         */
+        public static final String EMBEDDED_ENABLED = KEY_ROOT + "engine.embedded.enabled";
+
+        /**
+         * 組み込みEngineでサービスを実行するスレッド数.
+         */
+        public static final String EMBEDDED_THREADS = KEY_ROOT + "engine.embedded.threads";
+
+        /**
+         * 組み込みEngineで実行を待つサービス呼び出しの最大数. 超過した場合は503エラーとする.
+         */
+        public static final String EMBEDDED_QUEUE_SIZE = KEY_ROOT + "engine.embedded.queueSize";
+    }
+
+    /**
+     * Cell間通信やEngineへのリレーで使用するHTTPコネクションプールの設定.
+     */
+    public static final class HttpPool {
+        /**
+         * 保持するコネクションの最大数.
+         */
+        public static final String MAX_TOTAL = KEY_ROOT + "http.pool.maxTotal";
+
+        /**
+         * 宛先毎に保持するコネクションの最大数.
+         */
+        public static final String MAX_PER_ROUTE = KEY_ROOT + "http.pool.maxPerRoute";
+
+        /**
+         * アイドル状態のコネクションを切断するまでの時間(ms).
+         */
+        public static final String IDLE_TIMEOUT = KEY_ROOT + "http.pool.idleTimeoutInMillis";
+
+        /**
+         * 応答にKeep-Aliveヘッダが無い場合にコネクションを再利用する期間(ms).
+         */
+        public static final String KEEP_ALIVE = KEY_ROOT + "http.pool.keepAliveInMillis";
+
+        /**
+         * プールからコネクションを取得するまでの待ち時間の上限(ms).
+         */
+        public static final String TIMEOUT = KEY_ROOT + "http.pool.timeoutInMillis";
+    }
+
+    /**
+     * メッセージ送信廻りの設定.
+     */
+    public static final class Message {
+        /**
+         * 複数の宛先Cellへ並行して配送するスレッド数.
+         */
+        public static final String DELIVERY_WORKERS = KEY_ROOT + "message.delivery.workers";
+
+        /**
+         * 宛先ホスト(host:port)毎に同時に配送する最大数.
+         */
+        public static final String DELIVERY_MAX_PER_HOST = KEY_ROOT + "message.delivery.maxPerHost";
+
+        /**
+         * 宛先Cell毎に同時に配送する最大数. 宛先ホスト毎の上限の範囲内で適用する.
+         */
+        public static final String DELIVERY_MAX_PER_CELL = KEY_ROOT + "message.delivery.maxPerCell";
+
+        /**
+         * 宛先毎の配送のタイムアウト(ms).
+         */
+        public static final String DELIVERY_TIMEOUT = KEY_ROOT + "message.delivery.timeoutInMillis";
+
+        /**
+         * 宛先Cell毎に署名済みのトークンを再利用する期間(ms). 0の場合は再利用しない.
+         */
+        public static final String TOKEN_REUSE = KEY_ROOT + "message.token.reuseInMillis";
     }
 
     /**
@@ -584,6 +849,11 @@ public class DcCoreConfig {
          */
         public static final String BAR_USERDATA_BULK_SIZE = KEY_ROOT + "bar.userdata.bulkSize";
 
+        /**
+         * ユーザデータの解析と並行して登録を待つことができる一括登録の数のプロパティキー. 0の場合は並行して処理しない.
+         */
+        public static final String BAR_USERDATA_PIPELINE_DEPTH = KEY_ROOT + "bar.userdata.pipelineDepth";
+
         /**
          * barファイルやログ詳細の格納用ルートディレクトリ.
          */
@@ -620,6 +890,12 @@ public class DcCoreConfig {
          */
         public static final String REPAIR_ADS_INVOCATION_FILE_PATH = KEY_ROOT + "es.ads.repair.invocationFlagFile";
         static final String DEFAULT_REPAIR_ADS_INVOCATION_FILE_PATH = "/personium/dc-core/invokeRepair";
+
+        /**
+         * Repair処理でインデックス(ユニットユーザ)毎に分割したログを並行して処理するスレッド数.
+         */
+        public static final String REPAIR_SERVICE_WORKERS = KEY_ROOT + "es.ads.repair.workers";
+        static final int DEFAULT_REPAIR_SERVICE_WORKERS = 4;
     }
 
     /**
@@ -963,6 +1239,13 @@ public class DcCoreConfig {
         return DEFAULT_BATCH_SLEEP_INTERVAL;
     }
 
+    /**
+     * @return $batchのリクエストボディをメモリ上に保持する最大サイズ(バイト)
+     */
+    public static int getOdataBatchSpoolThreshold() {
+        return Integer.parseInt(get(OData.BATCH_SPOOL_THRESHOLD));
+    }
+
     /**
      * @return $batch処理を行う際の処理単位間のSleepミリ秒.
      */
@@ -986,6 +1269,38 @@ public class DcCoreConfig {
         return Integer.parseInt(get(Dav.COLLECTION_DEPTH_MAX_NUM));
     }
 
+    /**
+     * コレクション毎の子要素名のインデックスファイルが有効であるか否かを返す.
+     * @return 有効である場合はtrue
+     */
+    public static boolean isDavChildIndexEnabled() {
+        return Boolean.parseBoolean(get(Dav.CHILD_INDEX_ENABLED));
+    }
+
+    /**
+     * 子要素名のインデックスファイルを作成しない、直近に更新されたコレクションの更新日時からの期間(ms)を返す.
+     * @return 更新日時からの期間(ms)
+     */
+    public static long getDavChildIndexMtimeGranularity() {
+        return Long.parseLong(get(Dav.CHILD_INDEX_MTIME_GRANULARITY));
+    }
+
+    /**
+     * ノード内に保持するDavメタデータのキャッシュの最大件数を取得.
+     * @return 最大件数。0の場合はキャッシュしない
+     */
+    public static int getDavMetadataCacheMaxSize() {
+        return Integer.parseInt(get(Dav.METADATA_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * Davメタデータの保存時にfsyncを行うか否かを返す.
+     * @return fsyncを行う場合はtrue
+     */
+    public static boolean isDavMetadataFsyncEnabled() {
+        return Boolean.parseBoolean(get(Dav.METADATA_FSYNC));
+    }
+
     /**
      * ファイル書き込み時にfsyncが有効であるか否かを返す.
      * @return 有効である場合はtrue
@@ -1036,6 +1351,27 @@ public class DcCoreConfig {
         return Integer.parseInt(get(OData.SKIP_MAX_NUM));
     }
 
+    /**
+     * @return $skiptokenによるページングでスクロールを保持する時間(ms).
+     */
+    public static long getSkipTokenKeepAliveInMillis() {
+        return Long.parseLong(get(OData.SKIPTOKEN_KEEP_ALIVE_IN_MILLIS));
+    }
+
+    /**
+     * @return $skiptokenによるページングで1ノードが同時に開くスクロールの最大数.
+     */
+    public static int getSkipTokenMaxContexts() {
+        return Integer.parseInt(get(OData.SKIPTOKEN_MAX_CONTEXTS));
+    }
+
+    /**
+     * @return $skiptokenによるページングで1ノードがセル毎に同時に開くスクロールの最大数.
+     */
+    public static int getSkipTokenMaxContextsPerCell() {
+        return Integer.parseInt(get(OData.SKIPTOKEN_MAX_CONTEXTS_PER_CELL));
+    }
+
     /**
      * @return 一覧取得時のデフォルト返却件数.
      */
@@ -1127,6 +1463,13 @@ public class DcCoreConfig {
         return Long.parseLong(get(Lock.MEMCACHED_OPTIMEOUT));
     }
 
+    /**
+     * @return ロックの保持期間(s).
+     */
+    public static String getLockLeaseTime() {
+        return get(Lock.LEASE_TIME);
+    }
+
     /**
      * @return 最新のイベントログファイルの格納ディレクトリ.
      */
@@ -1134,6 +1477,41 @@ public class DcCoreConfig {
         return get(Event.EVENT_LOG_CURRENT_DIR);
     }
 
+    /**
+     * @return イベントログを非同期で出力する場合はtrue
+     */
+    public static boolean isEventLogAsyncEnabled() {
+        return Boolean.parseBoolean(get(Event.EVENT_LOG_ASYNC_ENABLED));
+    }
+
+    /**
+     * @return 非同期出力の待ち行列に保持するイベントの最大数
+     */
+    public static int getEventLogAsyncQueueSize() {
+        return Integer.parseInt(get(Event.EVENT_LOG_ASYNC_QUEUE_SIZE));
+    }
+
+    /**
+     * @return 書き込みスレッドが一度に出力するイベントの最大数
+     */
+    public static int getEventLogAsyncBatchSize() {
+        return Integer.parseInt(get(Event.EVENT_LOG_ASYNC_BATCH_SIZE));
+    }
+
+    /**
+     * @return 待ち行列が満杯の場合の動作(sync/drop)
+     */
+    public static String getEventLogAsyncOverflow() {
+        return get(Event.EVENT_LOG_ASYNC_OVERFLOW);
+    }
+
+    /**
+     * @return ログ取得APIがファイルを読み出す前に、未出力のイベントの出力を待つ最大時間(ms)
+     */
+    public static long getEventLogAsyncFlushTimeout() {
+        return Long.parseLong(get(Event.EVENT_LOG_ASYNC_FLUSH_TIMEOUT));
+    }
+
     /**
      * ElasticSearchのホスト名の設定値を取得します.
      * @return 設定値
@@ -1217,6 +1595,55 @@ public class DcCoreConfig {
         return get(ES.ADS.TYPE);
     }
 
+    /**
+     * @return ADSへの書込みを非同期で行う場合はtrue
+     */
+    public static boolean isEsAdsAsyncEnabled() {
+        return Boolean.parseBoolean(get(ES.ADS.ASYNC_ENABLED));
+    }
+
+    /**
+     * @return ADSへの非同期書込みのワーカー数
+     */
+    public static int getEsAdsAsyncWorkers() {
+        return Integer.parseInt(get(ES.ADS.ASYNC_WORKERS));
+    }
+
+    /**
+     * @return ADSへの非同期書込みのワーカー毎のキューに保持する要求の最大数
+     */
+    public static int getEsAdsAsyncQueueSize() {
+        return Integer.parseInt(get(ES.ADS.ASYNC_QUEUE_SIZE));
+    }
+
+    /**
+     * @return ADSへの非同期書込みでワーカーが一度に書き込む要求の最大数
+     */
+    public static int getEsAdsAsyncBatchSize() {
+        return Integer.parseInt(get(ES.ADS.ASYNC_BATCH_SIZE));
+    }
+
+    /**
+     * @return ADSへの非同期書込みのジャーナルファイル1つに記録する要求の最大数
+     */
+    public static int getEsAdsAsyncJournalSegmentSize() {
+        return Integer.parseInt(get(ES.ADS.ASYNC_JOURNAL_SEGMENT_SIZE));
+    }
+
+    /**
+     * @return ADSへの非同期書込みのジャーナルファイル名に含めるノードID(未指定の場合は空文字)
+     */
+    public static String getEsAdsAsyncJournalNodeId() {
+        return get(ES.ADS.ASYNC_JOURNAL_NODE_ID);
+    }
+
+    /**
+     * @return キューを経由しない書込みの前に非同期書込みの完了を待つ最大時間(ms)
+     */
+    public static long getEsAdsAsyncFlushTimeout() {
+        return Long.parseLong(get(ES.ADS.ASYNC_FLUSH_TIMEOUT));
+    }
+
     /**
      * @return ルーティングフラグ (trueの場合、ルーティング処理を行う).
      */
@@ -1238,6 +1665,27 @@ public class DcCoreConfig {
         return get(ES.RETRY_INTERVAL);
     }
 
+    /**
+     * @return 登録/更新/削除時のrefresh方針.
+     */
+    public static String getEsRefreshPolicy() {
+        return get(ES.REFRESH_POLICY);
+    }
+
+    /**
+     * @return バルク登録時のrefresh方針.
+     */
+    public static String getEsRefreshBulkPolicy() {
+        return get(ES.REFRESH_BULK_POLICY);
+    }
+
+    /**
+     * @return refresh方針coalesced指定時にrefreshをまとめる時間(ms).
+     */
+    public static long getEsRefreshCoalesceWindow() {
+        return Long.parseLong(get(ES.REFRESH_COALESCE_WINDOW));
+    }
+
     /**
      * @return barインストールの非同期処理状況の有効期限(s).
      */
@@ -1259,9 +1707,29 @@ public class DcCoreConfig {
         ret.setProperty("maxIdle", get(ES.ADS.CP_MAX_IDLE));
         ret.setProperty("maxWait", get(ES.ADS.CP_MAX_WAIT));
         ret.setProperty("validationQuery", get(ES.ADS.CP_VALIDATION_QUERY));
+        ret.setProperty("poolPreparedStatements", get(ES.ADS.CP_POOL_PREPARED_STATEMENTS));
+        ret.setProperty("maxOpenPreparedStatements", get(ES.ADS.CP_MAX_OPEN_PREPARED_STATEMENTS));
+        String connectionProperties = get(ES.ADS.JDBC_CONNECTION_PROPERTIES);
+        if (null != connectionProperties && !connectionProperties.isEmpty()) {
+            ret.setProperty("connectionProperties", connectionProperties);
+        }
         return ret;
     }
 
+    /**
+     * @return ADSへの一括登録/更新で1つのINSERT文にまとめる最大行数
+     */
+    public static int getEsAdsBulkRowsPerStatement() {
+        return Integer.parseInt(get(ES.ADS.BULK_ROWS_PER_STATEMENT));
+    }
+
+    /**
+     * @return ADSへの一括登録/更新でコミットする行数. 0の場合は一括登録/更新全体を1トランザクションとする
+     */
+    public static int getEsAdsBulkTransactionSize() {
+        return Integer.parseInt(get(ES.ADS.BULK_TRANSACTION_SIZE));
+    }
+
     /**
      * @return Cacheのタイプ.
      */
@@ -1306,6 +1774,34 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(Cache.BOX_CACHE_ENABLED));
     }
 
+    /**
+     * @return セル情報をノード内に保持する最大件数.
+     */
+    public static int getCellLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.CELL_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return ノード内に保持したセル情報を再検証せずに使用する期間(ms).
+     */
+    public static long getCellLocalCacheTtl() {
+        return Long.parseLong(get(Cache.CELL_LOCAL_CACHE_TTL));
+    }
+
+    /**
+     * @return ボックス情報をノード内に保持する最大件数.
+     */
+    public static int getBoxLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.BOX_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return ノード内に保持したボックス情報を再検証せずに使用する期間(ms).
+     */
+    public static long getBoxLocalCacheTtl() {
+        return Long.parseLong(get(Cache.BOX_LOCAL_CACHE_TTL));
+    }
+
     /**
      * スキーマのキャッシュが有効か否かを返す.
      * @return 有効な場合はtrue.
@@ -1314,6 +1810,49 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(Cache.SCHEMA_CACHE_ENABLED));
     }
 
+    /**
+     * @return パース済みスキーマをノード内に保持する最大件数.
+     */
+    public static int getSchemaLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.SCHEMA_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return 検証済みのアクセストークンをノード内に保持する最大件数.
+     */
+    public static int getTokenLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.TOKEN_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * アクセス主体毎のロール一覧のキャッシュが有効か否かを返す.
+     * @return 有効な場合はtrue.
+     */
+    public static boolean isRoleCacheEnabled() {
+        return Boolean.parseBoolean(get(Cache.ROLE_CACHE_ENABLED));
+    }
+
+    /**
+     * @return ロール一覧をノード内に保持する最大件数.
+     */
+    public static int getRoleLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.ROLE_LOCAL_CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return ノード内に保持したロール一覧を再検証せずに使用する期間(ms).
+     */
+    public static long getRoleLocalCacheTtl() {
+        return Long.parseLong(get(Cache.ROLE_LOCAL_CACHE_TTL));
+    }
+
+    /**
+     * @return ロールIDを変換済みのACLをノード内に保持する最大件数.
+     */
+    public static int getAclLocalCacheMaxSize() {
+        return Integer.parseInt(get(Cache.ACL_LOCAL_CACHE_MAX_SIZE));
+    }
+
     /**
      * @return memcachedキャッシュ有効期限.
      */
@@ -1353,6 +1892,97 @@ public class DcCoreConfig {
         return get(Engine.PATH);
     }
 
+    /**
+     * @return Engineを同一JVM内で実行する場合はtrue
+     */
+    public static boolean isEngineEmbeddedEnabled() {
+        return Boolean.parseBoolean(get(Engine.EMBEDDED_ENABLED));
+    }
+
+    /**
+     * @return 組み込みEngineでサービスを実行するスレッド数
+     */
+    public static int getEngineEmbeddedThreads() {
+        return Integer.parseInt(get(Engine.EMBEDDED_THREADS));
+    }
+
+    /**
+     * @return 組み込みEngineで実行を待つサービス呼び出しの最大数
+     */
+    public static int getEngineEmbeddedQueueSize() {
+        return Integer.parseInt(get(Engine.EMBEDDED_QUEUE_SIZE));
+    }
+
+    /**
+     * @return HTTPコネクションプールに保持するコネクションの最大数.
+     */
+    public static int getHttpPoolMaxTotal() {
+        return Integer.parseInt(get(HttpPool.MAX_TOTAL));
+    }
+
+    /**
+     * @return HTTPコネクションプールに宛先毎に保持するコネクションの最大数.
+     */
+    public static int getHttpPoolMaxPerRoute() {
+        return Integer.parseInt(get(HttpPool.MAX_PER_ROUTE));
+    }
+
+    /**
+     * @return アイドル状態のHTTPコネクションを切断するまでの時間(ms).
+     */
+    public static long getHttpPoolIdleTimeout() {
+        return Long.parseLong(get(HttpPool.IDLE_TIMEOUT));
+    }
+
+    /**
+     * @return 応答にKeep-Aliveヘッダが無い場合にHTTPコネクションを再利用する期間(ms).
+     */
+    public static long getHttpPoolKeepAlive() {
+        return Long.parseLong(get(HttpPool.KEEP_ALIVE));
+    }
+
+    /**
+     * @return HTTPコネクションプールからコネクションを取得するまでの待ち時間の上限(ms).
+     */
+    public static long getHttpPoolTimeout() {
+        return Long.parseLong(get(HttpPool.TIMEOUT));
+    }
+
+    /**
+     * @return メッセージを複数の宛先Cellへ並行して配送するスレッド数.
+     */
+    public static int getMessageDeliveryWorkers() {
+        return Integer.parseInt(get(Message.DELIVERY_WORKERS));
+    }
+
+    /**
+     * @return メッセージを宛先ホスト毎に同時に配送する最大数.
+     */
+    public static int getMessageDeliveryMaxPerHost() {
+        return Integer.parseInt(get(Message.DELIVERY_MAX_PER_HOST));
+    }
+
+    /**
+     * @return メッセージを宛先Cell毎に同時に配送する最大数.
+     */
+    public static int getMessageDeliveryMaxPerCell() {
+        return Integer.parseInt(get(Message.DELIVERY_MAX_PER_CELL));
+    }
+
+    /**
+     * @return メッセージの宛先毎の配送のタイムアウト(ms).
+     */
+    public static int getMessageDeliveryTimeoutInMillis() {
+        return Integer.parseInt(get(Message.DELIVERY_TIMEOUT));
+    }
+
+    /**
+     * @return メッセージ送信で宛先Cell毎に署名済みのトークンを再利用する期間(ms).
+     */
+    public static long getMessageTokenReuseInMillis() {
+        return Long.parseLong(get(Message.TOKEN_REUSE));
+    }
+
     /**
      * 本UNITのX509秘密鍵ファイルのパスの設定値を取得します.
      * @return 設定値
@@ -1480,6 +2110,20 @@ public class DcCoreConfig {
         }
     }
 
+    /**
+     * Repair処理でインデックス(ユニットユーザ)毎に分割したログを並行して処理するスレッド数.
+     * @return Repair処理のスレッド数.
+     */
+    public static int getAdsRepairWorkers() {
+        String value = get(AdsRepair.REPAIR_SERVICE_WORKERS);
+        if (null != value && !value.isEmpty()) {
+            return Integer.valueOf(value);
+        } else {
+            // Default値.
+            return AdsRepair.DEFAULT_REPAIR_SERVICE_WORKERS;
+        }
+    }
+
     /**
      * shutdown時、実行中タスクの完了待ち時間.
      * @return shutdown時、実行中タスクの完了待ち時間.
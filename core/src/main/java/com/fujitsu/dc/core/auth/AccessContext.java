@@ -17,9 +17,10 @@
 package com.fujitsu.dc.core.auth;
 
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.ws.rs.core.UriInfo;
 
@@ -46,7 +47,6 @@ import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.auth.OAuth2Helper.AcceptableAuthScheme;
 import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.Cell;
-import com.fujitsu.dc.core.model.jaxb.Ace;
 import com.fujitsu.dc.core.model.jaxb.Acl;
 import com.fujitsu.dc.core.odata.OEntityWrapper;
 import com.fujitsu.dc.core.rs.cell.AuthResourceUtils;
@@ -66,6 +66,9 @@ public final class AccessContext {
     private String schema;
     private String confidentialLevel;
     private List<Role> roles = new ArrayList<Role>();
+    private Set<String> roleUrls;
+    private List<Role> roleUrlsSource;
+    private String roleUrlsCellUrl;
     private String baseUri;
     private InvalidReason invalidReason;
 
@@ -379,13 +382,17 @@ public final class AccessContext {
             return ret;
         }
         // 以降、Cellレベル。
-        AbstractOAuth2Token tk = null;
+        String issuer = null;
+        if (cell != null) {
+            issuer = cell.getUrl();
+        }
+        // 検証済みのトークンであれば、復号や署名検証を行わずに利用する
+        AbstractOAuth2Token tk = VerifiedTokenCache.get(accessToken, issuer, host);
+        boolean verified = tk != null;
         try {
-            String issuer = null;
-            if (cell != null) {
-                issuer = cell.getUrl();
+            if (!verified) {
+                tk = AbstractOAuth2Token.parse(accessToken, issuer, host);
             }
-            tk = AbstractOAuth2Token.parse(accessToken, issuer, host);
         } catch (TokenParseException e) {
             // パースに失敗したので
             DcCoreLog.Auth.TOKEN_PARSE_ERROR.params(e.getMessage()).writeLog();
@@ -410,6 +417,9 @@ public final class AccessContext {
         if (tk.isExpired()) {
             return new AccessContext(TYPE_INVALID, cell, baseUri, InvalidReason.expired);
         }
+        if (!verified) {
+            VerifiedTokenCache.put(accessToken, issuer, host, tk);
+        }
 
         AccessContext ret = new AccessContext(null, cell, baseUri);
         if (tk instanceof AccountAccessToken) {
@@ -427,8 +437,8 @@ public final class AccessContext {
         } else if (tk instanceof CellLocalAccessToken) {
             CellLocalAccessToken clat = (CellLocalAccessToken) tk;
             ret.accessType = TYPE_LOCAL;
-            // ロール情報を取得して詰める。
-            ret.roles = clat.getRoles();
+            // ロール情報を取得して詰める。トークンはキャッシュで共有されるため複製する。
+            ret.roles = new ArrayList<Role>(clat.getRoles());
             ret.subject = tk.getSubject();
             ret.issuer = tk.getIssuer();
         } else if (tk instanceof UnitLocalUnitUserToken) {
@@ -503,83 +513,30 @@ public final class AccessContext {
         if (resourcePrivilege == null) {
             return false;
         }
-
-        // ACLからROLE情報を取得し、権限を取得
-        if (acl.getAceList() == null) {
-            return false;
-        }
-        for (Ace ace : acl.getAceList()) {
-            // 空のaceが設定されている場合はチェックの必要がないためがcontinueする
-            if (ace.getGrantedPrivilegeList().size() == 0 && ace.getPrincipalHref() == null) {
-                continue;
-            }
-            // Principalがallの場合、アクセス可
-            if (ace.getPrincipalAll() != null) {
-                if (requireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
-                    return true;
-                }
-                continue;
-            }
-            // Accountに紐付いたRoleが存在しない場合は、アクセス不可
-            if (this.roles == null) {
-                return false;
-            }
-            for (Role role : this.roles) {
-                // 相対パスロールURL対応
-                String principalHref = getPrincipalHrefUrl(acl.getBase(), ace.getPrincipalHref());
-                if (principalHref == null) {
-                    return false;
-                }
-                // ロールに対応している設定を検出
-                if (role.localCreateUrl(cellUrl).equals(principalHref)
-                        && requireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        // ACLはロールURL毎のPrivilegeのマスクにコンパイル済みのものを使用する
+        return acl.getCompiled().grants(getRoleUrls(cellUrl), resourcePrivilege);
     }
 
     /**
-     * 必要な権限がACLのPrivilegeに設定されているかチェックする.
-     * @param acePrivileges ACEに設定されたPrivilege設定のリスト
-     * @param Privilege 必要な権限
-     * @return チェック可否
+     * ロールのURLの集合を返す. 同一セルURLに対する2回目以降の呼び出しでは、ロールリストの内容が作成時から
+     * 変更されていなければ作成済みの集合を返す. Roleは不変のため要素の同一性で内容を比較する.
+     * @param cellUrl セルURL
+     * @return ロールのURLの集合. ロールが存在しない場合はnull
      */
-    private boolean requireAcePrivilege(List<String> acePrivileges, Privilege resourcePrivilege) {
-        for (String aclPrivilege : acePrivileges) {
-            Privilege priv = Privilege.get(resourcePrivilege.getClass(), aclPrivilege);
-            if (priv != null
-                    && priv.includes(resourcePrivilege)) {
-                // メモ
-                // Privilege.get(${ACLの設定}).includes(${リソースにアクセスするために必要な値})) {
-                return true;
-            }
+    private Set<String> getRoleUrls(String cellUrl) {
+        if (this.roles == null) {
+            return null;
         }
-        return false;
-    }
-
-    /**
-     * 設定ロールURLの相対パス解決.
-     * @param base ACLのxml:base属性の値
-     * @param principalHref ACLのprincipal-Href
-     * @return
-     */
-    private String getPrincipalHrefUrl(String base, String principalHref) {
-        String result = null;
-        if (base != null && !"".equals(base)) {
-            // 相対パスの解決
-            try {
-                URI url = new URI(base);
-                result = url.resolve(principalHref).toString();
-            } catch (URISyntaxException e) {
-                return null;
+        if (this.roleUrls == null || !cellUrl.equals(this.roleUrlsCellUrl) || !this.roleUrlsSource.equals(this.roles)) {
+            Set<String> urls = new HashSet<String>();
+            for (Role role : this.roles) {
+                urls.add(role.localCreateUrl(cellUrl));
             }
-        } else {
-            // xml:baseが未設定の場合、hrefにフルパス設定されていると扱う
-            result = principalHref;
+            this.roleUrls = urls;
+            this.roleUrlsSource = new ArrayList<Role>(this.roles);
+            this.roleUrlsCellUrl = cellUrl;
         }
-        return result;
+        return this.roleUrls;
     }
 
     /**
@@ -0,0 +1,189 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fujitsu.dc.core.model.jaxb.Ace;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+
+/**
+ * ACL判定用にコンパイルしたACL.
+ * ACEをロールURL毎のPrivilegeのビットマスクにまとめ、判定をハッシュ参照とビット演算のみで行えるようにする.
+ * 判定結果は {@link AccessContext#requirePrivilege(Acl, Privilege, String)} の従来の判定(ACEを先頭から順に評価)と同一となる.
+ */
+public final class CompiledAcl {
+
+    /**
+     * 何も許可しないACL.
+     */
+    static final CompiledAcl DENY_ALL = new CompiledAcl();
+
+    /**
+     * Principalがallである全ACEのマスク.
+     */
+    private final long allMask;
+
+    /**
+     * ロールを持たない場合に評価される、最初のロール指定ACEより前にあるPrincipalがallのACEのマスク.
+     */
+    private final long allMaskWithoutRoles;
+
+    /**
+     * ロールを持つ場合に評価される、ロールURLが解決できないACEより前にあるPrincipalがallのACEのマスク.
+     */
+    private final long allMaskWithRoles;
+
+    /**
+     * ロールURLが解決できないACEより前にあるロール指定ACEの、ロールURL毎のマスク.
+     */
+    private final Map<String, Long> roleMasks;
+
+    private CompiledAcl() {
+        this.allMask = 0;
+        this.allMaskWithoutRoles = 0;
+        this.allMaskWithRoles = 0;
+        this.roleMasks = new HashMap<String, Long>();
+    }
+
+    private CompiledAcl(Acl acl) {
+        long all = 0;
+        long withoutRoles = 0;
+        long withRoles = 0;
+        boolean roleAceFound = false;
+        boolean invalidHrefFound = false;
+        Map<String, Long> masks = new HashMap<String, Long>();
+
+        for (Ace ace : acl.getAceList()) {
+            List<String> privileges = ace.getGrantedPrivilegeList();
+            // 空のaceが設定されている場合はチェックの必要がない
+            if (privileges.size() == 0 && ace.getPrincipalHref() == null) {
+                continue;
+            }
+            long mask = 0;
+            for (String privilege : privileges) {
+                mask |= Privilege.getBits(privilege);
+            }
+            if (ace.getPrincipalAll() != null) {
+                all |= mask;
+                if (!roleAceFound) {
+                    withoutRoles |= mask;
+                }
+                if (!invalidHrefFound) {
+                    withRoles |= mask;
+                }
+                continue;
+            }
+            roleAceFound = true;
+            if (invalidHrefFound) {
+                continue;
+            }
+            String principalHref = getPrincipalHrefUrl(acl.getBase(), ace.getPrincipalHref());
+            if (principalHref == null) {
+                // 以降のACEは評価されない
+                invalidHrefFound = true;
+                continue;
+            }
+            Long current = masks.get(principalHref);
+            if (current != null) {
+                mask |= current;
+            }
+            masks.put(principalHref, mask);
+        }
+        this.allMask = all;
+        this.allMaskWithoutRoles = withoutRoles;
+        this.allMaskWithRoles = withRoles;
+        this.roleMasks = masks;
+    }
+
+    /**
+     * ACLをコンパイルする.
+     * @param acl ACL
+     * @return コンパイルしたACL
+     */
+    public static CompiledAcl compile(Acl acl) {
+        if (acl == null || acl.getAceList() == null) {
+            return DENY_ALL;
+        }
+        return new CompiledAcl(acl);
+    }
+
+    /**
+     * 必要なPrivilegeが許可されているか判定する.
+     * @param roleUrls アクセス主体が持つロールのURLの集合. ロールを持たない場合はnull
+     * @param resourcePrivilege リソースにアクセスするために必要なPrivilege
+     * @return 許可されている場合はtrue
+     */
+    public boolean grants(Set<String> roleUrls, Privilege resourcePrivilege) {
+        if (resourcePrivilege == null) {
+            return false;
+        }
+        long required = resourcePrivilege.getInclusionMask();
+        if (roleUrls == null) {
+            return (this.allMaskWithoutRoles & required) != 0;
+        }
+        if (roleUrls.isEmpty()) {
+            return (this.allMask & required) != 0;
+        }
+        if ((this.allMaskWithRoles & required) != 0) {
+            return true;
+        }
+        if (roleUrls.size() < this.roleMasks.size()) {
+            for (String roleUrl : roleUrls) {
+                Long mask = this.roleMasks.get(roleUrl);
+                if (mask != null && (mask & required) != 0) {
+                    return true;
+                }
+            }
+        } else {
+            for (Map.Entry<String, Long> entry : this.roleMasks.entrySet()) {
+                if ((entry.getValue() & required) != 0 && roleUrls.contains(entry.getKey())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 設定ロールURLの相対パス解決.
+     * @param base ACLのxml:base属性の値
+     * @param principalHref ACLのprincipal-Href
+     * @return ロールURL. 解決できない場合はnull
+     */
+    private static String getPrincipalHrefUrl(String base, String principalHref) {
+        if (principalHref == null) {
+            return null;
+        }
+        if (base != null && !"".equals(base)) {
+            // 相対パスの解決
+            try {
+                URI url = new URI(base);
+                return url.resolve(principalHref).toString();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        // xml:baseが未設定の場合、hrefにフルパス設定されていると扱う
+        return principalHref;
+    }
+}
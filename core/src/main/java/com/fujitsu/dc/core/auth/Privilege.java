@@ -38,12 +38,20 @@ public abstract class Privilege {
 
     private Privilege parent;
 
+    /**
+     * ACL判定用にPrivilege毎に割り当てるビット. Cell/Boxの全Privilegeで一意.
+     */
+    private final long bit;
+
+    private static int bitCount = 0;
+
     /**
      * コンストラクタ.
      * @param name Privilege名
      */
     Privilege(final String name) {
         this.name = name;
+        this.bit = nextBit();
     }
 
     /**
@@ -54,6 +62,45 @@ public abstract class Privilege {
     Privilege(final String name, final Privilege parent) {
         this.name = name;
         this.parent = parent;
+        this.bit = nextBit();
+    }
+
+    private static synchronized long nextBit() {
+        if (bitCount >= Long.SIZE) {
+            throw new IllegalStateException("too many privileges");
+        }
+        return 1L << bitCount++;
+    }
+
+    /**
+     * 自身と全ての祖先のビットを合わせたマスクを返す.
+     * ACEに設定されたPrivilegeのビットとの論理積が0でなければ、このPrivilegeはACEに含まれる.
+     * @return マスク
+     */
+    long getInclusionMask() {
+        long mask = 0;
+        for (Privilege p = this; p != null; p = p.parent) {
+            mask |= p.bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Privilege名に対応するCell/BoxのPrivilegeのビットを返す.
+     * @param privilegeName Privilege名
+     * @return ビット. 該当するPrivilegeが存在しない場合は0
+     */
+    static long getBits(String privilegeName) {
+        long bits = 0;
+        Privilege cell = CellPrivilege.map.get(privilegeName);
+        if (cell != null) {
+            bits |= cell.bit;
+        }
+        Privilege box = BoxPrivilege.map.get(privilegeName);
+        if (box != null) {
+            bits |= box.bit;
+        }
+        return bits;
     }
 
     /**
@@ -0,0 +1,101 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.utils.LocalCache;
+
+/**
+ * パース及び署名検証済みのアクセストークンをノード内に保持するキャッシュ.
+ * 同じトークンを繰り返し使用するクライアントに対し、復号やXML署名検証を毎回行わないようにする.
+ * エントリはトークン自身の有効期限を過ぎた時点で無効とする.
+ */
+public final class VerifiedTokenCache {
+
+    private static LocalCache<String, AbstractOAuth2Token> tokens =
+            new LocalCache<String, AbstractOAuth2Token>(DcCoreConfig.getTokenLocalCacheMaxSize());
+
+    private static final AtomicLong EXPIRED_COUNT = new AtomicLong();
+
+    private VerifiedTokenCache() {
+    }
+
+    /**
+     * 検証済みのトークンを取得する.
+     * @param token トークン文字列
+     * @param issuer パース時に指定した発行者(Cell URL)
+     * @param host パース時に指定したHostヘッダの値
+     * @return 検証済みのトークン. 存在しない、または有効期限を過ぎている場合はnull
+     */
+    static AbstractOAuth2Token get(String token, String issuer, String host) {
+        String key = createKey(token, issuer, host);
+        AbstractOAuth2Token tk = tokens.get(key);
+        if (tk != null && tk.isExpired()) {
+            EXPIRED_COUNT.incrementAndGet();
+            tokens.remove(key);
+            return null;
+        }
+        return tk;
+    }
+
+    /**
+     * 検証済みのトークンを保持する.
+     * @param token トークン文字列
+     * @param issuer パース時に指定した発行者(Cell URL)
+     * @param host パース時に指定したHostヘッダの値
+     * @param tk 検証済みのトークン
+     */
+    static void put(String token, String issuer, String host, AbstractOAuth2Token tk) {
+        if (tk.isExpired()) {
+            return;
+        }
+        tokens.setMaxSize(DcCoreConfig.getTokenLocalCacheMaxSize());
+        tokens.put(createKey(token, issuer, host), tk);
+    }
+
+    /**
+     * 全てのキャッシュを削除する.
+     */
+    static void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return ヒット件数、ミス件数、期限切れ件数、保持件数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("hit", tokens.getHitCount() - EXPIRED_COUNT.get());
+        stats.put("miss", tokens.getMissCount());
+        stats.put("expired", EXPIRED_COUNT.get());
+        stats.put("size", tokens.size());
+        return stats;
+    }
+
+    /**
+     * パース結果は発行者とHostヘッダにも依存するため、これらを含めてキーとする.
+     */
+    private static String createKey(String token, String issuer, String host) {
+        return issuer + "\t" + host + "\t" + token;
+    }
+}
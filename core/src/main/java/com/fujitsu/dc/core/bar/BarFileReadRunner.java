@@ -188,6 +188,8 @@ public class BarFileReadRunner implements Runnable {
             .get(DcCoreConfig.BAR.BAR_USERDATA_LINKS_OUTPUT_STREAM_SIZE));
     private long bulkSize = Long.parseLong(DcCoreConfig
             .get(DcCoreConfig.BAR.BAR_USERDATA_BULK_SIZE));
+    private int pipelineDepth = Integer.parseInt(DcCoreConfig
+            .get(DcCoreConfig.BAR.BAR_USERDATA_PIPELINE_DEPTH));
     private Event event;
     private DcEventBus eventBus;
     private BarInstallProgressInfo progressInfo;
@@ -493,6 +495,14 @@ public class BarFileReadRunner implements Runnable {
 
         DavCmp davCmp = null;
         List<String> doneKeys = new ArrayList<String>();
+        UserDataBulkWriter bulkWriter = new UserDataBulkWriter(this.pipelineDepth, "bar-install-bulk-" + boxName,
+                new UserDataBulkWriter.BulkExecutor() {
+                    @Override
+                    public boolean execute(DcODataProducer producer, String cellId,
+                            LinkedHashMap<String, BulkRequest> bulkRequests, Map<String, String> fileNameMap) {
+                        return execBulkRequest(cellId, bulkRequests, fileNameMap, producer);
+                    }
+                });
         try {
             ZipArchiveEntry zae = null;
             String currentPath = null;
@@ -508,16 +518,19 @@ public class BarFileReadRunner implements Runnable {
                 log.debug("Entry Size: " + zae.getSize());
                 log.debug("Entry Compressed Size: " + zae.getCompressedSize());
                 if (!zae.isDirectory()) {
-                    this.progressInfo.addDelta(1L);
+                    addProgressDelta();
                 }
                 writeOutputStream(false, CODE_BAR_INSTALL_STARTED, entryName);
 
                 // ODataCollectionからDav/ServiceCollection/別ODataCollectionのリソースに対する処理に変わった際に
                 // ユーザデータの登録やリンクの登録をする必要があれば、処理を実行する
+                // リンクの登録はユーザデータの登録完了後に行う必要があるため、一括登録の完了を待つ
                 if (currentPath != null && !entryName.startsWith(currentPath)) {
-                    if (!execBulkRequest(davCmp.getCell().getId(), bulkRequests, fileNameMap, producer)) {
+                    if (!bulkWriter.submit(davCmp, bulkRequests, fileNameMap, producer) || !bulkWriter.await()) {
                         return false;
                     }
+                    bulkRequests = new LinkedHashMap<String, BulkRequest>();
+                    fileNameMap = new HashMap<String, String>();
                     if (!createUserdataLinks(producer, userDataLinks)) {
                         return false;
                     }
@@ -568,10 +581,13 @@ public class BarFileReadRunner implements Runnable {
                             }
                             doneKeys.add(entryName);
 
-                            if ((userDataCount % bulkSize) == 0
-                                    && !execBulkRequest(davCmp.getCell().getId(),
-                                            bulkRequests, fileNameMap, producer)) {
-                                return false;
+                            if ((userDataCount % bulkSize) == 0) {
+                                // 一括登録は別スレッドで行い、その間に次のユーザデータを解析する
+                                if (!bulkWriter.submit(davCmp, bulkRequests, fileNameMap, producer)) {
+                                    return false;
+                                }
+                                bulkRequests = new LinkedHashMap<String, BulkRequest>();
+                                fileNameMap = new HashMap<String, String>();
                             }
                             continue;
                         } else if (!entryName.endsWith("/")) {
@@ -615,7 +631,7 @@ public class BarFileReadRunner implements Runnable {
 
             // ODataCollectionのリソースに対する処理に終わった際に、ユーザデータの登録やリンクの登録をする必要があれば実行する
             if (currentPath != null) {
-                if (!execBulkRequest(davCmp.getCell().getId(), bulkRequests, fileNameMap, producer)) {
+                if (!bulkWriter.submit(davCmp, bulkRequests, fileNameMap, producer) || !bulkWriter.await()) {
                     return false;
                 }
                 if (!createUserdataLinks(producer, userDataLinks)) {
@@ -629,6 +645,9 @@ public class BarFileReadRunner implements Runnable {
             String message = DcCoreMessageUtils.getMessage("PL-BI-2000");
             writeOutputStream(true, CODE_BAR_INSTALL_FAILED, "", message);
 
+        } finally {
+            // エラーで中断した場合も、実行中の一括登録の完了を待ってから終了する
+            bulkWriter.shutdown();
         }
         // 必須データ（bar/90_contents/{odatacol_name}/00_$metadata.xml)の確認
         isSuccess = checkNecessaryFile(isSuccess, odataCols, doneKeys);
@@ -1657,7 +1676,7 @@ public class BarFileReadRunner implements Runnable {
      * @param detail
      *        処理失敗時の詳細情報(PL-BI-2xxx)
      */
-    private void writeOutputStream(boolean isError, String code, String path, String detail) {
+    private synchronized void writeOutputStream(boolean isError, String code, String path, String detail) {
         String message = DcCoreMessageUtils.getMessage(code);
         if (detail == null) {
             message = message.replace("{0}", "");
@@ -1699,6 +1718,13 @@ public class BarFileReadRunner implements Runnable {
         }
     }
 
+    /**
+     * 処理済みエントリ数を加算する. 一括登録スレッドからの出力と競合しないよう同期する.
+     */
+    private synchronized void addProgressDelta() {
+        this.progressInfo.addDelta(1L);
+    }
+
     /**
      * キャッシュへbarインストール状況を出力する.
      * @param forceOutput 強制的に出力する場合はtrueを、それ以外はfalseを指定する
@@ -1853,6 +1879,7 @@ public class BarFileReadRunner implements Runnable {
         OEntityKey toOEKey = OEntityKey.parse(tokey);
         OEntityId newTargetEntity = OEntityIds.create(((JSONLinks) mappedObject).getToType(), toOEKey);
         // $linksの登録
+        producer.onChange(sourceEntity.getEntitySetName());
         producer.createLink(sourceEntity, targetNavProp, newTargetEntity);
     }
 
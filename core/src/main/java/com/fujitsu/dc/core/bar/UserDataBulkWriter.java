@@ -0,0 +1,201 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.bar;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.model.DavCmp;
+import com.fujitsu.dc.core.odata.DcODataProducer;
+import com.fujitsu.dc.core.rs.odata.BulkRequest;
+
+/**
+ * barファイルのユーザデータの一括登録を、読み込みスレッドとは別のスレッドで順に実行するパイプライン.
+ * barファイルの読み込み・ユーザデータの解析と、ES/ADSへの一括登録を並行して行う.
+ * 登録待ち(実行中を含む)の一括登録がdepth件ある場合、読み込みスレッドはいずれかの完了を待つ.
+ * 一括登録でエラーが発生した場合は以降の一括登録は実行しない.
+ * プロデューサーはスレッド間で共有せず、登録スレッドではODataコレクション毎に専用のプロデューサーを作成して使用する.
+ */
+public class UserDataBulkWriter {
+
+    static Logger log = LoggerFactory.getLogger(UserDataBulkWriter.class);
+
+    /**
+     * 一括登録の実行処理.
+     */
+    public interface BulkExecutor {
+        /**
+         * 一括登録を実行する.
+         * @param producer 一括登録に使用するプロデューサー
+         * @param cellId CellのID
+         * @param bulkRequests 一括登録するユーザデータ
+         * @param fileNameMap ユーザデータ毎のbarファイル内のエントリ名
+         * @return 成功した場合はtrue
+         */
+        boolean execute(DcODataProducer producer, String cellId, LinkedHashMap<String, BulkRequest> bulkRequests,
+                Map<String, String> fileNameMap);
+    }
+
+    private final BulkExecutor bulkExecutor;
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final List<Future<Boolean>> pending = new ArrayList<Future<Boolean>>();
+    private volatile boolean failed = false;
+    private volatile RuntimeException failure = null;
+
+    /** 登録スレッド用のプロデューサーを作成したODataコレクション. 読み込みスレッドからのみ参照する. */
+    private DavCmp writerCmp;
+    /** 登録スレッド用のプロデューサー. */
+    private DcODataProducer writerProducer;
+
+    /**
+     * コンストラクタ.
+     * @param depth 登録待ちにできる一括登録の数. 0以下の場合は呼び出し元スレッドで登録する
+     * @param threadName 登録スレッドの名前
+     * @param bulkExecutor 一括登録の実行処理
+     */
+    public UserDataBulkWriter(int depth, final String threadName, BulkExecutor bulkExecutor) {
+        this.bulkExecutor = bulkExecutor;
+        if (depth <= 0) {
+            this.executor = null;
+            this.slots = null;
+            return;
+        }
+        this.slots = new Semaphore(depth);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 一括登録を登録待ちにする. 渡したMapは登録完了まで変更しないこと.
+     * @param davCmp 登録先のODataコレクション
+     * @param bulkRequests 一括登録するユーザデータ
+     * @param fileNameMap ユーザデータ毎のbarファイル内のエントリ名
+     * @param producer 読み込みスレッドのプロデューサー. 呼び出し元スレッドで登録する場合のみ使用する
+     * @return 以前の一括登録でエラーが発生している場合はfalse
+     */
+    public boolean submit(DavCmp davCmp,
+            final LinkedHashMap<String, BulkRequest> bulkRequests,
+            final Map<String, String> fileNameMap,
+            DcODataProducer producer) {
+        final String cellId = davCmp.getCell().getId();
+        if (this.executor == null) {
+            return this.bulkExecutor.execute(producer, cellId, bulkRequests, fileNameMap);
+        }
+        if (this.failed) {
+            return !throwFailure();
+        }
+        if (davCmp != this.writerCmp) {
+            this.writerCmp = davCmp;
+            this.writerProducer = davCmp.getODataProducer();
+        }
+        final DcODataProducer target = this.writerProducer;
+        this.slots.acquireUninterruptibly();
+        this.pending.add(this.executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    if (failed) {
+                        return false;
+                    }
+                    if (!bulkExecutor.execute(target, cellId, bulkRequests, fileNameMap)) {
+                        failed = true;
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                    failed = true;
+                } finally {
+                    slots.release();
+                }
+                return !failed;
+            }
+        }));
+        return true;
+    }
+
+    /**
+     * 登録待ちの一括登録が全て完了するまで待つ.
+     * @return 全て成功した場合はtrue
+     */
+    public boolean await() {
+        if (this.executor == null) {
+            return true;
+        }
+        for (Future<Boolean> future : this.pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.failed = true;
+            } catch (ExecutionException e) {
+                this.failed = true;
+            }
+        }
+        this.pending.clear();
+        return !throwFailure();
+    }
+
+    /**
+     * 一括登録で発生した例外を、従来通り読み込みスレッドから送出する.
+     * @return エラーが発生している場合はtrue
+     */
+    private boolean throwFailure() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        return this.failed;
+    }
+
+    /**
+     * 実行中の一括登録の完了を待ってスレッドを停止する.
+     */
+    public void shutdown() {
+        if (this.executor == null) {
+            return;
+        }
+        for (Future<Boolean> future : this.pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.info("Bulk registration failed: " + e.getCause());
+            }
+        }
+        this.pending.clear();
+        this.executor.shutdown();
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.engine;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.inprocess.InProcessServletInvoker;
+import com.fujitsu.dc.common.inprocess.InProcessServlets;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.sun.jersey.spi.container.servlet.ServletContainer;
+
+/**
+ * EngineをCoreと同一JVM内で実行するクラス.
+ * EngineのJAX-RSアプリケーションをCoreのサーブレットコンテキスト上で初期化し、サービス呼び出しを件数上限付きのスレッドプールで実行する.
+ * Engineのユーザスクリプトからの基底URL宛てのリクエストは、登録したCoreのサーブレットでソケットを使用せずに処理する.
+ * サービスから更にサービスを呼び出した場合は、スレッドプールの枯渇による待ち合わせを避けるため従来通りHTTPで中継する.
+ */
+public final class EmbeddedEngine {
+
+    static Logger log = LoggerFactory.getLogger(EmbeddedEngine.class);
+
+    /** EngineのJAX-RSアプリケーションクラス名. */
+    static final String ENGINE_APPLICATION = "com.fujitsu.dc.engine.DcEngineApplication";
+    private static final String ENGINE_SERVLET_NAME = "DcEngineApp";
+    private static final String PARAM_APPLICATION = "javax.ws.rs.Application";
+    private static final String PARAM_DISABLE_WADL = "com.sun.jersey.config.feature.DisableWADL";
+
+    private static final ThreadLocal<Boolean> IN_WORKER = new ThreadLocal<Boolean>();
+    private static volatile EmbeddedEngine instance = null;
+
+    private final Servlet servlet;
+    private final InProcessServletInvoker invoker;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * コンストラクタ.
+     * @param servlet 初期化済みのEngineのサーブレット
+     * @param contextPath Engineのコンテキストパス
+     * @param threads サービスを実行するスレッド数
+     * @param queueSize 実行を待つサービス呼び出しの最大数
+     */
+    EmbeddedEngine(Servlet servlet, String contextPath, int threads, int queueSize) {
+        this.servlet = servlet;
+        this.invoker = new InProcessServletInvoker(servlet, contextPath);
+        final AtomicInteger seq = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "dc-engine-embedded-" + seq.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * 設定で有効な場合に組み込みEngineを開始する.
+     * Engineのクラスがクラスパス上に無い、または初期化に失敗した場合は警告を出力し、HTTPでの中継を継続する.
+     * @param core Coreのサーブレット(初期化済みであること)
+     */
+    public static synchronized void start(Servlet core) {
+        if (!DcCoreConfig.isEngineEmbeddedEnabled() || instance != null) {
+            return;
+        }
+        final ServletContext context = core.getServletConfig().getServletContext();
+        ServletContainer engineServlet = new ServletContainer();
+        try {
+            Class.forName(ENGINE_APPLICATION, false, EmbeddedEngine.class.getClassLoader());
+            engineServlet.init(new ServletConfig() {
+                @Override
+                public String getServletName() {
+                    return ENGINE_SERVLET_NAME;
+                }
+
+                @Override
+                public ServletContext getServletContext() {
+                    return context;
+                }
+
+                @Override
+                public String getInitParameter(String name) {
+                    if (PARAM_APPLICATION.equals(name)) {
+                        return ENGINE_APPLICATION;
+                    } else if (PARAM_DISABLE_WADL.equals(name)) {
+                        return Boolean.TRUE.toString();
+                    }
+                    return null;
+                }
+
+                @Override
+                public Enumeration<String> getInitParameterNames() {
+                    return Collections.enumeration(Arrays.asList(PARAM_APPLICATION, PARAM_DISABLE_WADL));
+                }
+            });
+        } catch (ClassNotFoundException e) {
+            log.warn("Engine classes are not found. Service calls are relayed to the engine over HTTP.");
+            return;
+        } catch (ServletException e) {
+            log.warn("Failed to initialize the embedded engine. Service calls are relayed over HTTP.", e);
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Failed to initialize the embedded engine. Service calls are relayed over HTTP.", e);
+            return;
+        } catch (LinkageError e) {
+            log.warn("Failed to initialize the embedded engine. Service calls are relayed over HTTP.", e);
+            return;
+        }
+        InProcessServlets.register(InProcessServlets.CORE, new InProcessServletInvoker(core, context.getContextPath()));
+        instance = new EmbeddedEngine(engineServlet, "/" + DcCoreConfig.getEnginePath(),
+                DcCoreConfig.getEngineEmbeddedThreads(), DcCoreConfig.getEngineEmbeddedQueueSize());
+        log.info("Embedded engine started.");
+    }
+
+    /**
+     * 組み込みEngineを停止する.
+     */
+    public static synchronized void stop() {
+        EmbeddedEngine engine = instance;
+        if (engine == null) {
+            return;
+        }
+        instance = null;
+        InProcessServlets.unregister(InProcessServlets.CORE);
+        engine.shutdown();
+    }
+
+    /**
+     * 現在のスレッドから利用できる組み込みEngineを返す.
+     * @return 組み込みEngine. 無効な場合、または組み込みEngineのスレッドからの呼び出しの場合はnull
+     */
+    public static EmbeddedEngine getAvailableInstance() {
+        if (isWorkerThread()) {
+            return null;
+        }
+        return instance;
+    }
+
+    /**
+     * @return 組み込みEngineでサービスを実行中のスレッドの場合はtrue
+     */
+    static boolean isWorkerThread() {
+        return IN_WORKER.get() != null;
+    }
+
+    /**
+     * Engine宛てのリクエストをスレッドプールで実行し、完了を待つ.
+     * リクエストURIのパスはEngineのコンテキストパスから始まること.
+     * @param request Engine宛てのリクエスト
+     * @return Engineのレスポンス
+     * @throws IOException Engineの処理に失敗した場合
+     * @throws DcCoreException 実行を待つサービス呼び出しが上限に達している場合
+     */
+    public HttpResponse execute(final HttpUriRequest request) throws IOException {
+        Future<HttpResponse> future;
+        try {
+            future = executor.submit(new Callable<HttpResponse>() {
+                @Override
+                public HttpResponse call() throws IOException {
+                    IN_WORKER.set(Boolean.TRUE);
+                    try {
+                        return invoker.invoke(request);
+                    } finally {
+                        IN_WORKER.remove();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.reason(e);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the embedded engine.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * スレッドプールを停止し、Engineのサーブレットを破棄する.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        servlet.destroy();
+    }
+}
@@ -48,7 +48,7 @@ public final class EventBus {
     public void post(final DcEvent ev) {
         // 非同期で Subscriberに通知してゆく処理。
         // JMS ? Netty あたりを使って Engineに通知を出したい。
-        // ログの出力。
+        // ログの出力。ファイルへの書き込みは EventLogWriter の書き込みスレッドで行われる。
         EventLogger logger = this.eventLoggers.get(ev.getName());
         logger.log(ev);
     }
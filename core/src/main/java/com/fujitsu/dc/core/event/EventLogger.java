@@ -19,6 +19,9 @@ package com.fujitsu.dc.core.event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.qos.logback.classic.Level;
+
+import com.fujitsu.dc.core.eventbus.EventLogWriter;
 import com.fujitsu.dc.core.model.Cell;
 
 /**
@@ -39,7 +42,7 @@ public class EventLogger {
 
     static Logger log = LoggerFactory.getLogger(EventLogger.class);
     /**
-     * イベントの情報をログに出力する.
+     * イベントの情報をログに出力する. ファイルへの書き込みは {@link EventLogWriter} により非同期で行う.
      * @param ev ログに出力するイベント
      */
     public void log(final DcEvent ev) {
@@ -47,11 +50,11 @@ public class EventLogger {
         if (evLv >=  this.logLevel) {
             // Do Logging
             if (evLv == DcEvent.Level.ERROR) {
-                log.error(cell.getId() + ev.toLogMessage());
+                EventLogWriter.append(log, Level.ERROR, cell.getId() + ev.toLogMessage(), null);
             } else if (evLv == DcEvent.Level.WARN) {
-                log.warn(cell.getId() + ev.toLogMessage());
+                EventLogWriter.append(log, Level.WARN, cell.getId() + ev.toLogMessage(), null);
             } else if (evLv == DcEvent.Level.INFO) {
-                log.info(cell.getId() + ev.toLogMessage());
+                EventLogWriter.append(log, Level.INFO, cell.getId() + ev.toLogMessage(), null);
             }
         }
     }
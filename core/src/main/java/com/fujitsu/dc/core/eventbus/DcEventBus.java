@@ -18,7 +18,8 @@ package com.fujitsu.dc.core.eventbus;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
+
+import ch.qos.logback.classic.Level;
 
 import com.fujitsu.dc.common.es.util.IndexNameEncoder;
 import com.fujitsu.dc.core.model.Cell;
@@ -34,6 +35,7 @@ public class DcEventBus {
     private static final int IDX_2ND_START = 2;
     private static final int IDX_2ND_END = 4;
     private Logger logger;
+    private String eventlogPath;
 
     private DcEventBus() {
         this.logger = LoggerFactory.getLogger("com.fujitsu.dc.core.eventbus");
@@ -48,11 +50,8 @@ public class DcEventBus {
         String unitUserName = getUnitUserName(cell.getOwner());
         String prefix1 = cell.getId().substring(IDX_1ST_START, IDX_1ST_END);
         String prefix2 = cell.getId().substring(IDX_2ND_START, IDX_2ND_END);
-        String path = String.format("%s/%s/%s/%s", unitUserName, prefix1, prefix2, cell.getId());
-
-        // MDCにCell名を設定
-        MDC.put("eventlog_path", path);
-
+        // 出力先のパス. ログ出力時にMDCとして設定する
+        this.eventlogPath = String.format("%s/%s/%s/%s", unitUserName, prefix1, prefix2, cell.getId());
     }
 
     /**
@@ -72,16 +71,17 @@ public class DcEventBus {
 
     /**
      * 受け付けたイベントの情報をログファイルへ出力する.
+     * ファイルへの書き込みは {@link EventLogWriter} により非同期で行う.
      * @param event Eventオブジェクト
      */
     public void outputEventLog(Event event) {
 
         if (event.getLevel() == Event.LEVEL.INFO) {
-            logger.info(createLogContent(event));
+            EventLogWriter.append(logger, Level.INFO, createLogContent(event), this.eventlogPath);
         } else if (event.getLevel() == Event.LEVEL.WARN) {
-            logger.warn(createLogContent(event));
+            EventLogWriter.append(logger, Level.WARN, createLogContent(event), this.eventlogPath);
         } else if (event.getLevel() == Event.LEVEL.ERROR) {
-            logger.error(createLogContent(event));
+            EventLogWriter.append(logger, Level.ERROR, createLogContent(event), this.eventlogPath);
         }
     }
 
@@ -90,28 +90,37 @@ public class DcEventBus {
      * @param event Eventオブジェクト
      * @return ログ出力用文字列
      */
-    private String createLogContent(Event event) {
-        return String.format("%s,%s,%s,%s,%s,%s,%s",
-                makeCsvItem(event.getRequestKey()),
-                makeCsvItem(event.getName()),
-                makeCsvItem(event.getSchema()),
-                makeCsvItem(event.getSubject()),
-                makeCsvItem(event.getAction()),
-                makeCsvItem(event.getObject()),
-                makeCsvItem(event.getResult()));
+    String createLogContent(Event event) {
+        StringBuilder sb = new StringBuilder();
+        appendCsvItem(sb, event.getRequestKey()).append(',');
+        appendCsvItem(sb, event.getName()).append(',');
+        appendCsvItem(sb, event.getSchema()).append(',');
+        appendCsvItem(sb, event.getSubject()).append(',');
+        appendCsvItem(sb, event.getAction()).append(',');
+        appendCsvItem(sb, event.getObject()).append(',');
+        appendCsvItem(sb, event.getResult());
+        return sb.toString();
     }
 
     /**
-     * CSVのitemを作成する.
-     * @param item
-     * @return CSV形式に変換した文字列
+     * CSVのitemを追加する. ダブルクォートで囲み、値中のダブルクォートは二重にする.
+     * @param sb 追加先
+     * @param item 値. nullの場合は"null"を追加する
+     * @return 追加先
      */
-    private String makeCsvItem(String item) {
+    private StringBuilder appendCsvItem(StringBuilder sb, String item) {
         if (null == item) {
-            return item;
+            return sb.append(item);
+        }
+        sb.append('"');
+        for (int i = 0; i < item.length(); i++) {
+            char c = item.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
         }
-        String replacedItem = item.replaceAll("\"", "\"\"");
-        return String.format("\"%s\"", replacedItem);
+        return sb.append('"');
     }
 
 }
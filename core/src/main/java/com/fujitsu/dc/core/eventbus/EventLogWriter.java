@@ -0,0 +1,495 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventbus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.sift.SiftingAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * イベントログを専用の書き込みスレッドから出力するクラス.
+ * 呼び出し元スレッドではログイベントを作成して待ち行列に追加するのみとし、ファイルへの書き込みを待たない.
+ * 書き込みスレッドは待ち行列からまとめて取り出したイベントを出力先(MDCのeventlog_path)毎にまとめて出力し、
+ * 出力先のファイルへのフラッシュは出力先毎に1回のみ行う.
+ * 待ち行列はロックを使用しない件数上限付きのリングバッファとし、満杯の場合は設定により、
+ * 呼び出し元スレッドで出力する(sync)か破棄する(drop).
+ * 追加したイベントには通番を振り、{@link #flush(long)} で呼び出し時点までに追加されたイベントの出力を待つことができる.
+ */
+public final class EventLogWriter {
+
+    /**
+     * 待ち行列が満杯の場合に呼び出し元スレッドで出力する.
+     */
+    public static final String OVERFLOW_SYNC = "sync";
+
+    /**
+     * 待ち行列が満杯の場合に破棄する.
+     */
+    public static final String OVERFLOW_DROP = "drop";
+
+    /**
+     * イベントログの出力先を決めるMDCのキー.
+     */
+    public static final String MDC_KEY_EVENTLOG_PATH = "eventlog_path";
+
+    private static final String FQCN = EventLogWriter.class.getName();
+
+    private static final long IDLE_WAIT_MILLIS = 100;
+    private static final long SHUTDOWN_WAIT_MILLIS = 10000;
+    private static final long FLUSH_CHECK_INTERVAL_MILLIS = 1;
+
+    /**
+     * このクラス自身のログがイベントログに出力されないよう、eventbusパッケージ外のロガー名とする.
+     */
+    static Logger log = LoggerFactory.getLogger("com.fujitsu.dc.core.EventLogWriter");
+
+    private static final AtomicLong WRITTEN_COUNT = new AtomicLong();
+    private static final AtomicLong SYNC_COUNT = new AtomicLong();
+    private static final AtomicLong DROP_COUNT = new AtomicLong();
+
+    private static final boolean ASYNC_ENABLED = DcCoreConfig.isEventLogAsyncEnabled();
+    private static final int BATCH_SIZE = Math.max(1, DcCoreConfig.getEventLogAsyncBatchSize());
+    private static final boolean DROP_ON_OVERFLOW = OVERFLOW_DROP.equals(DcCoreConfig.getEventLogAsyncOverflow());
+
+    private static final RingBuffer QUEUE = new RingBuffer(DcCoreConfig.getEventLogAsyncQueueSize());
+
+    private static Thread writerThread;
+    private static volatile boolean stopped = false;
+    /** 書き込みスレッドが待機中の場合はtrue. 追加時に起こす. */
+    private static volatile boolean writerParked = false;
+    /** 出力が完了したイベントの通番(この値未満の通番のイベントは出力済み). */
+    private static volatile long writtenSequence = 0;
+
+    private EventLogWriter() {
+    }
+
+    /**
+     * 待ち行列に保持するログイベント.
+     */
+    private static final class Entry {
+        private final ch.qos.logback.classic.Logger logger;
+        private final LoggingEvent event;
+
+        Entry(ch.qos.logback.classic.Logger logger, LoggingEvent event) {
+            this.logger = logger;
+            this.event = event;
+        }
+
+        String getGroupKey() {
+            String path = this.event.getMDCPropertyMap().get(MDC_KEY_EVENTLOG_PATH);
+            return this.logger.getName() + "/" + path;
+        }
+    }
+
+    /**
+     * 複数のスレッドから追加し、書き込みスレッドのみが取り出す、ロックを使用しない件数上限付きのリングバッファ.
+     * 追加するスレッドは通番をCASで確保してからその位置に格納し、取り出す側は通番順に格納済みの位置まで取り出す.
+     * 容量は指定件数以上の2のべき乗とする.
+     */
+    private static final class RingBuffer {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        /** 次に確保する通番. */
+        private final AtomicLong tail = new AtomicLong();
+        /** 次に取り出す通番. 書き込みスレッドのみが更新する. */
+        private volatile long head = 0;
+
+        RingBuffer(int size) {
+            int capacity = Integer.highestOneBit(Math.max(1, size));
+            if (capacity < size) {
+                capacity <<= 1;
+            }
+            this.slots = new AtomicReferenceArray<Entry>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        boolean offer(Entry entry) {
+            while (true) {
+                long seq = tail.get();
+                if (seq - head > mask) {
+                    return false;
+                }
+                if (tail.compareAndSet(seq, seq + 1)) {
+                    slots.set((int) (seq & mask), entry);
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 通番順に、格納済みのイベントを最大件数まで取り出す. 確保済みで未格納の位置があればそこで止める.
+         */
+        int drainTo(List<Entry> batch, int max) {
+            long seq = head;
+            int count = 0;
+            while (count < max) {
+                int index = (int) (seq & mask);
+                Entry entry = slots.get(index);
+                if (entry == null) {
+                    break;
+                }
+                slots.set(index, null);
+                batch.add(entry);
+                seq++;
+                count++;
+            }
+            head = seq;
+            return count;
+        }
+
+        long claimed() {
+            return tail.get();
+        }
+
+        long consumed() {
+            return head;
+        }
+
+        int size() {
+            return (int) (tail.get() - head);
+        }
+    }
+
+    /**
+     * ログを出力する.
+     * @param logger 出力に使用するロガー
+     * @param level ログレベル
+     * @param message メッセージ
+     * @param eventlogPath イベントログの出力先. ロガーの出力先がMDCにより分かれていない場合はnull
+     */
+    public static void append(Logger logger, Level level, String message, String eventlogPath) {
+        if (!(logger instanceof ch.qos.logback.classic.Logger)) {
+            // logback以外の場合は従来通り同期で出力する
+            appendSlf4j(logger, level, message, eventlogPath);
+            return;
+        }
+        ch.qos.logback.classic.Logger lbLogger = (ch.qos.logback.classic.Logger) logger;
+        if (!lbLogger.isEnabledFor(level)) {
+            return;
+        }
+        // 出力時刻・スレッド名・MDCは呼び出し時点のものを保持する
+        LoggingEvent event = new LoggingEvent(FQCN, lbLogger, level, message, null, null);
+        event.setThreadName(Thread.currentThread().getName());
+        Map<String, String> mdc = new HashMap<String, String>();
+        if (eventlogPath != null) {
+            mdc.put(MDC_KEY_EVENTLOG_PATH, eventlogPath);
+        }
+        event.setMDCPropertyMap(mdc);
+
+        if (!ASYNC_ENABLED || stopped) {
+            write(lbLogger, event);
+            return;
+        }
+        Thread writer = getWriterThread();
+        if (QUEUE.offer(new Entry(lbLogger, event))) {
+            if (writerParked) {
+                LockSupport.unpark(writer);
+            }
+        } else {
+            if (DROP_ON_OVERFLOW) {
+                DROP_COUNT.incrementAndGet();
+            } else {
+                // 呼び出し元スレッドで出力し、流入を抑制する
+                SYNC_COUNT.incrementAndGet();
+                write(lbLogger, event);
+            }
+        }
+    }
+
+    private static void appendSlf4j(Logger logger, Level level, String message, String eventlogPath) {
+        if (eventlogPath != null) {
+            MDC.put(MDC_KEY_EVENTLOG_PATH, eventlogPath);
+        }
+        if (Level.ERROR.equals(level)) {
+            logger.error(message);
+        } else if (Level.WARN.equals(level)) {
+            logger.warn(message);
+        } else {
+            logger.info(message);
+        }
+    }
+
+    private static void write(ch.qos.logback.classic.Logger logger, LoggingEvent event) {
+        try {
+            logger.callAppenders(event);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write event log.", e);
+        }
+    }
+
+    private static synchronized Thread getWriterThread() {
+        if (writerThread == null) {
+            writerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWriter();
+                }
+            }, "dc-eventlog-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+        return writerThread;
+    }
+
+    private static void runWriter() {
+        List<Entry> batch = new ArrayList<Entry>(BATCH_SIZE);
+        while (true) {
+            if (QUEUE.drainTo(batch, BATCH_SIZE) == 0) {
+                if (stopped) {
+                    return;
+                }
+                writerParked = true;
+                // 待機の直前に追加されたイベントを取りこぼさないよう、待機前にもう一度確認する
+                if (QUEUE.size() == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(IDLE_WAIT_MILLIS));
+                }
+                writerParked = false;
+                if (Thread.interrupted()) {
+                    log.warn("Event log writer was interrupted. queue depth: " + QUEUE.size());
+                    return;
+                }
+                continue;
+            }
+            writeBatch(batch);
+            writtenSequence = QUEUE.consumed();
+            batch.clear();
+        }
+    }
+
+    /**
+     * 呼び出し時点までに待ち行列に追加されたイベントの出力が完了するまで待つ.
+     * イベントログのファイルを読み出す前に呼び出し、直前に受け付けたイベントが含まれるようにする.
+     * @param timeoutMillis 最大待ち時間(ms)
+     * @return 出力が完了した場合はtrue
+     */
+    public static boolean flush(long timeoutMillis) {
+        long target = QUEUE.claimed();
+        if (writtenSequence >= target) {
+            return true;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (writtenSequence < target) {
+            Thread writer;
+            synchronized (EventLogWriter.class) {
+                writer = writerThread;
+            }
+            if (writer == null || !writer.isAlive() || System.currentTimeMillis() >= deadline) {
+                log.info("Event log was not flushed. queue depth: " + QUEUE.size());
+                return false;
+            }
+            LockSupport.unpark(writer);
+            try {
+                Thread.sleep(FLUSH_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 出力先毎にまとめて出力する. 出力先毎の出力順は追加順のまま.
+     */
+    private static void writeBatch(List<Entry> batch) {
+        Map<String, List<Entry>> groups = new LinkedHashMap<String, List<Entry>>();
+        for (Entry entry : batch) {
+            String key = entry.getGroupKey();
+            List<Entry> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<Entry>();
+                groups.put(key, group);
+            }
+            group.add(entry);
+        }
+        for (List<Entry> group : groups.values()) {
+            writeGroup(group);
+        }
+        WRITTEN_COUNT.addAndGet(batch.size());
+    }
+
+    /**
+     * 同じ出力先のイベントを出力する. 出力先のファイルへのフラッシュは最後に1回のみ行う.
+     */
+    private static void writeGroup(List<Entry> group) {
+        if (group.size() == 1) {
+            write(group.get(0).logger, group.get(0).event);
+            return;
+        }
+        Entry first = group.get(0);
+        List<OutputStreamAppender<ILoggingEvent>> deferred = new ArrayList<OutputStreamAppender<ILoggingEvent>>();
+        try {
+            deferFlush(first.logger, first.event, deferred);
+        } catch (RuntimeException e) {
+            log.warn("Failed to defer event log flush.", e);
+        }
+        try {
+            for (Entry entry : group) {
+                write(entry.logger, entry.event);
+            }
+        } finally {
+            for (OutputStreamAppender<ILoggingEvent> appender : deferred) {
+                ((LayoutWrappingEncoder<ILoggingEvent>) appender.getEncoder()).setImmediateFlush(true);
+                flush(appender);
+            }
+        }
+    }
+
+    /**
+     * イベントの出力先となるファイルのAppenderについて、イベント毎のフラッシュを止める.
+     * SiftingAppenderの場合は、イベントから決まる出力先毎のAppenderを対象とする.
+     * フラッシュを止めたAppenderはdeferredに追加する.
+     */
+    private static void deferFlush(ch.qos.logback.classic.Logger logger, ILoggingEvent event,
+            List<OutputStreamAppender<ILoggingEvent>> deferred) {
+        ch.qos.logback.classic.Logger current = logger;
+        while (current != null) {
+            Iterator<Appender<ILoggingEvent>> it = current.iteratorForAppenders();
+            while (it.hasNext()) {
+                deferAppenderFlush(it.next(), event, deferred);
+            }
+            if (!current.isAdditive()) {
+                break;
+            }
+            current = getParent(current);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void deferAppenderFlush(Appender<ILoggingEvent> appender, ILoggingEvent event,
+            List<OutputStreamAppender<ILoggingEvent>> deferred) {
+        Appender<ILoggingEvent> target = appender;
+        if (appender instanceof SiftingAppender) {
+            SiftingAppender sift = (SiftingAppender) appender;
+            if (!sift.isStarted()) {
+                return;
+            }
+            // 出力時と同様に、出力先のAppenderが無い場合は作成する
+            String value = sift.getDiscriminator().getDiscriminatingValue(event);
+            target = sift.getAppenderTracker().getOrCreate(value, event.getTimeStamp());
+        }
+        if (!(target instanceof OutputStreamAppender)) {
+            return;
+        }
+        OutputStreamAppender<ILoggingEvent> osa = (OutputStreamAppender<ILoggingEvent>) target;
+        Encoder<ILoggingEvent> encoder = osa.getEncoder();
+        if (encoder instanceof LayoutWrappingEncoder
+                && ((LayoutWrappingEncoder<ILoggingEvent>) encoder).isImmediateFlush()) {
+            ((LayoutWrappingEncoder<ILoggingEvent>) encoder).setImmediateFlush(false);
+            deferred.add(osa);
+        }
+    }
+
+    private static ch.qos.logback.classic.Logger getParent(ch.qos.logback.classic.Logger logger) {
+        String name = logger.getName();
+        if (Logger.ROOT_LOGGER_NAME.equals(name)) {
+            return null;
+        }
+        LoggerContext context = logger.getLoggerContext();
+        int idx = name.lastIndexOf('.');
+        while (idx > 0) {
+            name = name.substring(0, idx);
+            ch.qos.logback.classic.Logger parent = context.exists(name);
+            if (parent != null) {
+                return parent;
+            }
+            idx = name.lastIndexOf('.');
+        }
+        return context.getLogger(Logger.ROOT_LOGGER_NAME);
+    }
+
+    private static void flush(OutputStreamAppender<ILoggingEvent> appender) {
+        OutputStream os = appender.getOutputStream();
+        if (os == null) {
+            return;
+        }
+        try {
+            os.flush();
+        } catch (IOException e) {
+            log.warn("Failed to flush event log.", e);
+        }
+    }
+
+    /**
+     * 待ち行列に残っているイベントを出力して書き込みスレッドを停止する. 以降のイベントは呼び出し元スレッドで出力する.
+     */
+    public static void shutdown() {
+        stopped = true;
+        Thread writer;
+        synchronized (EventLogWriter.class) {
+            writer = writerThread;
+        }
+        if (writer == null) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Event log writer did not stop. queue depth: " + QUEUE.size());
+            return;
+        }
+        // 停止と同時に追加されたイベントを出力する
+        List<Entry> rest = new ArrayList<Entry>();
+        QUEUE.drainTo(rest, Integer.MAX_VALUE);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+        writtenSequence = QUEUE.consumed();
+    }
+
+    /**
+     * 非同期出力の状況を返す.
+     * @return 待ち行列のイベント数、書き込みスレッドでの出力数、呼び出し元スレッドでの出力数、破棄数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("queueDepth", QUEUE.size());
+        stats.put("written", WRITTEN_COUNT.get());
+        stats.put("syncWritten", SYNC_COUNT.get());
+        stats.put("dropped", DROP_COUNT.get());
+        return stats;
+    }
+}
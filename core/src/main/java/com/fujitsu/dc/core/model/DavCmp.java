@@ -156,6 +156,12 @@ public interface DavCmp {
      */
     Map<String, DavCmp> getChildren();
 
+    /**
+     * 子供パスの部品名の一覧を返す. 子供パスの部品自体は生成しないため、一覧を順次処理する場合に使用する.
+     * @return 子供パスの部品名の一覧
+     */
+    List<String> getChildNames();
+
     /**
      * 親パスを担当する部品を返す.
      * @return 親パスを担当する部品
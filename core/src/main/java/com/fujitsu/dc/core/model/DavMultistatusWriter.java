@@ -0,0 +1,105 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.codec.CharEncoding;
+import org.apache.wink.webdav.model.Response;
+import org.apache.wink.webdav.model.WebDAVModelHelper;
+
+/**
+ * PROPFINDの multistatus を response要素毎に順次出力するクラス.
+ * Multistatus全体をメモリ上に組み立てずに出力するため、子要素数に関わらず使用メモリは一定となる.
+ */
+final class DavMultistatusWriter {
+
+    private static final String DAV_NAMESPACE = "DAV:";
+    private static final String MULTISTATUS = "multistatus";
+
+    /**
+     * response要素をこの件数出力する毎に出力ストリームをフラッシュする.
+     */
+    private static final int FLUSH_INTERVAL = 100;
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final XMLStreamWriter writer;
+    private final Marshaller marshaller;
+    private int count = 0;
+
+    /**
+     * コンストラクタ. multistatusの開始タグまでを出力する.
+     * @param os 出力先
+     * @throws IOException 出力に失敗した場合
+     */
+    DavMultistatusWriter(OutputStream os) throws IOException {
+        try {
+            this.marshaller = WebDAVModelHelper.createMarshaller();
+            this.marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+            this.writer = OUTPUT_FACTORY.createXMLStreamWriter(os, CharEncoding.UTF_8);
+            this.writer.writeStartDocument(CharEncoding.UTF_8, "1.0");
+            this.writer.setDefaultNamespace(DAV_NAMESPACE);
+            this.writer.writeStartElement(DAV_NAMESPACE, MULTISTATUS);
+            this.writer.writeDefaultNamespace(DAV_NAMESPACE);
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * response要素を1件出力する.
+     * @param response response要素
+     * @throws IOException 出力に失敗した場合
+     */
+    void write(Response response) throws IOException {
+        try {
+            this.marshaller.marshal(response, this.writer);
+            if (++this.count % FLUSH_INTERVAL == 0) {
+                this.writer.flush();
+            }
+        } catch (JAXBException e) {
+            throw new IOException(e);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * multistatusの終了タグを出力する. 出力先のストリームは閉じない.
+     * @throws IOException 出力に失敗した場合
+     */
+    void close() throws IOException {
+        try {
+            this.writer.writeEndElement();
+            this.writer.writeEndDocument();
+            this.writer.flush();
+            this.writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -291,24 +291,37 @@ public class DavRsCmp {
         }
 
         // 実際の処理
-        final Multistatus ms = this.of.createMultistatus();
-        List<org.apache.wink.webdav.model.Response> resList = ms.getResponse();
-        resList.add(createDavResponse(pathName, reqUri, this.davCmp, propfind, canAclRead));
+        // 自身のresponseは出力前に作成し、エラーの場合は通常のエラーレスポンスとする
+        final org.apache.wink.webdav.model.Response self =
+                createDavResponse(pathName, reqUri, this.davCmp, propfind, canAclRead);
 
         // if Depth is not 0, then process children.
+        // 子要素は名前の一覧だけを取得し、出力時に1件ずつ生成して書き出す
+        final List<String> childNames;
         if (!"0".equals(depth)) {
-            Map<String, DavCmp> childrenMap = this.davCmp.getChildren();
-            for (String childName : childrenMap.keySet()) {
-                DavCmp child = childrenMap.get(childName);
-                resList.add(createDavResponse(childName, reqUri + "/" + childName, child, propfind, canAclRead));
-            }
+            childNames = this.davCmp.getChildNames();
+        } else {
+            childNames = new ArrayList<String>();
         }
+        final String parentUri = reqUri;
+        final Propfind pf = propfind;
+        final boolean isAclRead = canAclRead;
 
         // 処理結果を出力
         StreamingOutput str = new StreamingOutput() {
             @Override
             public void write(final OutputStream os) throws IOException {
-                Multistatus.marshal(ms, os);
+                DavMultistatusWriter writer = new DavMultistatusWriter(os);
+                writer.write(self);
+                for (String childName : childNames) {
+                    DavCmp child = davCmp.getChild(childName);
+                    if (!child.exists()) {
+                        // 一覧取得後に削除された子要素は出力しない
+                        continue;
+                    }
+                    writer.write(createDavResponse(childName, parentUri + "/" + childName, child, pf, isAclRead));
+                }
+                writer.close();
             }
         };
         return Response.status(HttpStatus.SC_MULTI_STATUS)
@@ -16,14 +16,14 @@
  */
 package com.fujitsu.dc.core.model.file;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
@@ -33,6 +33,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.DcCoreLog;
 
 /**
  * Davファイルの内容を Responseに返却する際に利用する StreamingOutputクラス. 内部的には、読み込み専用にハードリンクを作成し、出力完了後に削除する。
@@ -51,15 +53,20 @@ public class StreamingOutputForDavFile implements StreamingOutput {
      */
     private static long retryInterval = DcCoreConfig.getDavFileOperationRetryInterval();
 
+    /**
+     * 出力時に使用する読み込みバッファのサイズ.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * 読み込み用のハードリンクのパス.
      */
     Path hardLinkPath = null;
 
     /**
-     * 読み込み用のハードリンクからの入力ストリーム.
+     * 読み込み用のハードリンクのFileChannel.
      */
-    InputStream hardLinkInput = null;
+    FileChannel hardLinkChannel = null;
 
     /**
      * コンストラクタ.
@@ -80,8 +87,8 @@ public class StreamingOutputForDavFile implements StreamingOutput {
                     // ハードリンクを作成.
                     hardLinkPath = Files.createLink(Paths.get(hardLinkName), Paths.get(fileFullPath));
                 }
-                // ハードリンクからの入力ストリームを取得
-                hardLinkInput = new BufferedInputStream(new FileInputStream(hardLinkPath.toFile()));
+                // ハードリンクのFileChannelを取得
+                hardLinkChannel = FileChannel.open(hardLinkPath, StandardOpenOption.READ);
                 // 成功したら終了
                 return;
             } catch (IOException e) {
@@ -100,16 +107,59 @@ public class StreamingOutputForDavFile implements StreamingOutput {
 
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
-        if (null == hardLinkInput) {
+        if (null == hardLinkChannel) {
             throw new WebApplicationException(new BinaryDataNotFoundException(hardLinkPath.toString()));
         }
         try {
-            IOUtils.copy(hardLinkInput, output);
+            // ファイル全体を出力する
+            transfer(0, hardLinkChannel.size(), output);
         } finally {
-            IOUtils.closeQuietly(hardLinkInput);
-            // 後始末。自分用の読み込みハードリンクを削除する。
-            Files.delete(hardLinkPath);
+            close();
         }
     }
 
+    /**
+     * ハードリンクの指定位置から指定バイト数を出力先へ転送する.
+     * 出力先はサーブレットの出力ストリームでありチャネルではないため、transferToは8KB毎のコピーとなり遅い.
+     * そのため位置指定の読み込みでバッファに読み込んで出力する.
+     * @param position 転送開始位置
+     * @param count 転送バイト数
+     * @param output 出力先
+     * @throws IOException 入出力エラー
+     */
+    void transfer(long position, long count, OutputStream output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(count, 1)));
+        long pos = position;
+        long remaining = count;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int transferred = hardLinkChannel.read(buffer, pos);
+            if (transferred > 0) {
+                output.write(buffer.array(), 0, transferred);
+            }
+            if (transferred <= 0) {
+                // ファイルが想定より短い
+                DcCoreLog.Dav.FILE_TOO_SHORT
+                        .params("too short.size", hardLinkChannel.size(), position + "-" + (position + count - 1))
+                        .writeLog();
+                throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND;
+            }
+            pos += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    /**
+     * FileChannelを閉じ、自分用の読み込みハードリンクを削除する.
+     * @throws IOException ハードリンクの削除に失敗した場合
+     */
+    void close() throws IOException {
+        IOUtils.closeQuietly(hardLinkChannel);
+        // 後始末。自分用の読み込みハードリンクを削除する。
+        Files.delete(hardLinkPath);
+    }
+
 }
@@ -18,72 +18,121 @@ package com.fujitsu.dc.core.model.file;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.util.List;
 
 import javax.ws.rs.WebApplicationException;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.Charsets;
 
-import com.fujitsu.dc.core.DcCoreException;
-import com.fujitsu.dc.core.DcCoreLog;
+import com.fujitsu.dc.common.es.util.DcUUID;
 import com.fujitsu.dc.core.http.header.ByteRangeSpec;
 import com.fujitsu.dc.core.http.header.RangeHeaderHandler;
 
 /**
  * Davファイルの内容を Responseに返却する際に利用する StreamingOutputクラス. 内部的には、読み込み専用にハードリンクを作成し、出力完了後に削除する。
+ * byte-range-specが複数指定された場合は multipart/byteranges 形式で返却する.
  */
 public class StreamingOutputForDavFileWithRange extends StreamingOutputForDavFile {
 
+    /**
+     * multipart/byteranges のメディアタイプ.
+     */
+    public static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+
+    private static final String CRLF = "\r\n";
+
     private RangeHeaderHandler range = null;
-    private long fileSize = 0;
+    private String contentType = null;
+    private String boundary = null;
 
     /**
      * コンストラクタ.
      * @param fileFullPath 読み込むファイルのフルパス
-     * @param fileSize 読み込むファイルのサイズ
      * @param range RangeHeader
+     * @param contentType ファイルのコンテントタイプ(multipart/byterangesの各パートに使用する)
      * @throws BinaryDataNotFoundException ファイルが存在しない場合.
      */
     public StreamingOutputForDavFileWithRange(final String fileFullPath,
-            final long fileSize,
-            final RangeHeaderHandler range) throws BinaryDataNotFoundException {
+            final RangeHeaderHandler range,
+            final String contentType) throws BinaryDataNotFoundException {
         super(fileFullPath);
         this.range = range;
-        this.fileSize = fileSize;
+        this.contentType = contentType;
+        this.boundary = DcUUID.randomUUID();
+    }
+
+    /**
+     * multipart/byteranges 形式で返却するか否か.
+     * @return byte-range-specが複数指定されている場合はtrue
+     */
+    public boolean isMultipart() {
+        return range.getByteRangeSpecCount() > 1;
+    }
+
+    /**
+     * レスポンスのContent-Typeを返す.
+     * @return multipart/byteranges の場合はバウンダリ付きのメディアタイプ、それ以外はファイルのコンテントタイプ
+     */
+    public String getContentType() {
+        if (isMultipart()) {
+            return MULTIPART_BYTERANGES + "; boundary=" + boundary;
+        }
+        return contentType;
+    }
+
+    /**
+     * レスポンスのContent-Lengthを返す.
+     * @return 出力するバイト数
+     */
+    public long getContentLength() {
+        List<ByteRangeSpec> brss = range.getByteRangeSpecList();
+        if (!isMultipart()) {
+            return brss.get(0).getContentLength();
+        }
+        long length = 0;
+        for (ByteRangeSpec brs : brss) {
+            length += partHeader(brs).length + brs.getContentLength();
+        }
+        return length + closeDelimiter().length;
     }
 
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
         try {
-            // MultiPartには対応しないため1個目のbyte-renge-setだけ処理する。
-            int rangeIndex = 0;
             List<ByteRangeSpec> brss = range.getByteRangeSpecList();
-            final ByteRangeSpec brs = brss.get(rangeIndex);
-
-            int chr;
-            long first = brs.getFirstBytePos();
-            long last = brs.getLastBytePos();
-            // Rangeの先頭まで読み飛ばし
-            if (hardLinkInput.skip(first) != first) {
-                DcCoreLog.Dav.FILE_TOO_SHORT
-                        .params("skip failed", fileSize, range.getRangeHeaderField()).writeLog();
-                throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND;
+            if (!isMultipart()) {
+                ByteRangeSpec brs = brss.get(0);
+                transfer(brs.getFirstBytePos(), brs.getContentLength(), output);
+                return;
             }
-            // Rangeの終端まで返却
-            for (long pos = first; pos < last + 1; pos++) {
-                chr = hardLinkInput.read();
-                if (chr == -1) {
-                    DcCoreLog.Dav.FILE_TOO_SHORT
-                            .params("too short.size", fileSize, range.getRangeHeaderField()).writeLog();
-                    throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND;
-                }
-                output.write((char) chr);
+            // byte-range-spec毎にパートヘッダと指定範囲を出力する
+            for (ByteRangeSpec brs : brss) {
+                output.write(partHeader(brs));
+                transfer(brs.getFirstBytePos(), brs.getContentLength(), output);
             }
+            output.write(closeDelimiter());
         } finally {
-            IOUtils.closeQuietly(hardLinkInput);
-            Files.delete(hardLinkPath);
+            close();
         }
     }
 
+    /**
+     * multipart/byteranges の各パートのヘッダ部を作成する.
+     * @param brs ByteRangeSpec
+     * @return パートのヘッダ部
+     */
+    private byte[] partHeader(ByteRangeSpec brs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CRLF).append("--").append(boundary).append(CRLF);
+        if (contentType != null) {
+            sb.append("Content-Type: ").append(contentType).append(CRLF);
+        }
+        sb.append("Content-Range: ").append(brs.makeContentRangeHeaderField()).append(CRLF);
+        sb.append(CRLF);
+        return sb.toString().getBytes(Charsets.UTF_8);
+    }
+
+    private byte[] closeDelimiter() {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(Charsets.UTF_8);
+    }
 }
@@ -77,6 +77,7 @@ import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
 import com.fujitsu.dc.core.model.impl.es.cache.BoxCache;
 import com.fujitsu.dc.core.model.impl.es.cache.CellCache;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleListCache;
 import com.fujitsu.dc.core.model.impl.es.doc.CellDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
 import com.fujitsu.dc.core.model.impl.es.odata.CellCtlODataProducer;
@@ -366,9 +367,21 @@ public final class CellEsImpl implements Cell {
         return false;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<Role> getRoleListForAccount(final String username) {
+        String key = "account\t" + username;
+        List<Role> cached = RoleListCache.get(this.getId(), key);
+        if (cached != null) {
+            return cached;
+        }
+        Object stamp = RoleListCache.currentStamp(this.getId());
+        List<Role> ret = this.searchRoleListForAccount(username);
+        RoleListCache.cache(this.getId(), key, stamp, ret);
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Role> searchRoleListForAccount(final String username) {
         // Accountを取得
         EntitySetAccessor accountType = EsModel.cellCtl(this, Account.EDM_TYPE_NAME);
 
@@ -457,6 +470,12 @@ public final class CellEsImpl implements Cell {
 
     @Override
     public List<Role> getRoleListHere(final IExtRoleContainingToken token) {
+        String key = extRoleCacheKey(token);
+        List<Role> cached = RoleListCache.get(this.getId(), key);
+        if (cached != null) {
+            return cached;
+        }
+        Object stamp = RoleListCache.currentStamp(this.getId());
         List<Role> ret = new ArrayList<Role>();
 
         // ExtCellとRoleの結びつけ設定から払い出すRoleをリストアップ
@@ -467,9 +486,26 @@ public final class CellEsImpl implements Cell {
         // ExtCellとRelationとExtRoleとRoleの結びつけから払い出すRoleをリストアップ
         this.addRoleListExtCelltoRelationAndExtRole(token, ret);
 
+        RoleListCache.cache(this.getId(), key, stamp, ret);
         return ret;
     }
 
+    /**
+     * 払い出すロールはExtCellのURL、アクセス主体及び他人セルで発行されたロールで決まるため、それらからキーを生成する.
+     */
+    private static String extRoleCacheKey(final IExtRoleContainingToken token) {
+        StringBuilder key = new StringBuilder("ext\t");
+        key.append(token.getExtCellUrl()).append('\t').append(token.getSubject());
+        List<Role> roles = token.getRoleList();
+        if (roles != null) {
+            for (Role role : roles) {
+                key.append('\t').append(role.getBaseUrl()).append(' ').append(role.getBoxSchema())
+                        .append(' ').append(role.getBoxName()).append(' ').append(role.getName());
+            }
+        }
+        return key.toString();
+    }
+
     /**
      * ExtCellとRoleの突き合わせを行い払い出すRoleを決める.
      * @param token
@@ -88,6 +88,7 @@ import com.fujitsu.dc.core.model.file.StreamingOutputForDavFileWithRange;
 import com.fujitsu.dc.core.model.impl.es.accessor.DavMoveAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.DavNodeAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
+import com.fujitsu.dc.core.model.impl.es.cache.AclCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EsDocHandler;
 import com.fujitsu.dc.core.model.impl.es.odata.UserSchemaODataProducer;
 import com.fujitsu.dc.core.model.jaxb.Acl;
@@ -307,6 +308,36 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         }
     }
 
+    /**
+     * ロールIDをロールリソースURLに変換したACLを返す.
+     * 変換はES検索が何度も走る重い処理であるため、変換とコンパイルを済ませたACLをノードのバージョン毎にキャッシュする.
+     * @param aclObj ESに格納されたACL
+     * @return ACL
+     */
+    private Acl translateAcl(JSONObject aclObj) {
+        // base:xml値の設定
+        String baseUrlStr = createBaseUrlStr();
+        String cacheKey = null;
+        Object stamp = null;
+        if (this.version != null && this.cell != null) {
+            cacheKey = this.nodeId + "\t" + this.version + "\t" + baseUrlStr;
+            Acl cached = AclCache.get(this.cell.getId(), cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            stamp = AclCache.currentStamp(this.cell.getId());
+        }
+        // principalのhref の値を ロールID（__id）からロールリソースURLに変換する。
+        roleIdToName(aclObj.get(KEY_ACE), baseUrlStr);
+
+        Acl ret = Acl.fromJson(aclObj.toJSONString());
+        ret.setBase(baseUrlStr);
+        if (cacheKey != null) {
+            AclCache.cache(this.cell.getId(), cacheKey, stamp, ret);
+        }
+        return ret;
+    }
+
     /**
      * JSONオブジェクトを解析し、ACLなどのメタデータをセットする.
      * @param source 解析対象のJSONオブジェクト
@@ -316,16 +347,10 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         JSONObject aclObj = (JSONObject) source.get(DavNode.KEY_ACL);
         if (aclObj != null) {
             log.debug(aclObj.toJSONString());
-            // principalのhref の値を ロールID（__id）からロールリソースURLに変換する。
-            // base:xml値の設定
-            String baseUrlStr = createBaseUrlStr();
-            roleIdToName(aclObj.get(KEY_ACE), baseUrlStr);
-
             // ConfidentialLevelの取り出し
             this.confidentialLevel = (String) aclObj.get(KEY_REQUIRE_SCHEMA_AUTHZ);
 
-            this.acl = Acl.fromJson(aclObj.toJSONString());
-            this.acl.setBase(baseUrlStr);
+            this.acl = translateAcl(aclObj);
             log.debug(this.acl.toJSON());
         }
 
@@ -808,13 +833,10 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
                     throw DcCoreException.Dav.REQUESTED_RANGE_NOT_SATISFIABLE;
                 }
 
-                if (range.getByteRangeSpecCount() > 1) {
-                    // MultiPartレスポンスには未対応
-                    throw DcCoreException.Misc.NOT_IMPLEMENTED.params("Range-MultiPart");
-                } else {
-                    StreamingOutput sout = new StreamingOutputForDavFileWithRange(fileFullPath, fileSize, range);
-                    res = davFileResponseForRange(sout, fileSize, contentType, range);
-                }
+                // byte-range-specが複数の場合は multipart/byteranges で返却する
+                StreamingOutputForDavFileWithRange sout =
+                        new StreamingOutputForDavFileWithRange(fileFullPath, range, contentType);
+                res = davFileResponseForRange(sout, range);
             }
             return res.header(HttpHeaders.ETAG, this.getEtag())
                     .header(DcCoreUtils.HttpHeaders.ACCEPT_RANGES, RangeHeaderHandler.BYTES_UNIT);
@@ -843,24 +865,21 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
     /**
      * ファイルレスポンス処理.
      * @param sout StreamingOuputオブジェクト
-     * @param fileSize ファイルサイズ
-     * @param contentType コンテントタイプ
      * @param range RangeHeaderHandler
      * @return レスポンス
      */
     public ResponseBuilder davFileResponseForRange(
-            final StreamingOutput sout,
-            long fileSize, String contentType, final RangeHeaderHandler range) {
-        // MultiPartには対応しないため1個目のbyte-renge-setだけ処理する。
-        int rangeIndex = 0;
-        List<ByteRangeSpec> brss = range.getByteRangeSpecList();
-        final ByteRangeSpec brs = brss.get(rangeIndex);
-
+            final StreamingOutputForDavFileWithRange sout, final RangeHeaderHandler range) {
         // iPadのsafariにおいてChunkedのRangeレスポンスを処理できなかったので明にContent-Lengthを返却している。
-        return javax.ws.rs.core.Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
-                .header(DcCoreUtils.HttpHeaders.CONTENT_RANGE, brs.makeContentRangeHeaderField())
-                .header(HttpHeaders.CONTENT_LENGTH, brs.getContentLength())
-                .header(HttpHeaders.CONTENT_TYPE, contentType);
+        ResponseBuilder res = javax.ws.rs.core.Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
+                .header(HttpHeaders.CONTENT_LENGTH, sout.getContentLength())
+                .header(HttpHeaders.CONTENT_TYPE, sout.getContentType());
+        if (!sout.isMultipart()) {
+            // multipart/byteranges の場合は各パートにContent-Rangeを付与する
+            List<ByteRangeSpec> brss = range.getByteRangeSpecList();
+            res.header(DcCoreUtils.HttpHeaders.CONTENT_RANGE, brss.get(0).makeContentRangeHeaderField());
+        }
+        return res;
     }
 
     @Override
@@ -1195,6 +1214,11 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         return ret;
     }
 
+    @Override
+    public List<String> getChildNames() {
+        return new ArrayList<String>(this.davNode.getChildren().keySet());
+    }
+
     private String roleResourceUrlToId(String roleUrl, String baseUrl) {
         EntitySetAccessor roleType = EsModel.cellCtl(this.cell, Role.EDM_TYPE_NAME);
 
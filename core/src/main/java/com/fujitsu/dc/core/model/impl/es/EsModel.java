@@ -92,6 +92,7 @@ public class EsModel {
         });
 
         esClient = new EsClient(DcCoreConfig.getEsClusterName(), DcCoreConfig.getEsHosts());
+        esClient.setRefreshCoalesceWindow(DcCoreConfig.getEsRefreshCoalesceWindow());
     }
 
     private EsModel() {
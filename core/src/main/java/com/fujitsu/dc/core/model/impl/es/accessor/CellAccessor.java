@@ -34,6 +34,7 @@ import com.fujitsu.dc.core.model.DavCmp;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.QueryMapFactory;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
@@ -158,6 +159,16 @@ public class CellAccessor extends AbstractEntitySetAccessor {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
             String unitUserName = docHandler.getUnitUserName();
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    docHandler.getUnitUserName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.CREATE_CELL, unitUserName, docHandler, loginfo)) {
+                return;
+            }
             try {
                 getAds().createCell(unitUserName, docHandler);
             } catch (AdsException e) {
@@ -172,24 +183,12 @@ public class CellAccessor extends AbstractEntitySetAccessor {
                         DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e1.getMessage()).reason(e1).writeLog();
 
                         // Adsの登録に失敗した場合は、専用のログに書込む
-                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                                docHandler.getCellId(), null, null);
-                        AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                                docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                                docHandler.getCellId(), docHandler.getId(),
-                                AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
                         recordAdsWriteFailureLog(loginfo);
                     }
                 } else {
                     DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                     // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, null);
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
@@ -205,18 +204,22 @@ public class CellAccessor extends AbstractEntitySetAccessor {
     protected void updateAds(EntitySetDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを更新する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    docHandler.getUnitUserName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.UPDATE, version, docHandler.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.UPDATE_CELL, docHandler.getUnitUserName(), docHandler, loginfo)) {
+                return;
+            }
             try {
                 getAds().updateCell(docHandler.getUnitUserName(), docHandler);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.UPDATE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -234,18 +237,22 @@ public class CellAccessor extends AbstractEntitySetAccessor {
 
         // 削除に成功した場合、マスタデータを削除する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    docHandler.getUnitUserName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.DELETE, version, docHandler.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.DELETE_CELL, unitUserName, id, loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteCell(unitUserName, id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        docHandler.getUnitUserName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.DELETE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,7 @@ import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
 import com.fujitsu.dc.common.es.EsBulkRequest;
 import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
 import com.fujitsu.dc.common.es.EsType;
 import com.fujitsu.dc.common.es.query.DcQueryBuilder;
 import com.fujitsu.dc.common.es.response.DcActionResponse;
@@ -46,6 +48,8 @@ import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsConnectionException;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteQueue;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
@@ -70,6 +74,7 @@ public class DataSourceAccessor {
      */
     public DataSourceAccessor(EsIndex index) {
         this.index = index;
+        this.index.setRefreshPolicy(EsRefreshPolicy.fromString(DcCoreConfig.getEsRefreshBulkPolicy()));
         try {
             if (DcCoreConfig.getEsAdsType().equals(DcCoreConfig.ES.ADS.TYPE_JDBC)) {
                 ads = new JdbcAds();
@@ -94,6 +99,8 @@ public class DataSourceAccessor {
         int times = Integer.valueOf(DcCoreConfig.getESRetryTimes());
         int interval = Integer.valueOf(DcCoreConfig.getESRetryInterval());
         this.type = EsModel.type(index.getName(), name, routingId, times, interval);
+        this.type.setRefreshPolicy(EsRefreshPolicy.fromString(DcCoreConfig.getEsRefreshPolicy()));
+        this.index.setRefreshPolicy(EsRefreshPolicy.fromString(DcCoreConfig.getEsRefreshBulkPolicy()));
         this.routingid = routingId;
         try {
             if (DcCoreConfig.getEsAdsType().equals(DcCoreConfig.ES.ADS.TYPE_JDBC)) {
@@ -124,6 +131,18 @@ public class DataSourceAccessor {
         this.ads = ads;
     }
 
+    /**
+     * 本アクセサで行う登録/更新/削除時のrefresh方針を設定する.
+     * 省略時は設定ファイルの値(単一ドキュメント操作はes.refresh.policy、バルク操作はes.refresh.bulkPolicy)に従う.
+     * @param refreshPolicy refresh方針
+     */
+    public void setRefreshPolicy(EsRefreshPolicy refreshPolicy) {
+        if (this.type != null) {
+            this.type.setRefreshPolicy(refreshPolicy);
+        }
+        this.index.setRefreshPolicy(refreshPolicy);
+    }
+
     /**
      * Indexのゲッター.
      * @return EsIndex
@@ -319,6 +338,43 @@ public class DataSourceAccessor {
         }
     }
 
+    /**
+     * ソート順を保持したスクロールサーチを開始する.
+     * 本メソッド使用時には1回あたりの取得件数(size)をクエリに指定して呼び出すこと
+     * @param query クエリ情報
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return ES応答
+     */
+    public DcSearchResponse scrollSearch(final Map<String, Object> query, final long keepAliveMillis) {
+        try {
+            return this.type.scrollSearch(query, keepAliveMillis);
+        } catch (EsClientException.EsNoResponseException e) {
+            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        }
+    }
+
+    /**
+     * スクロールサーチを継続する.
+     * @param scrollId スクロールID
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return ES応答
+     */
+    public DcSearchResponse scrollSearch(final String scrollId, final long keepAliveMillis) {
+        return this.type.scrollSearch(scrollId, keepAliveMillis);
+    }
+
+    /**
+     * スクロールを解放する. 解放に失敗した場合も保持時間の経過後にElasticsearch側で破棄される.
+     * @param scrollId スクロールID
+     */
+    public void clearScroll(final String scrollId) {
+        try {
+            this.type.clearScroll(scrollId);
+        } catch (RuntimeException e) {
+            log.info("Failed to clear scroll. " + e.getMessage());
+        }
+    }
+
     /**
      * ドキュメントをマルチ検索.
      * 本メソッド時使用時には取得件数(size)をクエリに指定して呼び出すこと
@@ -395,6 +451,23 @@ public class DataSourceAccessor {
             throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
         }
         if (this.ads != null) {
+            if (AdsWriteQueue.isEnabled()) {
+                // 非同期書込みが有効な場合はまとめてキューに登録し、ワーカーがまとめて書き込む
+                // キューに登録できなかったものはADS書込み失敗ログに出力し、リペア処理で補正する
+                List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>(adsBulkRequest.size());
+                for (EntitySetDocHandler docHandler : adsBulkRequest) {
+                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                            docHandler.getCellId(), null, docHandler.getNodeId());
+                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                            this.getIndex().getName(), docHandler.getType(), lockKey,
+                            docHandler.getCellId(), docHandler.getId(),
+                            AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
+                    requests.add(new AdsWriteRequest(AdsWriteRequest.Kind.CREATE_ENTITY, this.index.getName(),
+                            docHandler, loginfo));
+                }
+                enqueueAdsAll(requests);
+                return response;
+            }
             try {
                 this.ads.bulkEntity(this.index.getName(), adsBulkRequest);
             } catch (AdsException e) {
@@ -438,6 +511,10 @@ public class DataSourceAccessor {
             throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
         }
         if (this.ads != null) {
+            if (AdsWriteQueue.isEnabled()) {
+                enqueueBulkUpdateLink(esBulkRequest, response, adsBulkEntityRequest, adsBulkLinkRequest);
+                return response;
+            }
             try {
                 // Entityテーブル更新
                 if (adsBulkEntityRequest.size() > 0) {
@@ -507,6 +584,8 @@ public class DataSourceAccessor {
      * @throws AdsException 削除に失敗
      */
     protected void cellBulkDeletionAds(String cellId, String unitUserName) throws AdsException {
+        // キューに登録済みの書込みが削除後に反映されないよう、先に書込みを終わらせる
+        AdsWriteQueue.flush();
         this.ads.deleteCellResourceFromEntity(unitUserName, cellId);
         this.ads.deleteCellResourceFromDavNode(unitUserName, cellId);
         this.ads.deleteCellResourceFromLink(unitUserName, cellId);
@@ -593,6 +672,84 @@ public class DataSourceAccessor {
         }
     }
 
+    /**
+     * ADSへの非同期書込みが有効な場合、書込みをキューに登録する.
+     * @param kind 書込みの種別
+     * @param indexName 書込み先インデックス名
+     * @param record 書込みデータ。削除の場合はドキュメントのID
+     * @param loginfo 書込み失敗時のリペア用のエラー情報
+     * @return キューに登録した場合はtrue。falseの場合は呼び出し側で同期的に書き込む
+     */
+    protected boolean enqueueAds(AdsWriteRequest.Kind kind, String indexName, Object record,
+            AdsWriteFailureLogInfo loginfo) {
+        if (!AdsWriteQueue.isEnabled()) {
+            return false;
+        }
+        return AdsWriteQueue.enqueue(new AdsWriteRequest(kind, indexName, record, loginfo));
+    }
+
+    /**
+     * 複数のADS書込みをまとめてキューに登録する. ジャーナルへの同期はワーカー毎に1回で済む.
+     * キューに登録できなかったものはADS書込み失敗ログに出力し、リペア処理で補正する.
+     * @param requests 書込み要求
+     */
+    protected void enqueueAdsAll(List<AdsWriteRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        for (AdsWriteRequest request : AdsWriteQueue.enqueueAll(requests)) {
+            recordAdsWriteFailureLog(request.getLogInfo());
+        }
+    }
+
+    /**
+     * bulkUpdateLinkのADS書込みをキューに登録する.
+     * キューに登録できなかったものはADS書込み失敗ログに出力し、リペア処理で補正する.
+     * @param esBulkRequest ES用バルク登録ドキュメントリスト
+     * @param response Elasticsearchのバルクレスポンス(バージョン取得用)
+     * @param adsBulkEntityRequest ADS用バルク更新ドキュメントリスト(Entity)
+     * @param adsBulkLinkRequest ADS用バルク登録ドキュメントリスト(Link)
+     */
+    private void enqueueBulkUpdateLink(List<EsBulkRequest> esBulkRequest,
+            DcBulkResponse response,
+            List<EntitySetDocHandler> adsBulkEntityRequest,
+            List<LinkDocHandler> adsBulkLinkRequest) {
+        // ESでのバージョン情報を取得するためにesBulkRequestをループさせている
+        DcBulkItemResponse[] responseItems = response.items();
+        int responseIndex = 0;
+        int adsBulkEntityRequestIndex = 0;
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>(
+                adsBulkEntityRequest.size() + adsBulkLinkRequest.size());
+        for (EsBulkRequest request : esBulkRequest) {
+            if (request.getType().equals(EsModel.TYPE_CTL_LINK)) {
+                responseIndex++;
+                continue;
+            }
+            DcBulkItemResponse itemResponse = responseItems[responseIndex++];
+            EntitySetDocHandler docHandler = adsBulkEntityRequest.get(adsBulkEntityRequestIndex++);
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.UPDATE, itemResponse.version(),
+                    docHandler.getUpdated());
+            requests.add(new AdsWriteRequest(AdsWriteRequest.Kind.UPSERT_ENTITY_LINKS, this.index.getName(),
+                    docHandler, loginfo));
+        }
+        for (LinkDocHandler docHandler : adsBulkLinkRequest) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), EsModel.TYPE_CTL_LINK, lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
+            requests.add(new AdsWriteRequest(AdsWriteRequest.Kind.CREATE_LINK, this.index.getName(),
+                    docHandler, loginfo));
+        }
+        enqueueAdsAll(requests);
+    }
+
     /**
      * Ads書込みエラー時にファイルにリペア用のエラー情報を書込む.
      * @param loginfo リペア用のエラー情報
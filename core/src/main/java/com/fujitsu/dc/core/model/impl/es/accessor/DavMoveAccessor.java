@@ -35,6 +35,8 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.core.model.impl.es.DavNode;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteQueue;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
 
@@ -262,6 +264,27 @@ public class DavMoveAccessor extends DavNodeAccessor {
      * @param responseIndex Elasticsearchのバルク更新レスポンスのインデックス
      */
     private void bulkUpdateAds(List<DavNode> adsRequest, DcBulkResponse response, int responseIndex) {
+        if (AdsWriteQueue.isEnabled()) {
+            // 非同期書込みが有効な場合は1件ずつキューに登録し、ワーカーがまとめて書き込む
+            // キューに登録できなかったものはADS書込み失敗ログに出力し、リペア処理で補正する
+            // adsRequestはresponseIndexの直前までの連続したリクエストに対応する
+            DcBulkItemResponse[] responseItems = response.items();
+            int itemIndex = responseIndex - adsRequest.size();
+            for (DavNode docHandler : adsRequest) {
+                DcBulkItemResponse itemResponse = responseItems[itemIndex++];
+                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV,
+                        null, docHandler.getBoxId(), null);
+                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                        this.getIndex().getName(), "dav", lockKey,
+                        docHandler.getCellId(), docHandler.getId(),
+                        AdsWriteFailureLogInfo.OperationKind.UPDATE, itemResponse.version(),
+                        docHandler.getUpdated());
+                if (!enqueueAds(AdsWriteRequest.Kind.UPSERT_DAV_NODE, getIndex().getName(), docHandler, loginfo)) {
+                    recordAdsWriteFailureLog(loginfo);
+                }
+            }
+            return;
+        }
         try {
             // Davテーブルを一括更新
             if (adsRequest.size() > 0) {
@@ -32,6 +32,7 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.core.model.impl.es.DavNode;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
 
@@ -133,17 +134,21 @@ public class DavNodeAccessor extends DataSourceAccessor {
     protected void createAds(DavNode davNode) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                    davNode.getBoxId(), null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1, davNode.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.CREATE_DAV_NODE, getIndex().getName(), davNode, loginfo)) {
+                return;
+            }
             try {
                 getAds().createDavNode(getIndex().getName(), davNode);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.CREATE, 1, davNode.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -184,17 +189,21 @@ public class DavNodeAccessor extends DataSourceAccessor {
 
         // 削除に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                    davNode.getBoxId(), null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.DELETE, version, davNode.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.DELETE_DAV_NODE, getIndex().getName(), id, loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteDavNode(getIndex().getName(), id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.DELETE, version, davNode.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -267,17 +276,21 @@ public class DavNodeAccessor extends DataSourceAccessor {
     protected void updateAds(DavNode davNode, long version) {
         // 更新に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
+                    davNode.getBoxId(), null);
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.UPDATE, version, davNode.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.UPDATE_DAV_NODE, getIndex().getName(), davNode, loginfo)) {
+                return;
+            }
             try {
                 getAds().updateDavNode(getIndex().getName(), davNode);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_DAV, null,
-                        davNode.getBoxId(), null);
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), "dav", lockKey, davNode.getCellId(), davNode.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.UPDATE, version, davNode.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
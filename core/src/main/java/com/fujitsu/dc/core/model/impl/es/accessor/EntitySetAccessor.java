@@ -89,6 +89,28 @@ public interface EntitySetAccessor {
      */
     DcSearchResponse search(Map<String, Object> query);
 
+    /**
+     * ソート順を保持したスクロールサーチを開始する.
+     * @param query クエリ情報
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return ES応答
+     */
+    DcSearchResponse scrollSearch(Map<String, Object> query, long keepAliveMillis);
+
+    /**
+     * スクロールサーチを継続する.
+     * @param scrollId スクロールID
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return ES応答
+     */
+    DcSearchResponse scrollSearch(String scrollId, long keepAliveMillis);
+
+    /**
+     * スクロールを解放する.
+     * @param scrollId スクロールID
+     */
+    void clearScroll(String scrollId);
+
     /**
      * データ削除を行う.
      * @param docHandler 削除データ
@@ -22,6 +22,7 @@ import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
@@ -49,6 +50,16 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
             String indexName = getIndex().getName();
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.CREATE_ENTITY, indexName, docHandler, loginfo)) {
+                return;
+            }
             try {
                 getAds().createEntity(indexName, docHandler);
             } catch (AdsException e) {
@@ -63,24 +74,12 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
                         DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e1.getMessage()).reason(e1).writeLog();
 
                         // Adsの登録に失敗した場合は、専用のログに書込む
-                        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                                docHandler.getCellId(), null, docHandler.getNodeId());
-                        AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                                this.getIndex().getName(), docHandler.getType(), lockKey,
-                                docHandler.getCellId(), docHandler.getId(),
-                                AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
                         recordAdsWriteFailureLog(loginfo);
                     }
                 } else {
                     DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                     // Adsの登録に失敗した場合は、専用のログに書込む
-                    String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                            docHandler.getCellId(), null, docHandler.getNodeId());
-                    AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                            this.getIndex().getName(), docHandler.getType(), lockKey,
-                            docHandler.getCellId(), docHandler.getId(),
-                            AdsWriteFailureLogInfo.OperationKind.CREATE, 1, docHandler.getUpdated());
                     recordAdsWriteFailureLog(loginfo);
                 }
             }
@@ -95,18 +94,22 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
     protected void updateAds(EntitySetDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを更新する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.UPDATE, version, docHandler.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.UPDATE_ENTITY, getIndex().getName(), docHandler, loginfo)) {
+                return;
+            }
             try {
                 getAds().updateEntity(getIndex().getName(), docHandler);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.UPDATE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -123,18 +126,22 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
 
         // 削除に成功した場合、マスタデータを削除する
         if (getAds() != null) {
+            String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                    docHandler.getCellId(), null, docHandler.getNodeId());
+            AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
+                    this.getIndex().getName(), docHandler.getType(), lockKey,
+                    docHandler.getCellId(), docHandler.getId(),
+                    AdsWriteFailureLogInfo.OperationKind.DELETE, version, docHandler.getUpdated());
+            // 非同期書込みが有効な場合はキューに登録し、書込みはワーカーに任せる
+            if (enqueueAds(AdsWriteRequest.Kind.DELETE_ENTITY, getIndex().getName(), id, loginfo)) {
+                return;
+            }
             try {
                 getAds().deleteEntity(getIndex().getName(), id);
             } catch (AdsException e) {
                 DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
 
                 // Adsの登録に失敗した場合は、専用のログに書込む
-                String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
-                        docHandler.getCellId(), null, docHandler.getNodeId());
-                AdsWriteFailureLogInfo loginfo = new AdsWriteFailureLogInfo(
-                        this.getIndex().getName(), docHandler.getType(), lockKey,
-                        docHandler.getCellId(), docHandler.getId(),
-                        AdsWriteFailureLogInfo.OperationKind.DELETE, version, docHandler.getUpdated());
                 recordAdsWriteFailureLog(loginfo);
             }
         }
@@ -0,0 +1,843 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreLog;
+
+/**
+ * ADSへの書込みをリクエスト処理から切り離して非同期に行うためのキュー.
+ * <p>
+ * 書込み要求はドキュメントIDのハッシュ値で振り分けたワーカーのキューに登録され、ワーカーが
+ * インデックス・種別毎にまとめてJDBCのバッチで書き込む。同一IDの要求は同じワーカーが登録順に処理する.
+ * </p>
+ * <p>
+ * 登録した要求はワーカー毎のジャーナルファイルにADS書込み失敗ログと同じ形式で追記してディスクへ同期し、
+ * 全件の処理が完了したジャーナルは削除する。ディスクへの同期は追記のロックの外で行い、同期待ちの間に追記された
+ * 要求もまとめて同期する(グループコミット)。バルク登録等の複数の要求は {@link #enqueueAll(List)} で登録し、
+ * ワーカー毎に1回の追記と1回の同期で済ませる。プロセスが異常終了した場合、次回起動時に残っている自ノードの
+ * ジャーナルの内容をADS書込み失敗ログへ移し、RepairAdsによりElasticsearchの内容からADSを補正する.
+ * 出力先ディレクトリを複数ノードで共有していても他ノードが書込み中のジャーナルを回収しないよう、
+ * ジャーナルファイル名にはノードIDを含める.
+ * </p>
+ */
+public final class AdsWriteQueue {
+
+    static Logger log = LoggerFactory.getLogger(AdsWriteQueue.class);
+
+    /** ジャーナルファイル名の接頭辞. */
+    static final String JOURNAL_PREFIX = "adsWriteQueue_";
+    /** ジャーナルファイル名のフォーマット(ノードID、PCSバージョン、ワーカー番号、起動時刻、通番). */
+    static final String JOURNAL_FORMAT = JOURNAL_PREFIX + "%s_%s_%d_%d.%d";
+    /** ノードIDを取得できなかった場合に使用する値. */
+    static final String DEFAULT_NODE_ID = "localhost";
+
+    private static final String MYSQL_BAD_TABLE_ERROR = "42S02";
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+    private static final long DRAIN_CHECK_INTERVAL_MILLIS = 10L;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 60000L;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final AtomicLong LAST_START_TIME = new AtomicLong();
+    private static volatile AdsWriteQueue instance;
+    private static volatile boolean stopped = false;
+
+    /**
+     * ワーカーが書込みに使用するADSの操作.
+     */
+    interface Backend {
+        /**
+         * 同一インデックス・同一種別の書込み要求をバッチで実行する.
+         * @param index インデックス名
+         * @param kind 書込みの種別
+         * @param requests 書込み要求
+         * @throws AdsException 処理失敗時発生
+         */
+        void executeBatch(String index, AdsWriteRequest.Kind kind, List<AdsWriteRequest> requests)
+                throws AdsException;
+
+        /**
+         * インデックスを作成する.
+         * @param index インデックス名
+         * @throws AdsException 処理失敗時発生
+         */
+        void createIndex(String index) throws AdsException;
+
+        /**
+         * 書込みに失敗した要求をADS書込み失敗ログへ出力する.
+         * @param logInfo ADS書込み失敗ログの情報
+         */
+        void recordFailure(AdsWriteFailureLogInfo logInfo);
+    }
+
+    private final Backend backend;
+    private final Worker[] workers;
+    private final int batchSize;
+    private final int segmentSize;
+    private final File journalDir;
+    private final String nodeId;
+    private final String pcsVersion;
+    private final long startTime = nextStartTime();
+    private volatile boolean running = true;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong totalLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param workerCount ワーカー数
+     * @param queueSize ワーカー毎のキューに保持する要求の最大数
+     * @param batchSize ワーカーが一度に処理する要求の最大数
+     * @param segmentSize ジャーナルファイル1つに書き込む要求の最大数
+     * @param journalDir ジャーナルファイルの出力先ディレクトリ
+     * @param nodeId ジャーナルファイル名に含めるノードID
+     * @param pcsVersion PCSバージョン
+     * @param backend ADSの操作
+     */
+    AdsWriteQueue(int workerCount, int queueSize, int batchSize, int segmentSize,
+            File journalDir, String nodeId, String pcsVersion, Backend backend) {
+        this.backend = backend;
+        this.batchSize = Math.max(1, batchSize);
+        this.segmentSize = Math.max(1, segmentSize);
+        this.journalDir = journalDir;
+        this.nodeId = toJournalNodeId(nodeId);
+        this.pcsVersion = pcsVersion;
+        this.workers = new Worker[Math.max(1, workerCount)];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new Worker(i, Math.max(1, queueSize));
+        }
+    }
+
+    /**
+     * @return 非同期書込みが有効な場合はtrue
+     */
+    public static boolean isEnabled() {
+        return DcCoreConfig.isEsAdsAsyncEnabled();
+    }
+
+    /**
+     * 書込み要求をキューに登録する.
+     * キューが利用できない場合は登録せずにfalseを返すため、呼び出し側で同期的に書き込むこと.
+     * @param request 書込み要求
+     * @return キューに登録した場合はtrue
+     */
+    public static boolean enqueue(AdsWriteRequest request) {
+        AdsWriteQueue queue = getInstance();
+        if (queue == null) {
+            return false;
+        }
+        return queue.offer(request);
+    }
+
+    /**
+     * 複数の書込み要求をまとめてキューに登録する. ジャーナルへの追記と同期はワーカー毎に1回で行う.
+     * 登録できなかった要求を返すため、呼び出し側で同期的に書き込むかADS書込み失敗ログへ出力すること.
+     * @param requests 書込み要求
+     * @return キューに登録できなかった要求
+     */
+    public static List<AdsWriteRequest> enqueueAll(List<AdsWriteRequest> requests) {
+        AdsWriteQueue queue = getInstance();
+        if (queue == null) {
+            return requests;
+        }
+        return queue.offerAll(requests);
+    }
+
+    /**
+     * キューに登録済みの要求が全て書き込まれるまで待つ.
+     * キューを経由しないADSの操作(セル配下の一括削除等)の前に呼び出し、同一データへの書込み順序を保つ.
+     */
+    public static void flush() {
+        AdsWriteQueue queue = instance;
+        if (queue != null) {
+            queue.awaitDrained(DcCoreConfig.getEsAdsAsyncFlushTimeout());
+        }
+    }
+
+    /**
+     * ワーカーを停止する. 停止前にキューに登録済みの要求を書き込む.
+     */
+    public static synchronized void shutdown() {
+        stopped = true;
+        if (instance != null) {
+            instance.stop(SHUTDOWN_TIMEOUT_MILLIS);
+            instance = null;
+        }
+    }
+
+    /**
+     * キューの利用状況を返す.
+     * @return 登録件数、書込み件数、失敗件数、待ち件数、遅延時間等を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        AdsWriteQueue queue = instance;
+        if (queue == null) {
+            return new HashMap<String, Object>();
+        }
+        return queue.statistics();
+    }
+
+    private static AdsWriteQueue getInstance() {
+        AdsWriteQueue queue = instance;
+        if (queue != null || !isEnabled()) {
+            return queue;
+        }
+        synchronized (AdsWriteQueue.class) {
+            if (instance == null && !stopped) {
+                final JdbcAds ads;
+                try {
+                    ads = new JdbcAds();
+                } catch (AdsConnectionException e) {
+                    DcCoreLog.Server.ADS_CONNECTION_ERROR.params(e.getMessage()).reason(e).writeLog();
+                    return null;
+                }
+                queue = new AdsWriteQueue(DcCoreConfig.getEsAdsAsyncWorkers(),
+                        DcCoreConfig.getEsAdsAsyncQueueSize(),
+                        DcCoreConfig.getEsAdsAsyncBatchSize(),
+                        DcCoreConfig.getEsAdsAsyncJournalSegmentSize(),
+                        new File(DcCoreConfig.getAdsWriteFailureLogDir()),
+                        DcCoreConfig.getEsAdsAsyncJournalNodeId(),
+                        DcCoreConfig.getCoreVersion(),
+                        new Backend() {
+                            @Override
+                            public void executeBatch(String index, AdsWriteRequest.Kind kind,
+                                    List<AdsWriteRequest> requests) throws AdsException {
+                                ads.executeBatch(index, kind, requests);
+                            }
+
+                            @Override
+                            public void createIndex(String index) throws AdsException {
+                                ads.createIndex(index);
+                            }
+
+                            @Override
+                            public void recordFailure(AdsWriteFailureLogInfo logInfo) {
+                                recordAdsWriteFailureLog(logInfo);
+                            }
+                        });
+                queue.start();
+                instance = queue;
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * 前回起動時に残ったジャーナルを回収し、ワーカーを開始する.
+     */
+    void start() {
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            log.warn("Failed to create journal directory. [" + journalDir.getAbsolutePath() + "]");
+        }
+        recoverJournals();
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * 書込み要求をジャーナルに追記し、ドキュメントIDに対応するワーカーのキューに登録する.
+     * @param request 書込み要求
+     * @return キューに登録した場合はtrue
+     */
+    boolean offer(AdsWriteRequest request) {
+        return offerAll(Collections.singletonList(request)).isEmpty();
+    }
+
+    /**
+     * 複数の書込み要求をワーカー毎にまとめてジャーナルに追記し、各ワーカーのキューに登録する.
+     * @param requests 書込み要求
+     * @return キューに登録できなかった要求
+     */
+    List<AdsWriteRequest> offerAll(List<AdsWriteRequest> requests) {
+        if (!running) {
+            return requests;
+        }
+        Map<Worker, List<AdsWriteRequest>> byWorker = new LinkedHashMap<Worker, List<AdsWriteRequest>>();
+        for (AdsWriteRequest request : requests) {
+            Worker worker = workers[(request.getId().hashCode() & Integer.MAX_VALUE) % workers.length];
+            List<AdsWriteRequest> list = byWorker.get(worker);
+            if (list == null) {
+                list = new ArrayList<AdsWriteRequest>();
+                byWorker.put(worker, list);
+            }
+            list.add(request);
+        }
+        List<AdsWriteRequest> rejectedRequests = new ArrayList<AdsWriteRequest>();
+        for (Map.Entry<Worker, List<AdsWriteRequest>> e : byWorker.entrySet()) {
+            offerToWorker(e.getKey(), e.getValue(), rejectedRequests);
+        }
+        return rejectedRequests;
+    }
+
+    private void offerToWorker(Worker worker, List<AdsWriteRequest> requests, List<AdsWriteRequest> rejectedRequests) {
+        List<Segment> segments;
+        try {
+            segments = worker.journal.appendAll(requests);
+        } catch (IOException e) {
+            log.warn("Failed to write ads write queue journal.", e);
+            rejected.addAndGet(requests.size());
+            rejectedRequests.addAll(requests);
+            return;
+        }
+        pending.addAndGet(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                // 待ち件数が上限に達している場合は空きができるまで待つ
+                worker.queue.put(new Entry(requests.get(i), segments.get(i)));
+                enqueued.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < requests.size(); j++) {
+                    pending.decrementAndGet();
+                    segments.get(j).release(1);
+                    rejected.incrementAndGet();
+                    rejectedRequests.add(requests.get(j));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * キューに登録済みの要求が全て書き込まれるまで待つ.
+     * @param timeoutMillis 最大待ち時間(ms)
+     * @return 全て書き込まれた場合はtrue
+     */
+    boolean awaitDrained(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pending.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                log.info("Timed out waiting for ads write queue to drain. pending=" + pending.get());
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_CHECK_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ワーカーを停止する.
+     * @param timeoutMillis ワーカー毎の最大待ち時間(ms)
+     */
+    void stop(long timeoutMillis) {
+        running = false;
+        for (Worker worker : workers) {
+            try {
+                worker.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // 書込みが終わらなかった要求はジャーナルに残し、次回起動時に回収する
+            worker.journal.close();
+        }
+    }
+
+    /**
+     * @return キューの利用状況
+     */
+    Map<String, Object> statistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        long now = System.currentTimeMillis();
+        long oldest = 0;
+        int depth = 0;
+        for (Worker worker : workers) {
+            depth += worker.queue.size();
+            Entry head = worker.queue.peek();
+            if (head != null) {
+                oldest = Math.max(oldest, now - head.request.getEnqueuedTime());
+            }
+        }
+        long writtenCount = written.get() + failed.get();
+        stats.put("queueDepth", depth);
+        stats.put("pending", pending.get());
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batches.get());
+        stats.put("rejected", rejected.get());
+        stats.put("recovered", recovered.get());
+        stats.put("oldestPendingMillis", oldest);
+        stats.put("lastLagMillis", lastLagMillis.get());
+        stats.put("maxLagMillis", maxLagMillis.get());
+        if (writtenCount > 0) {
+            stats.put("averageLagMillis", totalLagMillis.get() / writtenCount);
+        } else {
+            stats.put("averageLagMillis", 0L);
+        }
+        return stats;
+    }
+
+    /**
+     * 自ノードが前回起動時に出力し、書込みが終わっていないジャーナルの内容をADS書込み失敗ログへ移す.
+     * 他ノードのジャーナルは稼働中のノードが書込み中の可能性があるため回収しない.
+     */
+    private void recoverJournals() {
+        File[] files = journalDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String nodePrefix = JOURNAL_PREFIX + nodeId + "_";
+        for (File file : files) {
+            if (!file.isFile() || !file.getName().startsWith(nodePrefix) || isOwnJournal(file.getName())) {
+                continue;
+            }
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+                String line = reader.readLine();
+                while (line != null) {
+                    if (line.trim().length() > 0) {
+                        try {
+                            backend.recordFailure(AdsWriteFailureLogInfo.parse(line));
+                            recovered.incrementAndGet();
+                        } catch (AdsWriteFailureLogException e) {
+                            log.warn("Invalid ads write queue journal entry. [" + line + "]", e);
+                        }
+                    }
+                    line = reader.readLine();
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read ads write queue journal. [" + file.getName() + "]", e);
+                continue;
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+            if (!file.delete()) {
+                log.warn("Failed to delete ads write queue journal. [" + file.getName() + "]");
+            }
+        }
+    }
+
+    /**
+     * ジャーナルファイル名に使用するノードIDを決定する.
+     * 未指定の場合はホスト名を使用し、ファイル名の区切り文字と衝突しない文字のみに置き換える.
+     * @param configured 設定されたノードID
+     * @return ジャーナルファイル名に使用するノードID
+     */
+    static String toJournalNodeId(String configured) {
+        String id = configured;
+        if (id == null || id.trim().length() == 0) {
+            try {
+                id = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                log.warn("Failed to resolve host name for ads write queue journal.", e);
+                id = DEFAULT_NODE_ID;
+            }
+        }
+        return id.trim().replaceAll("[^A-Za-z0-9.-]", "-");
+    }
+
+    /**
+     * ジャーナルファイル名に使用する起動時刻を採番する. 同一プロセス内で重複しないよう単調増加させる.
+     */
+    private static long nextStartTime() {
+        long now = System.currentTimeMillis();
+        long last = LAST_START_TIME.get();
+        long next = Math.max(now, last + 1);
+        while (!LAST_START_TIME.compareAndSet(last, next)) {
+            last = LAST_START_TIME.get();
+            next = Math.max(now, last + 1);
+        }
+        return next;
+    }
+
+    /**
+     * 本インスタンスが出力したジャーナルかどうかを判定する.
+     */
+    private boolean isOwnJournal(String name) {
+        for (int i = 0; i < workers.length; i++) {
+            String own = String.format(JOURNAL_FORMAT, nodeId, pcsVersion, i, startTime, 0);
+            if (name.startsWith(own.substring(0, own.lastIndexOf('.') + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 処理済みの要求について遅延時間と待ち件数を記録する.
+     */
+    private void complete(Entry entry, boolean success) {
+        if (success) {
+            written.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+        long lag = System.currentTimeMillis() - entry.request.getEnqueuedTime();
+        lastLagMillis.set(lag);
+        totalLagMillis.addAndGet(lag);
+        long max = maxLagMillis.get();
+        while (lag > max && !maxLagMillis.compareAndSet(max, lag)) {
+            max = maxLagMillis.get();
+        }
+        entry.segment.release(1);
+        pending.decrementAndGet();
+    }
+
+    /**
+     * ADS書込み失敗ログにリペア用のエラー情報を書込む.
+     * @param logInfo リペア用のエラー情報
+     */
+    static void recordAdsWriteFailureLog(AdsWriteFailureLogInfo logInfo) {
+        AdsWriteFailureLogWriter adsWriteFailureLogWriter = AdsWriteFailureLogWriter.getInstance(
+                DcCoreConfig.getAdsWriteFailureLogDir(),
+                DcCoreConfig.getCoreVersion(),
+                DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
+        try {
+            adsWriteFailureLogWriter.writeActiveFile(logInfo);
+        } catch (AdsWriteFailureLogException e) {
+            DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_ERROR.reason(e).writeLog();
+            DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_INFO.params(logInfo.toString());
+        }
+    }
+
+    /**
+     * キューに登録された要求と、その要求を記録したジャーナル.
+     */
+    private static final class Entry {
+        private final AdsWriteRequest request;
+        private final Segment segment;
+
+        Entry(AdsWriteRequest request, Segment segment) {
+            this.request = request;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * ジャーナルファイル1つ分. 追記が終わり、記録した要求が全て処理された時点で削除する.
+     * 追記した要求はディスクへ同期してからキューに登録し、異常終了時にも失われないようにする.
+     * 同期は追記と別のロックで行い、同期待ちの間に追記された分も1回の同期に含める.
+     */
+    private static final class Segment {
+        private final File file;
+        private final FileOutputStream out;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Object syncLock = new Object();
+        /** 追記した要求の数. Journalのロック内で更新する. */
+        private volatile int count;
+        /** ディスクへ同期済みの要求の数. syncLockで保護する. */
+        private int synced;
+        /** ファイルを閉じた場合はtrue. syncLockで保護する. */
+        private boolean closed = false;
+        private volatile boolean sealed = false;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.out = new FileOutputStream(file, true);
+        }
+
+        /**
+         * 要求を追記する. ディスクへの同期は {@link #sync(int)} で行う.
+         */
+        void write(byte[] lines, int lineCount) throws IOException {
+            out.write(lines);
+            outstanding.addAndGet(lineCount);
+            count += lineCount;
+        }
+
+        /**
+         * 指定した数までの要求をディスクへ同期する. 他のスレッドの同期に含まれていれば同期しない.
+         */
+        void sync(int upTo) throws IOException {
+            synchronized (syncLock) {
+                if (closed || synced >= upTo) {
+                    return;
+                }
+                int target = count;
+                out.getFD().sync();
+                synced = target;
+            }
+        }
+
+        void seal() {
+            synchronized (syncLock) {
+                if (!closed) {
+                    try {
+                        out.getFD().sync();
+                    } catch (IOException e) {
+                        log.warn("Failed to sync ads write queue journal. [" + file.getName() + "]", e);
+                    }
+                    closed = true;
+                    IOUtils.closeQuietly(out);
+                }
+            }
+            sealed = true;
+            if (outstanding.get() == 0) {
+                delete();
+            }
+        }
+
+        /**
+         * 処理が終わった、または登録しなかった要求の数だけ未処理の数を減らす.
+         */
+        void release(int lineCount) {
+            if (outstanding.addAndGet(-lineCount) == 0 && sealed) {
+                delete();
+            }
+        }
+
+        private void delete() {
+            if (file.exists() && !file.delete()) {
+                log.warn("Failed to delete ads write queue journal. [" + file.getName() + "]");
+            }
+        }
+    }
+
+    /**
+     * ワーカー毎のジャーナル. 一定件数毎に新しいファイルへ切り替える.
+     */
+    private final class Journal {
+        private final int workerNo;
+        private Segment current;
+        private long sequence = 0;
+
+        Journal(int workerNo) {
+            this.workerNo = workerNo;
+        }
+
+        /**
+         * 要求をまとめて追記し、ディスクへ同期する. 同期は追記のロックを解放してから行う.
+         * @param requests 書込み要求
+         * @return 要求毎に、追記したジャーナル
+         * @throws IOException 追記または同期に失敗した場合. 追記済みの分は未処理の数から除く
+         */
+        List<Segment> appendAll(List<AdsWriteRequest> requests) throws IOException {
+            List<Segment> segments = new ArrayList<Segment>(requests.size());
+            Map<Segment, Integer> written = new LinkedHashMap<Segment, Integer>();
+            Segment last;
+            int upTo;
+            try {
+                synchronized (this) {
+                    StringBuilder lines = new StringBuilder();
+                    int lineCount = 0;
+                    for (AdsWriteRequest request : requests) {
+                        if (current == null || current.count + lineCount >= segmentSize) {
+                            if (current != null) {
+                                writeLines(lines, lineCount, written);
+                                lines.setLength(0);
+                                lineCount = 0;
+                                // 切り替え前のジャーナルはsealで同期する
+                                current.seal();
+                            }
+                            current = new Segment(new File(journalDir, String.format(JOURNAL_FORMAT,
+                                    nodeId, pcsVersion, workerNo, startTime, sequence++)));
+                        }
+                        lines.append(request.getLogInfo().toString());
+                        lineCount++;
+                        segments.add(current);
+                    }
+                    writeLines(lines, lineCount, written);
+                    last = current;
+                    upTo = current.count;
+                }
+                last.sync(upTo);
+            } catch (IOException e) {
+                for (Map.Entry<Segment, Integer> entry : written.entrySet()) {
+                    entry.getKey().release(entry.getValue());
+                }
+                throw e;
+            }
+            return segments;
+        }
+
+        private void writeLines(StringBuilder lines, int lineCount, Map<Segment, Integer> written)
+                throws IOException {
+            if (lineCount > 0) {
+                current.write(lines.toString().getBytes(CHARSET), lineCount);
+                written.put(current, lineCount);
+            }
+        }
+
+        synchronized void close() {
+            if (current != null) {
+                current.seal();
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * キューから要求を取り出してADSへ書き込むスレッド.
+     */
+    private final class Worker extends Thread {
+        private final BlockingQueue<Entry> queue;
+        private final Journal journal;
+
+        Worker(int workerNo, int queueSize) {
+            super("dc-ads-writer-" + workerNo);
+            setDaemon(true);
+            this.queue = new LinkedBlockingQueue<Entry>(queueSize);
+            this.journal = new Journal(workerNo);
+        }
+
+        @Override
+        public void run() {
+            List<Entry> batch = new ArrayList<Entry>(batchSize);
+            while (true) {
+                Entry first = null;
+                try {
+                    first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    log.debug("ads writer interrupted.");
+                }
+                if (first == null) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            }
+        }
+
+        /**
+         * 取り出した要求をインデックス・種別毎にまとめて書き込む.
+         * 同一IDの要求が別の種別で後続する場合は、それまでにまとめた分を先に書き込み、IDごとの順序を保つ.
+         */
+        private void write(List<Entry> batch) {
+            Map<String, List<Entry>> groups = new LinkedHashMap<String, List<Entry>>();
+            Map<String, String> groupOfId = new HashMap<String, String>();
+            for (Entry entry : batch) {
+                String key = entry.request.getIndex() + "/" + entry.request.getKind();
+                String previous = groupOfId.get(entry.request.getId());
+                if (previous != null && !previous.equals(key)) {
+                    writeGroups(groups);
+                    groups.clear();
+                    groupOfId.clear();
+                }
+                List<Entry> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<Entry>();
+                    groups.put(key, group);
+                }
+                group.add(entry);
+                groupOfId.put(entry.request.getId(), key);
+            }
+            writeGroups(groups);
+        }
+
+        private void writeGroups(Map<String, List<Entry>> groups) {
+            for (List<Entry> group : groups.values()) {
+                List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>(group.size());
+                for (Entry entry : group) {
+                    requests.add(entry.request);
+                }
+                AdsWriteRequest head = requests.get(0);
+                boolean success;
+                try {
+                    backend.executeBatch(head.getIndex(), head.getKind(), requests);
+                    batches.incrementAndGet();
+                    success = true;
+                } catch (AdsException e) {
+                    log.info("Failed to execute ads batch, retry each request. [" + e.getMessage() + "]");
+                    success = false;
+                } catch (RuntimeException e) {
+                    log.info("Failed to execute ads batch, retry each request. [" + e.getMessage() + "]");
+                    success = false;
+                }
+                for (Entry entry : group) {
+                    // バッチが失敗した場合は1件ずつ書込み、失敗したもののみADS書込み失敗ログへ出力する
+                    complete(entry, success || writeOne(entry.request));
+                }
+            }
+        }
+
+        private boolean writeOne(AdsWriteRequest request) {
+            List<AdsWriteRequest> requests = Collections.singletonList(request);
+            Exception cause;
+            try {
+                backend.executeBatch(request.getIndex(), request.getKind(), requests);
+                return true;
+            } catch (AdsException e) {
+                cause = e;
+                if (e.getCause() instanceof SQLException
+                        && MYSQL_BAD_TABLE_ERROR.equals(((SQLException) e.getCause()).getSQLState())) {
+                    // Indexが存在しない場合はインデックスを作成して再実行する
+                    DcCoreLog.Server.ES_INDEX_NOT_EXIST.params(request.getIndex()).writeLog();
+                    try {
+                        backend.createIndex(request.getIndex());
+                        backend.executeBatch(request.getIndex(), request.getKind(), requests);
+                        return true;
+                    } catch (AdsException e1) {
+                        cause = e1;
+                    }
+                }
+            } catch (RuntimeException e) {
+                cause = e;
+            }
+            AdsWriteFailureLogInfo logInfo = request.getLogInfo();
+            String operation = logInfo.getOperation();
+            if (AdsWriteFailureLogInfo.OperationKind.DELETE.toString().equals(operation)) {
+                DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(cause.getMessage()).reason(cause).writeLog();
+            } else if (AdsWriteFailureLogInfo.OperationKind.UPDATE.toString().equals(operation)) {
+                DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(cause.getMessage()).reason(cause).writeLog();
+            } else {
+                DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(cause.getMessage()).reason(cause).writeLog();
+            }
+            backend.recordFailure(logInfo);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+
+/**
+ * ADS書込みキューに登録する1件分の書込み要求.
+ */
+public final class AdsWriteRequest {
+
+    /**
+     * 書込みの種別. 同一インデックス・同一種別の要求は同じSQLでバッチ実行される.
+     */
+    public enum Kind {
+        /** Entityの登録. */
+        CREATE_ENTITY,
+        /** Entityの更新. */
+        UPDATE_ENTITY,
+        /** Entityの削除. */
+        DELETE_ENTITY,
+        /** Entityのリンク情報の登録/更新(バルク更新). */
+        UPSERT_ENTITY_LINKS,
+        /** Cellの登録. */
+        CREATE_CELL,
+        /** Cellの更新. */
+        UPDATE_CELL,
+        /** Cellの削除. */
+        DELETE_CELL,
+        /** Linkの登録. */
+        CREATE_LINK,
+        /** Linkの更新. */
+        UPDATE_LINK,
+        /** Linkの削除. */
+        DELETE_LINK,
+        /** DavNodeの登録. */
+        CREATE_DAV_NODE,
+        /** DavNodeの更新. */
+        UPDATE_DAV_NODE,
+        /** DavNodeの削除. */
+        DELETE_DAV_NODE,
+        /** DavNodeの登録/更新(MOVE時のバルク更新). */
+        UPSERT_DAV_NODE
+    }
+
+    private final Kind kind;
+    private final String index;
+    private final Object record;
+    private final AdsWriteFailureLogInfo logInfo;
+    private final long enqueuedTime;
+
+    /**
+     * コンストラクタ.
+     * @param kind 書込みの種別
+     * @param index 書込み先インデックス名
+     * @param record 書込みデータ(EntitySetDocHandler/LinkDocHandler/DavNode)。削除の場合はドキュメントのID
+     * @param logInfo 書込み失敗時にADS書込み失敗ログへ出力する情報
+     */
+    public AdsWriteRequest(Kind kind, String index, Object record, AdsWriteFailureLogInfo logInfo) {
+        this.kind = kind;
+        this.index = index;
+        this.record = record;
+        this.logInfo = logInfo;
+        this.enqueuedTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return 書込みの種別
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return 書込み先インデックス名
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 書込みデータ。削除の場合はドキュメントのID
+     */
+    public Object getRecord() {
+        return record;
+    }
+
+    /**
+     * @return 書込み失敗時にADS書込み失敗ログへ出力する情報
+     */
+    public AdsWriteFailureLogInfo getLogInfo() {
+        return logInfo;
+    }
+
+    /**
+     * @return 書込み対象のドキュメントID
+     */
+    public String getId() {
+        return logInfo.getUuid();
+    }
+
+    /**
+     * @return キューに登録した時刻(ms)
+     */
+    public long getEnqueuedTime() {
+        return enqueuedTime;
+    }
+}
@@ -26,9 +26,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.dbcp.BasicDataSourceFactory;
 import org.apache.commons.dbcp.DelegatingPreparedStatement;
 import org.apache.commons.lang.CharEncoding;
@@ -51,7 +54,8 @@ import com.fujitsu.dc.core.model.impl.es.odata.UserDataODataProducer;
  */
 public class JdbcAds implements Ads {
     private static DataSource ds;
-    Map<String, IndexPeer> peersMap = new HashMap<String, IndexPeer>();
+    // 非同期書込みのワーカー間で共有するため、スレッドセーフなMapを使用する
+    Map<String, IndexPeer> peersMap = new ConcurrentHashMap<String, IndexPeer>();
 
     static Logger log = LoggerFactory.getLogger(JdbcAds.class);
     static final String SCHEMA_NAME_REPLACING_KEY = "##schema##";
@@ -59,6 +63,11 @@ public class JdbcAds implements Ads {
 
     static final String MANAGEMENT_DB_NAME = "pcs_management";
 
+    // 一括登録/更新の実行状況
+    static final AtomicLong BULK_STATEMENT_COUNT = new AtomicLong();
+    static final AtomicLong BULK_ROW_COUNT = new AtomicLong();
+    static final AtomicLong BULK_COMMIT_COUNT = new AtomicLong();
+
     /**
      * コンストラクタ.
      * @throws AdsConnectionException ADS接続失敗
@@ -91,6 +100,27 @@ public class JdbcAds implements Ads {
         }
     }
 
+    /**
+     * コネクションプールと一括登録/更新の利用状況を返す.
+     * @return 使用中/待機中のコネクション数、PreparedStatementキャッシュの設定、一括登録/更新の実行件数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        if (ds instanceof BasicDataSource) {
+            BasicDataSource bds = (BasicDataSource) ds;
+            stats.put("active", bds.getNumActive());
+            stats.put("idle", bds.getNumIdle());
+            stats.put("maxActive", bds.getMaxActive());
+            stats.put("maxIdle", bds.getMaxIdle());
+            stats.put("poolPreparedStatements", bds.isPoolPreparedStatements());
+            stats.put("maxOpenPreparedStatements", bds.getMaxOpenPreparedStatements());
+        }
+        stats.put("bulkStatements", BULK_STATEMENT_COUNT.get());
+        stats.put("bulkRows", BULK_ROW_COUNT.get());
+        stats.put("bulkCommits", BULK_COMMIT_COUNT.get());
+        return stats;
+    }
+
     @Override
     public void createEntity(String index, EntitySetDocHandler edh) throws AdsException {
         IndexPeer ip = this.getIndexPeer(index);
@@ -199,6 +229,19 @@ public class JdbcAds implements Ads {
         ip.deleteDavNode(id);
     }
 
+    /**
+     * 同一インデックス・同一種別の書込み要求をJDBCのバッチ(addBatch/executeBatch)で一括実行する.
+     * @param index index
+     * @param kind 書込みの種別
+     * @param requests 書込み要求
+     * @throws AdsException 処理失敗時発生
+     */
+    public void executeBatch(String index, AdsWriteRequest.Kind kind, List<AdsWriteRequest> requests)
+            throws AdsException {
+        IndexPeer ip = this.getIndexPeer(index);
+        ip.executeBatch(kind, requests);
+    }
+
     @Override
     public long countEntity(String index) throws AdsException {
         IndexPeer ip = this.getIndexPeer(index);
@@ -474,6 +517,39 @@ public class JdbcAds implements Ads {
             }
         };
 
+        // 一括登録/更新のSQL部品
+        static final String ENTITY_VALUES = "(?,?,?,?,?,?,?,?,?,?,?,?)";
+        static final String LINK_VALUES = "(?,?,?,?,?,?,?,?,?,?)";
+        static final String DAV_VALUES = "(?,?,?,?,?,?,?,?,?,?,?)";
+        static final String ENTITY_LINKS_ON_DUPLICATE_KEY = " on duplicate key update links=values(links)";
+        static final String DAV_ON_DUPLICATE_KEY = " on duplicate key update "
+                + "cell_id=values(cell_id),box_id=values(box_id),parent_id=values(parent_id)"
+                + ",children=values(children),node_type=values(node_type),acl=values(acl)"
+                + ",properties=values(properties),file=values(file),published=values(published)"
+                + ",updated=values(updated),id=values(id)";
+
+        static final BulkStatementHandlerFactory<EntitySetDocHandler> BULK_ENTITY_HANDLER_FACTORY =
+                new BulkStatementHandlerFactory<EntitySetDocHandler>() {
+                    @Override
+                    public StatementHandler create(List<EntitySetDocHandler> rows) {
+                        return new StatementHandlerForBulkEntity(rows);
+                    }
+                };
+        static final BulkStatementHandlerFactory<LinkDocHandler> BULK_LINK_HANDLER_FACTORY =
+                new BulkStatementHandlerFactory<LinkDocHandler>() {
+                    @Override
+                    public StatementHandler create(List<LinkDocHandler> rows) {
+                        return new StatementHandlerForBulkLink(rows);
+                    }
+                };
+        static final BulkStatementHandlerFactory<DavNode> BULK_DAV_HANDLER_FACTORY =
+                new BulkStatementHandlerFactory<DavNode>() {
+                    @Override
+                    public StatementHandler create(List<DavNode> rows) {
+                        return new StatementHandlerForBulkDav(rows);
+                    }
+                };
+
         IndexPeer(DataSource ds, String index) {
             this.ds = ds;
             this.index = index;
@@ -543,79 +619,23 @@ public class JdbcAds implements Ads {
         }
 
         void bulkEntity(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    bulkRequestList.size());
-
+            this.executeBulkSql(this.sqlEntityBulkInsert, ENTITY_VALUES, "", bulkRequestList,
+                    BULK_ENTITY_HANDLER_FACTORY, 1);
         }
 
         void bulkUpdateEntityLink(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括更新のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-
-            sql.append(" on duplicate key update ");
-            sql.append("links=values(links)");
-
-            int expectedUpdateCount = bulkRequestList.size() * 2;
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    expectedUpdateCount);
-
+            this.executeBulkSql(this.sqlEntityBulkInsert, ENTITY_VALUES, ENTITY_LINKS_ON_DUPLICATE_KEY,
+                    bulkRequestList, BULK_ENTITY_HANDLER_FACTORY, 2);
         }
 
         void bulkUpdateDav(List<DavNode> bulkRequestList) throws AdsException {
-            // 一括更新のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlDavBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-
-            sql.append(" on duplicate key update ");
-            sql.append("cell_id=values(cell_id)");
-            sql.append(",box_id=values(box_id)");
-            sql.append(",parent_id=values(parent_id)");
-            sql.append(",children=values(children)");
-            sql.append(",node_type=values(node_type)");
-            sql.append(",acl=values(acl)");
-            sql.append(",properties=values(properties)");
-            sql.append(",file=values(file)");
-            sql.append(",published=values(published)");
-            sql.append(",updated=values(updated)");
-            sql.append(",id=values(id)");
-
-            int expectedUpdateCount = bulkRequestList.size() * 2;
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkDav(bulkRequestList),
-                    expectedUpdateCount);
-
+            this.executeBulkSql(this.sqlDavBulkInsert, DAV_VALUES, DAV_ON_DUPLICATE_KEY, bulkRequestList,
+                    BULK_DAV_HANDLER_FACTORY, 2);
         }
 
         void bulkCreateLink(final List<LinkDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlLinkBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkLink(bulkRequestList),
-                    bulkRequestList.size());
-
+            this.executeBulkSql(this.sqlLinkBulkInsert, LINK_VALUES, "", bulkRequestList,
+                    BULK_LINK_HANDLER_FACTORY, 1);
         }
 
         void createCell(final EntitySetDocHandler docHandler) throws AdsException {
@@ -713,6 +733,96 @@ public class JdbcAds implements Ads {
             }
         }
 
+        void executeBatch(AdsWriteRequest.Kind kind, List<AdsWriteRequest> requests) throws AdsException {
+            // 登録/更新(on duplicate key update)は複数行のINSERT文で実行する
+            // 更新の有無により件数が変わるため件数の確認を行わない
+            if (kind == AdsWriteRequest.Kind.UPSERT_ENTITY_LINKS) {
+                List<EntitySetDocHandler> rows = new ArrayList<EntitySetDocHandler>(requests.size());
+                for (AdsWriteRequest request : requests) {
+                    rows.add((EntitySetDocHandler) request.getRecord());
+                }
+                this.executeBulkSql(this.sqlEntityBulkInsert, ENTITY_VALUES, ENTITY_LINKS_ON_DUPLICATE_KEY, rows,
+                        BULK_ENTITY_HANDLER_FACTORY, -1);
+                return;
+            } else if (kind == AdsWriteRequest.Kind.UPSERT_DAV_NODE) {
+                List<DavNode> rows = new ArrayList<DavNode>(requests.size());
+                for (AdsWriteRequest request : requests) {
+                    rows.add((DavNode) request.getRecord());
+                }
+                this.executeBulkSql(this.sqlDavBulkInsert, DAV_VALUES, DAV_ON_DUPLICATE_KEY, rows,
+                        BULK_DAV_HANDLER_FACTORY, -1);
+                return;
+            }
+            List<StatementHandler> handlers = new ArrayList<StatementHandler>(requests.size());
+            String sql;
+            // 登録/更新/削除は1件ずつ1行が更新されることを確認する
+            int expectedCount = 1;
+            switch (kind) {
+            case CREATE_ENTITY:
+                sql = this.sqlEntityInsert;
+                break;
+            case UPDATE_ENTITY:
+                sql = this.sqlEntityUpdate;
+                break;
+            case DELETE_ENTITY:
+                sql = this.sqlEntityDelete;
+                break;
+            case CREATE_CELL:
+                sql = this.sqlCellInsert;
+                break;
+            case UPDATE_CELL:
+                sql = this.sqlCellUpdate;
+                break;
+            case DELETE_CELL:
+                sql = this.sqlCellDelete;
+                break;
+            case CREATE_LINK:
+                sql = this.sqlLinkInsert;
+                break;
+            case UPDATE_LINK:
+                sql = this.sqlLinkUpdate;
+                break;
+            case DELETE_LINK:
+                sql = this.sqlLinkDelete;
+                break;
+            case CREATE_DAV_NODE:
+                sql = this.sqlDavNodeInsert;
+                break;
+            case UPDATE_DAV_NODE:
+                sql = this.sqlDavNodeUpdate;
+                break;
+            case DELETE_DAV_NODE:
+                sql = this.sqlDavNodeDelete;
+                break;
+            default:
+                throw new AdsException("Unsupported write request kind. [" + kind + "]");
+            }
+            for (AdsWriteRequest request : requests) {
+                handlers.add(createStatementHandler(kind, request.getRecord()));
+            }
+            this.executeBatchSql(sql, handlers, expectedCount);
+        }
+
+        StatementHandler createStatementHandler(AdsWriteRequest.Kind kind, Object record) {
+            switch (kind) {
+            case CREATE_ENTITY:
+            case UPDATE_ENTITY:
+                return new StatementHandlerForEntity((EntitySetDocHandler) record);
+            case CREATE_CELL:
+            case UPDATE_CELL:
+                return new StatementHandlerForCell((EntitySetDocHandler) record);
+            case CREATE_LINK:
+            case UPDATE_LINK:
+                return new StatementHandlerForLink((LinkDocHandler) record);
+            case CREATE_DAV_NODE:
+            case UPDATE_DAV_NODE:
+                return new StatementHandlerForDavNode((DavNode) record);
+            default:
+                // 削除はIDのみを指定する
+                return new StatementHandlerForId((String) record);
+            }
+        }
+
         Long countEntity() throws AdsException {
             Object ret = this.executeQuerySql(
                     this.sqlEntityCount,
@@ -1234,6 +1344,180 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * 複数行のINSERT文を一定の行数ごとに分割して実行する.
+         * 行数が同じINSERT文は同一のSQLとなるため、コネクションプールのPreparedStatementキャッシュが利用される。
+         * 設定された行数ごとにコミットし、0の場合は全体を1トランザクションとする。
+         * @param <T> 行データの型
+         * @param sqlHead VALUES句より前のSQL
+         * @param values 1行分のVALUES句
+         * @param sqlTail VALUES句より後のSQL
+         * @param rows 行データ
+         * @param factory 分割した行データにパラメタを設定するStatementHandlerのファクトリ
+         * @param expectedCountPerRow 1行あたりの期待する更新件数。負の場合は件数を確認しない
+         * @throws AdsException 処理失敗時発生
+         */
+        <T> void executeBulkSql(String sqlHead, String values, String sqlTail, List<T> rows,
+                BulkStatementHandlerFactory<T> factory, int expectedCountPerRow) throws AdsException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            int rowsPerStatement = Math.max(1, DcCoreConfig.getEsAdsBulkRowsPerStatement());
+            int transactionSize = DcCoreConfig.getEsAdsBulkTransactionSize();
+            Connection con = this.getConnection();
+            PreparedStatement fullStmt = null;
+            PreparedStatement stmt = null;
+            int count = 0;
+            try {
+                con.setAutoCommit(false);
+                int uncommitted = 0;
+                for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                    List<T> chunk = rows.subList(from, Math.min(rows.size(), from + rowsPerStatement));
+                    if (chunk.size() == rowsPerStatement) {
+                        if (null == fullStmt) {
+                            fullStmt = con.prepareStatement(buildBulkSql(sqlHead, values, sqlTail, rowsPerStatement));
+                        }
+                        stmt = fullStmt;
+                    } else {
+                        stmt = con.prepareStatement(buildBulkSql(sqlHead, values, sqlTail, chunk.size()));
+                    }
+                    factory.create(chunk).handle(stmt);
+                    count += stmt.executeUpdate();
+                    BULK_STATEMENT_COUNT.incrementAndGet();
+                    if (stmt != fullStmt) {
+                        stmt.close();
+                    }
+                    stmt = null;
+                    uncommitted += chunk.size();
+                    if (transactionSize > 0 && uncommitted >= transactionSize) {
+                        con.commit();
+                        BULK_COMMIT_COUNT.incrementAndGet();
+                        uncommitted = 0;
+                    }
+                }
+                if (uncommitted > 0) {
+                    con.commit();
+                    BULK_COMMIT_COUNT.incrementAndGet();
+                }
+                BULK_ROW_COUNT.addAndGet(rows.size());
+            } catch (SQLException e) {
+                DcCoreLog.Server.EXECUTE_QUERY_SQL_FAIL.params(e.getMessage()).reason(e).writeLog();
+                try {
+                    con.rollback();
+                } catch (SQLException e1) {
+                    log.info("Failed to rollback bulk statements.", e1);
+                }
+                throw new AdsException(e);
+            } finally {
+                try {
+                    if (stmt != null && stmt != fullStmt) {
+                        stmt.close();
+                    }
+                    if (fullStmt != null) {
+                        fullStmt.close();
+                    }
+                    con.setAutoCommit(true);
+                    con.close();
+                } catch (SQLException e) {
+                    DcCoreLog.Server.RDB_DISCONNECT_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    throw new AdsException(e);
+                }
+            }
+            int expectedCount = rows.size() * expectedCountPerRow;
+            if (expectedCountPerRow >= 0 && count != expectedCount) {
+                throw new AdsException("["
+                        + count + "] rows have been affected while " + expectedCount
+                        + " row is expected to be affected.");
+            }
+        }
+
+        /**
+         * 指定行数分のVALUES句を持つINSERT文を生成する.
+         * @param sqlHead VALUES句より前のSQL
+         * @param values 1行分のVALUES句
+         * @param sqlTail VALUES句より後のSQL
+         * @param rowCount 行数
+         * @return SQL
+         */
+        static String buildBulkSql(String sqlHead, String values, String sqlTail, int rowCount) {
+            StringBuilder sql = new StringBuilder(sqlHead);
+            for (int i = 0; i < rowCount; i++) {
+                if (i > 0) {
+                    sql.append(",");
+                }
+                sql.append(values);
+            }
+            sql.append(sqlTail);
+            return sql.toString();
+        }
+
+        /**
+         * 1つのSQLに対してStatementHandler毎にパラメタを設定してバッチ実行する.
+         * バッチ全体を1つのトランザクションで実行し、失敗時や更新件数が期待と異なる場合はロールバックする.
+         * 呼び出し側が1件ずつ再実行した際に、一部の行だけが反映済みとなり重複キーエラーとなることを防ぐ.
+         * @param sql SQL
+         * @param handlers バッチに追加する1行分ずつのStatementHandler
+         * @param expectedCount 1行あたりの期待する更新件数。負の場合は件数を確認しない
+         * @throws AdsException 処理失敗時発生
+         */
+        void executeBatchSql(String sql, List<StatementHandler> handlers, int expectedCount) throws AdsException {
+            Connection con = this.getConnection();
+            PreparedStatement stmt = null;
+            try {
+                con.setAutoCommit(false);
+                stmt = con.prepareStatement(sql);
+                for (StatementHandler handler : handlers) {
+                    handler.handle(stmt);
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                for (int count : counts) {
+                    // rewriteBatchedStatements指定時は件数が返却されない
+                    if (count == Statement.SUCCESS_NO_INFO || expectedCount < 0) {
+                        continue;
+                    }
+                    if (count != expectedCount) {
+                        rollback(con);
+                        throw new AdsException("["
+                                + count + "] rows have been affected while " + expectedCount
+                                + " row is expected to be affected.");
+                    }
+                }
+                con.commit();
+            } catch (SQLException e) {
+                DcCoreLog.Server.EXECUTE_QUERY_SQL_FAIL.params(e.getMessage()).reason(e).writeLog();
+                rollback(con);
+                throw new AdsException(e);
+            } finally {
+                try {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                    con.setAutoCommit(true);
+                    con.close();
+                } catch (SQLException e) {
+                    DcCoreLog.Server.RDB_DISCONNECT_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    throw new AdsException(e);
+                }
+            }
+        }
+
+        private void rollback(Connection con) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                log.info("Failed to rollback batch statements.", e);
+            }
+        }
+
+        /**
+         * 一括登録/更新で分割した行データにパラメタを設定するStatementHandlerを作成する.
+         * @param <T> 行データの型
+         */
+        interface BulkStatementHandlerFactory<T> {
+            StatementHandler create(List<T> rows);
+        }
+
         /**
          * SQLのPreparedStatementを受け取ってプレースホルダに値を埋め込むHandler.
          */
@@ -1280,6 +1564,23 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * IDを指定した削除を扱うためのStatementHandler.
+         */
+        static class StatementHandlerForId extends StatementHandler {
+            String id;
+
+            StatementHandlerForId(String id) {
+                this.id = id;
+            }
+
+            @Override
+            public void handle(PreparedStatement stmt) throws SQLException {
+                stmt.setString(1, id);
+                writeLog(stmt);
+            }
+        }
+
         /**
          * BulkEntityを扱うためのStatementHandler.
          */
@@ -0,0 +1,118 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+import com.fujitsu.dc.core.utils.LocalCache;
+
+/**
+ * Davのメタデータから作成したACLをノード内に保持するキャッシュ.
+ * 保存されたACLのprincipalはロールIDのため、ロールリソースURLへの変換にロールの検索が必要となる.
+ * 変換とコンパイルを済ませたACLをメタデータのバージョンを含むキーで保持し、ロールの変更は{@link RoleListCache}の
+ * Cell単位のスタンプで検知する. ロール一覧のキャッシュが無効な場合は保持しない.
+ * 保持したACLは複数のリクエストで共有するため、取得したACLを変更してはならない.
+ */
+public class AclCache {
+
+    private static LocalCache<String, Entry> entries =
+            new LocalCache<String, Entry>(DcCoreConfig.getAclLocalCacheMaxSize());
+
+    private AclCache() {
+    }
+
+    /**
+     * ノード内に保持するACL.
+     */
+    static final class Entry {
+        private final Acl acl;
+        private final Object stamp;
+        private volatile long checkedAt;
+
+        Entry(Acl acl, Object stamp, long checkedAt) {
+            this.acl = acl;
+            this.stamp = stamp;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * キャッシュからACLを取得する.
+     * @param cellId CellのID
+     * @param key Davのメタデータのバージョンを含むキー
+     * @return ACL。存在しない、またはロールが変更されている場合はnull
+     */
+    public static Acl get(String cellId, String key) {
+        if (!RoleListCache.isEnabled()) {
+            return null;
+        }
+        String cacheKey = cacheKey(cellId, key);
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt >= DcCoreConfig.getRoleLocalCacheTtl()
+                || !entry.stamp.equals(RoleListCache.localStamp(cellId))) {
+            Object stamp = RoleListCache.sharedStamp(cellId);
+            if (stamp == null || !stamp.equals(entry.stamp)) {
+                entries.remove(cacheKey);
+                return null;
+            }
+            entry.checkedAt = now;
+        }
+        return entry.acl;
+    }
+
+    /**
+     * ロールIDの変換を行う前に、現在のスタンプを取得する.
+     * 変換中にロールが変更された場合に古いACLを新しいスタンプで保持しないよう、変換より先に呼び出すこと.
+     * @param cellId CellのID
+     * @return スタンプ。キャッシュが無効、またはスタンプの取得に失敗した場合はnull
+     */
+    public static Object currentStamp(String cellId) {
+        return RoleListCache.currentStamp(cellId);
+    }
+
+    /**
+     * ACLをコンパイルしてノード内に保持する.
+     * @param cellId CellのID
+     * @param key Davのメタデータのバージョンを含むキー
+     * @param stamp ロールIDの変換前に{@link #currentStamp(String)}で取得したスタンプ
+     * @param acl ロールIDをロールリソースURLに変換したACL
+     */
+    public static void cache(String cellId, String key, Object stamp, Acl acl) {
+        if (stamp == null || acl == null || !RoleListCache.isEnabled()) {
+            return;
+        }
+        // 共有後にコンパイル結果を書き込まないよう、保持する前にコンパイルしておく
+        acl.getCompiled();
+        entries.setMaxSize(DcCoreConfig.getAclLocalCacheMaxSize());
+        entries.put(cacheKey(cellId, key), new Entry(acl, stamp, System.currentTimeMillis()));
+    }
+
+    /**
+     * ノード内に保持しているACLを全て破棄する.
+     */
+    static void clearLocalCache() {
+        entries.clear();
+    }
+
+    private static String cacheKey(String cellId, String key) {
+        return cellId + "\t" + key;
+    }
+}
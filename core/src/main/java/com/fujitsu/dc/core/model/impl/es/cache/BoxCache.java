@@ -36,6 +36,9 @@ public class BoxCache {
     static Logger log = LoggerFactory.getLogger(BoxCache.class);
     private static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
 
+    private static TwoTierCache twoTierCache = new TwoTierCache(DcCoreConfig.getBoxLocalCacheMaxSize(),
+            DcCoreConfig.getBoxLocalCacheTtl());
+
     static CacheClient getMcdClient() {
         return mcdClient;
     }
@@ -54,10 +57,9 @@ public class BoxCache {
             return null;
         }
 
-        @SuppressWarnings("rawtypes")
-        HashMap obj = null;
+        Map<String, Object> obj = null;
         try {
-            obj = getMcdClient().get(cacheKey(boxName, cell), HashMap.class);
+            obj = twoTierCache.get(getMcdClient(), cacheKey(boxName, cell));
         } catch (MemcachedClientException e) {
             // キャッシュのアクセスに失敗した場合は、DBからデータを取得させるためnullを返却
             log.info("Failed to get BoxCache.");
@@ -88,7 +90,7 @@ public class BoxCache {
         obj.put("schema", box.getSchema());
         obj.put("published", box.getPublished());
 
-        getMcdClient().put(cacheKey(box.getName(), box.getCell()), DcCoreConfig.getCacheMemcachedExpiresIn(), obj);
+        twoTierCache.put(getMcdClient(), cacheKey(box.getName(), box.getCell()), obj);
     }
 
     /**
@@ -100,7 +102,22 @@ public class BoxCache {
         if (!DcCoreConfig.isBoxCacheEnabled()) {
             return;
         }
-        getMcdClient().delete(cacheKey(boxName, cell));
+        twoTierCache.clear(getMcdClient(), cacheKey(boxName, cell));
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return 階層毎のヒット件数、ヒット率等を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        return twoTierCache.getStatistics();
+    }
+
+    /**
+     * ノード内に保持しているBox情報を全て破棄する.
+     */
+    static void clearLocalCache() {
+        twoTierCache.clearLocal();
     }
 
     static String cacheKey(String boxName, Cell cell) {
@@ -34,6 +34,9 @@ public class CellCache {
 
     static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
 
+    private static TwoTierCache twoTierCache = new TwoTierCache(DcCoreConfig.getCellLocalCacheMaxSize(),
+            DcCoreConfig.getCellLocalCacheTtl());
+
     private CellCache() {
     }
 
@@ -51,9 +54,7 @@ public class CellCache {
             return null;
         }
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> cache = getMcdClient().get(cacheKey(cellName), Map.class);
-            return cache;
+            return twoTierCache.get(getMcdClient(), cacheKey(cellName));
         } catch (MemcachedClientException e) {
             // キャッシュのアクセスに失敗した場合は、DBからデータを取得させるためnullを返却
             log.info("Failed to get CellCache.");
@@ -70,7 +71,7 @@ public class CellCache {
         if (!DcCoreConfig.isCellCacheEnabled()) {
             return;
         }
-        getMcdClient().put(cacheKey(cellName), DcCoreConfig.getCacheMemcachedExpiresIn(), cell);
+        twoTierCache.put(getMcdClient(), cacheKey(cellName), cell);
     }
 
     /**
@@ -81,7 +82,22 @@ public class CellCache {
         if (!DcCoreConfig.isCellCacheEnabled()) {
             return;
         }
-        getMcdClient().delete(cacheKey(cellName));
+        twoTierCache.clear(getMcdClient(), cacheKey(cellName));
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return 階層毎のヒット件数、ヒット率等を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        return twoTierCache.getStatistics();
+    }
+
+    /**
+     * ノード内に保持しているCell情報を全て破棄する.
+     */
+    static void clearLocalCache() {
+        twoTierCache.clearLocal();
     }
 
     static String cacheKey(String cellName) {
@@ -0,0 +1,263 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.core.utils.LocalCache;
+import com.fujitsu.dc.core.utils.MemcachedClient;
+import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * アクセス主体に払い出すロールの一覧をCell毎にノード内に保持するキャッシュ.
+ * Account、Role、ExtCell、Relation、ExtRole及びBoxの更新時にCell単位のバージョンスタンプをmemcached上で更新し、
+ * 有効期間を過ぎたエントリは再検証時にスタンプを比較することで他ノードでの更新も反映する.
+ */
+public class RoleListCache {
+    static Logger log = LoggerFactory.getLogger(RoleListCache.class);
+
+    static CacheClient mcdClient = MemcachedClient.getCacheClient();
+
+    private static final String STAMP_KEY_PREFIX = "roleStamp:";
+
+    private static LocalCache<String, Entry> entries =
+            new LocalCache<String, Entry>(DcCoreConfig.getRoleLocalCacheMaxSize());
+
+    /**
+     * Cell毎に最後に確認したスタンプ. ロール一覧と同じ件数を上限とし、破棄されたCellは次回参照時に再検証する.
+     */
+    private static LocalCache<String, Object> localStamps =
+            new LocalCache<String, Object>(DcCoreConfig.getRoleLocalCacheMaxSize());
+
+    /** ノード全体の利用状況. Cell数に比例して増えないよう、Cell毎には集計しない. */
+    private static final AtomicLong HIT = new AtomicLong();
+    private static final AtomicLong MISS = new AtomicLong();
+    private static final AtomicLong INVALIDATE = new AtomicLong();
+
+    private RoleListCache() {
+    }
+
+    static CacheClient getMcdClient() {
+        return mcdClient;
+    }
+
+    /**
+     * ノード内に保持するロール一覧.
+     */
+    static final class Entry {
+        private final List<Role> roles;
+        private final Object stamp;
+        private volatile long checkedAt;
+
+        Entry(List<Role> roles, Object stamp, long checkedAt) {
+            this.roles = roles;
+            this.stamp = stamp;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * キャッシュからロール一覧を取得する. 呼び出し側で変更されても影響が無いよう複製を返す.
+     * @param cellId CellのID
+     * @param key アクセス主体を表すキー
+     * @return ロール一覧。存在しない、または無効となっている場合はnull
+     */
+    public static List<Role> get(String cellId, String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String cacheKey = cacheKey(cellId, key);
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            MISS.incrementAndGet();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt >= DcCoreConfig.getRoleLocalCacheTtl()
+                || !entry.stamp.equals(localStamps.get(cellId))) {
+            Object stamp;
+            try {
+                stamp = getMcdClient().get(stampKey(cellId), Object.class);
+            } catch (MemcachedClientException e) {
+                // スタンプが確認できない場合は、DBからロールを取得させるためnullを返却
+                log.info("Failed to get RoleListCache stamp.");
+                MISS.incrementAndGet();
+                return null;
+            }
+            if (stamp == null || !stamp.equals(entry.stamp)) {
+                entries.remove(cacheKey);
+                MISS.incrementAndGet();
+                return null;
+            }
+            localStamps.put(cellId, stamp);
+            entry.checkedAt = now;
+        }
+        HIT.incrementAndGet();
+        return new ArrayList<Role>(entry.roles);
+    }
+
+    /**
+     * ロール一覧を取得する前に、現在のスタンプを取得する.
+     * 取得中に更新があった場合に古いロール一覧を新しいスタンプで保持しないよう、ロール一覧の取得より先に呼び出すこと.
+     * @param cellId CellのID
+     * @return スタンプ。キャッシュが無効、またはスタンプの取得に失敗した場合はnull
+     */
+    public static Object currentStamp(String cellId) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            Object stamp = getMcdClient().get(stampKey(cellId), Object.class);
+            if (stamp == null) {
+                stamp = newStamp();
+                getMcdClient().put(stampKey(cellId), DcCoreConfig.getCacheMemcachedExpiresIn(), stamp);
+            }
+            localStamps.put(cellId, stamp);
+            return stamp;
+        } catch (MemcachedClientException e) {
+            log.info("Failed to get RoleListCache stamp.");
+            return null;
+        }
+    }
+
+    /**
+     * ロール一覧をノード内に保持する.
+     * @param cellId CellのID
+     * @param key アクセス主体を表すキー
+     * @param stamp ロール一覧の取得前に{@link #currentStamp(String)}で取得したスタンプ
+     * @param roles ロール一覧
+     */
+    public static void cache(String cellId, String key, Object stamp, List<Role> roles) {
+        if (stamp == null || roles == null || !isEnabled()) {
+            return;
+        }
+        entries.setMaxSize(DcCoreConfig.getRoleLocalCacheMaxSize());
+        localStamps.setMaxSize(DcCoreConfig.getRoleLocalCacheMaxSize());
+        entries.put(cacheKey(cellId, key),
+                new Entry(new ArrayList<Role>(roles), stamp, System.currentTimeMillis()));
+    }
+
+    /**
+     * 指定したCellのロール一覧を無効化する. 他ノードのキャッシュも次回の再検証時に無効となる.
+     * @param cellId CellのID
+     */
+    public static void clear(String cellId) {
+        if (!isEnabled()) {
+            return;
+        }
+        INVALIDATE.incrementAndGet();
+        Object stamp = newStamp();
+        localStamps.put(cellId, stamp);
+        try {
+            getMcdClient().put(stampKey(cellId), DcCoreConfig.getCacheMemcachedExpiresIn(), stamp);
+        } catch (MemcachedClientException e) {
+            // 他ノードへは反映できないため、少なくとも自ノードで古いロール一覧を返却しないよう全て破棄する
+            log.info("Failed to update RoleListCache stamp.");
+            entries.clear();
+            AclCache.clearLocalCache();
+        }
+    }
+
+    /**
+     * 指定したCellについてノード内で最後に確認したスタンプを返す.
+     * @param cellId CellのID
+     * @return スタンプ。未確認の場合はnull
+     */
+    static Object localStamp(String cellId) {
+        return localStamps.get(cellId);
+    }
+
+    /**
+     * memcached上の現在のスタンプを取得し、ノード内で最後に確認したスタンプとして保持する.
+     * @param cellId CellのID
+     * @return スタンプ。存在しない、または取得に失敗した場合はnull
+     */
+    static Object sharedStamp(String cellId) {
+        Object stamp;
+        try {
+            stamp = getMcdClient().get(stampKey(cellId), Object.class);
+        } catch (MemcachedClientException e) {
+            log.info("Failed to get RoleListCache stamp.");
+            return null;
+        }
+        if (stamp != null) {
+            localStamps.put(cellId, stamp);
+        }
+        return stamp;
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return ノード全体のヒット件数、ミス件数、ヒット率、無効化回数と保持件数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        long hit = HIT.get();
+        long miss = MISS.get();
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("hit", hit);
+        stats.put("miss", miss);
+        stats.put("hitRatio", ratio(hit, hit + miss));
+        stats.put("invalidate", INVALIDATE.get());
+        stats.put("size", entries.size());
+        return stats;
+    }
+
+    /**
+     * ノード内に保持しているロール一覧と利用状況を全て破棄する.
+     */
+    static void clearLocalCache() {
+        entries.clear();
+        localStamps.clear();
+        HIT.set(0);
+        MISS.set(0);
+        INVALIDATE.set(0);
+    }
+
+    static boolean isEnabled() {
+        return DcCoreConfig.isRoleCacheEnabled() && getMcdClient() != null;
+    }
+
+    private static String newStamp() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static String stampKey(String cellId) {
+        return STAMP_KEY_PREFIX + cellId;
+    }
+
+    private static String cacheKey(String cellId, String key) {
+        return cellId + "\t" + key;
+    }
+
+    private static double ratio(long count, long total) {
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) count / total;
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.core.utils.LocalCache;
+
+/**
+ * ノード内キャッシュ(L1)とmemcached(L2)の2階層で情報を保持するキャッシュ.
+ * L1の情報は有効期間内であればそのまま返却し、有効期間を過ぎた場合はmemcached上のバージョンスタンプと比較して再検証する.
+ * clear時にバージョンスタンプを更新することで、他ノードのL1キャッシュも再検証時に無効となる.
+ */
+public class TwoTierCache {
+
+    private static final String STAMP_KEY_PREFIX = "stamp:";
+
+    private final LocalCache<String, LocalEntry> entries;
+    private volatile long ttlMillis;
+
+    private final AtomicLong l1HitCount = new AtomicLong();
+    private final AtomicLong l2HitCount = new AtomicLong();
+    private final AtomicLong l2MissCount = new AtomicLong();
+    private final AtomicLong revalidateCount = new AtomicLong();
+
+    /**
+     * L1に保持する情報.
+     */
+    static final class LocalEntry {
+        private final Map<String, Object> value;
+        private final Object stamp;
+        private volatile long checkedAt;
+
+        LocalEntry(Map<String, Object> value, Object stamp, long checkedAt) {
+            this.value = value;
+            this.stamp = stamp;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * コンストラクタ.
+     * @param maxSize L1に保持する最大件数。0以下の場合はL1を使用しない
+     * @param ttlMillis L1の情報を再検証せずに使用する期間(ms)
+     */
+    public TwoTierCache(int maxSize, long ttlMillis) {
+        this.entries = new LocalCache<String, LocalEntry>(maxSize);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * L1の設定を変更する.
+     * @param maxSize L1に保持する最大件数。0以下の場合はL1を使用しない
+     * @param ttl L1の情報を再検証せずに使用する期間(ms)
+     */
+    public void configure(int maxSize, long ttl) {
+        this.entries.setMaxSize(maxSize);
+        this.ttlMillis = ttl;
+        if (maxSize <= 0) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * キャッシュから情報を取得する. 呼び出し側で変更されても影響が無いよう複製を返す.
+     * @param client L2として使用するキャッシュクライアント
+     * @param key キャッシュキー
+     * @return 情報を格納したMap。存在しない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> get(CacheClient client, String key) {
+        if (entries.getMaxSize() <= 0) {
+            return countL2(client.get(key, Map.class));
+        }
+
+        long now = System.currentTimeMillis();
+        LocalEntry entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.checkedAt < ttlMillis) {
+                l1HitCount.incrementAndGet();
+                return copy(entry.value);
+            }
+            revalidateCount.incrementAndGet();
+            Object stamp = client.get(stampKey(key), Object.class);
+            if (stamp != null && stamp.equals(entry.stamp)) {
+                entry.checkedAt = now;
+                l1HitCount.incrementAndGet();
+                return copy(entry.value);
+            }
+            entries.remove(key);
+        }
+
+        // clearとの競合時に古い情報を新しいスタンプで保持しないよう、スタンプは情報より先に取得する
+        Object stamp = currentStamp(client, key);
+        Map<String, Object> value = countL2(client.get(key, Map.class));
+        if (value != null) {
+            entries.put(key, new LocalEntry(copy(value), stamp, now));
+        }
+        return value;
+    }
+
+    /**
+     * 情報をL2にキャッシュする. L1には次回の取得時に格納する.
+     * @param client L2として使用するキャッシュクライアント
+     * @param key キャッシュキー
+     * @param value 情報を格納したMap
+     */
+    public void put(CacheClient client, String key, Map<String, Object> value) {
+        entries.remove(key);
+        client.put(key, DcCoreConfig.getCacheMemcachedExpiresIn(), value);
+    }
+
+    /**
+     * 指定キーのキャッシュを削除し、バージョンスタンプを更新して他ノードのL1を無効化する.
+     * @param client L2として使用するキャッシュクライアント
+     * @param key キャッシュキー
+     */
+    public void clear(CacheClient client, String key) {
+        entries.remove(key);
+        client.delete(key);
+        client.put(stampKey(key), DcCoreConfig.getCacheMemcachedExpiresIn(), newStamp());
+    }
+
+    /**
+     * L1に保持している情報を全て破棄する. L2の情報及びバージョンスタンプは変更しない.
+     */
+    public void clearLocal() {
+        entries.clear();
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return 階層毎のヒット件数、ヒット率、再検証回数、L1の保持件数を格納したMap
+     */
+    public Map<String, Object> getStatistics() {
+        long l1Hit = l1HitCount.get();
+        long l2Hit = l2HitCount.get();
+        long l2Miss = l2MissCount.get();
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("l1Hit", l1Hit);
+        stats.put("l1HitRatio", ratio(l1Hit, l1Hit + l2Hit + l2Miss));
+        stats.put("l2Hit", l2Hit);
+        stats.put("l2Miss", l2Miss);
+        stats.put("l2HitRatio", ratio(l2Hit, l2Hit + l2Miss));
+        stats.put("revalidate", revalidateCount.get());
+        stats.put("size", entries.size());
+        return stats;
+    }
+
+    private Map<String, Object> countL2(Map<String, Object> value) {
+        if (value == null) {
+            l2MissCount.incrementAndGet();
+        } else {
+            l2HitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    private Object currentStamp(CacheClient client, String key) {
+        Object stamp = client.get(stampKey(key), Object.class);
+        if (stamp == null) {
+            stamp = newStamp();
+            client.put(stampKey(key), DcCoreConfig.getCacheMemcachedExpiresIn(), stamp);
+        }
+        return stamp;
+    }
+
+    private static String newStamp() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static String stampKey(String key) {
+        return STAMP_KEY_PREFIX + key;
+    }
+
+    private static double ratio(long count, long total) {
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) count / total;
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> map) {
+        return new HashMap<String, Object>(map);
+    }
+}
@@ -31,6 +31,11 @@ import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
  * ユーザデータスキーマのキャッシュを扱うクラス.
  */
 public class UserDataSchemaCache {
+    /**
+     * キャッシュ情報のバージョンを格納するキー. ノード内キャッシュ({@link UserDataSchemaLocalCache})の有効性判定に使用する.
+     */
+    public static final String KEY_VERSION = "version";
+
     static Logger log = LoggerFactory.getLogger(UserDataSchemaCache.class);
     static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
 
@@ -78,6 +83,7 @@ public class UserDataSchemaCache {
      * @param nodeId ノードID
      */
     public static void clear(String nodeId) {
+        UserDataSchemaLocalCache.clear(nodeId);
         if (!DcCoreConfig.isSchemaCacheEnabled()) {
             return;
         }
@@ -89,6 +95,7 @@ public class UserDataSchemaCache {
      * @param nodeId ノードID
      */
     public static void disable(String nodeId) {
+        UserDataSchemaLocalCache.clear(nodeId);
         if (!DcCoreConfig.isSchemaCacheEnabled()) {
             return;
         }
@@ -0,0 +1,193 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.odata4j.edm.EdmDataServices;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.odata.PropertyAlias;
+import com.fujitsu.dc.core.utils.LocalCache;
+
+/**
+ * パース済みのユーザデータスキーマをノード内に保持するキャッシュ.
+ * memcached上のスキーマキャッシュ({@link UserDataSchemaCache})に格納されたバージョンと一致する場合のみ有効とし、
+ * disable/clearによりmemcached側のキャッシュが更新された場合は自動的に無効となる.
+ * memcached側と同様に、スキーマキャッシュが無効に設定されている場合は保持しない.
+ */
+public class UserDataSchemaLocalCache {
+
+    private static LocalCache<String, Entry> entries =
+            new LocalCache<String, Entry>(DcCoreConfig.getSchemaLocalCacheMaxSize());
+
+    private static final AtomicLong HIT_COUNT = new AtomicLong();
+    private static final AtomicLong MISS_COUNT = new AtomicLong();
+    private static final AtomicLong PARSE_COUNT = new AtomicLong();
+    private static final AtomicLong PARSE_TIME = new AtomicLong();
+
+    private UserDataSchemaLocalCache() {
+    }
+
+    /**
+     * ノード内に保持するスキーマ情報.
+     */
+    public static final class Entry {
+        private final String version;
+        private final EdmDataServices metadata;
+        private final Map<String, String> entityTypeIds;
+        private final Map<String, PropertyAlias> propertyAliasMap;
+        private final Map<String, String> entityTypeMap;
+
+        /**
+         * コンストラクタ. 各Mapは複製して保持する.
+         * @param version memcached上のスキーマキャッシュのバージョン
+         * @param metadata パース済みのスキーマ
+         * @param entityTypeIds EntityType名とUUIDの対応Map
+         * @param propertyAliasMap プロパティ名とエイリアスの対応Map
+         * @param entityTypeMap EntityTypeのUUIDと名前の対応Map
+         */
+        public Entry(String version,
+                EdmDataServices metadata,
+                Map<String, String> entityTypeIds,
+                Map<String, PropertyAlias> propertyAliasMap,
+                Map<String, String> entityTypeMap) {
+            this.version = version;
+            this.metadata = metadata;
+            this.entityTypeIds = copy(entityTypeIds);
+            this.propertyAliasMap = copy(propertyAliasMap);
+            this.entityTypeMap = copy(entityTypeMap);
+        }
+
+        /**
+         * @return memcached上のスキーマキャッシュのバージョン
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return パース済みのスキーマ
+         */
+        public EdmDataServices getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * 呼び出し側で変更されても影響が無いよう複製を返す.
+         * @return EntityType名とUUIDの対応Map
+         */
+        public Map<String, String> getEntityTypeIds() {
+            return copy(entityTypeIds);
+        }
+
+        /**
+         * 呼び出し側で変更されても影響が無いよう複製を返す.
+         * @return プロパティ名とエイリアスの対応Map
+         */
+        public Map<String, PropertyAlias> getPropertyAliasMap() {
+            return copy(propertyAliasMap);
+        }
+
+        /**
+         * 呼び出し側で変更されても影響が無いよう複製を返す.
+         * @return EntityTypeのUUIDと名前の対応Map
+         */
+        public Map<String, String> getEntityTypeMap() {
+            return copy(entityTypeMap);
+        }
+
+        private static <V> Map<String, V> copy(Map<String, V> map) {
+            if (map == null) {
+                return null;
+            }
+            return new HashMap<String, V>(map);
+        }
+    }
+
+    /**
+     * 指定したバージョンのスキーマ情報を取得する.
+     * @param nodeId ノードID
+     * @param version memcached上のスキーマキャッシュのバージョン
+     * @return スキーマ情報。存在しない、またはバージョンが異なる場合はnull
+     */
+    public static Entry get(String nodeId, String version) {
+        if (!DcCoreConfig.isSchemaCacheEnabled()) {
+            return null;
+        }
+        if (version == null) {
+            MISS_COUNT.incrementAndGet();
+            return null;
+        }
+        Entry entry = entries.get(nodeId);
+        if (entry == null || !version.equals(entry.getVersion())) {
+            MISS_COUNT.incrementAndGet();
+            return null;
+        }
+        HIT_COUNT.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * スキーマ情報をノード内に保持する.
+     * @param nodeId ノードID
+     * @param entry スキーマ情報
+     */
+    public static void cache(String nodeId, Entry entry) {
+        if (!DcCoreConfig.isSchemaCacheEnabled()) {
+            return;
+        }
+        if (entry.getVersion() == null) {
+            return;
+        }
+        entries.setMaxSize(DcCoreConfig.getSchemaLocalCacheMaxSize());
+        entries.put(nodeId, entry);
+    }
+
+    /**
+     * 指定したノードのスキーマ情報を削除する.
+     * @param nodeId ノードID
+     */
+    public static void clear(String nodeId) {
+        entries.remove(nodeId);
+    }
+
+    /**
+     * EDMXのパースに要した時間を記録する.
+     * @param elapsedMillis パースに要した時間(ms)
+     */
+    public static void recordParseTime(long elapsedMillis) {
+        PARSE_COUNT.incrementAndGet();
+        PARSE_TIME.addAndGet(elapsedMillis);
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return ヒット件数、ミス件数、パース回数、パース合計時間(ms)、保持件数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("hit", HIT_COUNT.get());
+        stats.put("miss", MISS_COUNT.get());
+        stats.put("parseCount", PARSE_COUNT.get());
+        stats.put("parseTimeMillis", PARSE_TIME.get());
+        stats.put("size", entries.size());
+        return stats;
+    }
+}
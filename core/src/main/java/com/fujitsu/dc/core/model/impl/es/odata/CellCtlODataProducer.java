@@ -16,8 +16,11 @@
  */
 package com.fujitsu.dc.core.model.impl.es.odata;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,16 +42,20 @@ import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.BoxCmp;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.ModelFactory;
+import com.fujitsu.dc.core.model.ctl.Account;
 import com.fujitsu.dc.core.model.ctl.CtlSchema;
 import com.fujitsu.dc.core.model.ctl.ExtCell;
+import com.fujitsu.dc.core.model.ctl.ExtRole;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessage;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessagePort;
 import com.fujitsu.dc.core.model.ctl.Relation;
+import com.fujitsu.dc.core.model.ctl.Role;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.accessor.DataSourceAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
 import com.fujitsu.dc.core.model.impl.es.cache.BoxCache;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleListCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
@@ -58,8 +65,16 @@ import com.fujitsu.dc.core.odata.OEntityWrapper;
  * Cell管理オブジェクトの ODataProducer.
  */
 public class CellCtlODataProducer extends EsODataProducer {
+    /**
+     * 変更時にロール一覧のキャッシュを無効化するEntitySet. ロールのBox名・スキーマURLが変わるためBoxも含める.
+     */
+    private static final Set<String> ROLE_RELATED_ENTITY_SETS = new HashSet<String>(Arrays.asList(
+            Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, ExtCell.EDM_TYPE_NAME,
+            Relation.EDM_TYPE_NAME, ExtRole.EDM_TYPE_NAME, Box.EDM_TYPE_NAME));
+
     Cell cell;
     Logger log = LoggerFactory.getLogger(CellCtlODataProducer.class);
+    private volatile boolean roleRelatedChanged = false;
 
     /**
      * Constructor.
@@ -199,6 +214,7 @@ public class CellCtlODataProducer extends EsODataProducer {
 
             // 関係登録/削除
             updateRelation(entitySetDocHandler, status);
+            RoleListCache.clear(this.cell.getId());
 
             // 取得した受信メッセージのステータスと更新日を上書きする
             updateStatusOfEntitySetDocHandler(entitySetDocHandler, status);
@@ -551,7 +567,26 @@ public class CellCtlODataProducer extends EsODataProducer {
     protected void checkInvalidLinks(EntitySetDocHandler sourceDocHandler, OEntity entity, String targetEntitySetName) {
     }
 
+    /**
+     * アクセス主体に払い出すロールに影響するEntitySetが変更される場合は、Cellのロール一覧のキャッシュを無効化する.
+     * 無効化から更新の反映までの間に取得されたロール一覧がキャッシュされるため、反映後の{@link #afterCommit()}でも再度無効化する.
+     * @param entitySetName エンティティセット名
+     */
     @Override
     public void onChange(String entitySetName) {
+        if (ROLE_RELATED_ENTITY_SETS.contains(entitySetName)) {
+            this.roleRelatedChanged = true;
+            RoleListCache.clear(this.cell.getId());
+        }
+    }
+
+    /**
+     * ロールに影響するEntitySetの更新がデータストアに反映された後、Cellのロール一覧のキャッシュを無効化する.
+     */
+    @Override
+    public void afterCommit() {
+        if (this.roleRelatedChanged) {
+            RoleListCache.clear(this.cell.getId());
+        }
     }
 }
@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.odata;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -305,6 +306,13 @@ public abstract class EsODataProducer implements DcODataProducer {
     public void afterDelete() {
     }
 
+    /**
+     * 実装サブクラスProducerが更新系処理のデータストアへの反映後に処理を行いたいときは、ここをoverrideする。
+     * ロックの解放前に、更新の成否に関わらず呼び出される。
+     */
+    public void afterCommit() {
+    }
+
     /**
      * 1-0:Nの削除処理時にN側を検索処理を行う.
      * @param np EdmNavigationProperty
@@ -364,6 +372,18 @@ public abstract class EsODataProducer implements DcODataProducer {
         return LockManager.getLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId());
     }
 
+    /**
+     * 更新系処理の後処理を行い、{@link #lock()}で取得したLockを解放する.
+     * @param lock 解放するLock
+     */
+    void unlock(Lock lock) {
+        try {
+            this.afterCommit();
+        } finally {
+            lock.release();
+        }
+    }
+
     @Override
     public final BaseResponse callFunction(final EdmFunctionImport arg0,
             final Map<String, OFunctionParameter> arg1,
@@ -768,12 +788,70 @@ public abstract class EsODataProducer implements DcODataProducer {
         ODataQueryHandler visitor = getODataQueryHandler(queryInfo, eSet.getType(), implicitFilters);
         Map<String, Object> source = visitor.getSource();
 
+        // $skiptoken指定時はスクロールによるカーソル型ページングを行う
+        String skipToken = null;
+        if (queryInfo != null) {
+            skipToken = queryInfo.skipToken;
+        }
+        String scope = ScrollSkipToken.scope(getCellId(), getBoxId(), getNodeId(), eSet.getName());
+        ScrollSkipToken current = null;
+        if (skipToken != null && !ScrollSkipToken.START.equals(skipToken)) {
+            current = ScrollSkipToken.parseIfIssued(skipToken, scope);
+            if (current == null) {
+                // 発行していない$skiptokenは従来通り無視する
+                skipToken = null;
+            }
+        }
+        if (skipToken != null && queryInfo.skip != null) {
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skip", queryInfo.skip.toString());
+        }
+        ScrollContextLimiter scrollLimiter = ScrollContextLimiter.getInstance();
+        String scrollKey = null;
+        long offset = 0;
+        String nextSkipToken = null;
+
         DcSearchResponse res = null;
+        List<OEntity> entList = new ArrayList<OEntity>();
         try {
-            res = esType.search(source);
-        } catch (EsClientException ex) {
-            if (ex.getCause() instanceof DcSearchPhaseExecutionException) {
-                throw DcCoreException.Server.DATA_STORE_SEARCH_ERROR.reason(ex);
+            try {
+                if (skipToken == null) {
+                    res = esType.search(source);
+                } else if (ScrollSkipToken.START.equals(skipToken)) {
+                    if (!source.containsKey("sort")) {
+                        source.put("sort", ScrollSkipToken.defaultSort());
+                    }
+                    // 開いているスクロールが上限に達している場合は503エラーとする
+                    scrollKey = scrollLimiter.reserve(getCellId(), System.currentTimeMillis());
+                    res = esType.scrollSearch(source, DcCoreConfig.getSkipTokenKeepAliveInMillis());
+                } else {
+                    offset = current.getOffset();
+                    scrollKey = current.getScrollId();
+                    res = esType.scrollSearch(current.getScrollId(), DcCoreConfig.getSkipTokenKeepAliveInMillis());
+                }
+            } catch (EsClientException ex) {
+                if (ex.getCause() instanceof DcSearchPhaseExecutionException) {
+                    if (skipToken != null && !ScrollSkipToken.START.equals(skipToken)) {
+                        // 保持時間を過ぎたスクロールは継続できない
+                        throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", skipToken).reason(ex);
+                    }
+                    throw DcCoreException.Server.DATA_STORE_SEARCH_ERROR.reason(ex);
+                }
+            }
+            if (res != null) {
+                entList = toEntityList(queryInfo, eSet, res.getHits().getHits(), expandMaxNum);
+                if (skipToken != null) {
+                    nextSkipToken = getNextSkipToken(res, offset, scope);
+                }
+            }
+        } finally {
+            if (skipToken != null) {
+                // 最終ページまたは処理に失敗した場合はスクロールを解放する
+                String scrollId = null;
+                if (res != null) {
+                    scrollId = res.getScrollId();
+                }
+                scrollLimiter.finish(esType, getCellId(), scrollKey, scrollId, nextSkipToken != null,
+                        System.currentTimeMillis());
             }
         }
         // inlinecountの指定がallpagesの場合のみヒット件数を返却する
@@ -785,49 +863,85 @@ public abstract class EsODataProducer implements DcODataProducer {
                 count = (int) res.getHits().getAllPages();
             }
         }
-        List<OEntity> entList = new ArrayList<OEntity>();
-        if (res != null) {
-            DcSearchHit[] hits = res.getHits().getHits();
-            Map<String, List<OEntity>> expandEntitiesMap = null;
-
-            Map<String, String> ntkpProperties = new HashMap<String, String>();
-            Map<String, String> ntkpValueMap = new HashMap<String, String>();
-            getNtkpValueMap(eSet, ntkpProperties, ntkpValueMap);
-
-            List<EntitySimpleProperty> selectQuery = null;
-            if (queryInfo != null) {
-                selectQuery = queryInfo.select;
-            }
-
-            // Propert/ComplexTypePropertyと、Aliasのマッピングデータを作成する
-            // また、EntityType/ComplexTypeのUUIDと名前とのマッピングデータについても作成する(
-            if (this.propertyAliasMap != null) {
-                setEntityPropertyMap(eSet, hits, ntkpValueMap);
-            }
-            List<EntitySetDocHandler> entityList = new ArrayList<EntitySetDocHandler>();
-            for (DcSearchHit hit : hits) {
-                EntitySetDocHandler oedh = getDocHandler(hit, eSet.getName());
-                entityList.add(oedh);
-            }
-            ExpandEntitiesMapCreator creator =
-                    new ExpandEntitiesMapCreator(queryInfo, eSet.getType(), expandMaxNum);
-            creator.setCache(entityList, this);
-
-            for (EntitySetDocHandler oedh : entityList) {
-                // entityKeyの生成
-                List<String> keys = eSet.getType().getKeys();
-
-                List<String> kv = new ArrayList<String>();
-                for (String key : keys) {
-                    kv.add(key);
-                    // TODO キーがStringであることを仮定してしまってる。キーの値が文字列以外であるときは、その対応が必要。
-                    String v = (String) oedh.getStaticFields().get(key);
-                    if (v == null) {
-                        v = AbstractODataResource.DUMMY_KEY;
-                    }
-                    kv.add(v);
-                }
-                expandEntitiesMap = creator.create(oedh, this);
+        return Responses.entities(entList, eSet, count, nextSkipToken);
+    }
+
+    /**
+     * 検索結果をOEntityの一覧に変換する.
+     * @param queryInfo クエリ情報
+     * @param eSet エンティティセット
+     * @param hits 検索結果
+     * @param expandMaxNum $expandで展開する最大件数
+     * @return OEntityの一覧
+     */
+    private List<OEntity> toEntityList(QueryInfo queryInfo, EdmEntitySet eSet, DcSearchHit[] hits,
+            int expandMaxNum) {
+        Map<String, String> ntkpProperties = new HashMap<String, String>();
+        Map<String, String> ntkpValueMap = new HashMap<String, String>();
+        getNtkpValueMap(eSet, ntkpProperties, ntkpValueMap);
+
+        List<EntitySimpleProperty> selectQuery = null;
+        if (queryInfo != null) {
+            selectQuery = queryInfo.select;
+        }
+
+        // Propert/ComplexTypePropertyと、Aliasのマッピングデータを作成する
+        // また、EntityType/ComplexTypeのUUIDと名前とのマッピングデータについても作成する(
+        if (this.propertyAliasMap != null) {
+            setEntityPropertyMap(eSet, hits, ntkpValueMap);
+        }
+        List<EntitySetDocHandler> entityList = new ArrayList<EntitySetDocHandler>();
+        for (DcSearchHit hit : hits) {
+            EntitySetDocHandler oedh = getDocHandler(hit, eSet.getName());
+            entityList.add(oedh);
+        }
+        ExpandEntitiesMapCreator creator =
+                new ExpandEntitiesMapCreator(queryInfo, eSet.getType(), expandMaxNum);
+        creator.setCache(entityList, this);
+
+        OEntityList converted = new OEntityList(eSet, entityList, creator,
+                ntkpProperties, ntkpValueMap, selectQuery, expandMaxNum);
+        if (isLazyEntityConversion()) {
+            return converted;
+        }
+        return new ArrayList<OEntity>(converted);
+    }
+
+    /**
+     * 一覧取得結果のOEntityを要素の参照時に生成するかどうかを返す.
+     * 参照時に生成する場合、レスポンスを逐次出力する間に全件のOEntityを同時に保持しない.
+     * {@link #setEntityTypeIds(OEntityWrapper, Map)}の結果を一覧取得の直後に利用するProducerでは使用しないこと.
+     * @return 参照時に生成する場合はtrue
+     */
+    protected boolean isLazyEntityConversion() {
+        return false;
+    }
+
+    /**
+     * 検索結果のドキュメントを、要素の参照時にOEntityへ変換して返す読み取り専用のList.
+     * $expandの展開結果とNTKPの値は生成時に確定させ、検索やマッピングの失敗はレスポンスの出力開始前に発生させる.
+     * 変換したOEntityは保持せず、参照毎に変換する. 逐次出力では出力済みのOEntityから解放されるため、
+     * 同時に保持するOEntityは出力中の1件のみとなる.
+     */
+    private final class OEntityList extends AbstractList<OEntity> {
+        private final EdmEntitySet eSet;
+        private final EntitySetDocHandler[] docHandlers;
+        private final List<Map<String, List<OEntity>>> expandEntitiesMaps;
+        private final List<EntitySimpleProperty> selectQuery;
+
+        OEntityList(EdmEntitySet eSet,
+                List<EntitySetDocHandler> docHandlers,
+                ExpandEntitiesMapCreator creator,
+                Map<String, String> ntkpProperties,
+                Map<String, String> ntkpValueMap,
+                List<EntitySimpleProperty> selectQuery,
+                int expandMaxNum) {
+            this.eSet = eSet;
+            this.selectQuery = selectQuery;
+            this.docHandlers = docHandlers.toArray(new EntitySetDocHandler[docHandlers.size()]);
+            this.expandEntitiesMaps = new ArrayList<Map<String, List<OEntity>>>(this.docHandlers.length);
+            for (EntitySetDocHandler oedh : this.docHandlers) {
+                this.expandEntitiesMaps.add(creator.create(oedh, EsODataProducer.this));
 
                 // NTKPHashMapから値を設定する
                 Map<String, Object> staticFields = oedh.getStaticFields();
@@ -842,14 +956,43 @@ public abstract class EsODataProducer implements DcODataProducer {
                     }
                 }
                 oedh.setStaticFields(staticFields);
-
                 ((OEntityDocHandler) oedh).setExpandMaxNum(expandMaxNum);
-                OEntityWrapper oEntity = oedh.createOEntity(eSet, this.getMetadata(), expandEntitiesMap, selectQuery);
-                entList.add(oEntity);
-                setEntityTypeIds(oEntity, staticFields);
             }
         }
-        return Responses.entities(entList, eSet, count, null);
+
+        @Override
+        public OEntity get(int index) {
+            EntitySetDocHandler oedh = docHandlers[index];
+            OEntityWrapper oEntity = oedh.createOEntity(eSet, getMetadata(), expandEntitiesMaps.get(index),
+                    selectQuery);
+            setEntityTypeIds(oEntity, oedh.getStaticFields());
+            return oEntity;
+        }
+
+        @Override
+        public int size() {
+            return docHandlers.length;
+        }
+    }
+
+    /**
+     * 次ページ取得用の$skiptokenを生成する.
+     * @param res スクロールサーチの応答
+     * @param offset 前ページまでに返却した件数
+     * @param scope $skiptokenの有効範囲
+     * @return 次ページ取得用の$skiptoken。最終ページの場合はnull
+     */
+    private String getNextSkipToken(DcSearchResponse res, long offset, String scope) {
+        String scrollId = res.getScrollId();
+        if (scrollId == null) {
+            return null;
+        }
+        int hitCount = res.getHits().getHits().length;
+        long returned = offset + hitCount;
+        if (hitCount > 0 && returned < res.getHits().getAllPages()) {
+            return new ScrollSkipToken(scrollId, returned).encode(scope);
+        }
+        return null;
     }
 
     /**
@@ -1067,7 +1210,7 @@ public abstract class EsODataProducer implements DcODataProducer {
         } finally {
             log.debug("unlock");
             // unlockする
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -1116,7 +1259,7 @@ public abstract class EsODataProducer implements DcODataProducer {
         } finally {
             // ロックの解除
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -1241,7 +1384,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             return null;
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -1280,7 +1423,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             createLinks(sourceEntity, srcNavProp, assoc, src, tgt);
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -1474,7 +1617,7 @@ public abstract class EsODataProducer implements DcODataProducer {
 
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
         return res;
     }
@@ -2034,7 +2177,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             }
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -2583,7 +2726,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             updateAndMergeEntity(entitySetName, originalKey, oEntityWrapper, true);
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -2600,7 +2743,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             updateAndMergeEntity(entitySetName, originalKey, oEntityWrapper, false);
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -2745,7 +2888,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             esType.update(oedhNew.getId(), oedhNew, version);
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -2784,7 +2927,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             esType.update(oedhNew.getId(), oedhNew, version);
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
@@ -2946,7 +3089,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             // リンク情報を登録する
             bulkCreateLinks(npBulkContexts, getCellId());
         } finally {
-            lock.release();
+            this.unlock(lock);
             log.debug("bulkCreateEntityViaNavigationProperty release lock");
         }
     }
@@ -3033,7 +3176,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             return bulkCreateEntityWithoutLock(metadata, bulkRequests, cellId);
         } finally {
             log.debug("unlock");
-            lock.release();
+            this.unlock(lock);
         }
     }
 
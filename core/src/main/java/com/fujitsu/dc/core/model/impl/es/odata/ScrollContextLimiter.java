@@ -0,0 +1,149 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.odata;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
+
+/**
+ * $skiptokenによるページングで開いているElasticsearchのスクロールを管理する.
+ * スクロールは保持時間が経過するまでElasticsearchのリソースを占有するため、本ノードで開いているスクロールの数を
+ * 全体及びセル毎に制限し、上限に達している場合は新たなスクロールを開かずに503エラーとする.
+ * 最終ページを返却した時点、及び処理に失敗した時点でスクロールを解放する.
+ */
+public final class ScrollContextLimiter {
+
+    private static final String RESERVATION_PREFIX = "reserved:";
+
+    private static volatile ScrollContextLimiter instance;
+
+    private final int maxContexts;
+    private final int maxContextsPerCell;
+    private final long keepAliveMillis;
+    private final Map<String, Context> contexts = new HashMap<String, Context>();
+    private long reservationSeq = 0;
+
+    /**
+     * 開いているスクロール1つ分.
+     */
+    private static final class Context {
+        private final String cellId;
+        private final long expiresAt;
+
+        Context(String cellId, long expiresAt) {
+            this.cellId = cellId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * コンストラクタ.
+     * @param maxContexts 同時に開くスクロールの最大数
+     * @param maxContextsPerCell セル毎に同時に開くスクロールの最大数
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     */
+    public ScrollContextLimiter(int maxContexts, int maxContextsPerCell, long keepAliveMillis) {
+        this.maxContexts = maxContexts;
+        this.maxContextsPerCell = maxContextsPerCell;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * 設定値に基づくインスタンスを返す.
+     * @return インスタンス
+     */
+    public static ScrollContextLimiter getInstance() {
+        if (instance == null) {
+            synchronized (ScrollContextLimiter.class) {
+                if (instance == null) {
+                    instance = new ScrollContextLimiter(DcCoreConfig.getSkipTokenMaxContexts(),
+                            DcCoreConfig.getSkipTokenMaxContextsPerCell(),
+                            DcCoreConfig.getSkipTokenKeepAliveInMillis());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * スクロールを開く前に枠を確保する.
+     * @param cellId セルID
+     * @param now 現在時刻(ms)
+     * @return 確保した枠のキー. スクロールを開いた後に{@link #finish}へ渡す
+     * @throws DcCoreException 全体またはセル毎の上限に達している場合
+     */
+    public synchronized String reserve(String cellId, long now) {
+        int total = 0;
+        int inCell = 0;
+        Iterator<Context> it = contexts.values().iterator();
+        while (it.hasNext()) {
+            Context context = it.next();
+            if (context.expiresAt <= now) {
+                // 保持時間を過ぎたスクロールはElasticsearch側で破棄済み
+                it.remove();
+                continue;
+            }
+            total++;
+            if (context.cellId.equals(cellId)) {
+                inCell++;
+            }
+        }
+        if (total >= maxContexts || inCell >= maxContextsPerCell) {
+            throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
+        }
+        String key = RESERVATION_PREFIX + reservationSeq++;
+        contexts.put(key, new Context(cellId, now + keepAliveMillis));
+        return key;
+    }
+
+    /**
+     * 1ページ分の取得を終えたスクロールの状態を更新する.
+     * 次ページがある場合は保持時間を延長し、最終ページまたは取得に失敗した場合はスクロールを解放する.
+     * @param esType アクセサオブジェクト
+     * @param cellId セルID
+     * @param key 確保した枠のキー、または継続したスクロールID
+     * @param scrollId 今回の応答のスクロールID. 取得に失敗した場合はnull
+     * @param hasNext 次ページがある場合はtrue
+     * @param now 現在時刻(ms)
+     */
+    public void finish(EntitySetAccessor esType, String cellId, String key, String scrollId,
+            boolean hasNext, long now) {
+        synchronized (this) {
+            if (key != null) {
+                contexts.remove(key);
+            }
+            if (hasNext && scrollId != null) {
+                contexts.put(scrollId, new Context(cellId, now + keepAliveMillis));
+            }
+        }
+        if (!hasNext && scrollId != null) {
+            esType.clearScroll(scrollId);
+        }
+    }
+
+    /**
+     * @return 本ノードで開いているスクロールの数(保持時間を過ぎたものを含む)
+     */
+    public synchronized int size() {
+        return contexts.size();
+    }
+}
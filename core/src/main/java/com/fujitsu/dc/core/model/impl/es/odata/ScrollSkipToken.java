@@ -0,0 +1,167 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.odata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token;
+import com.fujitsu.dc.common.auth.token.LocalToken;
+import com.fujitsu.dc.common.auth.token.UnitLocalUnitUserToken;
+import com.fujitsu.dc.core.DcCoreException;
+
+/**
+ * 一覧取得のカーソル型ページングに用いる$skiptoken.
+ * Elasticsearchのスクロールと取得済み件数を保持し、発行したCell/Box/Node/EntitySet以外では復号できないよう暗号化する.
+ * $skipと異なり、深いページでも先頭ページと同じコストで取得できる.
+ */
+public final class ScrollSkipToken {
+
+    /**
+     * 先頭ページを取得する際に指定する$skiptokenの値.
+     */
+    public static final String START = "*";
+
+    private static final String SEPARATOR = "\t";
+    private static final String SCOPE_SEPARATOR = "/";
+    private static final int NUM_FIELDS = 3;
+    private static final int IDX_SCROLL_ID = 0;
+    private static final int IDX_OFFSET = 1;
+    private static final int IDX_SCOPE = 2;
+
+    private final String scrollId;
+    private final long offset;
+
+    /**
+     * コンストラクタ.
+     * @param scrollId ElasticsearchのスクロールID
+     * @param offset 前ページまでに返却した件数
+     */
+    public ScrollSkipToken(String scrollId, long offset) {
+        this.scrollId = scrollId;
+        this.offset = offset;
+    }
+
+    /**
+     * @return ElasticsearchのスクロールID
+     */
+    public String getScrollId() {
+        return scrollId;
+    }
+
+    /**
+     * @return 前ページまでに返却した件数
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * スクロール開始時のソート条件を返す.
+     * $orderbyの指定が無い場合はスコア計算を伴わないインデックス順で取得する.
+     * @return ソート条件
+     */
+    public static List<Object> defaultSort() {
+        List<Object> sort = new ArrayList<Object>();
+        sort.add("_doc");
+        return sort;
+    }
+
+    /**
+     * トークンの有効範囲を表す文字列を生成する.
+     * @param cellId セルID
+     * @param boxId ボックスID
+     * @param nodeId ノードID
+     * @param entitySetName エンティティセット名
+     * @return 有効範囲を表す文字列
+     */
+    public static String scope(String cellId, String boxId, String nodeId, String entitySetName) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(nullToEmpty(cellId)).append(SCOPE_SEPARATOR);
+        sb.append(nullToEmpty(boxId)).append(SCOPE_SEPARATOR);
+        sb.append(nullToEmpty(nodeId)).append(SCOPE_SEPARATOR);
+        sb.append(nullToEmpty(entitySetName));
+        return sb.toString();
+    }
+
+    /**
+     * $skiptokenの文字列に変換する.
+     * @param scope 有効範囲
+     * @return $skiptokenの文字列
+     */
+    public String encode(String scope) {
+        StringBuilder raw = new StringBuilder();
+        raw.append(scrollId).append(SEPARATOR);
+        raw.append(offset).append(SEPARATOR);
+        raw.append(scope);
+        return LocalToken.encode(raw.toString(), UnitLocalUnitUserToken.getIvBytes(scope));
+    }
+
+    /**
+     * $skiptokenの文字列を解析する.
+     * @param token $skiptokenの文字列
+     * @param scope 有効範囲
+     * @return 解析結果
+     * @throws DcCoreException 有効範囲が異なる、または不正な形式の場合
+     */
+    public static ScrollSkipToken parse(String token, String scope) {
+        ScrollSkipToken parsed = parseIfIssued(token, scope);
+        if (parsed == null) {
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", token);
+        }
+        return parsed;
+    }
+
+    /**
+     * 本クラスが発行した$skiptokenの場合のみ解析する.
+     * 復号できない、または形式が異なる文字列は発行したトークンではないとみなしてnullを返す.
+     * カーソル型ページング導入前は$skiptokenを無視していたため、呼び出し元はnullの場合に従来通り無視する.
+     * @param token $skiptokenの文字列
+     * @param scope 有効範囲
+     * @return 解析結果. 発行したトークンではない場合はnull
+     * @throws DcCoreException 発行したトークンであるが有効範囲が異なる、または件数が不正な場合
+     */
+    public static ScrollSkipToken parseIfIssued(String token, String scope) {
+        String raw;
+        try {
+            raw = LocalToken.decode(token, UnitLocalUnitUserToken.getIvBytes(scope));
+        } catch (AbstractOAuth2Token.TokenParseException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+        String[] frag = raw.split(SEPARATOR, NUM_FIELDS);
+        if (frag.length != NUM_FIELDS) {
+            return null;
+        }
+        if (!scope.equals(frag[IDX_SCOPE])) {
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", token);
+        }
+        try {
+            return new ScrollSkipToken(frag[IDX_SCROLL_ID], Long.parseLong(frag[IDX_OFFSET]));
+        } catch (NumberFormatException e) {
+            throw DcCoreException.OData.QUERY_INVALID_ERROR.params("$skiptoken", token).reason(e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value;
+    }
+}
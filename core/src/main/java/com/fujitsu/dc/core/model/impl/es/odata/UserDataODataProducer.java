@@ -24,6 +24,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
 
 import net.spy.memcached.internal.CheckedOperationTimeoutException;
 
@@ -64,6 +65,7 @@ import com.fujitsu.dc.core.model.impl.es.accessor.DataSourceAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
 import com.fujitsu.dc.core.model.impl.es.cache.UserDataSchemaCache;
+import com.fujitsu.dc.core.model.impl.es.cache.UserDataSchemaLocalCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
@@ -141,6 +143,15 @@ public class UserDataODataProducer extends EsODataProducer {
         return EsModel.batch(cell);
     }
 
+    /**
+     * ユーザデータの一覧は件数が多くなるため、OEntityはレスポンスの出力時に1件ずつ生成する.
+     * @return true
+     */
+    @Override
+    protected boolean isLazyEntityConversion() {
+        return true;
+    }
+
     /**
      * 実装サブクラスProducerが特定のEntityTypeに紐付くようにしたいときは、ここをoverrideしてEntityTypeIdを返すように実装する。
      * @param entityTypeName EntityType名
@@ -218,6 +229,7 @@ public class UserDataODataProducer extends EsODataProducer {
                 if (latestCache == null) {
                     try {
                         UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
+                        cacheLocally(cacheSchema);
                     } catch (RuntimeException e) {
                         if (e.getCause() instanceof CheckedOperationTimeoutException) {
                             log.info("Failed to cache UserDataSchema info.");
@@ -236,6 +248,7 @@ public class UserDataODataProducer extends EsODataProducer {
             if (cacheSchema != null && !UserDataSchemaCache.isChanged(this.getNodeId(), cache)) {
                 try {
                     UserDataSchemaCache.cache(this.getNodeId(), cacheSchema);
+                    cacheLocally(cacheSchema);
                 } catch (RuntimeException e) {
                     if (e.getCause() instanceof CheckedOperationTimeoutException) {
                         log.info("Failed to cache UserDataSchema info.(CacheOFF)");
@@ -244,6 +257,17 @@ public class UserDataODataProducer extends EsODataProducer {
             }
 
         } else {
+            // ノード内にパース済みのスキーマがあればそれを使用する
+            String version = (String) cache.get(UserDataSchemaCache.KEY_VERSION);
+            UserDataSchemaLocalCache.Entry local = UserDataSchemaLocalCache.get(this.getNodeId(), version);
+            if (local != null) {
+                this.entityTypeIds = local.getEntityTypeIds();
+                setPropertyAliasMap(local.getPropertyAliasMap());
+                setEntityTypeMap(local.getEntityTypeMap());
+                this.metadata = local.getMetadata();
+                return;
+            }
+
             this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
             setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
             setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
@@ -251,6 +275,7 @@ public class UserDataODataProducer extends EsODataProducer {
             // XMLパーサ(StAX,SAX,DOM)にInputStreamをそのまま渡すとファイル一覧の取得処理が
             // 中断してしまうため暫定対処としてバッファに格納してからパースする
             EdmDataServices metacache = null;
+            long start = System.currentTimeMillis();
             try {
                 StringReader sr = new StringReader((String) cache.get("edmx"));
                 XMLFactoryProvider2 provider = StaxXMLFactoryProvider2.getInstance();
@@ -266,10 +291,26 @@ public class UserDataODataProducer extends EsODataProducer {
                 log.info("XMLParseException: " + tw.getMessage(), tw.fillInStackTrace());
                 throw tw;
             }
+            UserDataSchemaLocalCache.recordParseTime(System.currentTimeMillis() - start);
             this.metadata = metacache;
+            cacheLocally(cache);
         }
     }
 
+    /**
+     * memcachedに格納したスキーマ情報と同じバージョンで、パース済みのスキーマをノード内にキャッシュする.
+     * @param cacheSchema memcachedに格納したスキーマ情報
+     */
+    @SuppressWarnings("unchecked")
+    private void cacheLocally(Map<String, Object> cacheSchema) {
+        UserDataSchemaLocalCache.cache(this.getNodeId(), new UserDataSchemaLocalCache.Entry(
+                (String) cacheSchema.get(UserDataSchemaCache.KEY_VERSION),
+                this.metadata,
+                (Map<String, String>) cacheSchema.get("entityTypeIds"),
+                (Map<String, PropertyAlias>) cacheSchema.get("propertyAliasMap"),
+                (Map<String, String>) cacheSchema.get("entityTypeMap")));
+    }
+
     private Map<String, Object> createUserDataSchemaCache() {
         // キャッシュしてみる
         Map<String, Object> cache;
@@ -277,6 +318,7 @@ public class UserDataODataProducer extends EsODataProducer {
         cache.put("entityTypeIds", this.entityTypeIds);
         cache.put("propertyAliasMap", getPropertyAliasMap());
         cache.put("entityTypeMap", getEntityTypeMap());
+        cache.put(UserDataSchemaCache.KEY_VERSION, UUID.randomUUID().toString());
         StringWriter w = new StringWriter();
         EdmxFormatWriter.write(this.metadata, w);
 
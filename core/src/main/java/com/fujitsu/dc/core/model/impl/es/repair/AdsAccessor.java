@@ -32,6 +32,7 @@ import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.impl.es.DavNode;
 import com.fujitsu.dc.core.model.impl.es.ads.Ads;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
 import com.fujitsu.dc.core.model.impl.es.doc.CellDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
@@ -81,9 +82,19 @@ public class AdsAccessor {
     public static List<JSONObject> getIdListOnAds(AdsWriteFailureLogInfo logInfo) throws AdsException {
         List<String> idList = new ArrayList<String>();
         idList.add(logInfo.getUuid());
+        return getIdListOnAds(logInfo.getIndexName(), logInfo.getType(), idList);
+    }
 
-        String indexName = logInfo.getIndexName();
-        String type = logInfo.getType();
+    /**
+     * ADSから複数のリペア対象のデータが存在するかをまとめて検索をする.
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象のESのタイプ名
+     * @param idList リペア対象のuuidリスト
+     * @return リペア対象のデータの検索結果
+     * @throws AdsException AdsException
+     */
+    public static List<JSONObject> getIdListOnAds(String indexName, String type, List<String> idList)
+            throws AdsException {
         if (Cell.EDM_TYPE_NAME.equals(type)) {
             return ads.searchCellList(indexName, idList);
         } else if ("link".equals(type)) {
@@ -106,39 +117,19 @@ public class AdsAccessor {
             DcSearchResponse esResponse) throws AdsException {
         // MySQLへデータ登録処理
         DcSearchHit[] dcSearchHit = esResponse.getHits().getHits();
-        try {
-            if (Cell.EDM_TYPE_NAME.equals(type)) {
-                // CELLテーブルに登録
-                EntitySetDocHandler oedh = new CellDocHandler(dcSearchHit[0]);
-                ads.createCell(indexName, oedh);
-            } else if ("link".equals(type)) {
-                // LINKテーブルに登録
-                LinkDocHandler ldh = new LinkDocHandler(dcSearchHit[0]);
-                ads.createLink(indexName, ldh);
-            } else if ("dav".equals(type)) {
-                // DAV_NODEテーブルに登録
-                DavNode davNode = DavNode.createFromJsonString(dcSearchHit[0].getId(),
-                        dcSearchHit[0].sourceAsString());
-                ads.createDavNode(indexName, davNode);
-            } else {
-                // ENTITYテーブルに登録
-                EntitySetDocHandler oedh;
-                if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
-                    oedh = new UserDataDocHandler(dcSearchHit[0]);
-                } else {
-                    oedh = new OEntityDocHandler(dcSearchHit[0]);
-                }
-
-                if (oedh.getDynamicFields() == null) {
-                    // リペア対象のデータのDynamicFieldsが空の場合にAdsのデータがnullになってしまうので空オブジェクトを挿入
-                    // DocHandlerでの修正も検討したが、既存のcore側の処理に影響を与えないようここで修正
-                    oedh.setDynamicFields(new HashMap<String, Object>());
-                }
-
-                ads.createEntity(indexName, oedh);
-            }
-        } catch (DcCoreException e) {
-            throw new AdsException(e);
+        Object record = toAdsRecord(type, dcSearchHit[0]);
+        if (Cell.EDM_TYPE_NAME.equals(type)) {
+            // CELLテーブルに登録
+            ads.createCell(indexName, (EntitySetDocHandler) record);
+        } else if ("link".equals(type)) {
+            // LINKテーブルに登録
+            ads.createLink(indexName, (LinkDocHandler) record);
+        } else if ("dav".equals(type)) {
+            // DAV_NODEテーブルに登録
+            ads.createDavNode(indexName, (DavNode) record);
+        } else {
+            // ENTITYテーブルに登録
+            ads.createEntity(indexName, (EntitySetDocHandler) record);
         }
     }
 
@@ -151,43 +142,22 @@ public class AdsAccessor {
      */
     public static void updateAds(String indexName, String type,
             DcSearchResponse esResponse) throws AdsException {
-        try {
-            // MySQLへデータ更新処理
-            DcSearchHit[] dcSearchHit = esResponse.getHits().getHits();
-            if (Cell.EDM_TYPE_NAME.equals(type)) {
-                // CELLテーブルに更新
-                EntitySetDocHandler oedh = new CellDocHandler(dcSearchHit[0]);
-                ads.updateCell(indexName, oedh);
-            } else if ("link".equals(type)) {
-                // LINKテーブルに更新
-                LinkDocHandler ldh = new LinkDocHandler(dcSearchHit[0]);
-                ads.updateLink(indexName, ldh);
-            } else if ("dav".equals(type)) {
-                // DAV_NODEテーブルに更新
-                DavNode davNode = DavNode.createFromJsonString(dcSearchHit[0].getId(),
-                        dcSearchHit[0].sourceAsString());
-                ads.updateDavNode(indexName, davNode);
-            } else {
-                // ENTITYテーブルに更新
-                EntitySetDocHandler oedh;
-                if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
-                    oedh = new UserDataDocHandler(dcSearchHit[0]);
-                } else {
-                    oedh = new OEntityDocHandler(dcSearchHit[0]);
-                }
-
-                if (oedh.getDynamicFields() == null) {
-                    // リペア対象のデータのDynamicFieldsが空の場合にAdsのデータがnullになってしまうので空オブジェクトを挿入
-                    // DocHandlerでの修正も検討したが、既存のcore側の処理に影響を与えないようここで修正
-                    oedh.setDynamicFields(new HashMap<String, Object>());
-                }
-
-                ads.updateEntity(indexName, oedh);
-            }
-        } catch (DcCoreException e) {
-            throw new AdsException(e);
+        // MySQLへデータ更新処理
+        DcSearchHit[] dcSearchHit = esResponse.getHits().getHits();
+        Object record = toAdsRecord(type, dcSearchHit[0]);
+        if (Cell.EDM_TYPE_NAME.equals(type)) {
+            // CELLテーブルに更新
+            ads.updateCell(indexName, (EntitySetDocHandler) record);
+        } else if ("link".equals(type)) {
+            // LINKテーブルに更新
+            ads.updateLink(indexName, (LinkDocHandler) record);
+        } else if ("dav".equals(type)) {
+            // DAV_NODEテーブルに更新
+            ads.updateDavNode(indexName, (DavNode) record);
+        } else {
+            // ENTITYテーブルに更新
+            ads.updateEntity(indexName, (EntitySetDocHandler) record);
         }
-
     }
 
     /**
@@ -214,4 +184,110 @@ public class AdsAccessor {
             ads.deleteEntity(indexName, idList);
         }
     }
+
+    /**
+     * Elasticsearchから取得したリペア対象のデータをADSへの書込み要求に変換する.
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象のESのタイプ名
+     * @param hit ESから取得したリペア対象のデータ
+     * @param update 更新の場合はtrue、登録の場合はfalse
+     * @param logInfo ログから読み込んだADS書き込み失敗情報
+     * @return ADSへの書込み要求
+     * @throws AdsException ESから取得したデータの変換に失敗した場合
+     */
+    public static AdsWriteRequest createWriteRequest(String indexName, String type, DcSearchHit hit,
+            boolean update, AdsWriteFailureLogInfo logInfo) throws AdsException {
+        AdsWriteRequest.Kind kind;
+        if (Cell.EDM_TYPE_NAME.equals(type)) {
+            kind = AdsWriteRequest.Kind.CREATE_CELL;
+            if (update) {
+                kind = AdsWriteRequest.Kind.UPDATE_CELL;
+            }
+        } else if ("link".equals(type)) {
+            kind = AdsWriteRequest.Kind.CREATE_LINK;
+            if (update) {
+                kind = AdsWriteRequest.Kind.UPDATE_LINK;
+            }
+        } else if ("dav".equals(type)) {
+            kind = AdsWriteRequest.Kind.CREATE_DAV_NODE;
+            if (update) {
+                kind = AdsWriteRequest.Kind.UPDATE_DAV_NODE;
+            }
+        } else {
+            kind = AdsWriteRequest.Kind.CREATE_ENTITY;
+            if (update) {
+                kind = AdsWriteRequest.Kind.UPDATE_ENTITY;
+            }
+        }
+        return new AdsWriteRequest(kind, indexName, toAdsRecord(type, hit), logInfo);
+    }
+
+    /**
+     * リペア対象のデータを削除するADSへの書込み要求を作成する.
+     * @param indexName リペア対象インデックス名
+     * @param type リペア対象のESのタイプ名
+     * @param id リペア対象のuuid
+     * @param logInfo ログから読み込んだADS書き込み失敗情報
+     * @return ADSへの書込み要求
+     */
+    public static AdsWriteRequest deleteWriteRequest(String indexName, String type, String id,
+            AdsWriteFailureLogInfo logInfo) {
+        AdsWriteRequest.Kind kind;
+        if (Cell.EDM_TYPE_NAME.equals(type)) {
+            kind = AdsWriteRequest.Kind.DELETE_CELL;
+        } else if ("link".equals(type)) {
+            kind = AdsWriteRequest.Kind.DELETE_LINK;
+        } else if ("dav".equals(type)) {
+            kind = AdsWriteRequest.Kind.DELETE_DAV_NODE;
+        } else {
+            kind = AdsWriteRequest.Kind.DELETE_ENTITY;
+        }
+        return new AdsWriteRequest(kind, indexName, id, logInfo);
+    }
+
+    /**
+     * 同一インデックス・同一種別の書込み要求をADSへ一括で実行する.
+     * @param indexName リペア対象インデックス名
+     * @param kind 書込みの種別
+     * @param requests 書込み要求
+     * @throws AdsException AdsException
+     */
+    public static void executeBatch(String indexName, AdsWriteRequest.Kind kind,
+            List<AdsWriteRequest> requests) throws AdsException {
+        ((JdbcAds) ads).executeBatch(indexName, kind, requests);
+    }
+
+    /**
+     * Elasticsearchから取得したデータをADSに登録する形式に変換する.
+     * @param type リペア対象のESのタイプ名
+     * @param hit ESから取得したリペア対象のデータ
+     * @return EntitySetDocHandler/LinkDocHandler/DavNode
+     * @throws AdsException ESから取得したデータの変換に失敗した場合
+     */
+    static Object toAdsRecord(String type, DcSearchHit hit) throws AdsException {
+        try {
+            if (Cell.EDM_TYPE_NAME.equals(type)) {
+                return new CellDocHandler(hit);
+            } else if ("link".equals(type)) {
+                return new LinkDocHandler(hit);
+            } else if ("dav".equals(type)) {
+                return DavNode.createFromJsonString(hit.getId(), hit.sourceAsString());
+            }
+            EntitySetDocHandler oedh;
+            if (type.equals(UserDataODataProducer.USER_ODATA_NAMESPACE)) {
+                oedh = new UserDataDocHandler(hit);
+            } else {
+                oedh = new OEntityDocHandler(hit);
+            }
+
+            if (oedh.getDynamicFields() == null) {
+                // リペア対象のデータのDynamicFieldsが空の場合にAdsのデータがnullになってしまうので空オブジェクトを挿入
+                // DocHandlerでの修正も検討したが、既存のcore側の処理に影響を与えないようここで修正
+                oedh.setDynamicFields(new HashMap<String, Object>());
+            }
+            return oedh;
+        } catch (DcCoreException e) {
+            throw new AdsException(e);
+        }
+    }
 }
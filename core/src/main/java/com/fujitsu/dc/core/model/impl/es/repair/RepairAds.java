@@ -16,16 +16,37 @@
  */
 package com.fujitsu.dc.core.model.impl.es.repair;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.IOUtils;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +58,7 @@ import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
 import com.fujitsu.dc.common.ads.RollingAdsWriteFailureLog;
 import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.response.DcSearchHit;
 import com.fujitsu.dc.common.es.response.DcSearchHits;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -44,6 +66,7 @@ import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockManager;
 
@@ -53,11 +76,20 @@ import com.fujitsu.dc.core.model.lock.LockManager;
  * 本クラスでは、ADS書き込み失敗ログを読み込み、Elasticsearch上のデータを基準としてADSへのデータ補正を実施する。 データ補正処理は singletonとし、dc1-coreの
  * ScheduleExecutorServiceにて一定間隔で実行する。 なお、本処理の内容は、PCSのAPIとは異なるため、別ファイルとしてログを出力する。
  * </p>
+ * <p>
+ * 読み込んだログはインデックス(ユニットユーザ)ごとに分割して並行に処理し、Elasticsearch/ADSへの検索とADSへの書込みはまとめて行う。
+ * 処理済みの行数はチェックポイントファイルに記録し、中断した場合は次回の実行時に続きから処理する。
+ * </p>
  */
 public class RepairAds {
 
     static Logger logger = LoggerFactory.getLogger(RepairAds.class);
 
+    /** チェックポイントファイル名のフォーマット. */
+    static final String CHECKPOINT_FILENAME_FORMAT = "repairAds_%s.checkpoint";
+
+    private static final long MILLIS_PER_SEC = 1000L;
+
     private static RepairAds singleton;
     static {
         singleton = new RepairAds();
@@ -70,6 +102,22 @@ public class RepairAds {
     // 処理中のADS書き込み失敗ログのファイル名に付加されているタイムスタンプ
     // TODO AdsWriteFailureLogWriterクラスから取得するように見直す。
     private long createTime;
+    private int workers;
+    private ExecutorService executor;
+
+    // リペア処理の統計情報
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong repairedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong backlogFiles = new AtomicLong();
+    private final AtomicLong backlogRecords = new AtomicLong();
+    private final AtomicLong runRecordCount = new AtomicLong();
+    private volatile long runStartTime;
+    private volatile long lastRunRecords;
+    private volatile long lastRunMillis;
 
     /**
      * デフォルトコンストラクタ（使用不可）.
@@ -97,6 +145,8 @@ public class RepairAds {
      */
     public void repairAds() {
 
+        runStartTime = System.currentTimeMillis();
+        runRecordCount.set(0);
         try {
             logger.info("Ads repair process started.");
 
@@ -112,8 +162,12 @@ public class RepairAds {
             Map<Long, File> logFilesMap = collectAdsWriteFailureLogFiles();
             if (logFilesMap.isEmpty()) {
                 logger.info("AdsWriteFailureLog does not exist. Terminate the repair process.");
+                backlogFiles.set(0);
+                backlogRecords.set(0);
                 return;
             }
+            updateBacklog(logFilesMap);
+            executor = createExecutor();
 
             // リペア処理本体
             // - ADS書き込み失敗ログファイルの読み込み（一定量での読み込み）
@@ -139,10 +193,168 @@ public class RepairAds {
             // - 前回からのエラーも検出したいので、static変数でログ出力可否を判定する？
             logger.error("An error is detected in ads repair process.", e);
         } finally {
+            if (null != executor) {
+                executor.shutdown();
+                executor = null;
+            }
+            lastRunRecords = runRecordCount.get();
+            lastRunMillis = System.currentTimeMillis() - runStartTime;
+            runStartTime = 0;
             rotateRetryAndErrorLog();
         }
     }
 
+    /**
+     * インデックスごとに分割したログを並行して処理するスレッドプールを作成する.
+     * @return スレッドプール。並行して処理しない場合はnull
+     */
+    private ExecutorService createExecutor() {
+        if (workers <= 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "dc-ads-repair-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * リペア処理の状況を返す.
+     * @return 処理件数、補正件数、未処理のファイル数・行数、処理速度(件/秒)などを格納したMap
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("processed", processedCount.get());
+        stats.put("repaired", repairedCount.get());
+        stats.put("skipped", skippedCount.get());
+        stats.put("retried", retryCount.get());
+        stats.put("errors", errorCount.get());
+        stats.put("batches", batchCount.get());
+        stats.put("backlogFiles", backlogFiles.get());
+        stats.put("backlogRecords", backlogRecords.get());
+        long startTime = runStartTime;
+        long records = lastRunRecords;
+        long elapsed = lastRunMillis;
+        if (startTime > 0) {
+            records = runRecordCount.get();
+            elapsed = System.currentTimeMillis() - startTime;
+        }
+        long rate = 0;
+        if (elapsed > 0) {
+            rate = records * MILLIS_PER_SEC / elapsed;
+        }
+        stats.put("running", startTime > 0);
+        stats.put("replayRatePerSec", rate);
+        return stats;
+    }
+
+    /**
+     * 未処理のADS書き込み失敗ログのファイル数と行数を集計する.
+     * @param logFilesMap ADS書き込み失敗ログのファイル一覧
+     */
+    private void updateBacklog(Map<Long, File> logFilesMap) {
+        long records = 0;
+        for (File logFile : logFilesMap.values()) {
+            records += countLines(logFile) - readCheckpoint(logFile);
+        }
+        backlogFiles.set(logFilesMap.size());
+        backlogRecords.set(records);
+    }
+
+    /**
+     * ファイルの行数を数える.
+     * @param file ファイル
+     * @return 行数。読み込みに失敗した場合は0
+     */
+    private long countLines(File file) {
+        BufferedReader reader = null;
+        long count = 0;
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            String line = reader.readLine();
+            while (null != line) {
+                count++;
+                line = reader.readLine();
+            }
+        } catch (IOException e) {
+            logger.info("Failed to count lines of adsWriteFailureLog. [" + file.getAbsolutePath() + "]", e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return count;
+    }
+
+    /**
+     * チェックポイントファイルを取得する.
+     * @return チェックポイントファイル
+     */
+    private File getCheckpointFile() {
+        return new File(adsLogBaseDir, String.format(CHECKPOINT_FILENAME_FORMAT, pcsVersion));
+    }
+
+    /**
+     * チェックポイントから指定されたファイルの処理済みの行数を取得する.
+     * @param logFile ローテートされたADS書き込み失敗ログ
+     * @return 処理済みの行数。チェックポイントが存在しない、または別のファイルのものである場合は0
+     */
+    private long readCheckpoint(File logFile) {
+        File checkpointFile = getCheckpointFile();
+        if (!checkpointFile.isFile()) {
+            return 0;
+        }
+        try {
+            List<String> lines = Files.readAllLines(checkpointFile.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                return 0;
+            }
+            String[] checkpoint = lines.get(0).split("\t");
+            if (checkpoint.length != 2 || !logFile.getName().equals(checkpoint[0])) {
+                return 0;
+            }
+            return Long.parseLong(checkpoint[1]);
+        } catch (IOException e) {
+            logger.warn("Failed to read repair checkpoint. [" + checkpointFile.getAbsolutePath() + "]", e);
+        } catch (NumberFormatException e) {
+            logger.warn("Illegal repair checkpoint format. [" + checkpointFile.getAbsolutePath() + "]", e);
+        }
+        return 0;
+    }
+
+    /**
+     * 処理済みの行数をチェックポイントファイルに記録する.
+     * 書き込み途中の状態が読まれないよう、一時ファイルに書き込んでからリネームする。
+     * @param logFile ローテートされたADS書き込み失敗ログ
+     * @param position 処理済みの行数
+     */
+    private void writeCheckpoint(File logFile, long position) {
+        Path checkpoint = getCheckpointFile().toPath();
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        String content = logFile.getName() + "\t" + position;
+        try {
+            Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // チェックポイントが記録できない場合は、次回の実行時にファイルの先頭から処理される
+            logger.warn("Failed to write repair checkpoint. [" + checkpoint + "]", e);
+        }
+    }
+
+    /**
+     * チェックポイントファイルを削除する.
+     */
+    private void deleteCheckpoint() {
+        File checkpointFile = getCheckpointFile();
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            logger.warn("Failed to delete repair checkpoint. [" + checkpointFile.getAbsolutePath() + "]");
+        }
+    }
+
     /**
      * リペア処理中に出力されたリトライ用/エラー用のADS書き込み失敗ログをローテートする.
      */
@@ -178,6 +390,7 @@ public class RepairAds {
         adsLogBaseDir = new File(adsLogBaseDirPath);
         physicalDelete = DcCoreConfig.getAdsWriteFailureLogPhysicalDelete();
         logCountPerIteration = DcCoreConfig.getAdsWriteFailureLogCountPerIteration();
+        workers = DcCoreConfig.getAdsRepairWorkers();
     }
 
     /**
@@ -257,12 +470,18 @@ public class RepairAds {
 
     /**
      * ADS書き込み失敗ログを１ファイルずつ読み込み、ADSへデータ補正する.
+     * <p>
+     * 読み込んだログはインデックス(ユニットユーザ)毎に分割してスレッドプールで並行に処理し、
+     * 全ての処理が完了した時点で処理済みの行数をチェックポイントとして記録する。
+     * </p>
      * @param logFile ローテートされたADS書き込み失敗ログ
      */
     private void readAdsWriteFialureLog(File logFile) throws RepairAdsException {
         RollingAdsWriteFailureLog adsLog = new RollingAdsWriteFailureLog(
                 logFile, adsLogBaseDirPath, pcsVersion, physicalDelete);
         try {
+            // 前回のリペアが途中で中断している場合は、処理済みの行を読み飛ばす
+            long position = skipRepairedRecords(adsLog, logFile);
             while (true) {
                 // ADS書き込み失敗ログを読み込み、ログ出力情報を作成する。
                 List<String> logRecords = adsLog.readAdsFailureLog(logCountPerIteration);
@@ -279,6 +498,7 @@ public class RepairAds {
                         if (AdsWriteFailureLogInfo.OperationKind.PCS_MANAGEMENT_INSERT
                         == AdsWriteFailureLogInfo.OperationKind.fromValue(logInfo.getOperation())) {
                             writeAdsErrorLog(logInfo.toString());
+                            errorCount.incrementAndGet();
                             logger.warn("CellBulkDeletion is not supported by Master Repair.");
                             continue;
                         }
@@ -287,20 +507,30 @@ public class RepairAds {
                         // ADS書き込み失敗ログの内容のフォーマットが不正
                         // 該当行はエラーとし、次の行を読み込む
                         writeAdsErrorLog(logRecords.get(i));
+                        errorCount.incrementAndGet();
                         logger.error("Failed to parse adsWriteFailureLog.", e);
                     }
                 }
-                Map<String, List<AdsWriteFailureLogInfo>> mapOfOdataLock =
-                        new HashMap<String, List<AdsWriteFailureLogInfo>>();
-                // データ書き込み時のOData空間キーごとにADS書き込み失敗ログから読み込んだログ出力情報を集約する。
+                // インデックス(ユニットユーザ)ごとに分割し、さらにデータ書き込み時のOData空間キーごとに
+                // ADS書き込み失敗ログから読み込んだログ出力情報を集約する。
                 // 同じデータに対するログが複数存在する場合は、後勝ちとする。
+                Map<String, Map<String, List<AdsWriteFailureLogInfo>>> shards =
+                        new LinkedHashMap<String, Map<String, List<AdsWriteFailureLogInfo>>>();
                 for (AdsWriteFailureLogInfo logInfo : rowsData) {
-                    String key = logInfo.getIndexName() + "_" + logInfo.getLockKey();
-                    updateAdsWriteFailureLogMap(mapOfOdataLock, logInfo, key);
-                }
-                for (Entry<String, List<AdsWriteFailureLogInfo>> sourceLogInfo : mapOfOdataLock.entrySet()) {
-                    executeRepairAds(sourceLogInfo.getValue());
+                    Map<String, List<AdsWriteFailureLogInfo>> mapOfOdataLock = shards.get(logInfo.getIndexName());
+                    if (null == mapOfOdataLock) {
+                        mapOfOdataLock = new LinkedHashMap<String, List<AdsWriteFailureLogInfo>>();
+                        shards.put(logInfo.getIndexName(), mapOfOdataLock);
+                    }
+                    updateAdsWriteFailureLogMap(mapOfOdataLock, logInfo, logInfo.getLockKey());
                 }
+                executeShards(shards);
+
+                position += logRecords.size();
+                processedCount.addAndGet(logRecords.size());
+                runRecordCount.addAndGet(logRecords.size());
+                backlogRecords.addAndGet(-logRecords.size());
+                writeCheckpoint(logFile, position);
             }
         } catch (AdsWriteFailureLogException e) {
             // ここでエラーとなった場合は、呼び出し元に戻り、次のADS書き込み失敗ログの処理に移行する。
@@ -317,6 +547,92 @@ public class RepairAds {
         } catch (AdsWriteFailureLogException e) {
             logger.error("Faild to delete adsWriteFailureLog.", e);
         }
+        deleteCheckpoint();
+        backlogFiles.decrementAndGet();
+    }
+
+    /**
+     * チェックポイントに記録された処理済みの行を読み飛ばす.
+     * @param adsLog ローテートされたADS書き込み失敗ログ
+     * @param logFile ローテートされたADS書き込み失敗ログのファイル
+     * @return 読み飛ばした行数
+     * @throws AdsWriteFailureLogException ADS書き込み失敗ログの読み込みに失敗した場合
+     */
+    private long skipRepairedRecords(RollingAdsWriteFailureLog adsLog, File logFile)
+            throws AdsWriteFailureLogException {
+        long repaired = readCheckpoint(logFile);
+        long skipped = 0;
+        while (skipped < repaired) {
+            int count = (int) Math.min(logCountPerIteration, repaired - skipped);
+            List<String> logRecords = adsLog.readAdsFailureLog(count);
+            if (logRecords.isEmpty()) {
+                break;
+            }
+            skipped += logRecords.size();
+        }
+        if (skipped > 0) {
+            logger.info(String.format("Resuming repair from line %d. Repairlog file: %s", skipped, logFile));
+        }
+        return skipped;
+    }
+
+    /**
+     * インデックス(ユニットユーザ)ごとに分割したログをスレッドプールで並行して処理する.
+     * 全てのインデックスの処理が完了するまで待つことで、次に読み込むログとの処理順序を保つ。
+     * @param shards インデックスごとに分割したリペア情報
+     * @throws RepairAdsException リペア処理全体を異常終了させる場合
+     */
+    private void executeShards(Map<String, Map<String, List<AdsWriteFailureLogInfo>>> shards)
+            throws RepairAdsException {
+        if (null == executor || shards.size() <= 1) {
+            for (Map<String, List<AdsWriteFailureLogInfo>> shard : shards.values()) {
+                repairShard(shard);
+            }
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(shards.size());
+        for (final Map<String, List<AdsWriteFailureLogInfo>> shard : shards.values()) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws RepairAdsException {
+                    repairShard(shard);
+                    return null;
+                }
+            }));
+        }
+        Throwable failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // 他のインデックスの処理が完了するのを待ってから、最初に発生した例外を通知する
+                if (null == failure) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                throw new RepairAdsException("Interrupted while waiting for repair workers.", e);
+            }
+        }
+        if (failure instanceof RepairAdsException) {
+            throw (RepairAdsException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * 1インデックス分のリペア情報をOData空間ごとに処理する.
+     * @param shard OData空間ごとに管理しているリペア情報のマップ
+     * @throws RepairAdsException リペア処理全体を異常終了させる場合
+     */
+    private void repairShard(Map<String, List<AdsWriteFailureLogInfo>> shard) throws RepairAdsException {
+        for (List<AdsWriteFailureLogInfo> logInfos : shard.values()) {
+            executeRepairAds(logInfos);
+        }
     }
 
     /**
@@ -351,74 +667,226 @@ public class RepairAds {
         }
     }
 
+    /**
+     * 同一OData空間のリペア情報を処理する.
+     * ロックは1度だけ取得し、Elasticsearch/ADSへの検索とADSへの書込みはまとめて行う。
+     * @param logInfos 同一OData空間のリペア情報
+     * @throws RepairAdsException リペア処理全体を異常終了させる場合
+     */
     private void executeRepairAds(List<AdsWriteFailureLogInfo> logInfos) throws RepairAdsException {
-        // 1件ごとに処理を行う。
-        // TODO 性能的な問題が発生した場合は、ｎ件ごとに処理を行うように修正すること。
         for (AdsWriteFailureLogInfo logInfo : logInfos) {
             logger.info("Starting repair. Repair record: " + logInfo.toString());
-            String indexName = logInfo.getIndexName();
-            String routingId = logInfo.getRoutingId();
-            if ("".equals(routingId)) {
-                routingId = EsIndex.CELL_ROUTING_KEY_NAME;
-            }
-
-            Lock lock = null;
-            String lockKey = logInfo.getLockKey();
-            try {
-                // lockKeyが空(Cell再帰的削除の場合)であれば、ロックしない
-                if (null != lockKey && !lockKey.isEmpty()) {
-                    try {
-                        lock = lock(lockKey);
-                    } catch (DcCoreException e) {
-                        if (e.getCode().equals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode())
-                                || e.getCode().equals(DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode())) {
-                            // 全体を異常終了させる
-                            throw e;
-                        } else {
-                            // lockが他のプロセスに取得されており、取得できなかったため、異常終了にはせず、次の行に移行する
+        }
+        Lock lock = null;
+        String lockKey = logInfos.get(0).getLockKey();
+        try {
+            // lockKeyが空(Cell再帰的削除の場合)であれば、ロックしない
+            if (null != lockKey && !lockKey.isEmpty()) {
+                try {
+                    lock = lock(lockKey);
+                } catch (DcCoreException e) {
+                    if (e.getCode().equals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode())
+                            || e.getCode().equals(DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode())) {
+                        // 全体を異常終了させる
+                        throw e;
+                    } else {
+                        // lockが他のプロセスに取得されており、取得できなかったため、異常終了にはせず、次のOData空間に移行する
+                        for (AdsWriteFailureLogInfo logInfo : logInfos) {
                             writeAdsRetryLog(logInfo.toString());
-                            logger.info("Other process has a lockObject.");
-                            continue;
                         }
+                        retryCount.addAndGet(logInfos.size());
+                        logger.info("Other process has a lockObject.");
+                        return;
                     }
-                    if (null == lock) {
-                        // 該当行を不正ログファイルに退避する
+                }
+                if (null == lock) {
+                    // 該当行を不正ログファイルに退避する
+                    for (AdsWriteFailureLogInfo logInfo : logInfos) {
                         writeAdsErrorLog(logInfo.toString());
-                        String message = String.format("Faild to get lock. lockKey= [%s]", lockKey);
-                        logger.error(message);
-                        continue;
                     }
+                    errorCount.addAndGet(logInfos.size());
+                    String message = String.format("Faild to get lock. lockKey= [%s]", lockKey);
+                    logger.error(message);
+                    return;
                 }
+            }
 
-                List<String> idList = new ArrayList<String>();
-                idList.add(logInfo.getUuid());
-                try {
-                    // TypeがCellである場合は、Elasticsearchのインデックス名を「{UnitPrefix}_ad」に変更する
-                    if (Cell.EDM_TYPE_NAME.equals(logInfo.getType())) {
-                        indexName = DcCoreConfig.getEsUnitPrefix() + "_" + EsIndex.CATEGORY_AD;
-                    }
-                    // ES/ADSへの検索は、一括検索ができるようなAPIを使用しているが、今のところは1件ずつ処理することを前提としている。
-                    DcSearchResponse esResponse = EsAccessor.search(indexName, routingId, idList, logInfo.getType());
-                    List<JSONObject> adsResponse = AdsAccessor.getIdListOnAds(logInfo);
-                    repairToAds(logInfo, esResponse, adsResponse);
-                } catch (EsClientException e) {
-                    String message = String.format("Failed to get response from Elasticsearch. [%s]",
-                            logInfo.toString());
-                    // Elasticsearchへの検索に失敗したため、ツール全体を異常終了させる
-                    throw new RepairAdsException(message, e);
-                } catch (AdsException e) {
-                    String message = String.format("Failed to get response from Ads. [%s]", logInfo.toString());
-                    // MySQLへの検索に失敗したため、ツール全体を異常終了させる
-                    throw new RepairAdsException(message, e);
+            // ESへの検索はタイプとルーティングIDが同じものをまとめて1回で行う
+            Map<String, List<AdsWriteFailureLogInfo>> searchGroups =
+                    new LinkedHashMap<String, List<AdsWriteFailureLogInfo>>();
+            for (AdsWriteFailureLogInfo logInfo : logInfos) {
+                String key = logInfo.getType() + "\t" + logInfo.getRoutingId();
+                List<AdsWriteFailureLogInfo> group = searchGroups.get(key);
+                if (null == group) {
+                    group = new ArrayList<AdsWriteFailureLogInfo>();
+                    searchGroups.put(key, group);
                 }
-            } finally {
-                if (null != lock) {
-                    logger.debug("unlock");
-                    lock.release();
+                group.add(logInfo);
+            }
+            List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>(logInfos.size());
+            for (List<AdsWriteFailureLogInfo> group : searchGroups.values()) {
+                createRepairRequests(group, requests);
+            }
+            executeRepairRequests(logInfos.get(0).getIndexName(), requests);
+        } finally {
+            if (null != lock) {
+                logger.debug("unlock");
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * タイプとルーティングIDが同じリペア情報についてES/ADSをまとめて検索し、ADSへの書込み要求を作成する.
+     * @param logInfos タイプとルーティングIDが同じリペア情報
+     * @param requests 作成した書込み要求の追加先
+     * @throws RepairAdsException リペア処理全体を異常終了させる場合
+     */
+    private void createRepairRequests(List<AdsWriteFailureLogInfo> logInfos, List<AdsWriteRequest> requests)
+            throws RepairAdsException {
+        AdsWriteFailureLogInfo first = logInfos.get(0);
+        String indexName = first.getIndexName();
+        String type = first.getType();
+        String routingId = first.getRoutingId();
+        if ("".equals(routingId)) {
+            routingId = EsIndex.CELL_ROUTING_KEY_NAME;
+        }
+        // TypeがCellである場合は、Elasticsearchのインデックス名を「{UnitPrefix}_ad」に変更する
+        String esIndexName = indexName;
+        if (Cell.EDM_TYPE_NAME.equals(type)) {
+            esIndexName = DcCoreConfig.getEsUnitPrefix() + "_" + EsIndex.CATEGORY_AD;
+        }
+        List<String> idList = new ArrayList<String>(logInfos.size());
+        for (AdsWriteFailureLogInfo logInfo : logInfos) {
+            idList.add(logInfo.getUuid());
+        }
+
+        Map<String, DcSearchHit> esHits = new HashMap<String, DcSearchHit>();
+        Set<String> adsIds = new HashSet<String>();
+        try {
+            DcSearchHits hits = EsAccessor.search(esIndexName, routingId, idList, type).getHits();
+            if (hits.getAllPages() > idList.size()) {
+                String message = String.format("Unexpected number of data returned from Elasticsearch. [%d]",
+                        hits.getAllPages());
+                throw new RepairAdsException(message);
+            }
+            for (DcSearchHit hit : hits.getHits()) {
+                esHits.put(hit.getId(), hit);
+            }
+            for (JSONObject adsRecord : AdsAccessor.getIdListOnAds(indexName, type, idList)) {
+                String id = (String) adsRecord.get("id");
+                if (!adsIds.add(id)) {
+                    String message = String.format("Unexpected number of data returned from ads. [id=%s]", id);
+                    throw new RepairAdsException(message);
+                }
+            }
+        } catch (EsClientException e) {
+            String message = String.format("Failed to get response from Elasticsearch. [%s]", first.toString());
+            // Elasticsearchへの検索に失敗したため、ツール全体を異常終了させる
+            throw new RepairAdsException(message, e);
+        } catch (AdsException e) {
+            String message = String.format("Failed to get response from Ads. [%s]", first.toString());
+            // MySQLへの検索に失敗したため、ツール全体を異常終了させる
+            throw new RepairAdsException(message, e);
+        }
+
+        for (AdsWriteFailureLogInfo logInfo : logInfos) {
+            String repairId = logInfo.getUuid();
+            try {
+                AdsWriteRequest request = createRepairRequest(logInfo, esHits.get(repairId),
+                        adsIds.contains(repairId));
+                if (null == request) {
+                    // ここに来た場合は、MySQLのデータ更新は無視されたことになる。
+                    skippedCount.incrementAndGet();
+                    logger.info("No operation performed for repair log recordID : " + repairId);
+                } else {
+                    requests.add(request);
+                }
+            } catch (AdsException e) {
+                // 該当行を不正ログファイルに退避する
+                // MySQLへのリペア用データの作成に失敗した場合(Elasticsearchから取得したデータのパースに失敗)
+                writeAdsErrorLog(logInfo.toString());
+                errorCount.incrementAndGet();
+                logger.error("Failed to repair record to MySQL. Invalid data is detected in Elasticsearch.", e);
+            }
+        }
+    }
+
+    /**
+     * ADSへの書込み要求を種別ごとにまとめて実行する.
+     * 一括での書込みに失敗した場合は1件ずつ書き込み、失敗したものをリトライ用ログに出力する。
+     * @param indexName リペア対象インデックス名
+     * @param requests ADSへの書込み要求
+     */
+    private void executeRepairRequests(String indexName, List<AdsWriteRequest> requests) {
+        Map<AdsWriteRequest.Kind, List<AdsWriteRequest>> batches =
+                new EnumMap<AdsWriteRequest.Kind, List<AdsWriteRequest>>(AdsWriteRequest.Kind.class);
+        for (AdsWriteRequest request : requests) {
+            List<AdsWriteRequest> batch = batches.get(request.getKind());
+            if (null == batch) {
+                batch = new ArrayList<AdsWriteRequest>();
+                batches.put(request.getKind(), batch);
+            }
+            batch.add(request);
+        }
+        for (Entry<AdsWriteRequest.Kind, List<AdsWriteRequest>> batch : batches.entrySet()) {
+            try {
+                AdsAccessor.executeBatch(indexName, batch.getKey(), batch.getValue());
+                batchCount.incrementAndGet();
+                for (AdsWriteRequest request : batch.getValue()) {
+                    logRepaired(request);
+                }
+            } catch (AdsException e) {
+                logger.warn("Failed to repair records to MySQL in batch. Retrying one by one.", e);
+                for (AdsWriteRequest request : batch.getValue()) {
+                    try {
+                        AdsAccessor.executeBatch(indexName, request.getKind(), Collections.singletonList(request));
+                        logRepaired(request);
+                    } catch (AdsException e1) {
+                        writeAdsRetryLog(request.getLogInfo().toString());
+                        retryCount.incrementAndGet();
+                        logger.error("Failed to repair record to MySQL.", e1);
+                    }
                 }
             }
         }
+    }
 
+    /**
+     * Elasticsearch/ADSの検索結果からリペア方法を判断し、ADSへの書込み要求を作成する.
+     * @param logInfo ログから読み込んだADS書き込み失敗情報
+     * @param hit Elasticsearchにリペア対象のデータを検索した結果。存在しない場合はnull
+     * @param existsOnAds ADSにリペア対象のデータが存在する場合はtrue
+     * @return ADSへの書込み要求。リペアが不要な場合はnull
+     * @throws AdsException Elasticsearchから取得したデータの変換に失敗した場合
+     */
+    private AdsWriteRequest createRepairRequest(AdsWriteFailureLogInfo logInfo, DcSearchHit hit,
+            boolean existsOnAds) throws AdsException {
+        String indexName = logInfo.getIndexName();
+        String type = logInfo.getType();
+        if (null != hit && !existsOnAds) {
+            // Elasticsearchに存在し、MySQLにデータが存在しない場合
+            // MySQLにデータを登録する(Create)
+            return AdsAccessor.createWriteRequest(indexName, type, hit, false, logInfo);
+        } else if (null != hit && logInfo.getEsVersion() == hit.getVersion()) {
+            // Elasticsearchにデータが存在し、データのバージョンがJournalログのバージョンと同じである場合
+            // MySQLにデータを更新する(Update)
+            return AdsAccessor.createWriteRequest(indexName, type, hit, true, logInfo);
+        } else if (null == hit && existsOnAds) {
+            // ES上にデータが存在せず、MySQLにデータが存在する場合
+            // MySQLにデータを削除する(Delete)
+            return AdsAccessor.deleteWriteRequest(indexName, type, logInfo.getUuid(), logInfo);
+        }
+        return null;
+    }
+
+    /**
+     * ADSへのリペアが完了したことをログに出力する.
+     * @param request ADSへの書込み要求
+     */
+    private void logRepaired(AdsWriteRequest request) {
+        repairedCount.incrementAndGet();
+        logger.info(String.format("Ads record is repaired. [%s] : %s", request.getKind(), request.getId()));
     }
 
     /**
@@ -457,8 +925,6 @@ public class RepairAds {
             List<JSONObject> adsResponse) throws RepairAdsException {
 
         // 検索結果として、２件以上がヒットした場合は異常事態とみなし、エラーとする。
-        // （現状は、１件ずつ処理しているため、このチェックがある。ｎ件ずつ処理する場合は、ｎ件ヒットで確認する）
-        // TODO 件数の数値は、フィールドに追い出す。
         DcSearchHits hits = esResponse.getHits();
         if (hits.getAllPages() > 1) {
             String message =
@@ -472,32 +938,20 @@ public class RepairAds {
             throw new RepairAdsException(message);
         }
 
+        DcSearchHit hit = null;
+        if (hits.getCount() == 1) {
+            hit = hits.getAt(0);
+        }
         try {
             // リペアの判断
-            String repairId = logInfo.getUuid();
-            String indexName = logInfo.getIndexName();
-            String type = logInfo.getType();
-
-            if (hits.getCount() == 1 && adsResponse.size() == 0) {
-                // Elasticsearchに存在し、MySQLにデータが存在しない場合
-                // MySQLにデータを登録する(Create)
-                AdsAccessor.createAds(indexName, type, esResponse);
-                logger.info("New recored is inserted into ads. : " + hits.getAt(0).getSource());
-            } else if (hits.getCount() == 1 && adsResponse.size() == 1
-                    && logInfo.getEsVersion() == hits.getAt(0).getVersion()) {
-                // Elasticsearchにデータが存在し、データのバージョンがJournalログのバージョンと同じである場合
-                // MySQLにデータを更新する(Update)
-                AdsAccessor.updateAds(indexName, type, esResponse);
-                logger.info("Ads record is updated : " + hits.getAt(0).getSource());
-            } else if (hits.getCount() == 0 && adsResponse.size() == 1) {
-                // ES上にデータが存在せず、MySQLにデータが存在する場合
-                // MySQLにデータを削除する(Delete)
-                AdsAccessor.deleteAds(indexName, type, repairId);
-                logger.info("Ads record is deleted from ads. : " + repairId);
-            } else {
+            AdsWriteRequest request = createRepairRequest(logInfo, hit, adsResponse.size() == 1);
+            if (null == request) {
                 // ここに来た場合は、MySQLのデータ更新は無視されたことになる。
-                logger.info("No operation performed for repair log recordID : " + repairId);
+                logger.info("No operation performed for repair log recordID : " + logInfo.getUuid());
+                return;
             }
+            AdsAccessor.executeBatch(logInfo.getIndexName(), request.getKind(), Collections.singletonList(request));
+            logRepaired(request);
         } catch (AdsException e) {
             if (e.getCause() instanceof DcCoreException) {
                 // 該当行を不正ログファイルに退避する
@@ -0,0 +1,200 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.fs;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.Charsets;
+import org.json.simple.JSONArray;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.es.util.DcUUID;
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * コレクション直下の子要素名を保持するインデックスファイル.
+ * 子要素の一覧・件数の取得時に、ディレクトリの走査と子要素毎のstatを行わずに済むようにする.
+ * <p>
+ * インデックスファイルの更新日時にディレクトリの更新日時を設定(スタンプ)し、両者が一致する場合のみ有効とする.
+ * 子要素の追加・削除・移動ではディレクトリの更新日時が変わるため、別ノードや外部から変更された場合も自動的に無効となる.
+ * 自ノードで子要素を変更した場合は {@link #invalidate(File)} で明示的に削除する.
+ * <p>
+ * 更新日時の粒度が粗いストレージでは、同じ粒度内の変更で更新日時が変わらない. そのため、ディレクトリの更新日時から
+ * 設定された粒度の期間を経過するまではインデックスファイルを使用せず、ディレクトリを走査する.
+ * インデックスファイルの書き込み自体もディレクトリの更新日時を変えるため、書き込み時は更新日時をエポックとして無効な状態で
+ * 配置し、粒度の期間の経過後に走査結果と内容が一致することを確認してからスタンプする.
+ */
+final class DavChildIndex {
+
+    /**
+     * インデックスファイル名.
+     */
+    static final String INDEX_FILE_NAME = ".pchildren";
+
+    /**
+     * スタンプされていないインデックスファイルの更新日時.
+     */
+    private static final FileTime UNSTAMPED = FileTime.fromMillis(0L);
+
+    private static Logger log = LoggerFactory.getLogger(DavChildIndex.class);
+
+    private static final FileFilter DIRECTORY_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File child) {
+            return child.isDirectory();
+        }
+    };
+
+    private DavChildIndex() {
+    }
+
+    /**
+     * コレクション直下の子要素名の一覧を返す.
+     * @param dir コレクションのディレクトリ
+     * @return 子要素名の一覧
+     */
+    static List<String> getChildNames(File dir) {
+        if (!DcCoreConfig.isDavChildIndexEnabled()) {
+            return listChildNames(dir);
+        }
+        Path index = new File(dir, INDEX_FILE_NAME).toPath();
+        try {
+            FileTime dirTime = Files.getLastModifiedTime(dir.toPath());
+            List<String> indexed = read(index);
+            if (indexed != null && !isRecentlyModified(dirTime)
+                    && sameTime(dirTime, Files.getLastModifiedTime(index))) {
+                return indexed;
+            }
+            List<String> names = listChildNames(dir);
+            if (isRecentlyModified(dirTime)) {
+                return names;
+            }
+            if (indexed != null && sameNames(indexed, names)) {
+                // 走査の間にディレクトリが変更されていなければ、粒度の期間の経過後の走査結果と一致するためスタンプする
+                if (sameTime(dirTime, Files.getLastModifiedTime(dir.toPath()))) {
+                    Files.setLastModifiedTime(index, dirTime);
+                }
+            } else {
+                write(dir, index, names);
+            }
+            return names;
+        } catch (IOException e) {
+            log.info("Failed to use child index of " + dir, e);
+            return listChildNames(dir);
+        }
+    }
+
+    /**
+     * コレクションのインデックスファイルを削除する. 子要素を追加・削除した後に呼び出す.
+     * @param dir コレクションのディレクトリ
+     */
+    static void invalidate(File dir) {
+        try {
+            Files.deleteIfExists(new File(dir, INDEX_FILE_NAME).toPath());
+        } catch (IOException e) {
+            log.info("Failed to delete child index of " + dir, e);
+        }
+    }
+
+    /**
+     * ディレクトリを走査して子要素名の一覧を返す.
+     * @param dir コレクションのディレクトリ
+     * @return 子要素名の一覧
+     */
+    static List<String> listChildNames(File dir) {
+        List<String> names = new ArrayList<String>();
+        File[] children = dir.listFiles(DIRECTORY_FILTER);
+        if (children != null) {
+            for (File child : children) {
+                names.add(child.getName());
+            }
+        }
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> read(Path index) {
+        try {
+            if (!Files.exists(index)) {
+                return null;
+            }
+            try (Reader reader = Files.newBufferedReader(index, Charsets.UTF_8)) {
+                return new ArrayList<String>((JSONArray) new JSONParser().parse(reader));
+            }
+        } catch (IOException | ParseException | ClassCastException e) {
+            // インデックスファイルが読めない場合は作り直す
+            log.debug("Failed to read child index " + index, e);
+            return null;
+        }
+    }
+
+    /**
+     * インデックスファイルを無効な状態(更新日時がエポック)で書き込む. 有効にするスタンプは次回以降の参照時に行う.
+     */
+    @SuppressWarnings("unchecked")
+    private static void write(File dir, Path index, List<String> names) {
+        Path tmp = new File(dir, INDEX_FILE_NAME + "." + DcUUID.randomUUID()).toPath();
+        try {
+            JSONArray array = new JSONArray();
+            array.addAll(names);
+            Files.write(tmp, array.toJSONString().getBytes(Charsets.UTF_8));
+            // 移動後のファイルの更新日時がディレクトリの更新日時と偶然一致して有効とならないようにする
+            Files.setLastModifiedTime(tmp, UNSTAMPED);
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.info("Failed to write child index of " + dir, e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e1) {
+                log.debug("Failed to delete " + tmp, e1);
+            }
+        }
+    }
+
+    /**
+     * ディレクトリの更新日時から更新日時の粒度の期間を経過していないか.
+     * 期間内に子要素が変更されても更新日時が変わらない可能性があるため、この間はインデックスファイルを使用しない.
+     */
+    private static boolean isRecentlyModified(FileTime dirTime) {
+        return System.currentTimeMillis() - dirTime.toMillis() < DcCoreConfig.getDavChildIndexMtimeGranularity();
+    }
+
+    private static boolean sameNames(List<String> a, List<String> b) {
+        return a.size() == b.size() && new HashSet<String>(a).equals(new HashSet<String>(b));
+    }
+
+    /**
+     * 更新日時が一致するか. 更新日時の設定はマイクロ秒精度のためマイクロ秒で比較する.
+     */
+    private static boolean sameTime(FileTime a, FileTime b) {
+        return a.to(TimeUnit.MICROSECONDS) == b.to(TimeUnit.MICROSECONDS);
+    }
+}
@@ -19,7 +19,6 @@ package com.fujitsu.dc.core.model.impl.fs;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -81,6 +80,7 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.core.model.file.BinaryDataNotFoundException;
 import com.fujitsu.dc.core.model.file.StreamingOutputForDavFile;
 import com.fujitsu.dc.core.model.file.StreamingOutputForDavFileWithRange;
+import com.fujitsu.dc.core.model.impl.es.cache.AclCache;
 import com.fujitsu.dc.core.model.impl.es.odata.UserSchemaODataProducer;
 import com.fujitsu.dc.core.model.jaxb.Ace;
 import com.fujitsu.dc.core.model.jaxb.Acl;
@@ -563,6 +563,7 @@ public class DavCmpFsImpl implements DavCmp {
         try {
             // create new directory.
             Files.createDirectory(Paths.get(this.fsPath));
+            DavChildIndex.invalidate(this.parent.fsDir);
             // store the file content.
             File newFile = new File(this.getContentFilePath());
             Files.copy(bufferedInput, newFile.toPath());
@@ -648,13 +649,10 @@ public class DavCmpFsImpl implements DavCmp {
                     throw DcCoreException.Dav.REQUESTED_RANGE_NOT_SATISFIABLE;
                 }
 
-                if (range.getByteRangeSpecCount() > 1) {
-                    // MultiPartレスポンスには未対応
-                    throw DcCoreException.Misc.NOT_IMPLEMENTED.params("Range-MultiPart");
-                } else {
-                    StreamingOutput sout = new StreamingOutputForDavFileWithRange(fileFullPath, fileSize, range);
-                    res = davFileResponseForRange(sout, fileSize, contentType, range);
-                }
+                // byte-range-specが複数の場合は multipart/byteranges で返却する
+                StreamingOutputForDavFileWithRange sout =
+                        new StreamingOutputForDavFileWithRange(fileFullPath, range, contentType);
+                res = davFileResponseForRange(sout, range);
             }
             return res.header(HttpHeaders.ETAG, this.getEtag()).header(DcCoreUtils.HttpHeaders.ACCEPT_RANGES,
                     RangeHeaderHandler.BYTES_UNIT);
@@ -687,26 +685,22 @@ public class DavCmpFsImpl implements DavCmp {
      * ファイルレスポンス処理.
      * @param sout
      *            StreamingOuputオブジェクト
-     * @param fileSize
-     *            ファイルサイズ
-     * @param contentType
-     *            コンテントタイプ
      * @param range
      *            RangeHeaderHandler
      * @return レスポンス
      */
-    private ResponseBuilder davFileResponseForRange(final StreamingOutput sout, long fileSize, String contentType,
+    private ResponseBuilder davFileResponseForRange(final StreamingOutputForDavFileWithRange sout,
             final RangeHeaderHandler range) {
-        // MultiPartには対応しないため1個目のbyte-renge-setだけ処理する。
-        int rangeIndex = 0;
-        List<ByteRangeSpec> brss = range.getByteRangeSpecList();
-        final ByteRangeSpec brs = brss.get(rangeIndex);
-
         // iPadのsafariにおいてChunkedのRangeレスポンスを処理できなかったので明にContent-Lengthを返却している。
-        return javax.ws.rs.core.Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
-                .header(DcCoreUtils.HttpHeaders.CONTENT_RANGE, brs.makeContentRangeHeaderField())
-                .header(HttpHeaders.CONTENT_LENGTH, brs.getContentLength())
-                .header(HttpHeaders.CONTENT_TYPE, contentType);
+        ResponseBuilder res = javax.ws.rs.core.Response.status(HttpStatus.SC_PARTIAL_CONTENT).entity(sout)
+                .header(HttpHeaders.CONTENT_LENGTH, sout.getContentLength())
+                .header(HttpHeaders.CONTENT_TYPE, sout.getContentType());
+        if (!sout.isMultipart()) {
+            // multipart/byteranges の場合は各パートにContent-Rangeを付与する
+            List<ByteRangeSpec> brss = range.getByteRangeSpecList();
+            res.header(DcCoreUtils.HttpHeaders.CONTENT_RANGE, brss.get(0).makeContentRangeHeaderField());
+        }
+        return res;
     }
 
     @Override
@@ -777,6 +771,7 @@ public class DavCmpFsImpl implements DavCmp {
 
             // Create New Directory
             Files.createDirectory(this.fsDir.toPath());
+            DavChildIndex.invalidate(this.parent.fsDir);
             // Create New Meta File
             this.metaFile = DavMetadataFile.prepareNewFile(this, type);
             this.metaFile.save();
@@ -857,6 +852,8 @@ public class DavCmpFsImpl implements DavCmp {
                 Files.move(this.fsDir.toPath(), destDir.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 res = javax.ws.rs.core.Response.status(HttpStatus.SC_NO_CONTENT);
             }
+            DavChildIndex.invalidate(this.parent.fsDir);
+            DavChildIndex.invalidate(destDir.getParentFile());
 
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -931,6 +928,7 @@ public class DavCmpFsImpl implements DavCmp {
     private void doDelete() {
         try {
             FileUtils.deleteDirectory(this.fsDir);
+            DavChildIndex.invalidate(this.parent.fsDir);
         } catch (IOException e) {
             throw DcCoreException.Dav.FS_INCONSISTENCY_FOUND.reason(e);
         }
@@ -970,44 +968,42 @@ public class DavCmpFsImpl implements DavCmp {
 
     @Override
     public final int getChildrenCount() {
-        return this.getChildDir().length;
+        return this.getChildNames().size();
     }
+
     @Override
     public Map<String, DavCmp> getChildren() {
         Map<String, DavCmp> ret = new HashMap<>();
-        File[] files = this.getChildDir();
-        for (File f : files) {
-            String childName = f.getName();
+        for (String childName : this.getChildNames()) {
             ret.put(childName, this.getChild(childName));
         }
         return ret;
     }
 
-    /*
-     * retrieve child resource dir.
-     */
-    private File[] getChildDir() {
-        File[] children = this.fsDir.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File child) {
-                if (child.isDirectory()) {
-                    return true;
-                }
-                return false;
-            }
-
-        });
-        return children;
+    @Override
+    public List<String> getChildNames() {
+        return DavChildIndex.getChildNames(this.fsDir);
     }
 
     private Acl translateAcl(JSONObject aclObj) {
         // principalのhref の値を ロールID（__id）からロールリソースURLに変換する。
         // base:xml値の設定
         String baseUrlStr = createBaseUrlStr();
+        if (this.cell == null) {
+            return this.roleIdToName(aclObj, baseUrlStr);
+        }
 
-        // TODO これはES検索が何度も走る重い処理であるため、必要になってはじめてやるべき
-        // ここからは、一旦、はずすべきか。
-        return this.roleIdToName(aclObj, baseUrlStr);
+        // ロールIDの変換はES検索が何度も走る重い処理であるため、変換とコンパイルを済ませたACLを
+        // メタデータのバージョン毎にキャッシュする
+        String cacheKey = this.fsPath + "\t" + this.getEtag() + "\t" + baseUrlStr;
+        Acl cached = AclCache.get(this.cell.getId(), cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        Object stamp = AclCache.currentStamp(this.cell.getId());
+        Acl ret = this.roleIdToName(aclObj, baseUrlStr);
+        AclCache.cache(this.cell.getId(), cacheKey, stamp, ret);
+        return ret;
     }
 
     /**
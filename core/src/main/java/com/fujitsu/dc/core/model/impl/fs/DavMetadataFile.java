@@ -19,16 +19,31 @@ package com.fujitsu.dc.core.model.impl.fs;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.Charsets;
+import org.apache.commons.lang.ObjectUtils;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.util.DcUUID;
+import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.utils.LocalCache;
 
 /**
  * a class for handling internal fs file storing Dav metadata.
@@ -37,6 +52,15 @@ public class DavMetadataFile {
     // TODO ファイル名はUnix, Windowsで使えるけれどDAVでは使えない名前がいい。
     private static final String DAV_META_FILE_NAME = ".pmeta";
 
+    private static Logger log = LoggerFactory.getLogger(DavMetadataFile.class);
+
+    /**
+     * パース済みのメタデータのキャッシュ. キーはメタデータファイルの絶対パス.
+     * ファイルは常に別ファイルからの置き換えで更新されるため、ファイルの識別子・更新日時・サイズが一致する場合のみ有効とする.
+     */
+    private static LocalCache<String, CachedMetadata> cache =
+            new LocalCache<String, CachedMetadata>(DcCoreConfig.getDavMetadataCacheMaxSize());
+
     File file;
 
     JSONObject json = new JSONObject();
@@ -129,11 +153,25 @@ public class DavMetadataFile {
 
     /**
      * load from the file.
+     * ファイルが前回読み込み時から変更されていない場合は、キャッシュしたパース結果の複製を使用する.
      */
     public void load() {
-        try (Reader reader = Files.newBufferedReader(file.toPath(), Charsets.UTF_8)) {
-            JSONParser parser = new JSONParser();
-            this.json = (JSONObject) parser.parse(reader);
+        Path path = this.file.toPath();
+        String key = this.file.getAbsolutePath();
+        try {
+            // 読み込み前に属性を取得する. 読み込み中に置き換えられた場合は次回の読み込み時に属性が一致せず読み直される
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            CachedMetadata cached = cache.get(key);
+            if (cached != null && cached.isValid(attrs)) {
+                this.json = copy(cached.json);
+                return;
+            }
+            try (Reader reader = Files.newBufferedReader(path, Charsets.UTF_8)) {
+                JSONParser parser = new JSONParser();
+                this.json = (JSONObject) parser.parse(reader);
+            }
+            cache.setMaxSize(DcCoreConfig.getDavMetadataCacheMaxSize());
+            cache.put(key, new CachedMetadata(attrs, copy(this.json)));
         } catch (IOException | ParseException e) {
             // IO failure or JSON is broken
             throw DcCoreException.Dav.DAV_INCONSISTENCY_FOUND.reason(e);
@@ -142,17 +180,92 @@ public class DavMetadataFile {
 
     /**
      * save to the file.
+     * 一時ファイルに書き込んだ後に置き換えるため、書き込み途中で停止しても不完全なファイルが残ることはない.
      */
     public void save() {
         this.incrementVersion();
         String jsonStr = JSONObject.toJSONString(this.getJSON());
+        Path path = this.file.toPath();
+        Path tmp = path.resolveSibling(DAV_META_FILE_NAME + "." + DcUUID.randomUUID());
+        boolean fsync = DcCoreConfig.isDavMetadataFsyncEnabled();
+        cache.remove(this.file.getAbsolutePath());
         try {
-            Files.write(this.file.toPath(), jsonStr.getBytes(Charsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(jsonStr.getBytes(Charsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsync) {
+                    channel.force(true);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (fsync) {
+                // 置き換え自体を永続化するためディレクトリも同期する
+                try (FileChannel dir = FileChannel.open(path.getParent(), StandardOpenOption.READ)) {
+                    dir.force(true);
+                }
+            }
         } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e1) {
+                log.info("Failed to delete " + tmp, e1);
+            }
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * JSONObjectを複製する. キャッシュしたパース結果が呼び出し側で変更されないよう、入れ子のJSONも複製する.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONObject copy(Map<?, ?> src) {
+        JSONObject ret = new JSONObject();
+        for (Map.Entry<?, ?> entry : src.entrySet()) {
+            ret.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            return copy((Map<?, ?>) value);
+        } else if (value instanceof List) {
+            JSONArray ret = new JSONArray();
+            for (Object item : (List<?>) value) {
+                ret.add(copyValue(item));
+            }
+            return ret;
+        }
+        // String, Number, Boolean, null は不変
+        return value;
+    }
+
+    /**
+     * キャッシュするパース済みメタデータ.
+     */
+    private static final class CachedMetadata {
+        private final Object fileKey;
+        private final FileTime lastModified;
+        private final long size;
+        private final JSONObject json;
+
+        CachedMetadata(BasicFileAttributes attrs, JSONObject json) {
+            this.fileKey = attrs.fileKey();
+            this.lastModified = attrs.lastModifiedTime();
+            this.size = attrs.size();
+            this.json = json;
+        }
+
+        boolean isValid(BasicFileAttributes attrs) {
+            return this.size == attrs.size()
+                    && this.lastModified.equals(attrs.lastModifiedTime())
+                    && ObjectUtils.equals(this.fileKey, attrs.fileKey());
+        }
+    }
+
     private void incrementVersion() {
         this.setVersion(this.getVersion() + 1);
     }
@@ -41,6 +41,7 @@ import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.auth.AccessContext;
 import com.fujitsu.dc.core.auth.BoxPrivilege;
 import com.fujitsu.dc.core.auth.CellPrivilege;
+import com.fujitsu.dc.core.auth.CompiledAcl;
 import com.fujitsu.dc.core.auth.Privilege;
 
 /**
@@ -90,12 +91,18 @@ public final class Acl {
     @XmlElements({ @XmlElement(namespace = "DAV:", name = "ace", type = Ace.class) })
     List<Ace> aces;
 
+    /**
+     * ACL判定用にコンパイルしたACL. 初回の判定時に作成する. transientのためXML/JSONには出力されない.
+     */
+    private transient CompiledAcl compiled;
+
     /**
      * xml:base setter.
      * @param base baseUrl
      */
     public void setBase(String base) {
         this.base = base;
+        this.compiled = null;
     }
 
     /**
@@ -112,6 +119,19 @@ public final class Acl {
     public List<Ace> getAceList() {
         return aces;
     }
+
+    /**
+     * ACL判定用にコンパイルしたACLを返す.
+     * @return コンパイルしたACL
+     */
+    public CompiledAcl getCompiled() {
+        CompiledAcl ret = this.compiled;
+        if (ret == null) {
+            ret = CompiledAcl.compile(this);
+            this.compiled = ret;
+        }
+        return ret;
+    }
     /**
      * JSON化する.
      * @return Mapオブジェクト
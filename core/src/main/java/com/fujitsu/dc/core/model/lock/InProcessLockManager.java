@@ -16,29 +16,50 @@
  */
 package com.fujitsu.dc.core.model.lock;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * InProcessのLockManager.
+ * 参照カウント等の読み込みと書き込みを伴う操作は、キーのハッシュ値で分割したロックオブジェクト単位で排他する.
  */
 class InProcessLockManager extends LockManager {
-    Map<String, Object> inProcessLock = new HashMap<String, Object>();
-    Map<String, AccountLock> inProcessAccountLock = new HashMap<String, AccountLock>();
+    private static final int STRIPE_COUNT = 16;
+    private static final long TIME_MILLIS = 1000L;
+
+    Map<String, Object> inProcessLock = new ConcurrentHashMap<String, Object>();
+    Map<String, AccountLock> inProcessAccountLock = new ConcurrentHashMap<String, AccountLock>();
+    private final Object[] stripes = new Object[STRIPE_COUNT];
+    private final AtomicLong ownerToken = new AtomicLong();
+
+    InProcessLockManager() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    private Object stripeFor(String fullKey) {
+        return stripes[(fullKey.hashCode() & Integer.MAX_VALUE) % STRIPE_COUNT];
+    }
 
     @Override
     Lock doGetLock(String fullKey) {
-        return (Lock) inProcessLock.get(fullKey);
+        Lock lock = (Lock) inProcessLock.get(fullKey);
+        if (lock != null && lockLeaseTime > 0
+                && System.currentTimeMillis() - lock.acquiredAt >= lockLeaseTime * TIME_MILLIS) {
+            // 保持期間を過ぎたロックは解放されたものとして扱う
+            inProcessLock.remove(fullKey, lock);
+            return null;
+        }
+        return lock;
     }
 
     @Override
-    synchronized Boolean doPutLock(String fullKey, Lock lock) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, lock);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+    Boolean doPutLock(String fullKey, Lock lock) {
+        // 保持期間を過ぎたロックを解放してから追加する
+        doGetLock(fullKey);
+        return putIfAbsent(fullKey, lock);
     }
 
     @Override
@@ -46,6 +67,20 @@ class InProcessLockManager extends LockManager {
         inProcessLock.remove(fullKey);
     }
 
+    @Override
+    boolean doReleaseLock(String fullKey, long token) {
+        Object current = inProcessLock.get(fullKey);
+        if (!(current instanceof Lock) || ((Lock) current).ownerToken != token) {
+            return false;
+        }
+        return inProcessLock.remove(fullKey, current);
+    }
+
+    @Override
+    long doIssueOwnerToken() {
+        return ownerToken.incrementAndGet();
+    }
+
     @Override
     void doDeleteAllLocks() {
         inProcessLock.clear();
@@ -58,12 +93,7 @@ class InProcessLockManager extends LockManager {
 
     @Override
     Boolean doPutReferenceOnlyLock(String fullKey, String value) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, value);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+        return putIfAbsent(fullKey, value);
     }
 
     @Override
@@ -88,53 +118,54 @@ class InProcessLockManager extends LockManager {
 
     @Override
     Boolean doPutUnituserLock(String fullKey, String value, int expired) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, value);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+        return putIfAbsent(fullKey, value);
     }
 
     @Override
     long doGetReferenceCount(String fullKey) {
-        Long value = -1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+        Long value = (Long) inProcessLock.get(fullKey);
+        if (value == null) {
+            value = -1L;
         }
         return value;
     }
 
     @Override
     long doIncrementReferenceCount(String fullKey) {
-        Long value = 1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
-            value++;
+        synchronized (stripeFor(fullKey)) {
+            Long value = (Long) inProcessLock.get(fullKey);
+            if (value == null) {
+                value = 1L;
+            } else {
+                value++;
+            }
+            inProcessLock.put(fullKey, value);
+            return value;
         }
-        inProcessLock.put(fullKey, value);
-        return value;
     }
 
     @Override
     long doDecrementReferenceCount(String fullKey) {
-        Long value = 0L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+        synchronized (stripeFor(fullKey)) {
+            Long value = (Long) inProcessLock.get(fullKey);
+            if (value == null) {
+                return 0L;
+            }
             value--;
-            inProcessLock.put(fullKey, value);
             if (value == 0) {
                 inProcessLock.remove(fullKey);
+            } else {
+                inProcessLock.put(fullKey, value);
             }
+            return value;
         }
-        return value;
     }
 
     @Override
     long doGetCellStatus(String fullKey) {
-        Long value = -1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+        Long value = (Long) inProcessLock.get(fullKey);
+        if (value == null) {
+            value = -1L;
         }
         return value;
     }
@@ -152,11 +183,18 @@ class InProcessLockManager extends LockManager {
 
     @Override
     String doGetReadDeleteOnlyMode(String fullKey) {
-        String value = null;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (String) inProcessLock.get(fullKey);
+        return (String) inProcessLock.get(fullKey);
+    }
+
+    private Boolean putIfAbsent(String fullKey, Object value) {
+        synchronized (stripeFor(fullKey)) {
+            if (inProcessLock.get(fullKey) == null) {
+                inProcessLock.put(fullKey, value);
+                return Boolean.TRUE;
+            } else {
+                return Boolean.FALSE;
+            }
         }
-        return value;
     }
 
     /**
@@ -46,20 +46,52 @@ public class Lock implements Serializable {
 
     String fullKey;
     Long createdAt;
+    long ownerToken;
+    long acquiredAt;
+    transient Object localTicket;
+    private transient boolean released;
 
     /**
      * コンストラクタ(非公開).
      * @param key ロックのキー
      */
     Lock(String fullKey, Long createdAt) {
+        this(fullKey, createdAt, 0L);
+    }
+
+    /**
+     * コンストラクタ(非公開).
+     * @param key ロックのキー
+     * @param createdAt 取得を開始した時刻
+     * @param ownerToken ロック取得毎に払い出される値
+     */
+    Lock(String fullKey, Long createdAt, long ownerToken) {
         this.fullKey = fullKey;
         this.createdAt = createdAt;
+        this.ownerToken = ownerToken;
+        this.acquiredAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 保持者トークンを返します.
+     * ロック取得毎に保持者間で重複しない値が払い出され、解放時に自身が取得したロックであることの確認に使用する.
+     * 保護対象のデータストアでは検証しないため、リース期限切れ後の書き込みを防ぐものではない.
+     * @return 保持者トークン
+     */
+    long getOwnerToken() {
+        return ownerToken;
     }
 
     /**
-     * ロックをリリースします.
+     * ロックをリリースします. 2回目以降の呼び出しは何もしない.
      */
     public void release() {
-        LockManager.releaseLock(this.fullKey);
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        LockManager.releaseLock(this);
     }
 }
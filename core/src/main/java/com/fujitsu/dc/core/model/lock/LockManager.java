@@ -16,7 +16,8 @@
  */
 package com.fujitsu.dc.core.model.lock;
 
-import java.util.Date;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
@@ -27,6 +28,7 @@ import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
  * Lockを管理するユーティリティ.
  */
 public abstract class LockManager {
+    static Logger log = LoggerFactory.getLogger(LockManager.class);
 
     static volatile LockManager singleton;
     static volatile String lockType = DcCoreConfig.getLockType();
@@ -35,6 +37,10 @@ public abstract class LockManager {
     static volatile String lockMemcachedHost = DcCoreConfig.getLockMemcachedHost();
     static volatile String lockMemcachedPort = DcCoreConfig.getLockMemcachedPort();
     static volatile int accountLockLifeTime = Integer.valueOf(DcCoreConfig.getAccountLockLifetime());
+    static volatile int lockLeaseTime = Integer.valueOf(DcCoreConfig.getLockLeaseTime());
+
+    private static final LockWaitQueue WAIT_QUEUE = new LockWaitQueue();
+    private static final long MILLIS_PER_SECOND = 1000L;
 
     /**
      * Memcached タイプ.
@@ -47,10 +53,23 @@ public abstract class LockManager {
 
     abstract Lock doGetLock(String fullKey);
 
+    /*
+     * ロックが保持されていない場合のみ追加する. 保持期間を過ぎたロックは保持されていないものとして扱うこと.
+     */
     abstract Boolean doPutLock(String fullKey, Lock lock);
 
     abstract void doReleaseLock(String fullKey);
 
+    /*
+     * 保持者トークンが一致する場合のみロックを解放する. 比較と解放は不可分に行うこと.
+     */
+    abstract boolean doReleaseLock(String fullKey, long ownerToken);
+
+    /*
+     * 保持者間で重複しない保持者トークンを払い出す.
+     */
+    abstract long doIssueOwnerToken();
+
     abstract void doDeleteAllLocks();
 
     abstract String doGetReferenceOnlyLock(String fullKey);
@@ -89,6 +108,8 @@ public abstract class LockManager {
 
     /**
      * ロックを取得します.
+     * ノード内では到着順の待ち行列で待ち合わせ、先頭となったリクエストのみがロックの保持先(memcached等)に対して取得を試みる.
+     * 他ノードがロックを保持している場合はリトライ間隔毎に再試行し、リトライ間隔×リトライ回数を経過した場合はエラーとする.
      * @param category ロックのカテゴリ
      * @param cellId CellのID
      * @param boxId BoxのID
@@ -96,50 +117,98 @@ public abstract class LockManager {
      * @return Lock
      */
     public static Lock getLock(String category, String cellId, String boxId, String nodeId) {
-        Long createdAt = (new Date()).getTime();
-        // memcached にキーが存在するか調べる
-        // なければmemcached に書きに行く
-        // あったら、リトライする。
-        int timesRetry = 0;
-        while (timesRetry <= lockRetryTimes) {
-            String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
-            Lock lock = null;
-            try {
-                lock = singleton.doGetLock(fullKey);
-            } catch (MemcachedClientException e) {
-                MemcachedClient.reportError();
-                throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
-            }
-            if (lock == null) {
-                lock = new Lock(fullKey, createdAt);
-                Boolean success = singleton.doPutLock(fullKey, lock);
-                if (success) {
-                    return lock;
+        String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        long createdAt = System.currentTimeMillis();
+        long deadline = createdAt + lockRetryInterval * lockRetryTimes;
+        boolean contended = false;
+        Lock lock = null;
+        try {
+            // ノード内で同一キーのロックを待っているリクエストがあれば、その後ろに並ぶ
+            long leaseMillis = lockLeaseTime * MILLIS_PER_SECOND;
+            Object ticket = WAIT_QUEUE.tryAcquire(fullKey, leaseMillis);
+            if (ticket == null) {
+                contended = true;
+                ticket = WAIT_QUEUE.acquire(fullKey, deadline - System.currentTimeMillis(), leaseMillis);
+                if (ticket == null) {
+                    throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
                 }
             }
             try {
-                Thread.sleep(lockRetryInterval);
-            } catch (InterruptedException e) {
-                throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+                while (true) {
+                    Lock newLock = tryPutLock(fullKey, createdAt);
+                    if (newLock != null) {
+                        newLock.localTicket = ticket;
+                        lock = newLock;
+                        return lock;
+                    }
+                    // 他ノードがロックを保持している
+                    contended = true;
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
+                    }
+                    Thread.sleep(Math.min(lockRetryInterval, remaining));
+                }
+            } finally {
+                if (lock == null) {
+                    WAIT_QUEUE.release(fullKey, ticket);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        } finally {
+            LockStatistics.record(category, System.currentTimeMillis() - createdAt, contended, lock != null);
+        }
+    }
+
+    /*
+     * ロックが保持されていなければ取得する. 他ノードが保持している場合はnullを返す.
+     * 保持状態の事前確認は行わず、追加できたかどうかで判定する.
+     */
+    private static Lock tryPutLock(String fullKey, long createdAt) {
+        try {
+            Lock newLock = new Lock(fullKey, createdAt, singleton.doIssueOwnerToken());
+            if (singleton.doPutLock(fullKey, newLock)) {
+                return newLock;
             }
-            timesRetry++;
+            return null;
+        } catch (MemcachedClientException e) {
+            MemcachedClient.reportError();
+            throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
         }
-        throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
     }
 
     /*
      * ロックのリリース処理
+     * 解放に失敗した場合もロックはリース期間の経過後に解放されるため、ログ出力のみ行う.
      */
-    static void releaseLock(String fullKey) {
-        singleton.doReleaseLock(fullKey);
+    static void releaseLock(Lock lock) {
+        try {
+            if (!singleton.doReleaseLock(lock.fullKey, lock.ownerToken)) {
+                // リース期限切れ後に他のリクエストが取得したロックは削除しない
+                log.info("Lock lease has already expired. key=" + lock.fullKey);
+            }
+        } catch (MemcachedClientException e) {
+            MemcachedClient.reportError();
+            log.info("Failed to release lock. key=" + lock.fullKey, e);
+        } finally {
+            WAIT_QUEUE.release(lock.fullKey, lock.localTicket);
+        }
     }
 
+    /**
+     * @return ノード内でロックの取得を待機しているリクエスト数
+     */
+    static int getWaitingCount() {
+        return WAIT_QUEUE.getWaitingCount();
+    }
 
     /**
      * ロックをすべて消します.
      */
     public static void deleteAllLocks() {
         singleton.doDeleteAllLocks();
+        WAIT_QUEUE.releaseAll();
     }
 
     /**
@@ -0,0 +1,104 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ロックカテゴリ毎のロック取得状況を集計するクラス.
+ */
+public class LockStatistics {
+
+    private static final ConcurrentMap<String, CategoryStatistics> CATEGORIES =
+            new ConcurrentHashMap<String, CategoryStatistics>();
+
+    private LockStatistics() {
+    }
+
+    /**
+     * カテゴリ毎の集計値.
+     */
+    static final class CategoryStatistics {
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong contended = new AtomicLong();
+        private final AtomicLong timeout = new AtomicLong();
+        private final AtomicLong waitTime = new AtomicLong();
+        private final AtomicLong maxWaitTime = new AtomicLong();
+
+        void record(long waitMillis, boolean isContended, boolean isAcquired) {
+            if (isAcquired) {
+                acquired.incrementAndGet();
+            } else {
+                timeout.incrementAndGet();
+            }
+            if (isContended) {
+                contended.incrementAndGet();
+            }
+            waitTime.addAndGet(waitMillis);
+            long max = maxWaitTime.get();
+            while (waitMillis > max && !maxWaitTime.compareAndSet(max, waitMillis)) {
+                max = maxWaitTime.get();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<String, Object>();
+            map.put("acquired", acquired.get());
+            map.put("contended", contended.get());
+            map.put("timeout", timeout.get());
+            map.put("waitTimeMillis", waitTime.get());
+            map.put("maxWaitTimeMillis", maxWaitTime.get());
+            return map;
+        }
+    }
+
+    /**
+     * ロック取得の結果を記録する.
+     * @param category ロックのカテゴリ
+     * @param waitMillis ロック取得までに要した時間(ms)
+     * @param contended 他のリクエストがロックを保持していたため待機した場合はtrue
+     * @param acquired ロックを取得できた場合はtrue、タイムアウトした場合はfalse
+     */
+    static void record(String category, long waitMillis, boolean contended, boolean acquired) {
+        CategoryStatistics stats = CATEGORIES.get(category);
+        if (stats == null) {
+            CategoryStatistics created = new CategoryStatistics();
+            stats = CATEGORIES.putIfAbsent(category, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.record(waitMillis, contended, acquired);
+    }
+
+    /**
+     * ロックの取得状況を返す.
+     * @return カテゴリ名をキーとし、取得件数、競合件数、タイムアウト件数、待機時間の合計と最大値(ms)を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        for (Map.Entry<String, CategoryStatistics> entry : CATEGORIES.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().toMap());
+        }
+        stats.put("waiting", LockManager.getWaitingCount());
+        return stats;
+    }
+}
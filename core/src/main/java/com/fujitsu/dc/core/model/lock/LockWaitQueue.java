@@ -0,0 +1,194 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ノード内でロックの取得順序を管理する待ち行列.
+ * キー毎に到着順(FIFO)で待ち合わせ、リリースされた時点で待機中のスレッドへ通知する.
+ * 保持期間(リース)を超えて保持されているロックは解放されたものとして扱う.
+ * 待機者の居なくなったキーの情報は破棄する.
+ */
+class LockWaitQueue {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * キー毎の待ち合わせ状態.
+     */
+    static final class Entry {
+        private final Deque<Object> waiters = new ArrayDeque<Object>();
+        private Object owner;
+        private long ownedSince;
+        private boolean retired;
+
+        private long heldFor(long now, long leaseMillis) {
+            if (owner == null) {
+                return 0;
+            }
+            if (leaseMillis <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return Math.max(0, ownedSince + leaseMillis - now);
+        }
+    }
+
+    /**
+     * 待機せずにロックの取得を試みる. 他に待機中のスレッドが居る場合は取得しない.
+     * @param key ロックのキー
+     * @param leaseMillis ロックの保持期間(ms)。0以下の場合は無期限
+     * @return 取得できた場合はリリース時に指定するチケット、取得できなかった場合はnull
+     */
+    Object tryAcquire(String key, long leaseMillis) {
+        while (true) {
+            Entry entry = entryFor(key);
+            synchronized (entry) {
+                if (entry.retired) {
+                    continue;
+                }
+                if (!entry.waiters.isEmpty() || entry.heldFor(System.currentTimeMillis(), leaseMillis) > 0) {
+                    return null;
+                }
+                return own(entry);
+            }
+        }
+    }
+
+    /**
+     * 到着順にロックの取得を待ち合わせる.
+     * @param key ロックのキー
+     * @param timeoutMillis 最大待機時間(ms)
+     * @param leaseMillis ロックの保持期間(ms)。0以下の場合は無期限
+     * @return 取得できた場合はリリース時に指定するチケット、タイムアウトした場合はnull
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    Object acquire(String key, long timeoutMillis, long leaseMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        Object waiter = new Object();
+        while (true) {
+            Entry entry = entryFor(key);
+            synchronized (entry) {
+                if (entry.retired) {
+                    continue;
+                }
+                entry.waiters.addLast(waiter);
+                Object ticket = null;
+                try {
+                    while (true) {
+                        long now = System.currentTimeMillis();
+                        long held = entry.heldFor(now, leaseMillis);
+                        if (held == 0 && entry.waiters.peekFirst() == waiter) {
+                            ticket = own(entry);
+                            return ticket;
+                        }
+                        long remaining = deadline - now;
+                        if (remaining <= 0) {
+                            return null;
+                        }
+                        if (held > 0) {
+                            remaining = Math.min(remaining, held);
+                        }
+                        entry.wait(remaining);
+                    }
+                } finally {
+                    entry.waiters.remove(waiter);
+                    if (ticket == null) {
+                        // 先頭で待機していた場合に後続が取得できるよう通知する
+                        entry.notifyAll();
+                        retireIfIdle(key, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * ロックを解放し、待機中のスレッドへ通知する.
+     * リース期間の経過後に他のスレッドが取得している場合は何もしない.
+     * @param key ロックのキー
+     * @param ticket 取得時に返却されたチケット
+     */
+    void release(String key, Object ticket) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.owner != ticket) {
+                return;
+            }
+            entry.owner = null;
+            entry.notifyAll();
+            retireIfIdle(key, entry);
+        }
+    }
+
+    /**
+     * 全てのロックを解放する.
+     */
+    void releaseAll() {
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                entry.owner = null;
+                entry.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return 待機中のスレッド数
+     */
+    int getWaitingCount() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                count += entry.waiters.size();
+            }
+        }
+        return count;
+    }
+
+    private Object own(Entry entry) {
+        Object ticket = new Object();
+        entry.owner = ticket;
+        entry.ownedSince = System.currentTimeMillis();
+        return ticket;
+    }
+
+    private Entry entryFor(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    private void retireIfIdle(String key, Entry entry) {
+        if (entry.owner == null && entry.waiters.isEmpty()) {
+            entry.retired = true;
+            entries.remove(key, entry);
+        }
+    }
+}
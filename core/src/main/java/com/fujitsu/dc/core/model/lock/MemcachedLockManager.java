@@ -16,20 +16,35 @@
  */
 package com.fujitsu.dc.core.model.lock;
 
+import java.security.SecureRandom;
+
 import com.fujitsu.dc.core.utils.MemcachedClient;
 
 /**
+ * memcachedにロックを保持するLockManager.
+ * ロックはリース期間を指定して保持し、保持中のノードが停止した場合もリース期間の経過後に解放される.
+ * 取得は保持者トークンを含むロックのaddのみ、解放はgetsで保持者トークンを確認した上でのCAS値指定のdeleteで行い、
+ * 保持者の確認と解放を不可分に行う.
  */
 class MemcachedLockManager extends LockManager {
 
+    /**
+     * 保持者トークンを生成する乱数. memcachedへの問い合わせなしにノード間で重複しない値を払い出す.
+     */
+    private static final SecureRandom OWNER_TOKENS = new SecureRandom();
+
     @Override
     Lock doGetLock(String fullKey) {
-        return MemcachedClient.getLockClient().get(fullKey, Lock.class);
+        Object value = MemcachedClient.getLockClient().get(fullKey, Object.class);
+        if (value instanceof Lock) {
+            return (Lock) value;
+        }
+        return null;
     }
 
     @Override
     Boolean doPutLock(String fullKey, Lock lock) {
-        return MemcachedClient.getLockClient().add(fullKey, lock);
+        return MemcachedClient.getLockClient().add(fullKey, lockLeaseTime, lock);
     }
 
     @Override
@@ -37,6 +52,22 @@ class MemcachedLockManager extends LockManager {
         MemcachedClient.getLockClient().delete(fullKey);
     }
 
+    @Override
+    boolean doReleaseLock(String fullKey, long ownerToken) {
+        MemcachedClient client = MemcachedClient.getLockClient();
+        MemcachedClient.CasValue current = client.gets(fullKey);
+        if (current == null || !(current.getValue() instanceof Lock)
+                || ((Lock) current.getValue()).ownerToken != ownerToken) {
+            return false;
+        }
+        return client.delete(fullKey, current.getCas());
+    }
+
+    @Override
+    long doIssueOwnerToken() {
+        return OWNER_TOKENS.nextLong();
+    }
+
     @Override
     void doDeleteAllLocks() {
         MemcachedClient.getLockClient().clear();
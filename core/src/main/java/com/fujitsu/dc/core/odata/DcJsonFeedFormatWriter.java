@@ -85,22 +85,8 @@ public class DcJsonFeedFormatWriter extends DcJsonFormatWriter<EntitiesResponse>
 
         if (target.getSkipToken() != null) {
 
-            // $skip only applies to the first page of results.
-            // if $top was given, we have to reduce it by the number of entities
-            // we are returning now.
-            String tops = uriInfo.getQueryParameters().getFirst("$top");
-            int top = -1;
-            if (null != tops) {
-                // query param value already validated
-                top = Integer.parseInt(tops);
-                top -= target.getEntities().size();
-            }
+            // $skiptokenはページ位置を保持するカーソルのため、$topはページサイズとしてそのまま引き継ぐ
             UriBuilder uri = uriInfo.getRequestUriBuilder();
-            if (top > 0) {
-                uri.replaceQueryParam("$top", top);
-            } else {
-                uri.replaceQueryParam("$top");
-            }
             String nextHref = uri
                     .replaceQueryParam("$skiptoken", target.getSkipToken())
                     .replaceQueryParam("$skip").build().toString();
@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.rs;
 
+import java.util.Map;
 import java.util.Properties;
 
 import javax.ws.rs.GET;
@@ -32,6 +33,15 @@ import org.slf4j.LoggerFactory;
 import com.fujitsu.dc.common.es.EsClient;
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
+import com.fujitsu.dc.core.auth.VerifiedTokenCache;
+import com.fujitsu.dc.core.model.impl.es.cache.BoxCache;
+import com.fujitsu.dc.core.model.impl.es.cache.CellCache;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleListCache;
+import com.fujitsu.dc.core.model.impl.es.cache.UserDataSchemaLocalCache;
+import com.fujitsu.dc.core.model.impl.es.repair.RepairAds;
+import com.fujitsu.dc.core.model.lock.LockStatistics;
+import com.fujitsu.dc.core.utils.HttpClientFactory;
 
 /**
  * StatusResourceに対応するJAX-RS Resource クラス.
@@ -66,6 +76,8 @@ public class StatusResource {
 
         // Adsの死活チェック
         responseJson.put("ads", checkAds());
+        // ADSのコネクションプールの利用状況
+        responseJson.put("adsPool", toJson(JdbcAds.getStatistics()));
 
         // ElasticSearch Health
         EsClient client = EsModel.client();
@@ -73,6 +85,24 @@ public class StatusResource {
         esJson.put("health", client.checkHealth());
         responseJson.put("ElasticSearch", esJson);
 
+        // ノード内キャッシュの利用状況
+        JSONObject cacheJson = new JSONObject();
+        cacheJson.put("schema", toJson(UserDataSchemaLocalCache.getStatistics()));
+        cacheJson.put("cell", toJson(CellCache.getStatistics()));
+        cacheJson.put("box", toJson(BoxCache.getStatistics()));
+        cacheJson.put("token", toJson(VerifiedTokenCache.getStatistics()));
+        cacheJson.put("role", toJson(RoleListCache.getStatistics()));
+        responseJson.put("cache", cacheJson);
+
+        // ロックの取得状況
+        responseJson.put("lock", toJson(LockStatistics.getStatistics()));
+
+        // HTTPコネクションプールの利用状況
+        responseJson.put("httpPool", toJson(HttpClientFactory.getStatistics()));
+
+        // ADSリペア処理の状況
+        responseJson.put("adsRepair", toJson(RepairAds.getInstance().getStatistics()));
+
         sb.append(responseJson.toJSONString());
         return Response.status(HttpStatus.SC_OK).entity(sb.toString()).build();
     }
@@ -88,6 +118,18 @@ public class StatusResource {
         return Response.status(HttpStatus.SC_NO_CONTENT).build();
     }
 
+    /**
+     * 統計情報のMapをJSONObjectに変換する.
+     * @param stats 統計情報
+     * @return JSONObject
+     */
+    @SuppressWarnings("unchecked")
+    static JSONObject toJson(Map<String, Object> stats) {
+        JSONObject json = new JSONObject();
+        json.putAll(stats);
+        return json;
+    }
+
     /**
      * Adb(MasterDatabase)のコネクション確認.
      * @return 正常に接続できればTrue
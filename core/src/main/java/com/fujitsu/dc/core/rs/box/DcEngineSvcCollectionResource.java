@@ -41,6 +41,7 @@ import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -52,7 +53,6 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.wink.webdav.WebDAVMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,11 +62,13 @@ import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.annotations.ACL;
 import com.fujitsu.dc.core.auth.BoxPrivilege;
+import com.fujitsu.dc.core.engine.EmbeddedEngine;
 import com.fujitsu.dc.core.model.DavCmp;
 import com.fujitsu.dc.core.model.DavMoveResource;
 import com.fujitsu.dc.core.model.DavRsCmp;
 import com.fujitsu.dc.core.model.impl.es.DavCmpEsImpl;
 import com.fujitsu.dc.core.model.impl.fs.DavCmpFsImpl;
+import com.fujitsu.dc.core.utils.HttpClientFactory;
 
 /**
  * DcEngineSvcCollectionResourceを担当するJAX-RSリソース.
@@ -278,7 +280,8 @@ public final class DcEngineSvcCollectionResource {
         String baseUrl = uriInfo.getBaseUri().toString();
 
         // リクエストヘッダを取得し、以下内容を追加
-        HttpClient client = new DefaultHttpClient();
+        // Engineへのコネクションはプールから再利用する. レスポンスボディの出力完了時にコネクションを返却する
+        HttpClient client = HttpClientFactory.create(HttpClientFactory.TYPE_DEFAULT);
         HttpUriRequest req = null;
         if (method.equals(HttpMethod.POST)) {
             HttpPost post = new HttpPost(requestUrl);
@@ -337,10 +340,17 @@ public final class DcEngineSvcCollectionResource {
             }
         }
 
-        // Engineにリクエストを投げる
+        // Engineにリクエストを投げる. 組み込みEngineが有効な場合は同一JVM内で実行する
         HttpResponse objResponse = null;
+        EmbeddedEngine embeddedEngine = EmbeddedEngine.getAvailableInstance();
         try {
-            objResponse = client.execute(req);
+            if (embeddedEngine != null) {
+                objResponse = embeddedEngine.execute(req);
+            } else {
+                objResponse = client.execute(req);
+            }
+        } catch (DcCoreException e) {
+            throw e;
         } catch (ClientProtocolException e) {
             throw DcCoreException.ServiceCollection.SC_INVALID_HTTP_RESPONSE_ERROR;
         } catch (Exception ioe) {
@@ -383,11 +393,9 @@ public final class DcEngineSvcCollectionResource {
             StreamingOutput strOutput = new StreamingOutput() {
                 @Override
                 public void write(final OutputStream os) throws IOException {
-                    int chr;
+                    // 1バイトずつではなくバッファ単位でリレーする
                     try {
-                        while ((chr = isInvariable.read()) != -1) {
-                            os.write(chr);
-                        }
+                        IOUtils.copyLarge(isInvariable, os);
                     } finally {
                         isInvariable.close();
                     }
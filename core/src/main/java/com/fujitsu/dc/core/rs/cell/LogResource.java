@@ -59,10 +59,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.utils.DcCoreUtils;
+import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.auth.AccessContext;
 import com.fujitsu.dc.core.auth.CellPrivilege;
 import com.fujitsu.dc.core.event.EventUtils;
+import com.fujitsu.dc.core.eventbus.EventLogWriter;
 import com.fujitsu.dc.core.eventlog.ArchiveLogCollection;
 import com.fujitsu.dc.core.eventlog.ArchiveLogFile;
 import com.fujitsu.dc.core.model.Cell;
@@ -141,6 +143,9 @@ public class LogResource {
             throw DcCoreException.Dav.INVALID_DEPTH_HEADER.params(depth);
         }
 
+        // ローテートが未出力のイベントの書き込みで発生する場合があるため、出力を待ってから一覧を作成する
+        EventLogWriter.flush(DcCoreConfig.getEventLogAsyncFlushTimeout());
+
         // リクエストボディをパースして pfオブジェクトを作成する
         // ボディが空の場合はallpropが設定されたのと同じ処理をする
         Propfind propfind = null;
@@ -282,6 +287,9 @@ public class LogResource {
         logFileName.append(logCollection);
         logFileName.append(File.separator);
         logFileName.append(fileName);
+
+        // 直前に受け付けたイベントが含まれるよう、非同期出力の待ち行列にあるイベントの出力を待つ
+        EventLogWriter.flush(DcCoreConfig.getEventLogAsyncFlushTimeout());
         return getLog(logCollection, logFileName.toString());
     }
 
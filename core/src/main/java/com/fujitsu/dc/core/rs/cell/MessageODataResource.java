@@ -41,7 +41,10 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -65,9 +68,8 @@ import org.odata4j.producer.QueryInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fujitsu.dc.common.auth.token.Role;
-import com.fujitsu.dc.common.auth.token.TransCellAccessToken;
 import com.fujitsu.dc.common.utils.DcCoreUtils;
+import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.auth.OAuth2Helper;
 import com.fujitsu.dc.core.model.ctl.Common;
@@ -261,32 +263,38 @@ public final class MessageODataResource extends AbstractODataResource {
         // ComplexTypeの型情報を取得する
         EdmComplexType ct = SentMessage.COMPLEXTYPE_BUILDER.build();
 
-        String fromCellUrl = this.odataResource.getAccessContext().getCell().getUrl();
+        final String fromCellUrl = this.odataResource.getAccessContext().getCell().getUrl();
 
         // 宛先リスト作成
         List<String> toList = createRequestUrl();
 
-        // リクエストの件数分繰り返し
+        // ('ID')からIDを抜き出す
+        Pattern formatPattern = Pattern.compile("\\('(.+)'\\)");
+        Matcher formatMatcher = formatPattern.matcher(idKey);
+        formatMatcher.matches();
+        String id = formatMatcher.group(1);
+
+        // 受信API呼出しのリクエストボディは宛先毎にリクエストスレッドで作成しておく
+        final Map<String, JSONObject> requestBodies = new HashMap<String, JSONObject>();
+        List<String> toCellUrls = new ArrayList<String>();
         for (String toCellUrl : toList) {
-            List<OProperty<?>> result = null;
             toCellUrl = formatCellUrl(toCellUrl);
+            toCellUrls.add(toCellUrl);
+            requestBodies.put(toCellUrl, createRequestJsonBody(fromCellUrl, toCellUrl, toList, id));
+        }
 
-            // 受信API呼出しのトークン作成
-            TransCellAccessToken token = new TransCellAccessToken(
-                    fromCellUrl, fromCellUrl, toCellUrl, new ArrayList<Role>(), "");
-
-            // ('ID')からIDを抜き出す
-            Pattern formatPattern = Pattern.compile("\\('(.+)'\\)");
-            Matcher formatMatcher = formatPattern.matcher(idKey);
-            formatMatcher.matches();
-            String id = formatMatcher.group(1);
-            // 受信API呼出しのリクエストボディ作成
-            JSONObject requestBody = createRequestJsonBody(fromCellUrl, toCellUrl, toList, id);
-
-            // 受信API呼出し
-            result = requestHttpReceivedMessage(token, toCellUrl, requestBody);
+        // 受信API呼出しを宛先毎に並行して行う
+        List<List<OProperty<?>>> results = SentMessageDelivery.deliverAll(toCellUrls,
+                new SentMessageDelivery.Task<List<OProperty<?>>>() {
+                    @Override
+                    public List<OProperty<?>> deliver(String toCellUrl) {
+                        String token = SentMessageDelivery.getTokenString(fromCellUrl, toCellUrl);
+                        return requestHttpReceivedMessage(token, toCellUrl, requestBodies.get(toCellUrl));
+                    }
+                });
 
-            // 呼出し結果を配列に追加する
+        // 呼出し結果を宛先の順に配列に追加する
+        for (List<OProperty<?>> result : results) {
             builder.add(OComplexObjects.create(ct, result));
         }
 
@@ -457,13 +465,13 @@ public final class MessageODataResource extends AbstractODataResource {
 
     /**
      * メッセージ受信API呼出し.
-     * @param token トークン
+     * @param token トークン文字列
      * @param requestCellUrl リクエスト先CellURL
      * @param jsonBody リクエストボディ
      * @return リクエスト結果
      */
     private List<OProperty<?>> requestHttpReceivedMessage(
-            TransCellAccessToken token,
+            String token,
             String requestCellUrl,
             JSONObject jsonBody) {
         String requestUrl = requestCellUrl + "__message/port";
@@ -471,6 +479,11 @@ public final class MessageODataResource extends AbstractODataResource {
         // リクエストヘッダを取得し、以下内容を追加
         HttpClient client = HttpClientFactory.create(HttpClientFactory.TYPE_INSECURE);
         HttpPost req = new HttpPost(requestUrl);
+        // 宛先毎のタイムアウト. プールからのコネクション取得待ちも含める
+        int timeout = DcCoreConfig.getMessageDeliveryTimeoutInMillis();
+        HttpConnectionParams.setConnectionTimeout(req.getParams(), timeout);
+        HttpConnectionParams.setSoTimeout(req.getParams(), timeout);
+        ConnManagerParams.setTimeout(req.getParams(), timeout);
 
         // リクエストボディ
         StringEntity body = null;
@@ -482,7 +495,7 @@ public final class MessageODataResource extends AbstractODataResource {
         req.setEntity(body);
 
         req.addHeader(DcCoreUtils.HttpHeaders.X_DC_VERSION, this.version);
-        req.addHeader(HttpHeaders.AUTHORIZATION, OAuth2Helper.Scheme.BEARER_CREDENTIALS_PREFIX + token.toTokenString());
+        req.addHeader(HttpHeaders.AUTHORIZATION, OAuth2Helper.Scheme.BEARER_CREDENTIALS_PREFIX + token);
         req.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
         req.addHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
 
@@ -499,10 +512,20 @@ public final class MessageODataResource extends AbstractODataResource {
         List<OProperty<?>> properties = new ArrayList<OProperty<?>>();
         properties.add(OProperties.string(SentMessage.P_RESULT_TO.getName(), requestCellUrl));
         properties.add(OProperties.string(SentMessage.P_RESULT_CODE.getName(), statusCode));
-        if (Integer.toString(HttpStatus.SC_CREATED).equals(statusCode)) {
-            properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(), "Created."));
-        } else {
-            properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(), getErrorMessage(objResponse)));
+        try {
+            if (Integer.toString(HttpStatus.SC_CREATED).equals(statusCode)) {
+                properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(), "Created."));
+            } else {
+                properties.add(OProperties.string(SentMessage.P_RESULT_REASON.getName(),
+                        getErrorMessage(objResponse)));
+            }
+        } finally {
+            // 読み残したボディを破棄し、コネクションをプールに返却する
+            try {
+                EntityUtils.consume(objResponse.getEntity());
+            } catch (IOException e) {
+                log.info(e.getMessage());
+            }
         }
 
         return properties;
@@ -0,0 +1,308 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.cell;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.common.auth.token.TransCellAccessToken;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.utils.LocalCache;
+
+/**
+ * 送信メッセージを複数の宛先Cellへ並行して配送する.
+ * 宛先ホスト毎と宛先Cell毎の同時送信数を制限し、宛先Cell毎に署名済みのトランスセルトークンを一定期間再利用する.
+ * 同一ユニットのCellは同じホストを共有するため、ホスト単位の上限で宛先サーバを保護し、
+ * Cell単位の上限で1つのCellがホストの同時送信数を占有しないようにする.
+ */
+public final class SentMessageDelivery {
+
+    /** 保持するトークンの最大件数. */
+    private static final int TOKEN_CACHE_MAX_SIZE = 1000;
+
+    private static final int HTTP_PORT = 80;
+    private static final int HTTPS_PORT = 443;
+
+    private static final LocalCache<String, CachedToken> TOKENS =
+            new LocalCache<String, CachedToken>(TOKEN_CACHE_MAX_SIZE);
+
+    /** 配送中の宛先ホスト(host:port)毎の同時送信数. 配送中の宛先のみを保持し、配送が終わった宛先は削除する. */
+    private static final PermitTable HOST_PERMITS = new PermitTable();
+
+    /** 配送中の宛先Cell毎の同時送信数. 配送中の宛先のみを保持し、配送が終わった宛先は削除する. */
+    private static final PermitTable CELL_PERMITS = new PermitTable();
+
+    private static ExecutorService executor;
+
+    private SentMessageDelivery() {
+    }
+
+    /**
+     * 宛先Cell毎の配送処理.
+     * @param <T> 配送結果の型
+     */
+    public interface Task<T> {
+        /**
+         * 指定した宛先Cellへメッセージを配送する.
+         * @param toCellUrl 宛先CellURL
+         * @return 配送結果
+         */
+        T deliver(String toCellUrl);
+    }
+
+    /**
+     * 宛先毎の同時送信数と、その宛先へ配送中(待ちを含む)の件数.
+     */
+    private static final class Permits {
+        private final Semaphore semaphore;
+        private int users = 0;
+
+        Permits(int max) {
+            this.semaphore = new Semaphore(max);
+        }
+    }
+
+    /**
+     * 配送中の宛先毎の同時送信数の表.
+     */
+    private static final class PermitTable {
+        private final Map<String, Permits> permits = new HashMap<String, Permits>();
+
+        synchronized Permits enter(String key, int max) {
+            Permits p = permits.get(key);
+            if (p == null) {
+                p = new Permits(max);
+                permits.put(key, p);
+            }
+            p.users++;
+            return p;
+        }
+
+        synchronized void exit(String key, Permits p) {
+            p.users--;
+            if (p.users == 0) {
+                permits.remove(key);
+            }
+        }
+
+        synchronized int size() {
+            return permits.size();
+        }
+    }
+
+    /**
+     * 署名済みのトークン文字列と、再利用できる期限.
+     */
+    private static final class CachedToken {
+        private final String tokenString;
+        private final long reusableUntil;
+
+        CachedToken(String tokenString, long reusableUntil) {
+            this.tokenString = tokenString;
+            this.reusableUntil = reusableUntil;
+        }
+    }
+
+    /**
+     * 宛先Cellへのメッセージ受信API呼出しに使用するトークン文字列を返す.
+     * 同じ送信元から同じ宛先への署名済みトークンは、発行から設定値の期間だけ再利用する.
+     * @param fromCellUrl 送信元CellURL
+     * @param toCellUrl 宛先CellURL
+     * @return トークン文字列
+     */
+    public static String getTokenString(String fromCellUrl, String toCellUrl) {
+        String key = fromCellUrl + " " + toCellUrl;
+        long now = System.currentTimeMillis();
+        CachedToken cached = TOKENS.get(key);
+        if (cached != null && now < cached.reusableUntil) {
+            return cached.tokenString;
+        }
+        TransCellAccessToken token = new TransCellAccessToken(
+                now, fromCellUrl, fromCellUrl, toCellUrl, new ArrayList<Role>(), "");
+        String tokenString = token.toTokenString();
+        // 受信側で期限切れとならないよう、有効期間内に収まる範囲でのみ再利用する
+        long reuse = Math.min(DcCoreConfig.getMessageTokenReuseInMillis(), TransCellAccessToken.LIFESPAN / 2);
+        if (reuse > 0) {
+            TOKENS.put(key, new CachedToken(tokenString, now + reuse));
+        }
+        return tokenString;
+    }
+
+    /**
+     * 全ての宛先Cellへ並行してメッセージを配送する.
+     * 宛先Cell毎または宛先ホスト毎の同時送信数が上限に達している場合は空きを待ち、タイムアウトした場合は接続エラーとする.
+     * @param <T> 配送結果の型
+     * @param toCellUrls 宛先CellURLのリスト
+     * @param task 宛先Cell毎の配送処理
+     * @return 宛先リストと同じ順序の配送結果
+     */
+    public static <T> List<T> deliverAll(List<String> toCellUrls, final Task<T> task) {
+        List<T> results = new ArrayList<T>();
+        if (toCellUrls.size() == 1) {
+            // 宛先が1件の場合はスレッドを切り替えずに配送する
+            results.add(deliver(toCellUrls.get(0), task));
+            return results;
+        }
+
+        ExecutorService es = getExecutor();
+        List<Future<T>> futures = new ArrayList<Future<T>>();
+        for (final String toCellUrl : toCellUrls) {
+            futures.add(es.submit(new Callable<T>() {
+                @Override
+                public T call() {
+                    return deliver(toCellUrl, task);
+                }
+            }));
+        }
+
+        // 途中の宛先で失敗した場合も、他の宛先への配送は完了させてから先頭の失敗を返す
+        RuntimeException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = toRuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static <T> T deliver(String toCellUrl, Task<T> task) {
+        long deadline = System.currentTimeMillis() + DcCoreConfig.getMessageDeliveryTimeoutInMillis();
+        String host = hostOf(toCellUrl);
+        // Cell毎の空きを待つ間はホストの同時送信数を消費しないよう、Cell、ホストの順に取得する
+        Permits cellPermits = CELL_PERMITS.enter(toCellUrl, DcCoreConfig.getMessageDeliveryMaxPerCell());
+        try {
+            acquire(cellPermits, deadline, toCellUrl);
+            try {
+                Permits hostPermits = HOST_PERMITS.enter(host, DcCoreConfig.getMessageDeliveryMaxPerHost());
+                try {
+                    acquire(hostPermits, deadline, host);
+                    try {
+                        return task.deliver(toCellUrl);
+                    } finally {
+                        hostPermits.semaphore.release();
+                    }
+                } finally {
+                    HOST_PERMITS.exit(host, hostPermits);
+                }
+            } finally {
+                cellPermits.semaphore.release();
+            }
+        } finally {
+            CELL_PERMITS.exit(toCellUrl, cellPermits);
+        }
+    }
+
+    private static void acquire(Permits permits, long deadline, String destination) {
+        try {
+            long timeout = Math.max(0, deadline - System.currentTimeMillis());
+            if (!permits.semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(
+                        new TimeoutException("too many concurrent deliveries to " + destination));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(e);
+        }
+    }
+
+    /**
+     * 宛先CellURLから同時送信数を制限するホストのキー(host:port)を返す.
+     * ポートが省略されている場合はスキームの既定ポートとする.
+     */
+    private static String hostOf(String toCellUrl) {
+        URI uri;
+        try {
+            uri = URI.create(toCellUrl);
+        } catch (IllegalArgumentException e) {
+            return toCellUrl;
+        }
+        if (uri.getHost() == null) {
+            return toCellUrl;
+        }
+        int port = uri.getPort();
+        if (port == -1) {
+            if ("https".equalsIgnoreCase(uri.getScheme())) {
+                port = HTTPS_PORT;
+            } else {
+                port = HTTP_PORT;
+            }
+        }
+        return uri.getHost().toLowerCase() + ":" + port;
+    }
+
+    /**
+     * @return 配送中の宛先Cellの数
+     */
+    public static int activeDestinations() {
+        return CELL_PERMITS.size();
+    }
+
+    /**
+     * @return 配送中の宛先ホストの数
+     */
+    public static int activeHosts() {
+        return HOST_PERMITS.size();
+    }
+
+    private static RuntimeException toRuntimeException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return DcCoreException.SentMessage.SM_CONNECTION_ERROR.reason(cause);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(DcCoreConfig.getMessageDeliveryWorkers(), new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "dc-message-delivery-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
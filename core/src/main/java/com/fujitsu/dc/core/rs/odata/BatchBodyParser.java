@@ -20,10 +20,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,81 +47,174 @@ public class BatchBodyParser {
     private int bulkTopCount = 0;
 
     /**
-     * $batchのリクエストボディをパースする.
+     * $batchのリクエストボディを全てパースする.
      * @param boundary バウンダリ文字列
      * @param reader リクエストボディ
      * @param requestUriParam baseUri
      * @return BatchBodyPartのリスト
      */
     public List<BatchBodyPart> parse(String boundary, Reader reader, String requestUriParam) {
-        // TODO リクエストが１万件を超える場合エラーとする
+        List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
+        Iterator<BatchBodyPart> parts = iterate(boundary, reader, requestUriParam);
+        while (parts.hasNext()) {
+            requests.add(parts.next());
+        }
+        return requests;
+    }
 
+    /**
+     * $batchのリクエストボディを、BatchBodyPartを参照する毎に読み進めるIteratorを返す.
+     * リクエストボディ全体を文字列として保持せず、バウンダリ1つ分(changesetの場合はchangeset全体)ずつ読み込む.
+     * 呼び出し側が実行済みのBatchBodyPartを保持しなければ、使用メモリはリクエスト数に比例しない.
+     * 形式の誤りやリクエスト数の上限超過は、該当するバウンダリを読み込んだ時点で{@link Iterator#hasNext()}からエラーとする.
+     * リクエスト数が上限を超えた時点で残りのボディは読まない.
+     * @param boundary バウンダリ文字列
+     * @param reader リクエストボディ
+     * @param requestUriParam baseUri
+     * @return BatchBodyPartのIterator
+     */
+    public Iterator<BatchBodyPart> iterate(String boundary, Reader reader, String requestUriParam) {
         this.collectionUri = requestUriParam.split("/\\$batch")[0];
+        return new PartIterator(new BufferedReader(reader), boundary);
+    }
+
+    /**
+     * $batchのリクエストボディを行単位に読み込み、バウンダリ毎に個々のリクエストを取得するIterator.
+     */
+    private final class PartIterator implements Iterator<BatchBodyPart> {
+        private final BufferedReader br;
+        private final String boundaryStr;
+        private final String delimiter;
+        private final String closeDelimiter;
+        private final int maxSize;
+        private final LinkedList<BatchBodyPart> pending = new LinkedList<BatchBodyPart>();
+        private int count = 0;
+        private boolean started = false;
+        private boolean closed = false;
+
+        PartIterator(BufferedReader br, String boundaryStr) {
+            this.br = br;
+            this.boundaryStr = boundaryStr;
+            this.delimiter = "--" + boundaryStr;
+            this.closeDelimiter = this.delimiter + "--";
+            this.maxSize = Integer.parseInt(DcCoreConfig.getOdataBatchBulkRequestMaxSize());
+        }
 
-        BufferedReader br = new BufferedReader(reader);
-        // ボディを取得する
-        StringBuilder body;
-        try {
-            body = getBatchBody(br);
-        } catch (IOException e) {
-            // IOExceptionは重大障害
-            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+        @Override
+        public boolean hasNext() {
+            try {
+                while (pending.isEmpty() && !closed) {
+                    readPart();
+                }
+            } catch (IOException e) {
+                // IOExceptionは重大障害
+                throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+            }
+            return !pending.isEmpty();
         }
 
-        if (!body.toString().startsWith("--" + boundary + "\n")) {
-            // リクエストボディの先頭が「--バウンダリー文字列」で始まっていなければエラーとする
-            throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+        @Override
+        public BatchBodyPart next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.removeFirst();
         }
-        if (!body.toString().trim().endsWith("--" + boundary + "--")) {
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * 次のバウンダリまで読み込み、バウンダリ1つ分のリクエストを取得する.
+         * @throws IOException
+         */
+        private void readPart() throws IOException {
+            String line;
+            if (!started) {
+                line = br.readLine();
+                if (!delimiter.equals(line)) {
+                    // リクエストボディの先頭が「--バウンダリー文字列」で始まっていなければエラーとする
+                    throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+                }
+                started = true;
+            }
+            List<String> partLines = new ArrayList<String>();
+            while ((line = br.readLine()) != null) {
+                if (line.equals(delimiter) || line.trim().equals(closeDelimiter)) {
+                    addRequests(partLines, boundaryStr, pending);
+                    count += pending.size();
+                    if (count > maxSize) {
+                        // $Batchで指定されたリクエスト数が不正
+                        throw DcCoreException.OData.TOO_MANY_REQUESTS.params(count);
+                    }
+                    if (!line.equals(delimiter)) {
+                        readTrailer();
+                        closed = true;
+                    }
+                    return;
+                }
+                partLines.add(line);
+            }
             // リクエストボディの最後が「--バウンダリー文字列--」で終わっていなければエラーとする
             throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
         }
 
-        // 個々のリクエストを取得する
-        List<BatchBodyPart> requests = getRequests(body.toString(), boundary);
-        return requests;
+        /**
+         * 終端のバウンダリ以降に空行以外が無いことを確認する.
+         * @throws IOException
+         */
+        private void readTrailer() throws IOException {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().length() != 0) {
+                    // リクエストボディの最後が「--バウンダリー文字列--」で終わっていなければエラーとする
+                    throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+                }
+            }
+        }
     }
 
     /**
-     * $batchのリクエストボディを取得する.
-     * @param br リクエストボディ
-     * @return リクエストボディ（StringBuilder）
-     * @throws IOException
+     * バウンダリで区切られた１つ分の行からリクエストを取得する.
+     * @param partLines バウンダリの中身
+     * @param boundaryStr バウンダリ文字列
+     * @param requests 取得したBatchBodyPartの格納先
      */
-    private StringBuilder getBatchBody(BufferedReader br) throws IOException {
-        StringBuilder body = new StringBuilder();
-        String line;
-        while (true) {
-            line = br.readLine();
-            if (line == null) {
-                break;
-            }
-            body.append(line + "\n");
+    private void addRequests(List<String> partLines, String boundaryStr, List<BatchBodyPart> requests) {
+        List<String> lines = trimTrailingEmptyLines(partLines);
+        if (!lines.isEmpty()) {
+            BoundaryParser boundary = new BoundaryParser(null, boundaryStr);
+            requests.addAll(boundary.parse(lines));
         }
-        return body;
     }
 
     /**
-     * $batchのリクエストボディから個々のリクエストを取得し、リストで返却する.
-     * @param body $batchのリクエストボディ
-     * @param boundaryStr バウンダリ文字列
-     * @return BatchBodyPartのリスト
+     * 末尾の空行を除いた行のリストを返す.
+     * @param lines 行のリスト
+     * @return 末尾の空行を除いた行のリスト
      */
-    private List<BatchBodyPart> getRequests(String body, String boundaryStr) {
-        List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
-        // ボディをboundaryで分割する
-        String[] arrBoundary = splitBoundary(body, boundaryStr);
-        for (String boundaryBody : arrBoundary) {
-            if (!boundaryBody.equals("")) {
-                BoundaryParser boundary = new BoundaryParser(null, boundaryStr);
-                requests.addAll(boundary.parse(boundaryBody));
-            }
+    private static List<String> trimTrailingEmptyLines(List<String> lines) {
+        int end = lines.size();
+        while (end > 0 && lines.get(end - 1).length() == 0) {
+            end--;
         }
-        return requests;
+        return lines.subList(0, end);
     }
 
-    private String[] splitBoundary(String input, String boundaryStr) {
-        return input.split("--" + boundaryStr + "\n");
+    /**
+     * 行のリストを改行区切りの文字列に戻す.
+     * @param lines 行のリスト
+     * @return 文字列
+     */
+    private static String joinLines(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line);
+            sb.append("\n");
+        }
+        return sb.toString();
     }
 
     /**
@@ -142,16 +237,13 @@ public class BatchBodyParser {
 
         /**
          * バウンダリの中を解析する.
-         * @param boundaryBody バウンダリのボディパート
+         * @param bodyLines バウンダリのボディパート(行単位)
          * @return BatchBodyPartのリスト
          */
-        List<BatchBodyPart> parse(String boundaryBody) {
+        List<BatchBodyPart> parse(List<String> bodyLines) {
 
             List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
 
-            // 行で分割
-            List<String> bodyLines = Arrays.asList(boundaryBody.split("\n"));
-
             // コンテントタイプを取得
             String type = getContentType(bodyLines);
             if (type == null) {
@@ -160,7 +252,7 @@ public class BatchBodyParser {
             }
 
             // ボディを取得
-            String boundaryBodyPart = getBoundaryBody(bodyLines, this.headers.size());
+            List<String> boundaryBodyPart = getBoundaryBody(bodyLines, this.headers.size());
 
             if (type.equals("application/http")) {
                 // リクエストの処理
@@ -178,12 +270,21 @@ public class BatchBodyParser {
 
                 // ボディをboundaryで分割する
                 List<BatchBodyPart> changesetRequests = new ArrayList<BatchBodyPart>();
-                String[] arrChangeset = splitBoundary(boundaryBodyPart, changeset);
-                for (String changesetBody : arrChangeset) {
-                    if (!changesetBody.equals("")) {
+                String delimiter = "--" + changeset;
+                int start = 0;
+                for (int i = 0; i <= boundaryBodyPart.size(); i++) {
+                    if (i < boundaryBodyPart.size() && !boundaryBodyPart.get(i).equals(delimiter)) {
+                        continue;
+                    }
+                    List<String> changesetBody = trimTrailingEmptyLines(boundaryBodyPart.subList(start, i));
+                    if (!changesetBody.isEmpty()) {
                         BoundaryParser changesetBoundary = new BoundaryParser(this, changeset);
                         changesetRequests.addAll(changesetBoundary.parse(changesetBody));
                     }
+                    start = i + 1;
+                }
+                if (changesetRequests.isEmpty()) {
+                    throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
                 }
 
                 // changeset始端フラグの設定
@@ -203,10 +304,10 @@ public class BatchBodyParser {
 
         /**
          * バウンダリの中からリクエストを取得しBatchBodyPart型で返却する.
-         * @param bodyPart バウンダリのボディパート
+         * @param bodyPart バウンダリのボディパート(行単位)
          * @return BatchBodyPart
          */
-        private BatchBodyPart getRequest(String bodyPart) {
+        private BatchBodyPart getRequest(List<String> bodyPart) {
 
             // リクエストの形
             // ---------
@@ -219,13 +320,16 @@ public class BatchBodyParser {
             // {リクエストボディ}
             // ---------
 
-            List<String> lines = Arrays.asList(bodyPart.split("\n"));
-            List<String> partHeaders = lines.subList(1, lines.size());
+            List<String> lines = trimTrailingEmptyLines(bodyPart);
+            List<String> partHeaders = lines.subList(Math.min(1, lines.size()), lines.size());
             Map<String, String> requestHeaders = getHeaders(partHeaders);
 
             BatchBodyPart batchBodyPart = new BatchBodyPart(requestHeaders);
             // requestLineは、「{メソッド} {リクエストの相対パス}」
-            String requestLine = lines.get(0);
+            String requestLine = "";
+            if (!lines.isEmpty()) {
+                requestLine = lines.get(0);
+            }
             String method = getMethod(requestLine);
             batchBodyPart.setHttpMethod(method);
 
@@ -284,7 +388,7 @@ public class BatchBodyParser {
                 }
                 batchBodyPart.setUri(collectionUri + "/" + requestPath);
             }
-            batchBodyPart.setEntity(getBoundaryBody(lines, requestHeaders.size() + 1));
+            batchBodyPart.setEntity(joinLines(getBoundaryBody(lines, requestHeaders.size() + 1)));
             batchBodyPart.setChangesetStr(getChangesetStr());
 
             // GETメソッド以外でクエリが指定された場合は指定を無視する
@@ -405,18 +509,15 @@ public class BatchBodyParser {
          * バウンダリのボディパートからボディを取得する.
          * @param bodyLines ボディパート
          * @param headersize ヘッダのサイズ
-         * @return ボディ
+         * @return ボディ(行単位)
          */
-        private String getBoundaryBody(List<String> bodyLines, int headersize) {
-            StringBuilder boundaryBody = new StringBuilder();
-            for (int i = headersize + 1; i < bodyLines.size(); i++) {
-                if (bodyLines.get(i).contains("--" + this.boundaryStr + "--")) {
-                    break;
-                }
-                boundaryBody.append(bodyLines.get(i));
-                boundaryBody.append("\n");
+        private List<String> getBoundaryBody(List<String> bodyLines, int headersize) {
+            int start = Math.min(headersize + 1, bodyLines.size());
+            int end = start;
+            while (end < bodyLines.size() && !bodyLines.get(end).contains("--" + this.boundaryStr + "--")) {
+                end++;
             }
-            return boundaryBody.toString();
+            return bodyLines.subList(start, end);
         }
 
         /**
@@ -0,0 +1,129 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+/**
+ * $batchのリクエストボディの一時保存先.
+ * 形式の検証時に読み込んだリクエストボディを保存し、実行時に再度読み込むために使用する.
+ * 指定サイズまではメモリ上に保持し、超えた場合は一時ファイルに保持するため、ヒープの使用量はリクエストボディのサイズに比例しない.
+ */
+class BatchBodySpool implements Closeable {
+    private static final String PREFIX = "dcBatch";
+    private static final String SUFFIX = ".tmp";
+
+    private final DeferredFileOutputStream spool;
+    private final Writer writer;
+    private final List<Reader> readers = new ArrayList<Reader>();
+
+    /**
+     * コンストラクタ.
+     * @param threshold メモリ上に保持する最大サイズ(バイト)
+     */
+    BatchBodySpool(int threshold) {
+        this.spool = new DeferredFileOutputStream(threshold, PREFIX, SUFFIX, null);
+        this.writer = new OutputStreamWriter(this.spool, Charsets.UTF_8);
+    }
+
+    /**
+     * 読み込んだ内容を一時保存しながらリクエストボディを読み込むReaderを返す.
+     * @param source リクエストボディ
+     * @return Reader
+     */
+    Reader record(Reader source) {
+        return new FilterReader(source) {
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if (c >= 0) {
+                    writer.write(c);
+                }
+                return c;
+            }
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, len);
+                if (n > 0) {
+                    writer.write(cbuf, off, n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                throw new IOException("skip not supported");
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 一時保存したリクエストボディを先頭から読み込むReaderを返す. Readerは{@link #close()}で閉じる.
+     * {@link #record(Reader)}のReaderを終端まで読み込んだ後に呼び出すこと.
+     * @return Reader
+     * @throws IOException 一時ファイルが開けない場合
+     */
+    Reader openReader() throws IOException {
+        this.writer.close();
+        InputStream in;
+        if (this.spool.isInMemory()) {
+            in = new ByteArrayInputStream(this.spool.getData());
+        } else {
+            in = new FileInputStream(this.spool.getFile());
+        }
+        Reader reader = new InputStreamReader(in, Charsets.UTF_8);
+        this.readers.add(reader);
+        return reader;
+    }
+
+    /**
+     * 開いたReaderを閉じ、一時ファイルを削除する.
+     */
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(this.writer);
+        for (Reader reader : this.readers) {
+            IOUtils.closeQuietly(reader);
+        }
+        this.readers.clear();
+        if (!this.spool.isInMemory()) {
+            FileUtils.deleteQuietly(this.spool.getFile());
+        }
+    }
+}
@@ -16,11 +16,17 @@
  */
 package com.fujitsu.dc.core.rs.odata;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,8 +39,10 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.io.Charsets;
 import org.apache.http.HttpStatus;
 import org.json.simple.JSONObject;
 import org.odata4j.core.ODataConstants;
@@ -133,6 +141,8 @@ public class ODataBatchResource extends AbstractODataResource {
 
     /**
      * バッチリクエストを処理する.
+     * リクエストボディのパースはレスポンス返却前に完了させ、書式エラーは従来通りエラーレスポンスとする.
+     * 個々のリクエストはレスポンスボディの出力時に実行し、実行が終わったものから順次クライアントへ書き出す.
      * @param uriInfo uriInfo
      * @param headers headers
      * @param request request
@@ -164,43 +174,99 @@ public class ODataBatchResource extends AbstractODataResource {
         // TODO 不正なコンテントタイプが指定された場合エラーを返却する
         String boundary = headers.getMediaType().getParameters().get("boundary");
 
-        // リクエストボディのパース
-        BatchBodyParser parser = new BatchBodyParser();
-        List<BatchBodyPart> bodyParts = parser.parse(boundary, reader, uriInfo.getRequestUri().toString());
-        if (bodyParts == null || bodyParts.size() == 0) {
-            // パース処理失敗
-            throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
-        }
-        if (bodyParts.size() > Integer.parseInt(DcCoreConfig.getOdataBatchBulkRequestMaxSize())) {
-            // $Batchで指定されたリクエスト数が不正
-            throw DcCoreException.OData.TOO_MANY_REQUESTS.params(bodyParts.size());
-        }
-
-        UserDataODataProducer producer = (UserDataODataProducer) this.odataResource.getODataProducer();
-        entityTypeIds = producer.getEntityTypeIds();
-
-        List<NavigationPropertyBulkContext> npBulkContexts = new ArrayList<NavigationPropertyBulkContext>();
+        // リクエストボディを一時保存しながらパースし、形式とリクエスト数の上限をレスポンスの返却前に検証する
+        // 検証時のBatchBodyPartは保持せず、実行時に一時保存したボディから順次パースし直す
+        String requestUri = uriInfo.getRequestUri().toString();
+        BatchBodySpool spool = new BatchBodySpool(DcCoreConfig.getOdataBatchSpoolThreshold());
+        boolean streaming = false;
+        try {
+            Iterator<BatchBodyPart> validation = new BatchBodyParser().iterate(boundary, spool.record(reader),
+                    requestUri);
+            if (!validation.hasNext()) {
+                // パース処理失敗
+                throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
+            }
+            while (validation.hasNext()) {
+                validation.next();
+            }
+            Iterator<BatchBodyPart> bodyParts = new BatchBodyParser().iterate(boundary, spool.openReader(),
+                    requestUri);
 
-        StringBuilder responseBody = new StringBuilder();
+            UserDataODataProducer producer = (UserDataODataProducer) this.odataResource.getODataProducer();
+            entityTypeIds = producer.getEntityTypeIds();
 
-        // １件ずつリクエストを実行
-        for (BatchBodyPart bodyPart : bodyParts) {
-            executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
+            // レスポンス作成
+            String contentType = ODataBatchProvider.MULTIPART_MIXED + "; boundary=" + boundary;
+            Response response = Response.status(HttpStatus.SC_ACCEPTED)
+                    .header(HttpHeaders.CONTENT_TYPE, contentType)
+                    .header(ODataConstants.Headers.DATA_SERVICE_VERSION, ODataVersion.V2.asString)
+                    .entity(new BatchStreamingOutput(uriInfo, boundary, bodyParts, spool))
+                    .build();
+            streaming = true;
+            return response;
+        } catch (IOException e) {
+            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+        } finally {
+            if (!streaming) {
+                spool.close();
+            }
         }
+    }
 
-        // POSTのbulk実行
-        checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+    /**
+     * $batchの各リクエストをパースしながら実行し、実行が終わったものから順次レスポンスボディに書き出すStreamingOutput.
+     * 実行済みのBatchBodyPartとレスポンスボディ全体をメモリ上に保持しないため、リクエスト数に関わらず使用メモリは一定となる.
+     */
+    private class BatchStreamingOutput implements StreamingOutput {
+        private final UriInfo uriInfo;
+        private final String boundary;
+        private final Iterator<BatchBodyPart> bodyParts;
+        private final BatchBodySpool spool;
+
+        BatchStreamingOutput(UriInfo uriInfo, String boundary, Iterator<BatchBodyPart> bodyParts,
+                BatchBodySpool spool) {
+            this.uriInfo = uriInfo;
+            this.boundary = boundary;
+            this.bodyParts = bodyParts;
+            this.spool = spool;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, Charsets.UTF_8));
+            List<NavigationPropertyBulkContext> npBulkContexts = new ArrayList<NavigationPropertyBulkContext>();
+            StringBuilder responseBody = new StringBuilder();
+            try {
+                // １件ずつパースしてリクエストを実行
+                while (bodyParts.hasNext()) {
+                    executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyParts.next());
+                    flush(writer, responseBody);
+                }
+
+                // POSTのbulk実行
+                checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+            } catch (RuntimeException e) {
+                // レスポンスは既に返却を始めているため、以降のリクエストは実行せずエラーのボディパートで終える
+                BatchResponse res = new BatchResponse();
+                res.setErrorResponse(e);
+                responseBody.append(getRetrieveResponseBody(boundary, res));
+            } finally {
+                spool.close();
+            }
 
-        // バウンダリ終端文字列
-        responseBody.append("--" + boundary + "--");
+            // バウンダリ終端文字列
+            responseBody.append("--" + boundary + "--");
+            flush(writer, responseBody);
+        }
 
-        // レスポンス作成
-        String contentType = ODataBatchProvider.MULTIPART_MIXED + "; boundary=" + boundary;
-        return Response.status(HttpStatus.SC_ACCEPTED)
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .header(ODataConstants.Headers.DATA_SERVICE_VERSION, ODataVersion.V2.asString)
-                .entity(responseBody.toString())
-                .build();
+        private void flush(Writer writer, StringBuilder responseBody) throws IOException {
+            if (responseBody.length() == 0) {
+                return;
+            }
+            writer.write(responseBody.toString());
+            writer.flush();
+            responseBody.setLength(0);
+        }
     }
 
     /**
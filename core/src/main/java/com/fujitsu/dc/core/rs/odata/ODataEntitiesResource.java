@@ -16,8 +16,12 @@
  */
 package com.fujitsu.dc.core.rs.odata;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -36,8 +40,10 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.io.Charsets;
 import org.odata4j.core.ODataConstants;
 import org.odata4j.core.ODataVersion;
 import org.odata4j.core.OEntity;
@@ -59,6 +65,7 @@ import com.fujitsu.dc.core.model.ctl.Common;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessage;
 import com.fujitsu.dc.core.model.ctl.SentMessage;
 import com.fujitsu.dc.core.odata.DcFormatWriterFactory;
+import com.fujitsu.dc.core.utils.EscapeControlCodeWriter;
 
 /**
  * ODataのEntitiesリソース( id 指定がなくentitySetが指定されたURL）を扱うJAX-RSリソース.
@@ -105,7 +112,6 @@ public final class ODataEntitiesResource extends AbstractODataResource {
 
         // リクエストの取得をProducerに依頼
         EntitiesResponse resp = getEntities(uriInfo, q);
-        StringWriter sw = new StringWriter();
 
         // $formatとAcceptヘッダの値から出力形式を決定
         List<MediaType> acceptableMediaTypes = new ArrayList<MediaType>();
@@ -116,21 +122,40 @@ public final class ODataEntitiesResource extends AbstractODataResource {
                 acceptableMediaTypes, null, callback);
         UriInfo uriInfo2 = DcCoreUtils.createUriInfo(uriInfo, 1);
 
-        fw.write(uriInfo2, sw, resp);
-        String entity = null;
-        entity = sw.toString();
-
-        // 制御コードのエスケープ処理
-        entity = escapeResponsebody(entity);
-
         // TODO remove this hack, check whether we are Version 2.0 compatible anyway
         ODataVersion version = null;
         version = ODataVersion.V2;
 
-        return Response.ok(entity, fw.getContentType())
+        return Response.ok(new EntitiesStreamingOutput(fw, uriInfo2, resp), fw.getContentType())
                 .header(ODataConstants.Headers.DATA_SERVICE_VERSION, version.asString).build();
     }
 
+    /**
+     * 一覧取得結果をレスポンスボディに逐次書き出すStreamingOutput.
+     * 制御コードは書き出しながらエスケープするため、レスポンスボディ全体を文字列としてメモリ上に保持しない.
+     */
+    private static class EntitiesStreamingOutput implements StreamingOutput {
+        private final FormatWriter<EntitiesResponse> formatWriter;
+        private final UriInfo uriInfo;
+        private final EntitiesResponse response;
+
+        EntitiesStreamingOutput(FormatWriter<EntitiesResponse> formatWriter,
+                UriInfo uriInfo,
+                EntitiesResponse response) {
+            this.formatWriter = formatWriter;
+            this.uriInfo = uriInfo;
+            this.response = response;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            Writer writer = new BufferedWriter(
+                    new EscapeControlCodeWriter(new OutputStreamWriter(output, Charsets.UTF_8)));
+            formatWriter.write(uriInfo, writer, response);
+            writer.flush();
+        }
+    }
+
     /**
      * リクエストの取得をProducerに依頼.
      * @param queryInfo QueryInfo
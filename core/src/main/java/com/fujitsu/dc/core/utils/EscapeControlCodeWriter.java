@@ -0,0 +1,84 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 書き出す文字列の制御コードをエスケープするWriter.
+ * {@link EscapeControlCode#escape(String)}と同じ結果を、文字列全体を保持せずに逐次出力する.
+ */
+public class EscapeControlCodeWriter extends FilterWriter {
+
+    private static final char LAST_CONTROL_CHAR = '\u001F';
+    private static final char DELETE_CHAR = '\u007F';
+
+    /**
+     * コンストラクタ.
+     * @param out 出力先のWriter
+     */
+    public EscapeControlCodeWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (isControlChar((char) c)) {
+            writeEscaped((char) c);
+        } else {
+            out.write(c);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int start = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (isControlChar(cbuf[i])) {
+                out.write(cbuf, start, i - start);
+                writeEscaped(cbuf[i]);
+                start = i + 1;
+            }
+        }
+        out.write(cbuf, start, end - start);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int start = off;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (isControlChar(str.charAt(i))) {
+                out.write(str, start, i - start);
+                writeEscaped(str.charAt(i));
+                start = i + 1;
+            }
+        }
+        out.write(str, start, end - start);
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        out.write(String.format("\\u%04X", (int) c));
+    }
+
+    private static boolean isControlChar(char c) {
+        return c <= LAST_CONTROL_CHAR || c == DELETE_CHAR;
+    }
+}
@@ -20,27 +20,38 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.fujitsu.dc.common.http.PooledConnectionManager;
+import com.fujitsu.dc.core.DcCoreConfig;
 
 /**
  * HttpClientの実装を切り替えてNewする.
+ * コネクションは通信タイプ毎に共有するプール({@link PooledConnectionManager})から取得し、Keep-Aliveで再利用する.
+ * 取得したHttpResponseのボディは最後まで読み込むかクローズし、コネクションをプールに返却すること.
  */
 public class HttpClientFactory extends DefaultHttpClient {
     /** HTTP通信のタイプ. */
@@ -55,41 +66,98 @@ public class HttpClientFactory extends DefaultHttpClient {
     /** 接続タイムアウト値. */
     private static final int TIMEOUT = 60000; // 20000;
 
+    /** 通信タイプ毎のコネクションプール. */
+    private static final Map<String, PooledConnectionManager> MANAGERS = new HashMap<String, PooledConnectionManager>();
+
+    /** 応答にKeep-Aliveヘッダが無い場合は設定値の期間だけコネクションを再利用する. */
+    private static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new DefaultConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            if (duration < 0) {
+                return DcCoreConfig.getHttpPoolKeepAlive();
+            }
+            return duration;
+        }
+    };
+
     /**
      * HTTPClientオブジェクトを作成.
      * @param type 通信タイプ
      * @return 作成したHttpClientクラスインスタンス
      */
     public static HttpClient create(final String type) {
-        if (TYPE_DEFAULT.equalsIgnoreCase(type)) {
-            return new DefaultHttpClient();
-        }
-
-        SSLSocketFactory sf = null;
+        PooledConnectionManager cm;
         try {
-            if (TYPE_INSECURE.equalsIgnoreCase(type)) {
-                sf = createInsecureSSLSocketFactory();
-            }
+            cm = getConnectionManager(type);
         } catch (Exception e) {
             return null;
         }
-
-        SchemeRegistry schemeRegistry = new SchemeRegistry();
-        schemeRegistry.register(new Scheme("https", PORTHTTPS, sf));
-        schemeRegistry.register(new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory()));
-        HttpParams params = new BasicHttpParams();
-        ClientConnectionManager cm = new SingleClientConnManager(schemeRegistry);
-        // ClientConnectionManager cm = new
-        // ThreadSafeClientConnManager(schemeRegistry);
-        HttpClient hc = new DefaultHttpClient(cm, params);
-
+        DefaultHttpClient hc;
+        if (TYPE_DEFAULT.equalsIgnoreCase(type)) {
+            hc = new DefaultHttpClient(cm);
+        } else {
+            hc = new DefaultHttpClient(cm, new BasicHttpParams());
+        }
+        hc.setKeepAliveStrategy(KEEP_ALIVE_STRATEGY);
         HttpParams params2 = hc.getParams();
+        // コネクションを再利用するとNagleアルゴリズムと遅延ACKにより応答待ちが発生するため無効にする
+        HttpConnectionParams.setTcpNoDelay(params2, true);
+        // 再利用時の切断確認は1回毎に読み込み待ちが発生するため行わず、Keep-Alive期間とアイドル切断で古いコネクションを破棄する
+        HttpConnectionParams.setStaleCheckingEnabled(params2, false);
+        // プールが枯渇した場合に無期限に待たないよう、コネクション取得の待ち時間を制限する
+        ConnManagerParams.setTimeout(params2, DcCoreConfig.getHttpPoolTimeout());
+        if (TYPE_DEFAULT.equalsIgnoreCase(type)) {
+            return hc;
+        }
+
         int timeout = TIMEOUT;
         HttpConnectionParams.setConnectionTimeout(params2, timeout); // 接続のタイムアウト
         HttpConnectionParams.setSoTimeout(params2, timeout); // データ取得のタイムアウト
         return hc;
     }
 
+    /**
+     * コネクションプールの利用状況を返す.
+     * @return 通信タイプ毎の使用中、取得待ち、再利用可能なコネクション数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        synchronized (MANAGERS) {
+            for (Map.Entry<String, PooledConnectionManager> entry : MANAGERS.entrySet()) {
+                stats.put(entry.getKey(), entry.getValue().getStatistics());
+            }
+        }
+        return stats;
+    }
+
+    private static PooledConnectionManager getConnectionManager(final String type) {
+        String key = type.toLowerCase();
+        synchronized (MANAGERS) {
+            PooledConnectionManager cm = MANAGERS.get(key);
+            if (cm == null) {
+                cm = new PooledConnectionManager(createSchemeRegistry(key), DcCoreConfig.getHttpPoolMaxTotal(),
+                        DcCoreConfig.getHttpPoolMaxPerRoute(), DcCoreConfig.getHttpPoolIdleTimeout());
+                MANAGERS.put(key, cm);
+            }
+            return cm;
+        }
+    }
+
+    private static SchemeRegistry createSchemeRegistry(final String type) {
+        if (TYPE_DEFAULT.equals(type)) {
+            return SchemeRegistryFactory.createDefault();
+        }
+        SSLSocketFactory sf = null;
+        if (TYPE_INSECURE.equals(type)) {
+            sf = createInsecureSSLSocketFactory();
+        }
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("https", PORTHTTPS, sf));
+        schemeRegistry.register(new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory()));
+        return schemeRegistry;
+    }
+
     /**
      * SSLSocketを生成.
      * @return 生成したSSLSocket
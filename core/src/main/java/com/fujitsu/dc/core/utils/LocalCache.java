@@ -0,0 +1,141 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ノード(JVM)内に保持する件数上限付きのLRUキャッシュ.
+ * memcached等の共有キャッシュの手前に置き、デシリアライズやパース済みのオブジェクトを保持する用途で使用する.
+ * @param <K> キーの型
+ * @param <V> 値の型
+ */
+public class LocalCache<K, V> {
+
+    private final Map<K, V> entries;
+    private volatile int maxSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param maxSize 保持する最大件数。0以下の場合はキャッシュしない
+     */
+    public LocalCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LocalCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * キャッシュから値を取得する.
+     * @param key キー
+     * @return 値。存在しない場合はnull
+     */
+    public V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * 値をキャッシュする. 上限件数を超えた場合は最も参照されていないものから破棄する.
+     * @param key キー
+     * @param value 値
+     */
+    public void put(K key, V value) {
+        if (maxSize <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    /**
+     * 指定キーのキャッシュを削除する.
+     * @param key キー
+     */
+    public void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * 全てのキャッシュを削除する.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * 保持する最大件数を変更する. 次回のput時に上限を超えた分が破棄される.
+     * @param size 最大件数
+     */
+    public void setMaxSize(int size) {
+        this.maxSize = size;
+    }
+
+    /**
+     * @return 保持する最大件数
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return 現在の保持件数
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return キャッシュヒット件数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return キャッシュミス件数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
@@ -22,7 +22,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import net.spy.memcached.CASValue;
 import net.spy.memcached.ConnectionFactoryBuilder;
+import net.spy.memcached.ConnectionFactoryBuilder.Protocol;
 import net.spy.memcached.DefaultConnectionFactory;
 
 import org.slf4j.Logger;
@@ -41,11 +43,12 @@ public class MemcachedClient implements CacheClient {
     static volatile boolean isReportError = false;
     net.spy.memcached.MemcachedClient spyClient = null;
 
-    private MemcachedClient(String host, String port, long opTimeout) {
+    private MemcachedClient(String host, String port, long opTimeout, Protocol protocol) {
         try {
             ConnectionFactoryBuilder cfb = new ConnectionFactoryBuilder(new DefaultConnectionFactory());
             // memcached のタイムアウト時間を設定
             cfb.setOpTimeout(opTimeout);
+            cfb.setProtocol(protocol);
 
             List<InetSocketAddress> addrs = new ArrayList<InetSocketAddress>();
             addrs.add(new InetSocketAddress(host, Integer.valueOf(port)));
@@ -86,6 +89,45 @@ public class MemcachedClient implements CacheClient {
         }
     }
 
+    /**
+     * 指定キーのキャッシュをCAS値とともに取得.
+     * @param key キャッシュキー
+     * @return キャッシュされたオブジェクトとCAS値 / null キャッシュが存在しないとき
+     */
+    public CasValue gets(String key) {
+        try {
+            CASValue<Object> ret = this.spyClient.gets(key);
+            if (ret == null) {
+                return null;
+            }
+            return new CasValue(ret.getValue(), ret.getCas());
+        } catch (RuntimeException e) {
+            log.info(e.getMessage(), e);
+            throw new MemcachedClientException(e);
+        }
+    }
+
+    /**
+     * CAS値が取得時から変わっていない場合のみ、指定キーのキャッシュを削除します.
+     * バイナリプロトコルで接続したクライアントでのみ使用できる.
+     * @param key キャッシュキー
+     * @param casId getsで取得したCAS値
+     * @return 削除した場合はTrue/他の更新が先行した場合やキーが存在しない場合はFalseを返す.
+     */
+    public Boolean delete(String key, long casId) {
+        try {
+            return this.spyClient.delete(key, casId).get();
+        } catch (InterruptedException e) {
+            DcCoreLog.Server.MEMCACHED_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } catch (ExecutionException e) {
+            DcCoreLog.Server.MEMCACHED_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } catch (RuntimeException e) {
+            log.info(e.getMessage(), e);
+            throw new MemcachedClientException(e);
+        }
+        return Boolean.FALSE;
+    }
+
     /**
      * 指定キーでオブジェクトを一定の有効期限のみキャッシュします.
      * @param key キャッシュのキー
@@ -254,12 +296,13 @@ public class MemcachedClient implements CacheClient {
         if ("memcached".equals(DcCoreConfig.getCacheType())) {
             cacheClient = new MemcachedClient(DcCoreConfig.getCacheMemcachedHost(),
                     DcCoreConfig.getCacheMemcachedPort(),
-                    DcCoreConfig.getCacheMemcachedOpTimeout());
+                    DcCoreConfig.getCacheMemcachedOpTimeout(), Protocol.TEXT);
         }
         if ("memcached".equals(DcCoreConfig.getLockType())) {
+            // ロックの解放にCAS値を指定した削除を使用するため、バイナリプロトコルで接続する
             lockClient = new MemcachedClient(DcCoreConfig.getLockMemcachedHost(),
                     DcCoreConfig.getLockMemcachedPort(),
-                    DcCoreConfig.getLockMemcachedOpTimeout());
+                    DcCoreConfig.getLockMemcachedOpTimeout(), Protocol.BINARY);
         }
     }
     /**
@@ -311,4 +354,36 @@ public class MemcachedClient implements CacheClient {
         }
     };
 
+    /**
+     * キャッシュされたオブジェクトとCAS値の組.
+     */
+    public static class CasValue {
+        private final Object value;
+        private final long cas;
+
+        /**
+         * コンストラクタ.
+         * @param value キャッシュされたオブジェクト
+         * @param cas CAS値
+         */
+        public CasValue(Object value, long cas) {
+            this.value = value;
+            this.cas = cas;
+        }
+
+        /**
+         * @return キャッシュされたオブジェクト
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return CAS値
+         */
+        public long getCas() {
+            return cas;
+        }
+    }
+
 }
@@ -0,0 +1,43 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.webcontainer;
+
+import javax.servlet.ServletException;
+
+import com.fujitsu.dc.core.engine.EmbeddedEngine;
+import com.sun.jersey.spi.container.servlet.ServletContainer;
+
+/**
+ * CoreのJAX-RSアプリケーションを実行するサーブレット.
+ * 組み込みEngineが有効な場合は、初期化時にEngineを開始し、Engineからのリクエストを受け付けるよう自身を登録する.
+ */
+public class DcCoreServletContainer extends ServletContainer {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        EmbeddedEngine.start(this);
+    }
+
+    @Override
+    public void destroy() {
+        EmbeddedEngine.stop();
+        super.destroy();
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.webcontainer.listener;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteQueue;
+
+/**
+ * Webコンテナ終了時に非同期書込み待ちのADSへの書込みを行うListenerクラス.
+ */
+public class WebContainerListenerForAdsWriteQueue implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent arg0) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent arg0) {
+        AdsWriteQueue.shutdown();
+    }
+}
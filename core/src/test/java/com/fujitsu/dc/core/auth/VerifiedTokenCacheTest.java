@@ -0,0 +1,77 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token;
+import com.fujitsu.dc.common.auth.token.CellLocalAccessToken;
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * VerifiedTokenCacheユニットテストクラス.
+ */
+@Category({Unit.class })
+public class VerifiedTokenCacheTest {
+
+    private static final String ISSUER = "https://localhost/cell/";
+    private static final String HOST = "localhost";
+
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        VerifiedTokenCache.clear();
+    }
+
+    /**
+     * 保持したトークンを同じ発行者とHostで取得できること.
+     */
+    @Test
+    public void 保持したトークンを同じ発行者とHostで取得できること() {
+        AbstractOAuth2Token tk = new CellLocalAccessToken(ISSUER, "account", new ArrayList<Role>(), null);
+        VerifiedTokenCache.put("token", ISSUER, HOST, tk);
+
+        assertSame(tk, VerifiedTokenCache.get("token", ISSUER, HOST));
+        assertNull(VerifiedTokenCache.get("token", "https://localhost/other/", HOST));
+        assertNull(VerifiedTokenCache.get("token", ISSUER, "otherhost"));
+        assertNull(VerifiedTokenCache.get("other", ISSUER, HOST));
+    }
+
+    /**
+     * 有効期限を過ぎたトークンは保持しないこと.
+     */
+    @Test
+    public void 有効期限を過ぎたトークンは保持しないこと() {
+        long issuedAt = System.currentTimeMillis() - 2 * AbstractOAuth2Token.MILLISECS_IN_AN_HOUR;
+        AbstractOAuth2Token tk = new CellLocalAccessToken(issuedAt, ISSUER, "account", new ArrayList<Role>(), null);
+        VerifiedTokenCache.put("token", ISSUER, HOST, tk);
+
+        assertNull(VerifiedTokenCache.get("token", ISSUER, HOST));
+        assertEquals(0, VerifiedTokenCache.getStatistics().get("size"));
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * EmbeddedEngine ユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class EmbeddedEngineTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private CountDownLatch release;
+    private CountDownLatch started;
+    private EmbeddedEngine engine;
+
+    /**
+     * 呼び出し元の情報を返却するEngineのサーブレットで組み込みEngineを作成する.
+     * @throws ServletException 初期化失敗時
+     */
+    @Before
+    public void before() throws ServletException {
+        release = new CountDownLatch(0);
+        started = new CountDownLatch(0);
+        HttpServlet servlet = new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+                started.countDown();
+                try {
+                    release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                String body = Thread.currentThread().getName() + "|" + req.getPathInfo() + "|"
+                        + (EmbeddedEngine.getAvailableInstance() == null);
+                res.setContentType("text/plain");
+                res.getOutputStream().write(body.getBytes("UTF-8"));
+            }
+        };
+        servlet.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "engine";
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+
+            @Override
+            public String getInitParameter(String name) {
+                return null;
+            }
+
+            @Override
+            public Enumeration<String> getInitParameterNames() {
+                return Collections.enumeration(Collections.<String>emptyList());
+            }
+        });
+        engine = new EmbeddedEngine(servlet, "/dc1-engine", 1, 1);
+    }
+
+    /**
+     * 組み込みEngineを停止する.
+     */
+    @After
+    public void after() {
+        release.countDown();
+        engine.shutdown();
+    }
+
+    /**
+     * サービスが組み込みEngineのスレッドで実行されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void サービスが組み込みEngineのスレッドで実行されること() throws Exception {
+        HttpResponse res = engine.execute(new HttpGet("http://localhost:8080/dc1-engine/cell/box/service/svc"));
+
+        assertEquals(HttpServletResponse.SC_OK, res.getStatusLine().getStatusCode());
+        String[] body = EntityUtils.toString(res.getEntity(), "UTF-8").split("\\|");
+        assertTrue(body[0], body[0].startsWith("dc-engine-embedded-"));
+        assertEquals("/cell/box/service/svc", body[1]);
+        // サービスからのサービス呼び出しは組み込みEngineを使用しない
+        assertEquals("true", body[2]);
+    }
+
+    /**
+     * 実行中と待ちのサービス呼び出しが上限に達している場合は503エラーとなること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void 実行中と待ちのサービス呼び出しが上限に達している場合は503エラーとなること() throws Exception {
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+        Thread[] callers = new Thread[2];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        engine.execute(new HttpGet("http://localhost:8080/dc1-engine/cell/box/service/svc"));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            callers[i].start();
+            if (i == 0) {
+                // 1件目が実行中になってから2件目を待ちに入れる
+                assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            }
+        }
+        long limit = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!callers[1].getState().equals(Thread.State.WAITING) && System.currentTimeMillis() < limit) {
+            Thread.sleep(10);
+        }
+        try {
+            engine.execute(new HttpGet("http://localhost:8080/dc1-engine/cell/box/service/svc"));
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+        } finally {
+            release.countDown();
+            for (Thread caller : callers) {
+                caller.join(TIMEOUT_MILLIS);
+            }
+        }
+    }
+}
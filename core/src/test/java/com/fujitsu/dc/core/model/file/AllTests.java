@@ -25,7 +25,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    BinaryDataAccessorTest.class
+    BinaryDataAccessorTest.class,
+    StreamingOutputForDavFileWithRangeTest.class
     })
 public class AllTests {
 }
@@ -0,0 +1,128 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.http.header.RangeHeaderHandler;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * StreamingOutputForDavFile/StreamingOutputForDavFileWithRangeユニットテストクラス.
+ */
+@Category({Unit.class })
+public class StreamingOutputForDavFileWithRangeTest {
+
+    private static final String CONTENT = "abcdefghijklmnopqrstuvwxyz";
+
+    private File dir;
+    private File file;
+
+    /**
+     * テスト用のファイルを作成する.
+     * @throws IOException 作成失敗
+     */
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("davfile").toFile();
+        file = new File(dir, "content");
+        FileUtils.writeStringToFile(file, CONTENT, Charsets.UTF_8);
+    }
+
+    /**
+     * テスト用のファイルを削除する.
+     * @throws IOException 削除失敗
+     */
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * ファイル全体が出力され読み込み用のハードリンクが削除されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ファイル全体が出力され読み込み用のハードリンクが削除されること() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamingOutputForDavFile(file.getAbsolutePath()).write(out);
+        assertEquals(CONTENT, out.toString("UTF-8"));
+        assertEquals(1, dir.list().length);
+    }
+
+    /**
+     * 単一のRange指定で指定範囲だけが出力されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void 単一のRange指定で指定範囲だけが出力されること() throws Exception {
+        RangeHeaderHandler range = RangeHeaderHandler.parse("bytes=3-9", CONTENT.length());
+        StreamingOutputForDavFileWithRange sout =
+                new StreamingOutputForDavFileWithRange(file.getAbsolutePath(), range, "text/plain");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sout.write(out);
+
+        assertFalse(sout.isMultipart());
+        assertEquals("text/plain", sout.getContentType());
+        assertEquals(7, sout.getContentLength());
+        assertEquals("defghij", out.toString("UTF-8"));
+        assertEquals(1, dir.list().length);
+    }
+
+    /**
+     * 複数のRange指定でmultipart_byterangesが出力されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void 複数のRange指定でmultipart_byterangesが出力されること() throws Exception {
+        RangeHeaderHandler range = RangeHeaderHandler.parse("bytes=0-1,-3", CONTENT.length());
+        StreamingOutputForDavFileWithRange sout =
+                new StreamingOutputForDavFileWithRange(file.getAbsolutePath(), range, "text/plain");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sout.write(out);
+
+        assertTrue(sout.isMultipart());
+        String contentType = sout.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String expected = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-1/26\r\n\r\n"
+                + "ab"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 23-25/26\r\n\r\n"
+                + "xyz"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, out.toString("UTF-8"));
+        assertEquals(out.size(), sout.getContentLength());
+    }
+}
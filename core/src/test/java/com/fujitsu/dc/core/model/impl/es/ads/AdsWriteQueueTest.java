@@ -0,0 +1,320 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * AdsWriteQueueユニットテストクラス.
+ */
+@Category({Unit.class })
+public class AdsWriteQueueTest {
+
+    private static final String TEST_INDEX = "u0_anon";
+
+    private File journalDir;
+    private RecordingBackend backend;
+
+    /**
+     * 書込み内容を記録するテスト用のBackend.
+     */
+    static class RecordingBackend implements AdsWriteQueue.Backend {
+        final List<String> batches = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void executeBatch(String index, AdsWriteRequest.Kind kind, List<AdsWriteRequest> requests)
+                throws AdsException {
+            for (AdsWriteRequest request : requests) {
+                if (request.getId().startsWith("bad")) {
+                    throw new AdsException("write failed. [" + request.getId() + "]");
+                }
+            }
+            batches.add(kind + ":" + requests.size());
+            for (AdsWriteRequest request : requests) {
+                writes.add(kind + ":" + request.getId());
+            }
+        }
+
+        @Override
+        public void createIndex(String index) throws AdsException {
+        }
+
+        @Override
+        public void recordFailure(AdsWriteFailureLogInfo logInfo) {
+            failures.add(logInfo.getOperation() + ":" + logInfo.getUuid());
+        }
+    }
+
+    /**
+     * 前処理.
+     * @throws Exception Exception
+     */
+    @Before
+    public void before() throws Exception {
+        journalDir = new File(System.getProperty("java.io.tmpdir"), "AdsWriteQueueTest_" + System.nanoTime());
+        journalDir.mkdirs();
+        backend = new RecordingBackend();
+    }
+
+    /**
+     * 後処理.
+     * @throws Exception Exception
+     */
+    @After
+    public void after() throws Exception {
+        FileUtils.deleteDirectory(journalDir);
+    }
+
+    private AdsWriteQueue createQueue(int workers, int batchSize) {
+        return createQueue(workers, batchSize, "node1");
+    }
+
+    private AdsWriteQueue createQueue(int workers, int batchSize, String nodeId) {
+        return new AdsWriteQueue(workers, 1000, batchSize, 10, journalDir, nodeId, "1.0.0", backend);
+    }
+
+    private static AdsWriteRequest request(AdsWriteRequest.Kind kind, String id) {
+        AdsWriteFailureLogInfo.OperationKind operation = AdsWriteFailureLogInfo.OperationKind.UPDATE;
+        if (kind.name().startsWith("CREATE")) {
+            operation = AdsWriteFailureLogInfo.OperationKind.CREATE;
+        } else if (kind.name().startsWith("DELETE")) {
+            operation = AdsWriteFailureLogInfo.OperationKind.DELETE;
+        }
+        AdsWriteFailureLogInfo logInfo = new AdsWriteFailureLogInfo(TEST_INDEX, "UserData", "odata-cell-node",
+                "cell", id, operation, 1, System.currentTimeMillis());
+        return new AdsWriteRequest(kind, TEST_INDEX, id, logInfo);
+    }
+
+    private List<String> writesOf(String id) {
+        List<String> result = new ArrayList<String>();
+        for (String write : backend.writes) {
+            if (write.endsWith(":" + id)) {
+                result.add(write);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 同一IDの書込み要求は登録順に書き込まれること.
+     */
+    @Test
+    public void 同一IDの書込み要求は登録順に書き込まれること() {
+        AdsWriteQueue queue = createQueue(2, 100);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(request(AdsWriteRequest.Kind.CREATE_ENTITY, "id" + i));
+            queue.offer(request(AdsWriteRequest.Kind.UPDATE_ENTITY, "id" + i));
+        }
+        for (int i = 0; i < 20; i += 2) {
+            queue.offer(request(AdsWriteRequest.Kind.DELETE_ENTITY, "id" + i));
+        }
+        queue.start();
+        assertTrue(queue.awaitDrained(10000));
+        queue.stop(10000);
+
+        for (int i = 0; i < 20; i++) {
+            List<String> expected = new ArrayList<String>();
+            expected.add("CREATE_ENTITY:id" + i);
+            expected.add("UPDATE_ENTITY:id" + i);
+            if (i % 2 == 0) {
+                expected.add("DELETE_ENTITY:id" + i);
+            }
+            assertEquals(expected, writesOf("id" + i));
+        }
+        assertEquals(50L, queue.statistics().get("written"));
+        assertEquals(0, journalDir.list().length);
+    }
+
+    /**
+     * 同一インデックス同一種別の書込み要求はバッチでまとめて書き込まれること.
+     */
+    @Test
+    public void 同一インデックス同一種別の書込み要求はバッチでまとめて書き込まれること() {
+        AdsWriteQueue queue = createQueue(1, 100);
+        for (int i = 0; i < 30; i++) {
+            queue.offer(request(AdsWriteRequest.Kind.CREATE_LINK, "link" + i));
+        }
+        for (int i = 0; i < 20; i++) {
+            queue.offer(request(AdsWriteRequest.Kind.CREATE_DAV_NODE, "dav" + i));
+        }
+        queue.start();
+        assertTrue(queue.awaitDrained(10000));
+        queue.stop(10000);
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("CREATE_LINK:30");
+        expected.add("CREATE_DAV_NODE:20");
+        assertEquals(expected, backend.batches);
+        Map<String, Object> stats = queue.statistics();
+        assertEquals(2L, stats.get("batches"));
+        assertEquals(50L, stats.get("enqueued"));
+        assertEquals(0L, stats.get("pending"));
+    }
+
+    /**
+     * 書込みに失敗した要求のみADS書込み失敗ログに出力されること.
+     */
+    @Test
+    public void 書込みに失敗した要求のみADS書込み失敗ログに出力されること() {
+        AdsWriteQueue queue = createQueue(1, 100);
+        queue.offer(request(AdsWriteRequest.Kind.UPDATE_CELL, "cell1"));
+        queue.offer(request(AdsWriteRequest.Kind.UPDATE_CELL, "bad1"));
+        queue.offer(request(AdsWriteRequest.Kind.UPDATE_CELL, "cell2"));
+        queue.start();
+        assertTrue(queue.awaitDrained(10000));
+        queue.stop(10000);
+
+        assertEquals(Collections.singletonList("UPDATE:bad1"), backend.failures);
+        assertEquals(2, backend.writes.size());
+        assertEquals(1L, queue.statistics().get("failed"));
+        assertEquals(0, journalDir.list().length);
+    }
+
+    /**
+     * 書込みが終わらなかったジャーナルは次回起動時にADS書込み失敗ログへ移されること.
+     */
+    @Test
+    public void 書込みが終わらなかったジャーナルは次回起動時にADS書込み失敗ログへ移されること() {
+        // ワーカーを開始せずに停止し、プロセスの異常終了を模擬する
+        AdsWriteQueue queue = createQueue(2, 100);
+        for (int i = 0; i < 25; i++) {
+            queue.offer(request(AdsWriteRequest.Kind.DELETE_DAV_NODE, "dav" + i));
+        }
+        queue.stop(0);
+        assertTrue(journalDir.list().length > 0);
+
+        AdsWriteQueue next = createQueue(2, 100);
+        next.start();
+        next.stop(10000);
+
+        assertEquals(25, backend.failures.size());
+        assertTrue(backend.failures.contains("DELETE:dav0"));
+        assertEquals(0, backend.writes.size());
+        assertEquals(25L, next.statistics().get("recovered"));
+        assertEquals(0, journalDir.list().length);
+    }
+
+    /**
+     * まとめて登録した要求はジャーナルを切り替えながら記録され、登録順に書き込まれること.
+     */
+    @Test
+    public void まとめて登録した要求はジャーナルを切り替えながら記録され登録順に書き込まれること() {
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+        for (int i = 0; i < 25; i++) {
+            requests.add(request(AdsWriteRequest.Kind.CREATE_ENTITY, "bulk" + i));
+        }
+        AdsWriteQueue queue = createQueue(1, 100);
+        assertTrue(queue.offerAll(requests).isEmpty());
+        // ジャーナル1つあたり10件
+        assertEquals(3, journalDir.list().length);
+        queue.start();
+        assertTrue(queue.awaitDrained(10000));
+        queue.stop(10000);
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 25; i++) {
+            expected.add("CREATE_ENTITY:bulk" + i);
+        }
+        assertEquals(expected, backend.writes);
+        assertEquals(0, journalDir.list().length);
+    }
+
+    /**
+     * 並行して登録した要求が全てジャーナルに記録されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 並行して登録した要求が全てジャーナルに記録されること() throws Exception {
+        final AdsWriteQueue queue = createQueue(2, 100);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int threadNo = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50; i++) {
+                        queue.offer(request(AdsWriteRequest.Kind.UPDATE_ENTITY, "t" + threadNo + "_" + i));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // ワーカーを開始せずに停止し、プロセスの異常終了を模擬する
+        queue.stop(0);
+
+        AdsWriteQueue next = createQueue(2, 100);
+        next.start();
+        next.stop(10000);
+        assertEquals(400, backend.failures.size());
+        assertEquals(0, journalDir.list().length);
+    }
+
+    /**
+     * 他ノードのジャーナルは回収されないこと.
+     */
+    @Test
+    public void 他ノードのジャーナルは回収されないこと() {
+        // 出力先ディレクトリを共有する別ノードが書込み中のジャーナル
+        AdsWriteQueue other = createQueue(1, 100, "node1-b");
+        for (int i = 0; i < 5; i++) {
+            other.offer(request(AdsWriteRequest.Kind.DELETE_DAV_NODE, "dav" + i));
+        }
+        String[] otherJournals = journalDir.list();
+        assertTrue(otherJournals[0].startsWith(AdsWriteQueue.JOURNAL_PREFIX + "node1-b_"));
+
+        AdsWriteQueue queue = createQueue(1, 100, "node1");
+        queue.start();
+        queue.stop(10000);
+
+        assertEquals(0, backend.failures.size());
+        assertEquals(0L, queue.statistics().get("recovered"));
+        assertEquals(otherJournals.length, journalDir.list().length);
+        other.stop(0);
+    }
+
+    /**
+     * ノードIDはファイル名の区切り文字と衝突しない文字に置き換えられること.
+     */
+    @Test
+    public void ノードIDはファイル名の区切り文字と衝突しない文字に置き換えられること() {
+        assertEquals("node-1.example", AdsWriteQueue.toJournalNodeId("node_1.example"));
+        assertEquals("a-b-c", AdsWriteQueue.toJournalNodeId(" a/b c "));
+        assertTrue(AdsWriteQueue.toJournalNodeId("").length() > 0);
+        assertTrue(AdsWriteQueue.toJournalNodeId(null).indexOf('_') < 0);
+    }
+}
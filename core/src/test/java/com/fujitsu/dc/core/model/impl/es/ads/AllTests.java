@@ -25,7 +25,9 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    JdbcAdsTest.class
+    JdbcAdsTest.class,
+    AdsWriteQueueTest.class,
+    JdbcAdsBulkTest.class
     })
 public class AllTests {
 }
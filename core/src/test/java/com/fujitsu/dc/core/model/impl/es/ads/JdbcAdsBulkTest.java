@@ -0,0 +1,242 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InOrder;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds.IndexPeer;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds.IndexPeer.BulkStatementHandlerFactory;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds.IndexPeer.StatementHandler;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * JdbcAdsの一括登録/更新 ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class JdbcAdsBulkTest {
+
+    private static final String HEAD = "insert into t values ";
+    private static final String VALUES = "(?,?)";
+    private static final String TAIL = " on duplicate key update b=values(b)";
+
+    private static final BulkStatementHandlerFactory<String> FACTORY = new BulkStatementHandlerFactory<String>() {
+        @Override
+        public StatementHandler create(final List<String> rows) {
+            return new StatementHandler() {
+                @Override
+                void handle(PreparedStatement stmt) throws SQLException {
+                    int index = 1;
+                    for (String row : rows) {
+                        stmt.setString(index++, row);
+                        stmt.setString(index++, row);
+                    }
+                }
+            };
+        }
+    };
+
+    private String rowsPerStatement;
+    private String transactionSize;
+    private Connection con;
+    private PreparedStatement fullStmt;
+    private PreparedStatement partialStmt;
+    private IndexPeer peer;
+
+    /**
+     * 各テストの開始前に実行される処理.
+     * @throws SQLException SQLException
+     */
+    @Before
+    public void before() throws SQLException {
+        rowsPerStatement = DcCoreConfig.get(DcCoreConfig.ES.ADS.BULK_ROWS_PER_STATEMENT);
+        transactionSize = DcCoreConfig.get(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE);
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_ROWS_PER_STATEMENT, "100");
+
+        DataSource ds = mock(DataSource.class);
+        con = mock(Connection.class);
+        fullStmt = mock(PreparedStatement.class);
+        partialStmt = mock(PreparedStatement.class);
+        when(ds.getConnection()).thenReturn(con);
+        when(con.prepareStatement(IndexPeer.buildBulkSql(HEAD, VALUES, TAIL, 100))).thenReturn(fullStmt);
+        when(con.prepareStatement(IndexPeer.buildBulkSql(HEAD, VALUES, TAIL, 50))).thenReturn(partialStmt);
+        when(fullStmt.executeUpdate()).thenReturn(100);
+        when(partialStmt.executeUpdate()).thenReturn(50);
+        peer = new IndexPeer(ds, "test_index");
+    }
+
+    /**
+     * 各テストの終了時に実行される処理.
+     */
+    @After
+    public void after() {
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_ROWS_PER_STATEMENT, rowsPerStatement);
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, transactionSize);
+    }
+
+    /**
+     * 指定行数分のVALUES句を持つSQLが生成されること.
+     */
+    @Test
+    public void 指定行数分のVALUES句を持つSQLが生成されること() {
+        assertEquals(HEAD + "(?,?),(?,?),(?,?)" + TAIL, IndexPeer.buildBulkSql(HEAD, VALUES, TAIL, 3));
+        assertEquals(HEAD + "(?,?)", IndexPeer.buildBulkSql(HEAD, VALUES, "", 1));
+    }
+
+    /**
+     * 設定した行数ごとに同一のSQLで実行され全体が1トランザクションとなること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 設定した行数ごとに同一のSQLで実行され全体が1トランザクションとなること() throws Exception {
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, "0");
+        peer.executeBulkSql(HEAD, VALUES, TAIL, createRows(250), FACTORY, 1);
+
+        // 100行のSQLは1度だけ準備して使いまわす
+        verify(con, times(1)).prepareStatement(IndexPeer.buildBulkSql(HEAD, VALUES, TAIL, 100));
+        verify(con, times(1)).prepareStatement(IndexPeer.buildBulkSql(HEAD, VALUES, TAIL, 50));
+        verify(fullStmt, times(2)).executeUpdate();
+        verify(partialStmt, times(1)).executeUpdate();
+        verify(fullStmt).setString(200, "row99");
+        verify(partialStmt).setString(1, "row200");
+
+        InOrder order = inOrder(con);
+        order.verify(con).setAutoCommit(false);
+        order.verify(con, times(1)).commit();
+        order.verify(con).setAutoCommit(true);
+        order.verify(con).close();
+    }
+
+    /**
+     * トランザクションサイズを指定した場合に指定行数ごとにコミットされること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void トランザクションサイズを指定した場合に指定行数ごとにコミットされること() throws Exception {
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, "100");
+        peer.executeBulkSql(HEAD, VALUES, TAIL, createRows(250), FACTORY, 1);
+        verify(con, times(3)).commit();
+    }
+
+    /**
+     * 更新件数が期待値と異なる場合にAdsExceptionが発生すること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 更新件数が期待値と異なる場合にAdsExceptionが発生すること() throws Exception {
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, "0");
+        try {
+            peer.executeBulkSql(HEAD, VALUES, TAIL, createRows(250), FACTORY, 2);
+            fail("AdsException is not thrown.");
+        } catch (AdsException e) {
+            assertEquals("[250] rows have been affected while 500 row is expected to be affected.", e.getMessage());
+        }
+        // 件数を確認しない場合は例外とならない
+        peer.executeBulkSql(HEAD, VALUES, TAIL, createRows(250), FACTORY, -1);
+    }
+
+    /**
+     * SQLの実行に失敗した場合にロールバックされること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void SQLの実行に失敗した場合にロールバックされること() throws Exception {
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, "0");
+        when(partialStmt.executeUpdate()).thenThrow(new SQLException("error"));
+        try {
+            peer.executeBulkSql(HEAD, VALUES, TAIL, createRows(250), FACTORY, 1);
+            fail("AdsException is not thrown.");
+        } catch (AdsException e) {
+            assertEquals(SQLException.class, e.getCause().getClass());
+        }
+        verify(con).rollback();
+        verify(con, times(0)).commit();
+        verify(partialStmt).close();
+        verify(fullStmt).close();
+        verify(con).setAutoCommit(true);
+        verify(con).close();
+    }
+
+    /**
+     * バッチ実行が1トランザクションで行われ失敗時はロールバックされること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void バッチ実行が1トランザクションで行われ失敗時はロールバックされること() throws Exception {
+        PreparedStatement batchStmt = mock(PreparedStatement.class);
+        when(con.prepareStatement("update t")).thenReturn(batchStmt);
+        when(batchStmt.executeBatch()).thenReturn(new int[] {1, 1});
+        List<StatementHandler> handlers = new ArrayList<StatementHandler>();
+        handlers.add(FACTORY.create(createRows(1)));
+        handlers.add(FACTORY.create(createRows(1)));
+        peer.executeBatchSql("update t", handlers, 1);
+
+        InOrder order = inOrder(con, batchStmt);
+        order.verify(con).setAutoCommit(false);
+        order.verify(batchStmt).executeBatch();
+        order.verify(con).commit();
+        order.verify(con).setAutoCommit(true);
+        order.verify(con).close();
+
+        // 一部の行が期待と異なる場合は反映済みの行も含めてロールバックする
+        when(batchStmt.executeBatch()).thenReturn(new int[] {1, 0});
+        try {
+            peer.executeBatchSql("update t", handlers, 1);
+            fail("AdsException is not thrown.");
+        } catch (AdsException e) {
+            assertEquals("[0] rows have been affected while 1 row is expected to be affected.", e.getMessage());
+        }
+        when(batchStmt.executeBatch()).thenThrow(new SQLException("duplicate"));
+        try {
+            peer.executeBatchSql("update t", handlers, 1);
+            fail("AdsException is not thrown.");
+        } catch (AdsException e) {
+            assertEquals(SQLException.class, e.getCause().getClass());
+        }
+        verify(con, times(2)).rollback();
+        verify(con, times(1)).commit();
+        verify(con, times(3)).setAutoCommit(true);
+    }
+
+    private List<String> createRows(int count) {
+        List<String> rows = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            rows.add("row" + i);
+        }
+        return rows;
+    }
+}
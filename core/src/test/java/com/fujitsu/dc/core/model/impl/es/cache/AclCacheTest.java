@@ -0,0 +1,129 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+import com.fujitsu.dc.core.model.jaxb.ObjectIo;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * AclCache ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class AclCacheTest {
+
+    private static final String CELL_ID = "aclCacheTestCellId";
+    private static final String KEY = "/dav/node1\t\"1-100\"\thttps://fqdn/aclCacheTestCell/__role/__/";
+
+    private CacheClient original;
+
+    /**
+     * テスト前処理. memcachedの代わりにテスト用のキャッシュを使用する.
+     */
+    @Before
+    public void before() {
+        original = RoleListCache.mcdClient;
+        RoleListCache.mcdClient = new MockMemcachedClient();
+        RoleListCache.clearLocalCache();
+        AclCache.clearLocalCache();
+    }
+
+    /**
+     * テスト後処理.
+     */
+    @After
+    public void after() {
+        RoleListCache.mcdClient = original;
+        RoleListCache.clearLocalCache();
+        AclCache.clearLocalCache();
+    }
+
+    private static Acl acl() throws Exception {
+        String xml = "<D:acl xmlns:D='DAV:' xml:base='https://fqdn/aclCacheTestCell/__role/__/'>"
+                + "<D:ace><D:principal><D:href>role1</D:href></D:principal>"
+                + "<D:grant><D:privilege><D:read/></D:privilege></D:grant></D:ace></D:acl>";
+        return ObjectIo.unmarshal(new StringReader(xml), Acl.class);
+    }
+
+    /**
+     * 同じキーで保持したACLを取得できること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void 同じキーで保持したACLを取得できること() throws Exception {
+        Acl acl = acl();
+        AclCache.cache(CELL_ID, KEY, AclCache.currentStamp(CELL_ID), acl);
+
+        assertSame(acl, AclCache.get(CELL_ID, KEY));
+        assertNull(AclCache.get(CELL_ID, "/dav/node1\t\"2-200\"\thttps://fqdn/aclCacheTestCell/__role/__/"));
+        assertNull(AclCache.get("otherCellId", KEY));
+    }
+
+    /**
+     * ロールの変更後は保持したACLを返却しないこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ロールの変更後は保持したACLを返却しないこと() throws Exception {
+        AclCache.cache(CELL_ID, KEY, AclCache.currentStamp(CELL_ID), acl());
+
+        RoleListCache.clear(CELL_ID);
+        assertNull(AclCache.get(CELL_ID, KEY));
+    }
+
+    /**
+     * 変換中にロールが変更された場合は変換前のスタンプで保持したACLを返却しないこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void 変換中にロールが変更された場合は変換前のスタンプで保持したACLを返却しないこと() throws Exception {
+        Object stamp = AclCache.currentStamp(CELL_ID);
+        RoleListCache.clear(CELL_ID);
+        AclCache.cache(CELL_ID, KEY, stamp, acl());
+
+        assertNull(AclCache.get(CELL_ID, KEY));
+    }
+
+    /**
+     * ロール一覧のキャッシュが無効な場合は保持しないこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ロール一覧のキャッシュが無効な場合は保持しないこと() throws Exception {
+        String enabled = DcCoreConfig.get(DcCoreConfig.Cache.ROLE_CACHE_ENABLED);
+        try {
+            DcCoreConfig.set(DcCoreConfig.Cache.ROLE_CACHE_ENABLED, "false");
+            AclCache.cache(CELL_ID, KEY, "stamp", acl());
+            DcCoreConfig.set(DcCoreConfig.Cache.ROLE_CACHE_ENABLED, "true");
+            assertNull(AclCache.get(CELL_ID, KEY));
+        } finally {
+            DcCoreConfig.set(DcCoreConfig.Cache.ROLE_CACHE_ENABLED, enabled);
+        }
+    }
+}
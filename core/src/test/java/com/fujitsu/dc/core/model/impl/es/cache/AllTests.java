@@ -27,7 +27,11 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     CellCacheTest.class,
     BoxCacheTest.class,
-    UserDataSchemaCacheTest.class
+    TwoTierCacheTest.class,
+    UserDataSchemaCacheTest.class,
+    UserDataSchemaLocalCacheTest.class,
+    RoleListCacheTest.class,
+    AclCacheTest.class
     })
 public class AllTests {
 }
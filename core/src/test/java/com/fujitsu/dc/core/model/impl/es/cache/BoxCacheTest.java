@@ -25,6 +25,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
@@ -48,6 +49,14 @@ import com.fujitsu.dc.test.categories.Unit;
 @PrepareForTest({BoxCache.class, DcCoreConfig.class })
 public class BoxCacheTest {
 
+    /**
+     * テスト前処理. 前のテストでノード内に保持した情報を破棄する.
+     */
+    @Before
+    public void before() {
+        BoxCache.clearLocalCache();
+    }
+
     /**
      * Memcachedへの接続に失敗した場合NULLを返すこと.
      * @throws Exception テスト中の例外
@@ -29,6 +29,7 @@ import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
@@ -49,6 +50,14 @@ import com.fujitsu.dc.test.categories.Unit;
 @PrepareForTest({CellCache.class, DcCoreConfig.class })
 public class CellCacheTest {
 
+    /**
+     * テスト前処理. 前のテストでノード内に保持した情報を破棄する.
+     */
+    @Before
+    public void before() {
+        CellCache.clearLocalCache();
+    }
+
     /**
      * Memcachedへの接続に失敗した場合NULLを返すこと.
      * @throws Exception テスト中の例外
@@ -0,0 +1,218 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.model.impl.es.odata.CellCtlODataProducer;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * RoleListCache ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class RoleListCacheTest {
+
+    private static final String CELL_ID = "roleListCacheTestCellId";
+    private static final String CELL_NAME = "roleListCacheTestCell";
+
+    private CacheClient original;
+    private MockMemcachedClient client;
+
+    /**
+     * テスト前処理. memcachedの代わりにテスト用のキャッシュを使用する.
+     */
+    @Before
+    public void before() {
+        original = RoleListCache.mcdClient;
+        client = new MockMemcachedClient();
+        RoleListCache.mcdClient = client;
+        RoleListCache.clearLocalCache();
+    }
+
+    /**
+     * テスト後処理.
+     */
+    @After
+    public void after() {
+        RoleListCache.mcdClient = original;
+        RoleListCache.clearLocalCache();
+    }
+
+    /**
+     * キャッシュしたロール一覧の複製を取得できること.
+     */
+    @Test
+    public void キャッシュしたロール一覧の複製を取得できること() {
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("role1", "role2"));
+
+        List<Role> cached = RoleListCache.get(CELL_ID, "account\tuser");
+        assertEquals(2, cached.size());
+        assertEquals("role1", cached.get(0).getName());
+        cached.clear();
+        assertEquals(2, RoleListCache.get(CELL_ID, "account\tuser").size());
+        assertNull(RoleListCache.get(CELL_ID, "account\tother"));
+        assertNull(RoleListCache.get("otherCellId", "account\tuser"));
+    }
+
+    /**
+     * clear後はキャッシュしたロール一覧を返却しないこと.
+     */
+    @Test
+    public void clear後はキャッシュしたロール一覧を返却しないこと() {
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("role1"));
+
+        RoleListCache.clear(CELL_ID);
+
+        assertNull(RoleListCache.get(CELL_ID, "account\tuser"));
+    }
+
+    /**
+     * clear前に取得したスタンプでキャッシュしたロール一覧は返却しないこと.
+     */
+    @Test
+    public void clear前に取得したスタンプでキャッシュしたロール一覧は返却しないこと() {
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.clear(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("role1"));
+
+        assertNull(RoleListCache.get(CELL_ID, "account\tuser"));
+    }
+
+    /**
+     * 無効化から更新の反映までの間に取得したロール一覧は反映後に返却しないこと.
+     */
+    @Test
+    public void 無効化から更新の反映までの間に取得したロール一覧は反映後に返却しないこと() {
+        Cell cell = mock(Cell.class);
+        when(cell.getId()).thenReturn(CELL_ID);
+        when(cell.getName()).thenReturn(CELL_NAME);
+        CellCtlODataProducer producer = new CellCtlODataProducer(cell);
+
+        // リクエストの受付時に無効化される
+        producer.onChange(com.fujitsu.dc.core.model.ctl.Role.EDM_TYPE_NAME);
+
+        // 更新の反映前に他のリクエストが更新前のロール一覧を取得し、新しいスタンプでキャッシュする
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("revokedRole"));
+        assertEquals(1, RoleListCache.get(CELL_ID, "account\tuser").size());
+
+        // 更新の反映後に再度無効化される
+        producer.afterCommit();
+        assertNull(RoleListCache.get(CELL_ID, "account\tuser"));
+    }
+
+    /**
+     * ロールに影響しないEntitySetの更新では無効化しないこと.
+     */
+    @Test
+    public void ロールに影響しないEntitySetの更新では無効化しないこと() {
+        Cell cell = mock(Cell.class);
+        when(cell.getId()).thenReturn(CELL_ID);
+        when(cell.getName()).thenReturn(CELL_NAME);
+        CellCtlODataProducer producer = new CellCtlODataProducer(cell);
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("role1"));
+
+        producer.onChange("ReceivedMessage");
+        producer.afterCommit();
+
+        assertEquals(1, RoleListCache.get(CELL_ID, "account\tuser").size());
+    }
+
+    /**
+     * 他ノードでスタンプが更新された場合は有効期間経過後に返却しないこと.
+     */
+    @Test
+    public void 他ノードでスタンプが更新された場合は有効期間経過後に返却しないこと() {
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("role1"));
+        // 他ノードでのclearを模擬し、memcached上のスタンプのみ更新する
+        client.put("roleStamp:" + CELL_ID, 0, "updatedByOtherNode");
+
+        String ttl = DcCoreConfig.get(DcCoreConfig.Cache.ROLE_LOCAL_CACHE_TTL);
+        try {
+            assertEquals(1, RoleListCache.get(CELL_ID, "account\tuser").size());
+            DcCoreConfig.set(DcCoreConfig.Cache.ROLE_LOCAL_CACHE_TTL, "0");
+            assertNull(RoleListCache.get(CELL_ID, "account\tuser"));
+        } finally {
+            DcCoreConfig.set(DcCoreConfig.Cache.ROLE_LOCAL_CACHE_TTL, ttl);
+        }
+    }
+
+    /**
+     * ノード全体のヒット件数とミス件数を返却すること.
+     */
+    @Test
+    public void ノード全体のヒット件数とミス件数を返却すること() {
+        Object stamp = RoleListCache.currentStamp(CELL_ID);
+        RoleListCache.cache(CELL_ID, "account\tuser", stamp, roles("role1"));
+        RoleListCache.get(CELL_ID, "account\tuser");
+        RoleListCache.get(CELL_ID, "account\tuser");
+        RoleListCache.get(CELL_ID, "account\tother");
+        RoleListCache.clear(CELL_ID);
+
+        Map<String, Object> stats = RoleListCache.getStatistics();
+        assertEquals(2L, stats.get("hit"));
+        assertEquals(1L, stats.get("miss"));
+        assertEquals(2.0 / 3, (Double) stats.get("hitRatio"), 0.0001);
+        assertEquals(1L, stats.get("invalidate"));
+        assertEquals(1, stats.get("size"));
+        assertFalse(stats.containsKey("cells"));
+    }
+
+    /**
+     * Cell毎のスタンプが上限件数を超えて保持されないこと.
+     */
+    @Test
+    public void Cell毎のスタンプが上限件数を超えて保持されないこと() {
+        int maxSize = DcCoreConfig.getRoleLocalCacheMaxSize();
+        for (int i = 0; i <= maxSize; i++) {
+            RoleListCache.currentStamp("cell" + i);
+        }
+        assertNull(RoleListCache.localStamp("cell0"));
+        assertNotNull(RoleListCache.localStamp("cell" + maxSize));
+    }
+
+    private static List<Role> roles(String... names) {
+        List<Role> roles = new ArrayList<Role>();
+        for (String name : names) {
+            roles.add(new Role(name, "box", null));
+        }
+        return roles;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * TwoTierCacheユニットテストクラス.
+ */
+@Category({Unit.class })
+public class TwoTierCacheTest {
+
+    private static final String KEY = "cell:testcell";
+
+    private CountingCacheClient client;
+
+    /**
+     * テスト前処理.
+     */
+    @Before
+    public void before() {
+        client = new CountingCacheClient();
+    }
+
+    /**
+     * 有効期間内の場合にL2を参照せずにL1の情報が返却されること.
+     */
+    @Test
+    public void 有効期間内の場合にL2を参照せずにL1の情報が返却されること() {
+        TwoTierCache cache = new TwoTierCache(10, 60000);
+        client.put(KEY, 0, createValue("v1"));
+
+        assertEquals("v1", cache.get(client, KEY).get("Name"));
+        int getCount = client.getCount;
+        assertEquals("v1", cache.get(client, KEY).get("Name"));
+        assertEquals(getCount, client.getCount);
+
+        Map<String, Object> stats = cache.getStatistics();
+        assertEquals(1L, stats.get("l1Hit"));
+        assertEquals(1L, stats.get("l2Hit"));
+        assertEquals(0.5, stats.get("l1HitRatio"));
+    }
+
+    /**
+     * 有効期間経過後にスタンプが一致する場合はL1の情報が返却されること.
+     */
+    @Test
+    public void 有効期間経過後にスタンプが一致する場合はL1の情報が返却されること() {
+        TwoTierCache cache = new TwoTierCache(10, 0);
+        client.put(KEY, 0, createValue("v1"));
+
+        cache.get(client, KEY);
+        // L2の情報を直接書き換えてもスタンプが変わらない限りL1の情報を使用する
+        client.cache.put(KEY, createValue("v2"));
+        assertEquals("v1", cache.get(client, KEY).get("Name"));
+        assertEquals(1L, cache.getStatistics().get("revalidate"));
+    }
+
+    /**
+     * 他ノードでクリアされた場合に再検証時にL1の情報が無効となること.
+     */
+    @Test
+    public void 他ノードでクリアされた場合に再検証時にL1の情報が無効となること() {
+        TwoTierCache node1 = new TwoTierCache(10, 0);
+        TwoTierCache node2 = new TwoTierCache(10, 0);
+        client.put(KEY, 0, createValue("v1"));
+        assertEquals("v1", node1.get(client, KEY).get("Name"));
+
+        node2.clear(client, KEY);
+        assertNull(node1.get(client, KEY));
+
+        node2.put(client, KEY, createValue("v2"));
+        assertEquals("v2", node1.get(client, KEY).get("Name"));
+    }
+
+    /**
+     * 最大件数が0の場合は常にL2の情報が返却されること.
+     */
+    @Test
+    public void 最大件数が0の場合は常にL2の情報が返却されること() {
+        TwoTierCache cache = new TwoTierCache(0, 60000);
+        client.put(KEY, 0, createValue("v1"));
+        cache.get(client, KEY);
+        client.cache.put(KEY, createValue("v2"));
+        assertEquals("v2", cache.get(client, KEY).get("Name"));
+        assertEquals(0L, cache.getStatistics().get("l1Hit"));
+    }
+
+    /**
+     * 返却された情報を変更してもキャッシュに影響しないこと.
+     */
+    @Test
+    public void 返却された情報を変更してもキャッシュに影響しないこと() {
+        TwoTierCache cache = new TwoTierCache(10, 60000);
+        client.put(KEY, 0, createValue("v1"));
+        cache.get(client, KEY).put("Name", "changed");
+        cache.get(client, KEY).put("Name", "changed");
+        assertEquals("v1", cache.get(client, KEY).get("Name"));
+    }
+
+    private static Map<String, Object> createValue(String name) {
+        Map<String, Object> value = new HashMap<String, Object>();
+        value.put("Name", name);
+        return value;
+    }
+
+    /**
+     * 取得回数を記録するテスト用のキャッシュクライアント.
+     */
+    static class CountingCacheClient extends MockMemcachedClient {
+        private int getCount = 0;
+
+        @Override
+        public <T> T get(String key, Class<T> clazz) {
+            getCount++;
+            return super.get(key, clazz);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.odata4j.edm.EdmDataServices;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.odata.PropertyAlias;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * UserDataSchemaLocalCacheユニットテストクラス.
+ */
+@Category({Unit.class })
+public class UserDataSchemaLocalCacheTest {
+
+    private static final String NODE_ID = "UserDataSchemaLocalCacheTestNode";
+
+    /**
+     * テスト後処理.
+     */
+    @After
+    public void after() {
+        UserDataSchemaLocalCache.clear(NODE_ID);
+    }
+
+    /**
+     * 同一バージョンの場合にキャッシュしたスキーマが取得できること.
+     */
+    @Test
+    public void 同一バージョンの場合にキャッシュしたスキーマが取得できること() {
+        EdmDataServices metadata = EdmDataServices.newBuilder().build();
+        UserDataSchemaLocalCache.cache(NODE_ID, createEntry("v1", metadata));
+
+        UserDataSchemaLocalCache.Entry entry = UserDataSchemaLocalCache.get(NODE_ID, "v1");
+        assertNotNull(entry);
+        assertSame(metadata, entry.getMetadata());
+        assertEquals("id1", entry.getEntityTypeIds().get("Type1"));
+    }
+
+    /**
+     * バージョンが異なる場合にnullが返却されること.
+     */
+    @Test
+    public void バージョンが異なる場合にnullが返却されること() {
+        UserDataSchemaLocalCache.cache(NODE_ID, createEntry("v1", EdmDataServices.newBuilder().build()));
+        assertNull(UserDataSchemaLocalCache.get(NODE_ID, "v2"));
+        assertNull(UserDataSchemaLocalCache.get(NODE_ID, null));
+    }
+
+    /**
+     * クリアした場合にnullが返却されること.
+     */
+    @Test
+    public void クリアした場合にnullが返却されること() {
+        UserDataSchemaLocalCache.cache(NODE_ID, createEntry("v1", EdmDataServices.newBuilder().build()));
+        UserDataSchemaLocalCache.clear(NODE_ID);
+        assertNull(UserDataSchemaLocalCache.get(NODE_ID, "v1"));
+    }
+
+    /**
+     * スキーマキャッシュが無効の場合にキャッシュされないこと.
+     */
+    @Test
+    public void スキーマキャッシュが無効の場合にキャッシュされないこと() {
+        boolean enabled = DcCoreConfig.isSchemaCacheEnabled();
+        DcCoreConfig.set(DcCoreConfig.Cache.SCHEMA_CACHE_ENABLED, "false");
+        try {
+            UserDataSchemaLocalCache.cache(NODE_ID, createEntry("v1", EdmDataServices.newBuilder().build()));
+        } finally {
+            DcCoreConfig.set(DcCoreConfig.Cache.SCHEMA_CACHE_ENABLED, String.valueOf(enabled));
+        }
+        assertNull(UserDataSchemaLocalCache.get(NODE_ID, "v1"));
+    }
+
+    /**
+     * 取得したMapを変更してもキャッシュ内容に影響しないこと.
+     */
+    @Test
+    public void 取得したMapを変更してもキャッシュ内容に影響しないこと() {
+        UserDataSchemaLocalCache.cache(NODE_ID, createEntry("v1", EdmDataServices.newBuilder().build()));
+        UserDataSchemaLocalCache.get(NODE_ID, "v1").getEntityTypeIds().put("Type2", "id2");
+        UserDataSchemaLocalCache.get(NODE_ID, "v1").getPropertyAliasMap().clear();
+
+        UserDataSchemaLocalCache.Entry entry = UserDataSchemaLocalCache.get(NODE_ID, "v1");
+        assertNull(entry.getEntityTypeIds().get("Type2"));
+        assertEquals(1, entry.getPropertyAliasMap().size());
+    }
+
+    private UserDataSchemaLocalCache.Entry createEntry(String version, EdmDataServices metadata) {
+        Map<String, String> entityTypeIds = new HashMap<String, String>();
+        entityTypeIds.put("Type1", "id1");
+        Map<String, PropertyAlias> aliasMap = new HashMap<String, PropertyAlias>();
+        aliasMap.put("Name='p1',_EntityType.Name='Type1'",
+                new PropertyAlias("EntityType", "p1", "Edm.String", "P001"));
+        Map<String, String> entityTypeMap = new HashMap<String, String>();
+        entityTypeMap.put("_EntityType.Nameid1", "Type1");
+        return new UserDataSchemaLocalCache.Entry(version, metadata, entityTypeIds, aliasMap, entityTypeMap);
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * DavChildIndexユニットテストクラス.
+ */
+@Category({Unit.class })
+public class DavChildIndexTest {
+
+    private static final long HOUR = 3600000L;
+
+    private File dir;
+    private File index;
+
+    /**
+     * テスト用のコレクションを作成する.
+     * @throws IOException 作成失敗
+     */
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("davcol").toFile();
+        index = new File(dir, DavChildIndex.INDEX_FILE_NAME);
+        assertTrue(new File(dir, "b").mkdir());
+        assertTrue(new File(dir, "a").mkdir());
+        FileUtils.writeStringToFile(new File(dir, ".pmeta"), "{}");
+        // 更新日時の粒度の期間を経過したコレクションとする
+        setDirTime(System.currentTimeMillis() - HOUR);
+    }
+
+    /**
+     * テスト用のコレクションを削除する.
+     * @throws IOException 削除失敗
+     */
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * 子要素のディレクトリ名のみが返却されインデックスファイルが作成されること.
+     */
+    @Test
+    public void 子要素のディレクトリ名のみが返却されインデックスファイルが作成されること() {
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b]", names.toString());
+        assertTrue(index.exists());
+        // 作成直後のインデックスファイルはスタンプされていない
+        assertEquals(0L, index.lastModified());
+    }
+
+    /**
+     * 粒度の期間の経過後に参照するとインデックスファイルがスタンプされること.
+     * @throws IOException 更新日時の設定失敗
+     */
+    @Test
+    public void 粒度の期間の経過後に参照するとインデックスファイルがスタンプされること() throws IOException {
+        createStampedIndex();
+        assertEquals(dir.lastModified(), index.lastModified());
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b]", names.toString());
+    }
+
+    /**
+     * インデックスファイルが有効な場合はその内容が返却されること.
+     * @throws IOException 書き込み失敗
+     */
+    @Test
+    public void インデックスファイルが有効な場合はその内容が返却されること() throws IOException {
+        createStampedIndex();
+        FileTime time = Files.getLastModifiedTime(index.toPath());
+        FileUtils.writeStringToFile(index, "[\"x\"]");
+        Files.setLastModifiedTime(index.toPath(), time);
+        assertEquals("[x]", DavChildIndex.getChildNames(dir).toString());
+    }
+
+    /**
+     * 子要素が追加された場合はインデックスファイルが作り直されること.
+     */
+    @Test
+    public void 子要素が追加された場合はインデックスファイルが作り直されること() {
+        DavChildIndex.getChildNames(dir);
+        assertTrue(new File(dir, "c").mkdir());
+        DavChildIndex.invalidate(dir);
+        assertFalse(index.exists());
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b, c]", names.toString());
+    }
+
+    /**
+     * 直近に更新されたコレクションはインデックスファイルを作成せず走査結果が返却されること.
+     * @throws IOException 更新日時の設定失敗
+     */
+    @Test
+    public void 直近に更新されたコレクションはインデックスファイルを作成せず走査結果が返却されること() throws IOException {
+        setDirTime(System.currentTimeMillis());
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b]", names.toString());
+        assertFalse(index.exists());
+    }
+
+    /**
+     * 更新日時が変わらない子要素の追加も返却されること.
+     * 更新日時の粒度が粗いストレージで、同じ粒度内に子要素が追加された場合を模擬する.
+     * @throws IOException 更新日時の設定失敗
+     */
+    @Test
+    public void 更新日時が変わらない子要素の追加も返却されること() throws IOException {
+        long coarseNow = System.currentTimeMillis() / 1000 * 1000;
+        setDirTime(coarseNow);
+        DavChildIndex.getChildNames(dir);
+
+        assertTrue(new File(dir, "c").mkdir());
+        setDirTime(coarseNow);
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b, c]", names.toString());
+    }
+
+    /**
+     * インデックスファイルの書き込みと同じ更新日時の粒度内に追加された子要素も返却されること.
+     * @throws IOException 更新日時の設定失敗
+     */
+    @Test
+    public void インデックスファイルの書き込みと同じ粒度内に追加された子要素も返却されること() throws IOException {
+        DavChildIndex.getChildNames(dir);
+        FileTime written = Files.getLastModifiedTime(dir.toPath());
+        assertTrue(new File(dir, "c").mkdir());
+        Files.setLastModifiedTime(dir.toPath(), written);
+
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b, c]", names.toString());
+    }
+
+    /**
+     * 直近に更新されたコレクションではスタンプが一致してもインデックスファイルを使用しないこと.
+     * @throws IOException 更新日時の設定失敗
+     */
+    @Test
+    public void 直近に更新されたコレクションではスタンプが一致してもインデックスファイルを使用しないこと() throws IOException {
+        createStampedIndex();
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis() / 1000 * 1000);
+        Files.setLastModifiedTime(index.toPath(), now);
+        assertTrue(new File(dir, "c").mkdir());
+        Files.setLastModifiedTime(dir.toPath(), now);
+
+        List<String> names = DavChildIndex.getChildNames(dir);
+        Collections.sort(names);
+        assertEquals("[a, b, c]", names.toString());
+    }
+
+    /**
+     * インデックスファイルを作成し、粒度の期間の経過後の参照でスタンプする.
+     * @throws IOException 更新日時の設定失敗
+     */
+    private void createStampedIndex() throws IOException {
+        DavChildIndex.getChildNames(dir);
+        setDirTime(System.currentTimeMillis() - HOUR);
+        DavChildIndex.getChildNames(dir);
+    }
+
+    private void setDirTime(long millis) throws IOException {
+        Files.setLastModifiedTime(dir.toPath(), FileTime.fromMillis(millis));
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * DavMetadataFileユニットテストクラス.
+ */
+@Category({Unit.class })
+public class DavMetadataFileTest {
+
+    private File dir;
+    private File file;
+
+    /**
+     * テスト用のディレクトリを作成する.
+     * @throws IOException 作成失敗
+     */
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("davmeta").toFile();
+        file = new File(dir, ".pmeta");
+        FileUtils.writeStringToFile(file, "{\"v\":0}", Charsets.UTF_8);
+    }
+
+    /**
+     * テスト用のディレクトリを削除する.
+     * @throws IOException 削除失敗
+     */
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * 保存した内容が読み込めて一時ファイルが残らないこと.
+     */
+    @Test
+    public void 保存した内容が読み込めて一時ファイルが残らないこと() {
+        DavMetadataFile meta = DavMetadataFile.newInstance(file);
+        meta.load();
+        meta.setNodeId("node1");
+        meta.setProperties(new JSONObject());
+        meta.save();
+        meta.save();
+
+        DavMetadataFile loaded = DavMetadataFile.newInstance(file);
+        loaded.load();
+        assertEquals("node1", loaded.getNodeId());
+        assertEquals(Long.valueOf(2L), loaded.getVersion());
+        assertEquals(1, dir.list().length);
+    }
+
+    /**
+     * キャッシュから読み込んだ内容を変更しても次の読み込みに影響しないこと.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void キャッシュから読み込んだ内容を変更しても次の読み込みに影響しないこと() {
+        DavMetadataFile meta = DavMetadataFile.newInstance(file);
+        meta.load();
+        meta.setProperties(new JSONObject());
+        meta.save();
+
+        DavMetadataFile first = DavMetadataFile.newInstance(file);
+        first.load();
+        first.getProperties().put("key", "value");
+        first.setNodeId("changed");
+
+        DavMetadataFile second = DavMetadataFile.newInstance(file);
+        second.load();
+        assertNull(second.getProperties().get("key"));
+        assertNull(second.getNodeId());
+    }
+
+    /**
+     * ファイルが外部から置き換えられた場合は読み直されること.
+     * @throws IOException 書き込み失敗
+     */
+    @Test
+    public void ファイルが外部から置き換えられた場合は読み直されること() throws IOException {
+        DavMetadataFile meta = DavMetadataFile.newInstance(file);
+        meta.load();
+        meta.setNodeId("node1");
+        meta.save();
+        DavMetadataFile.newInstance(file).load();
+
+        File other = new File(dir, "other");
+        FileUtils.writeStringToFile(other, "{\"i\":\"node2\",\"v\":1}", Charsets.UTF_8);
+        Files.move(other.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        DavMetadataFile loaded = DavMetadataFile.newInstance(file);
+        loaded.load();
+        assertEquals("node2", loaded.getNodeId());
+    }
+}
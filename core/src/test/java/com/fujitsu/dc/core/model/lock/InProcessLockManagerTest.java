@@ -0,0 +1,177 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * InProcessLockManagerユニットテストクラス.
+ */
+@Category({Unit.class })
+public class InProcessLockManagerTest {
+
+    private LockManager originalLm;
+    private long originalInterval;
+    private int originalTimes;
+    private int originalLease;
+
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        originalLm = LockManager.singleton;
+        originalInterval = LockManager.getLockRetryInterval();
+        originalTimes = LockManager.getLockRetryTimes();
+        originalLease = LockManager.lockLeaseTime;
+        LockManager.singleton = new InProcessLockManager();
+        LockManager.setLockRetryInterval(10);
+        LockManager.setLockRetryTimes(10);
+    }
+
+    /**
+     * 後処理.
+     */
+    @After
+    public void after() {
+        LockManager.deleteAllLocks();
+        LockManager.singleton = originalLm;
+        LockManager.setLockRetryInterval(originalInterval);
+        LockManager.setLockRetryTimes(originalTimes);
+        LockManager.lockLeaseTime = originalLease;
+    }
+
+    /**
+     * ロック取得毎に大きな保持者トークンが払い出されること.
+     */
+    @Test
+    public void ロック取得毎に大きな保持者トークンが払い出されること() {
+        Lock lock1 = LockManager.getLock(Lock.CATEGORY_ODATA, "cell", null, "node");
+        lock1.release();
+        Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, "cell", null, "node");
+        lock2.release();
+        assertTrue(lock2.getOwnerToken() > lock1.getOwnerToken());
+    }
+
+    /**
+     * 保持中のロックは待機時間経過後にエラーとなり統計情報に記録されること.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void 保持中のロックは待機時間経過後にエラーとなり統計情報に記録されること() {
+        Map<String, Object> before = (Map<String, Object>) LockStatistics.getStatistics().get(Lock.CATEGORY_DAV);
+        long timeoutBefore = before == null ? 0 : (Long) before.get("timeout");
+
+        Lock lock = LockManager.getLock(Lock.CATEGORY_DAV, null, "box", null);
+        try {
+            LockManager.getLock(Lock.CATEGORY_DAV, null, "box", null);
+            fail("DcCoreException was not thrown.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+        } finally {
+            lock.release();
+        }
+
+        Map<String, Object> after = (Map<String, Object>) LockStatistics.getStatistics().get(Lock.CATEGORY_DAV);
+        assertEquals(timeoutBefore + 1, after.get("timeout"));
+        assertTrue((Long) after.get("contended") >= 1);
+        assertTrue((Long) after.get("maxWaitTimeMillis") >= 100);
+    }
+
+    /**
+     * 保持期間を過ぎたロックは取得でき元の保持者の解放で削除されないこと.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 保持期間を過ぎたロックは取得でき元の保持者の解放で削除されないこと() throws Exception {
+        LockManager.lockLeaseTime = 1;
+        LockManager.setLockRetryInterval(100);
+        LockManager.setLockRetryTimes(20);
+        Lock expired = LockManager.getLock(Lock.CATEGORY_CELL, "cell", null, null);
+        Lock lock = LockManager.getLock(Lock.CATEGORY_CELL, "cell", null, null);
+        assertNotNull(lock);
+
+        expired.release();
+        assertNotNull(LockManager.singleton.doGetLock(lock.fullKey));
+        lock.release();
+        assertNull(LockManager.singleton.doGetLock(lock.fullKey));
+    }
+
+    /**
+     * 保持者トークンが一致しない場合はロックが解放されないこと.
+     */
+    @Test
+    public void 保持者トークンが一致しない場合はロックが解放されないこと() {
+        Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, "cell", "box", "node");
+        try {
+            assertFalse(LockManager.singleton.doReleaseLock(lock.fullKey, lock.getOwnerToken() - 1));
+            assertNotNull(LockManager.singleton.doGetLock(lock.fullKey));
+            assertTrue(LockManager.singleton.doReleaseLock(lock.fullKey, lock.getOwnerToken()));
+            assertNull(LockManager.singleton.doGetLock(lock.fullKey));
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * 全ロック削除後も保持者トークンが単調増加すること.
+     */
+    @Test
+    public void 全ロック削除後も保持者トークンが単調増加すること() {
+        Lock lock1 = LockManager.getLock(Lock.CATEGORY_ODATA, "cell", null, "node");
+        LockManager.deleteAllLocks();
+        Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, "cell", null, "node");
+        lock2.release();
+        assertTrue(lock2.getOwnerToken() > lock1.getOwnerToken());
+    }
+
+    /**
+     * 保持者トークンの払い出しに失敗した場合はロック状態取得エラーとなること.
+     */
+    @Test
+    public void 保持者トークンの払い出しに失敗した場合はロック状態取得エラーとなること() {
+        LockManager.singleton = new InProcessLockManager() {
+            @Override
+            long doIssueOwnerToken() {
+                throw new MemcachedClientException(new IllegalStateException("incr failed"));
+            }
+        };
+        try {
+            LockManager.getLock(Lock.CATEGORY_ODATA, "cell", null, "node");
+            fail("DcCoreException was not thrown.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode(), e.getCode());
+        }
+        assertEquals(0, LockManager.getWaitingCount());
+    }
+}
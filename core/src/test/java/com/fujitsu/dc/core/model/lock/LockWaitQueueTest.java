@@ -0,0 +1,125 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * LockWaitQueueユニットテストクラス.
+ */
+@Category({Unit.class })
+public class LockWaitQueueTest {
+
+    private static final String KEY = "odata-testKey";
+
+    /**
+     * 保持中のキーは待機せずに取得できないこと.
+     */
+    @Test
+    public void 保持中のキーは待機せずに取得できないこと() {
+        LockWaitQueue queue = new LockWaitQueue();
+        Object ticket = queue.tryAcquire(KEY, 0);
+        assertNotNull(ticket);
+        assertNull(queue.tryAcquire(KEY, 0));
+        assertNotNull(queue.tryAcquire(KEY + "2", 0));
+
+        queue.release(KEY, ticket);
+        assertNotNull(queue.tryAcquire(KEY, 0));
+    }
+
+    /**
+     * 待機時間を過ぎた場合はnullが返却されること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 待機時間を過ぎた場合はnullが返却されること() throws Exception {
+        LockWaitQueue queue = new LockWaitQueue();
+        queue.tryAcquire(KEY, 0);
+        long start = System.currentTimeMillis();
+        assertNull(queue.acquire(KEY, 100, 0));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(0, queue.getWaitingCount());
+    }
+
+    /**
+     * 待機中のスレッドが到着順に取得できること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 待機中のスレッドが到着順に取得できること() throws Exception {
+        final LockWaitQueue queue = new LockWaitQueue();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        Object ticket = queue.tryAcquire(KEY, 0);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            final int no = i;
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        Object own = queue.acquire(KEY, 10000, 0);
+                        order.add(no);
+                        queue.release(KEY, own);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+            // 到着順を確定させるため待機状態となるまで待つ
+            while (queue.getWaitingCount() < i + 1) {
+                Thread.sleep(1);
+            }
+        }
+        queue.release(KEY, ticket);
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+    }
+
+    /**
+     * 保持期間を過ぎたロックは取得でき元の保持者による解放は無視されること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void 保持期間を過ぎたロックは取得でき元の保持者による解放は無視されること() throws Exception {
+        LockWaitQueue queue = new LockWaitQueue();
+        Object expired = queue.tryAcquire(KEY, 50);
+        Object ticket = queue.acquire(KEY, 1000, 50);
+        assertNotNull(ticket);
+
+        queue.release(KEY, expired);
+        assertNull(queue.tryAcquire(KEY, 0));
+        queue.release(KEY, ticket);
+        assertNotNull(queue.tryAcquire(KEY, 0));
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * BatchBodyParserユニットテストクラス.
+ */
+@Category({Unit.class })
+public class BatchBodyParserTest {
+
+    private static final String URI = "http://localhost/cell/box/col/$batch";
+
+    private static String retrievePart(String path) {
+        return "--batch\n"
+                + "Content-Type: application/http\n"
+                + "Content-Transfer-Encoding:binary\n\n"
+                + "GET " + path + "\n"
+                + "Host: host\n\n";
+    }
+
+    private static String changeset(String... bodies) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--batch\n");
+        sb.append("Content-Type: multipart/mixed; boundary=changeset\n\n");
+        for (String body : bodies) {
+            sb.append("--changeset\n");
+            sb.append("Content-Type: application/http\n");
+            sb.append("Content-Transfer-Encoding: binary\n\n");
+            sb.append("POST Sales\n");
+            sb.append("Content-Type: application/json\n\n");
+            sb.append(body + "\n\n");
+        }
+        sb.append("--changeset--\n\n");
+        return sb.toString();
+    }
+
+    /**
+     * 一件取得とchangesetを含むボディがパースできること.
+     */
+    @Test
+    public void 一件取得とchangesetを含むボディがパースできること() {
+        String body = retrievePart("Sales('1')")
+                + changeset("{\"__id\":\"2\"}", "{\"__id\":\"3\"}")
+                + "--batch--\r\n";
+        List<BatchBodyPart> parts = new BatchBodyParser().parse("batch", new StringReader(body), URI);
+
+        assertEquals(3, parts.size());
+        assertEquals("GET", parts.get(0).getHttpMethod());
+        assertEquals("http://localhost/cell/box/col/Sales('1')", parts.get(0).getUri());
+        assertEquals("POST", parts.get(1).getHttpMethod());
+        assertEquals("{\"__id\":\"2\"}\n", parts.get(1).getEntity());
+        assertTrue(parts.get(1).isChangesetStart());
+        assertFalse(parts.get(1).isChangesetEnd());
+        assertEquals("{\"__id\":\"3\"}\n", parts.get(2).getEntity());
+        assertTrue(parts.get(2).isChangesetEnd());
+        assertEquals("changeset", parts.get(2).getChangesetStr());
+    }
+
+    /**
+     * Iteratorの参照毎にバウンダリ1つ分ずつ読み進めること.
+     */
+    @Test
+    public void Iteratorの参照毎にバウンダリ1つ分ずつ読み進めること() {
+        String first = retrievePart("Sales('1')");
+        String body = first + retrievePart("Sales('2')") + "--batch--\n";
+        final int[] read = new int[1];
+        Reader reader = new StringReader(body) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                // 1文字ずつ返し、読み込んだ位置を記録する
+                int n = super.read(cbuf, off, 1);
+                if (n > 0) {
+                    read[0] += n;
+                }
+                return n;
+            }
+        };
+        Iterator<BatchBodyPart> parts = new BatchBodyParser().iterate("batch", reader, URI);
+        assertTrue(parts.hasNext());
+        assertEquals("http://localhost/cell/box/col/Sales('1')", parts.next().getUri());
+        // 2件目のバウンダリ以降はまだ読み込まれていない
+        assertTrue(read[0] < body.length() - "--batch--\n".length());
+        assertTrue(parts.hasNext());
+        assertEquals("http://localhost/cell/box/col/Sales('2')", parts.next().getUri());
+        assertFalse(parts.hasNext());
+    }
+
+    /**
+     * 途中のバウンダリの形式が不正な場合は先行するリクエストを返却してからエラーとなること.
+     */
+    @Test
+    public void 途中のバウンダリの形式が不正な場合は先行するリクエストを返却してからエラーとなること() {
+        String body = retrievePart("Sales('1')")
+                + "--batch\nContent-Type: text/plain\n\nGET Sales('2')\n\n"
+                + "--batch--\n";
+        Iterator<BatchBodyPart> parts = new BatchBodyParser().iterate("batch", new StringReader(body), URI);
+        assertEquals("GET", parts.next().getHttpMethod());
+        try {
+            parts.hasNext();
+            fail("no exception");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.BATCH_BODY_FORMAT_HEADER_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 終端のバウンダリがない場合にパースエラーとなること.
+     */
+    @Test
+    public void 終端のバウンダリがない場合にパースエラーとなること() {
+        String body = retrievePart("Sales('1')");
+        try {
+            new BatchBodyParser().parse("batch", new StringReader(body), URI);
+            fail("no exception");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.BATCH_BODY_PARSE_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 終端のバウンダリの後に文字列がある場合にパースエラーとなること.
+     */
+    @Test
+    public void 終端のバウンダリの後に文字列がある場合にパースエラーとなること() {
+        String body = retrievePart("Sales('1')") + "--batch--\ntrailer\n";
+        try {
+            new BatchBodyParser().parse("batch", new StringReader(body), URI);
+            fail("no exception");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.BATCH_BODY_PARSE_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * リクエスト数が上限を超えた時点で残りのボディを読まずにエラーとなること.
+     */
+    @Test
+    public void リクエスト数が上限を超えた時点で残りのボディを読まずにエラーとなること() {
+        String key = "io.personium.core.odata.batch.bulkRequestMaxSize";
+        String original = DcCoreConfig.get(key);
+        DcCoreConfig.set(key, "2");
+        try {
+            final String part = retrievePart("Sales('1')");
+            final int[] generated = new int[1];
+            // 終端のない巨大なボディを模したReader
+            Reader reader = new Reader() {
+                private StringReader current = new StringReader("");
+
+                @Override
+                public int read(char[] cbuf, int off, int len) throws IOException {
+                    int n = current.read(cbuf, off, len);
+                    if (n < 0) {
+                        generated[0]++;
+                        current = new StringReader(part);
+                        n = current.read(cbuf, off, len);
+                    }
+                    return n;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            try {
+                new BatchBodyParser().parse("batch", reader, URI);
+                fail("no exception");
+            } catch (DcCoreException e) {
+                assertEquals(DcCoreException.OData.TOO_MANY_REQUESTS.getCode(), e.getCode());
+            }
+            assertTrue(generated[0] < 1000);
+        } finally {
+            DcCoreConfig.set(key, original);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * BatchBodySpoolユニットテストクラス.
+ */
+@Category({Unit.class })
+public class BatchBodySpoolTest {
+
+    private static final String BODY = "--batch\nContent-Type: application/http\n\nGET Sales('１')\n\n--batch--\n";
+
+    /**
+     * 読み込んだリクエストボディを再度読み込めること.
+     * @throws IOException 読み込みに失敗した場合
+     */
+    @Test
+    public void 読み込んだリクエストボディを再度読み込めること() throws IOException {
+        BatchBodySpool spool = new BatchBodySpool(1024 * 1024);
+        try {
+            assertEquals(BODY, IOUtils.toString(spool.record(new StringReader(BODY))));
+            assertEquals(BODY, IOUtils.toString(spool.openReader()));
+            assertEquals(BODY, IOUtils.toString(spool.openReader()));
+        } finally {
+            spool.close();
+        }
+    }
+
+    /**
+     * 上限サイズを超えた場合は一時ファイルに保持しクローズ時に削除すること.
+     * @throws IOException 読み込みに失敗した場合
+     */
+    @Test
+    public void 上限サイズを超えた場合は一時ファイルに保持しクローズ時に削除すること() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append(BODY);
+        }
+        String body = sb.toString();
+        BatchBodySpool spool = new BatchBodySpool(16);
+        Reader reader = spool.record(new StringReader(body));
+        char[] buf = new char[7];
+        while (reader.read(buf) >= 0) {
+            continue;
+        }
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+        assertEquals(body, IOUtils.toString(spool.openReader()));
+        int before = countSpoolFiles(tmpDir);
+        assertTrue(before > 0);
+        spool.close();
+        assertEquals(before - 1, countSpoolFiles(tmpDir));
+    }
+
+    private static int countSpoolFiles(File dir) {
+        String[] names = dir.list();
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith("dcBatch") && name.endsWith(".tmp")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
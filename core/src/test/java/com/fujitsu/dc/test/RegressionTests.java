@@ -33,6 +33,7 @@ import com.fujitsu.dc.test.categories.Regression;
         com.fujitsu.dc.core.AllTests.class,
         com.fujitsu.dc.core.model.file.AllTests.class,
         com.fujitsu.dc.core.model.impl.es.AllTests.class,
+        com.fujitsu.dc.core.model.impl.fs.AllTests.class,
         com.fujitsu.dc.core.model.impl.es.accessor.AllTests.class,
         com.fujitsu.dc.core.model.impl.es.ads.AllTests.class,
         com.fujitsu.dc.core.model.lock.AllTests.class,
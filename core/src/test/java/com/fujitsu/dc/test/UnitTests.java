@@ -31,8 +31,11 @@ import com.fujitsu.dc.test.categories.Integration;
 @RunWith(Categories.class)
 @SuiteClasses({
         com.fujitsu.dc.core.AllTests.class,
+        com.fujitsu.dc.core.auth.AllTests.class,
+        com.fujitsu.dc.core.engine.AllTests.class,
         com.fujitsu.dc.core.model.file.AllTests.class,
         com.fujitsu.dc.core.model.impl.es.AllTests.class,
+        com.fujitsu.dc.core.model.impl.fs.AllTests.class,
         com.fujitsu.dc.core.model.impl.es.accessor.AllTests.class,
         com.fujitsu.dc.core.model.impl.es.ads.AllTests.class,
         com.fujitsu.dc.core.model.lock.AllTests.class,
@@ -63,6 +66,7 @@ import com.fujitsu.dc.test.categories.Integration;
         com.fujitsu.dc.test.unit.core.model.impl.es.AllTests.class,
         com.fujitsu.dc.test.unit.core.model.impl.es.doc.AllTests.class,
         com.fujitsu.dc.test.unit.core.model.impl.es.odata.AllTests.class,
+        com.fujitsu.dc.test.unit.core.rs.cell.AllTests.class,
         com.fujitsu.dc.test.unit.core.rs.odata.AllTests.class,
         com.fujitsu.dc.test.unit.core.rs.odata.validate.AllTests.class
 })
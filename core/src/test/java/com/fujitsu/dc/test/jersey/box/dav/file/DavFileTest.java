@@ -518,11 +518,10 @@ public class DavFileTest extends JerseyTest {
     }
 
     /**
-     * Rangeヘッダで複数範囲指定すると501レスポンスが返却されること.
-     * MultiPartレスポンスを制限事項とするため501を返却する.
+     * Rangeヘッダで複数範囲指定するとmultipart/byterangesで206レスポンスが返却されること.
      */
     @Test
-    public final void Rangeヘッダで複数範囲指定すると501レスポンスが返却されること() {
+    public final void Rangeヘッダで複数範囲指定するとmultipart_byterangesで206レスポンスが返却されること() {
         try {
             String body = "abcdefghijklmn";
 
@@ -531,11 +530,21 @@ public class DavFileTest extends JerseyTest {
             theReq.returns().statusCode(HttpStatus.SC_CREATED);
 
             // ファイル取得
-            String rangeHeader = "bytes=1-2,3-4";
+            String rangeHeader = "bytes=1-2,5-7";
             TResponse getResp = this.getFileRequestAtRange(FILE_NAME, TEST_BOX1, rangeHeader)
                     .returns();
 
-            getResp.statusCode(HttpStatus.SC_NOT_IMPLEMENTED);
+            getResp.statusCode(HttpStatus.SC_PARTIAL_CONTENT);
+            String contentType = getResp.getHeader(HttpHeaders.CONTENT_TYPE);
+            assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+            String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            String responseBody = getResp.getBody();
+            assertTrue(responseBody.contains("--" + boundary));
+            assertTrue(responseBody.contains("Content-Range: bytes 1-2/" + body.length()));
+            assertTrue(responseBody.contains("Content-Range: bytes 5-7/" + body.length()));
+            assertTrue(responseBody.contains("bc"));
+            assertTrue(responseBody.contains("fgh"));
+            assertTrue(responseBody.contains("--" + boundary + "--"));
         } finally {
             this.deleteFileRequest(FILE_NAME, null, Setup.TEST_BOX1).returns()
                     .statusCode(HttpStatus.SC_NO_CONTENT);
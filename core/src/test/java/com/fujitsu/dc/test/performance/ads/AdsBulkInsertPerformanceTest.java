@@ -0,0 +1,130 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.performance.ads;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.es.util.DcUUID;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
+import com.fujitsu.dc.test.categories.Performance;
+
+/**
+ * ADSへの一括登録について、1つのINSERT文にまとめる行数とトランザクションサイズごとのスループットを比較する.
+ * 設定されたADS(MySQL)に接続できない場合はスキップする。
+ */
+@Category({Performance.class })
+public class AdsBulkInsertPerformanceTest {
+
+    // 本テストで作成・削除するRDBのSchema(Database)名
+    private static final String TEST_INDEX = "test_index_bulkperformance";
+    private static final int WARMUP_ROWS = 2000;
+    private static final int ROWS = 20000;
+    private static final int BULK_SIZE = 1000;
+
+    private static JdbcAds ads;
+    private static String rowsPerStatement;
+    private static String transactionSize;
+
+    /**
+     * ADSに接続し、測定用のSchemaを作成する.
+     */
+    @BeforeClass
+    public static void beforeClass() {
+        try {
+            ads = new JdbcAds();
+            ads.checkConnection();
+            ads.createIndex(TEST_INDEX);
+        } catch (AdsException e) {
+            Assume.assumeNoException(e);
+        }
+        rowsPerStatement = DcCoreConfig.get(DcCoreConfig.ES.ADS.BULK_ROWS_PER_STATEMENT);
+        transactionSize = DcCoreConfig.get(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE);
+    }
+
+    /**
+     * 測定用のSchemaを削除する.
+     * @throws AdsException 削除失敗
+     */
+    @AfterClass
+    public static void afterClass() throws AdsException {
+        if (null == rowsPerStatement) {
+            return;
+        }
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_ROWS_PER_STATEMENT, rowsPerStatement);
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, transactionSize);
+        ads.deleteIndex(TEST_INDEX);
+    }
+
+    /**
+     * INSERT文の行数とトランザクションサイズごとの一括登録のスループットを比較する.
+     * @throws AdsException 登録失敗
+     */
+    @Test
+    public void INSERT文の行数とトランザクションサイズごとの一括登録のスループットを比較する() throws AdsException {
+        run(BULK_SIZE, 0, WARMUP_ROWS);
+        // 変更前と同様に一括登録全体を1つのINSERT文とする場合
+        run(BULK_SIZE, 0, ROWS);
+        run(1, 0, ROWS);
+        run(10, 0, ROWS);
+        run(100, 0, ROWS);
+        run(100, 100, ROWS);
+        run(500, 0, ROWS);
+        System.out.println("adsPool=" + JdbcAds.getStatistics());
+    }
+
+    private void run(int statementRows, int txSize, int count) throws AdsException {
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_ROWS_PER_STATEMENT, String.valueOf(statementRows));
+        DcCoreConfig.set(DcCoreConfig.ES.ADS.BULK_TRANSACTION_SIZE, String.valueOf(txSize));
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i += BULK_SIZE) {
+            ads.bulkEntity(TEST_INDEX, createRows(Math.min(BULK_SIZE, count - i)));
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        System.out.println(String.format("[rowsPerStatement=%d, transactionSize=%d] %d rows in %d ms (%.1f rows/s)",
+                statementRows, txSize, count, elapsed, count * 1000.0 / Math.max(1, elapsed)));
+    }
+
+    private List<EntitySetDocHandler> createRows(int count) {
+        List<EntitySetDocHandler> rows = new ArrayList<EntitySetDocHandler>(count);
+        long now = new Date().getTime();
+        for (int i = 0; i < count; i++) {
+            OEntityDocHandler oedh = new OEntityDocHandler();
+            oedh.setId(DcUUID.randomUUID());
+            oedh.setType("UserData");
+            oedh.setCellId("cellId");
+            oedh.setBoxId("boxId");
+            oedh.setNodeId("nodeId");
+            oedh.setEntityTypeId("entityTypeId");
+            oedh.setPublished(now);
+            oedh.setUpdated(now);
+            rows.add(oedh);
+        }
+        return rows;
+    }
+}
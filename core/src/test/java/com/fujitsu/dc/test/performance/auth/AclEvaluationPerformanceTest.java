@@ -0,0 +1,271 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.performance.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.auth.AccessContext;
+import com.fujitsu.dc.core.auth.BoxPrivilege;
+import com.fujitsu.dc.core.auth.Privilege;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleListCache;
+import com.fujitsu.dc.core.model.impl.fs.CellCmpFsImpl;
+import com.fujitsu.dc.core.model.jaxb.Ace;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+import com.fujitsu.dc.core.model.jaxb.ObjectIo;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.test.categories.Performance;
+
+/**
+ * ACL判定について、変更前のACE毎の評価とコンパイル済みACLによる評価の処理時間を比較する.
+ * また、Davのメタデータの読み込みからACL判定までについて、ACLのキャッシュの有無による処理時間を比較する.
+ */
+@Category({Performance.class })
+public class AclEvaluationPerformanceTest {
+
+    private static final String CELL_URL = "https://fqdn/aclTest/";
+    private static final String BASE = CELL_URL + "__role/__/";
+    private static final int ACE_COUNT = 200;
+    private static final int ROLE_COUNT = 50;
+    private static final int ITERATION_BEFORE = 200;
+    private static final int ITERATION_AFTER = 200000;
+    private static final String[] PRIVILEGES = {"read", "write", "read-acl", "exec" };
+
+    private static String aclXml;
+    private static List<Role> roles;
+
+    /**
+     * ACLとロールを作成する. アクセス主体のロールはいずれもACEに一致しないため、全ACEの評価が必要となる.
+     */
+    @BeforeClass
+    public static void beforeClass() {
+        StringBuilder sb = new StringBuilder("<D:acl xmlns:D='DAV:' xml:base='").append(BASE).append("'>");
+        for (int i = 0; i < ACE_COUNT; i++) {
+            sb.append("<D:ace><D:principal><D:href>aclRole").append(i).append("</D:href></D:principal><D:grant>");
+            sb.append("<D:privilege><D:").append(PRIVILEGES[i % PRIVILEGES.length]).append("/></D:privilege>");
+            sb.append("</D:grant></D:ace>");
+        }
+        aclXml = sb.append("</D:acl>").toString();
+        roles = new ArrayList<Role>();
+        for (int i = 0; i < ROLE_COUNT; i++) {
+            roles.add(new Role("userRole" + i));
+        }
+    }
+
+    /**
+     * ACL判定の処理時間を比較する.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ACL判定の処理時間を比較する() throws Exception {
+        final Acl acl = ObjectIo.unmarshal(new StringReader(aclXml), Acl.class);
+        final AccessContext ac = AccessContext.create(null, null, null, null, null, CELL_URL, null, null);
+        for (Role role : roles) {
+            ac.getRoleList().add(role);
+        }
+        Task before = new Task() {
+            @Override
+            public boolean run() {
+                return legacyRequirePrivilege(roles, acl, BoxPrivilege.WRITE_CONTENT, CELL_URL);
+            }
+        };
+        Task after = new Task() {
+            @Override
+            public boolean run() {
+                return ac.requirePrivilege(acl, BoxPrivilege.WRITE_CONTENT, CELL_URL);
+            }
+        };
+        assertEquals(before.run(), after.run());
+        measure("before", before, ITERATION_BEFORE);
+        measure("after", after, ITERATION_AFTER);
+    }
+
+    /**
+     * メタデータの読み込みを含めたACL判定の処理時間を、ACLのキャッシュの有無で比較する.
+     * ロールIDの変換に伴うロールの検索回数も出力する.
+     * @throws Exception 例外
+     */
+    @Test
+    public void メタデータの読み込みを含めたACL判定の処理時間を比較する() throws Exception {
+        File root = Files.createTempDirectory("aclperf").toFile();
+        String blobRoot = DcCoreConfig.get(DcCoreConfig.BlobStore.ROOT);
+        String cacheSize = DcCoreConfig.get(DcCoreConfig.Cache.ACL_LOCAL_CACHE_MAX_SIZE);
+        Field mcdField = RoleListCache.class.getDeclaredField("mcdClient");
+        mcdField.setAccessible(true);
+        Object mcdClient = mcdField.get(null);
+        try {
+            DcCoreConfig.set(DcCoreConfig.BlobStore.ROOT, root.getAbsolutePath());
+            mcdField.set(null, new InMemoryCacheClient());
+
+            final AtomicLong lookups = new AtomicLong();
+            Cell cell = mock(Cell.class);
+            when(cell.getId()).thenReturn("aclPerfCellId");
+            when(cell.getDataBundleName()).thenReturn("aclPerf");
+            when(cell.getUrl()).thenReturn(CELL_URL);
+            when(cell.roleIdToRoleResourceUrl(anyString())).thenAnswer(new Answer<String>() {
+                @Override
+                public String answer(InvocationOnMock invocation) {
+                    lookups.incrementAndGet();
+                    return BASE + invocation.getArguments()[0];
+                }
+            });
+            final CellCmpFsImpl cmp = new CellCmpFsImpl(cell);
+            Acl acl = ObjectIo.unmarshal(new StringReader(aclXml), Acl.class);
+            JSONObject aclJson = (JSONObject) new JSONParser().parse(acl.toJSON());
+            aclJson.remove("@base");
+            cmp.getDavMetadataFile().setAcl(aclJson);
+            cmp.getDavMetadataFile().save();
+
+            final AccessContext ac = AccessContext.create(null, null, null, null, null, CELL_URL, null, null);
+            for (Role role : roles) {
+                ac.getRoleList().add(role);
+            }
+            Task task = new Task() {
+                @Override
+                public boolean run() {
+                    cmp.load();
+                    return ac.requirePrivilege(cmp.getAcl(), BoxPrivilege.WRITE_CONTENT, CELL_URL);
+                }
+            };
+            DcCoreConfig.set(DcCoreConfig.Cache.ACL_LOCAL_CACHE_MAX_SIZE, "0");
+            lookups.set(0);
+            measure("load before", task, ITERATION_BEFORE);
+            System.out.println(String.format("load before: %.1f role lookups/load",
+                    (double) lookups.get() / (ITERATION_BEFORE * 2)));
+
+            DcCoreConfig.set(DcCoreConfig.Cache.ACL_LOCAL_CACHE_MAX_SIZE, cacheSize);
+            lookups.set(0);
+            measure("load after", task, ITERATION_AFTER / 10);
+            System.out.println(String.format("load after: %.4f role lookups/load",
+                    (double) lookups.get() / (ITERATION_AFTER / 10 * 2)));
+        } finally {
+            mcdField.set(null, mcdClient);
+            DcCoreConfig.set(DcCoreConfig.Cache.ACL_LOCAL_CACHE_MAX_SIZE, cacheSize);
+            DcCoreConfig.set(DcCoreConfig.BlobStore.ROOT, blobRoot);
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    /**
+     * memcachedの代わりに使用するキャッシュ.
+     */
+    static class InMemoryCacheClient implements CacheClient {
+        private final Map<String, Object> cache = new HashMap<String, Object>();
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public synchronized <T> T get(String key, Class<T> clazz) {
+            return (T) cache.get(key);
+        }
+
+        @Override
+        public synchronized Boolean put(String key, int expiresIn, Object object) {
+            cache.put(key, object);
+            return true;
+        }
+
+        @Override
+        public synchronized void delete(String key) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * 計測対象の処理.
+     */
+    interface Task {
+        /**
+         * @return 判定結果
+         */
+        boolean run();
+    }
+
+    private static void measure(String name, Task task, int iteration) {
+        // ウォームアップ
+        for (int i = 0; i < iteration; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iteration; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%s: aces=%d roles=%d %.2f us/check",
+                name, ACE_COUNT, ROLE_COUNT, elapsed / 1000.0 / iteration));
+    }
+
+    /**
+     * 変更前のAccessContext#requirePrivilegeの判定処理.
+     */
+    private static boolean legacyRequirePrivilege(List<Role> roleList, Acl acl, Privilege resourcePrivilege,
+            String cellUrl) {
+        for (Ace ace : acl.getAceList()) {
+            if (ace.getGrantedPrivilegeList().size() == 0 && ace.getPrincipalHref() == null) {
+                continue;
+            }
+            if (ace.getPrincipalAll() != null) {
+                if (legacyRequireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
+                    return true;
+                }
+                continue;
+            }
+            for (Role role : roleList) {
+                String principalHref = URI.create(acl.getBase()).resolve(ace.getPrincipalHref()).toString();
+                if (role.localCreateUrl(cellUrl).equals(principalHref)
+                        && legacyRequireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean legacyRequireAcePrivilege(List<String> acePrivileges, Privilege resourcePrivilege) {
+        for (String aclPrivilege : acePrivileges) {
+            Privilege priv = Privilege.get(resourcePrivilege.getClass(), aclPrivilege);
+            if (priv != null && priv.includes(resourcePrivilege)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
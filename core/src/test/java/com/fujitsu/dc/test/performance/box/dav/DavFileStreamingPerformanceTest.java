@@ -0,0 +1,176 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.performance.box.dav;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.http.header.RangeHeaderHandler;
+import com.fujitsu.dc.core.model.file.StreamingOutputForDavFile;
+import com.fujitsu.dc.core.model.file.StreamingOutputForDavFileWithRange;
+import com.fujitsu.dc.test.categories.Performance;
+
+/**
+ * Davファイル取得時の出力処理について、変更前のストリームコピーとFileChannelによる転送のスループットとCPU時間を比較する.
+ */
+@Category({Performance.class })
+public class DavFileStreamingPerformanceTest {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int RANGE_SIZE = 8 * 1024 * 1024;
+    private static final int REPEAT = 5;
+    private static final double GB = 1024.0 * 1024 * 1024;
+
+    private static File dir;
+    private static File file;
+
+    /**
+     * テスト用のファイルを作成する.
+     * @throws IOException 作成失敗
+     */
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        dir = java.nio.file.Files.createTempDirectory("davperf").toFile();
+        file = new File(dir, "content");
+        byte[] buf = new byte[1024 * 1024];
+        new Random(0).nextBytes(buf);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            for (int i = 0; i < FILE_SIZE / buf.length; i++) {
+                raf.write(buf);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * テスト用のファイルを削除する.
+     * @throws IOException 削除失敗
+     */
+    @AfterClass
+    public static void afterClass() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * ファイル全体の出力を比較する.
+     * @throws Exception 入出力エラー
+     */
+    @Test
+    public void ファイル全体の出力を比較する() throws Exception {
+        Task before = new Task() {
+            @Override
+            public void run(OutputStream out) throws Exception {
+                // 変更前: BufferedInputStream経由のIOUtils.copy
+                InputStream in = new BufferedInputStream(new FileInputStream(file));
+                try {
+                    IOUtils.copy(in, out);
+                } finally {
+                    in.close();
+                }
+            }
+        };
+        Task after = new Task() {
+            @Override
+            public void run(OutputStream out) throws Exception {
+                new StreamingOutputForDavFile(file.getAbsolutePath()).write(out);
+            }
+        };
+        measure("full/before", before);
+        measure("full/after", after);
+    }
+
+    /**
+     * Range指定の出力を比較する.
+     * @throws Exception 入出力エラー
+     */
+    @Test
+    public void Range指定の出力を比較する() throws Exception {
+        final long first = FILE_SIZE / 2;
+        final long last = first + RANGE_SIZE - 1;
+        Task before = new Task() {
+            @Override
+            public void run(OutputStream out) throws Exception {
+                // 変更前: skipで読み飛ばし1バイトずつ出力
+                InputStream in = new BufferedInputStream(new FileInputStream(file));
+                try {
+                    if (in.skip(first) != first) {
+                        throw new IOException("skip failed");
+                    }
+                    for (long pos = first; pos < last + 1; pos++) {
+                        out.write((char) in.read());
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        };
+        Task after = new Task() {
+            @Override
+            public void run(OutputStream out) throws Exception {
+                RangeHeaderHandler range = RangeHeaderHandler.parse("bytes=" + first + "-" + last, FILE_SIZE);
+                new StreamingOutputForDavFileWithRange(file.getAbsolutePath(), range, null).write(out);
+            }
+        };
+        measure("range/before", before);
+        measure("range/after", after);
+    }
+
+    /**
+     * 計測対象の処理.
+     */
+    interface Task {
+        void run(OutputStream out) throws Exception;
+    }
+
+    private void measure(String label, Task task) throws Exception {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        // ウォームアップ
+        task.run(new NullOutputStream());
+
+        CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        long cpu = mx.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        for (int i = 0; i < REPEAT; i++) {
+            task.run(out);
+        }
+        long elapsed = System.nanoTime() - start;
+        cpu = mx.getCurrentThreadCpuTime() - cpu;
+        long bytes = out.getByteCount();
+        System.out.println(String.format("[%s] %d bytes in %d ms throughput=%.1f MB/s cpu=%.1f ms/GB",
+                label, bytes, elapsed / 1000000L, bytes / 1048576.0 / (elapsed / 1e9),
+                cpu / 1e6 / (bytes / GB)));
+    }
+}
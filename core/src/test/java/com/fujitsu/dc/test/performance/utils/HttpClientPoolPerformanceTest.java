@@ -0,0 +1,127 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.performance.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.utils.HttpClientFactory;
+import com.fujitsu.dc.test.categories.Performance;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * リクエスト毎にコネクションを作成するHttpClientと、共有プールを使用するHttpClientのレイテンシを比較する.
+ */
+@Category({Performance.class })
+public class HttpClientPoolPerformanceTest {
+
+    private static final int WARMUP_COUNT = 200;
+    private static final int REQUEST_COUNT = 2000;
+
+    private static HttpServer server;
+    private static String url;
+
+    /**
+     * 固定の応答を返すHTTPサーバを起動する.
+     * @throws IOException 起動失敗
+     */
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        // JDK内蔵サーバはNagleアルゴリズムが有効なため、Keep-Alive時に遅延ACK待ちが計測値に含まれないよう無効にする
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "{\"d\":{\"results\":[]}}".getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * HTTPサーバを停止する.
+     */
+    @AfterClass
+    public static void afterClass() {
+        server.stop(0);
+    }
+
+    /**
+     * リクエスト毎にコネクションを作成する場合と共有プールを使用する場合のレイテンシを比較する.
+     * @throws IOException 通信失敗
+     */
+    @Test
+    public void リクエスト毎の接続と共有プールのレイテンシを比較する() throws IOException {
+        run("per-call", false, WARMUP_COUNT);
+        run("pooled", true, WARMUP_COUNT);
+        run("per-call", false, REQUEST_COUNT);
+        run("pooled", true, REQUEST_COUNT);
+        System.out.println("httpPool=" + HttpClientFactory.getStatistics());
+    }
+
+    private void run(String label, boolean pooled, int count) throws IOException {
+        long[] latencies = new long[count];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long t = System.nanoTime();
+            HttpClient client = createClient(pooled);
+            EntityUtils.consume(client.execute(new HttpGet(url)).getEntity());
+            if (!pooled) {
+                // 変更前の利用方法と同様に、HttpClient毎のコネクションマネージャは使い捨てとする
+                client.getConnectionManager().shutdown();
+            }
+            latencies[i] = System.nanoTime() - t;
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        Arrays.sort(latencies);
+        System.out.println(String.format("[%s] %d requests in %d ms avg=%.3f ms p50=%.3f ms p99=%.3f ms",
+                label, count, elapsed, (double) elapsed / count,
+                latencies[count / 2] / 1000000.0, latencies[count * 99 / 100] / 1000000.0));
+    }
+
+    private HttpClient createClient(boolean pooled) {
+        if (pooled) {
+            return HttpClientFactory.create(HttpClientFactory.TYPE_INSECURE);
+        }
+        // 変更前のHttpClientFactory.create(TYPE_INSECURE)と同じ構成
+        return new DefaultHttpClient(new SingleClientConnManager(SchemeRegistryFactory.createDefault()),
+                new BasicHttpParams());
+    }
+}
@@ -26,7 +26,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
         AccessContextTest.class,
-        AuthzTest.class
+        AuthzTest.class,
+        CompiledAclTest.class
     })
 public class AllTests {
 }
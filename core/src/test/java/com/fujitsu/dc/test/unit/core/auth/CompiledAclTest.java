@@ -0,0 +1,143 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.auth;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.auth.AccessContext;
+import com.fujitsu.dc.core.auth.BoxPrivilege;
+import com.fujitsu.dc.core.auth.CellPrivilege;
+import com.fujitsu.dc.core.auth.CompiledAcl;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+import com.fujitsu.dc.core.model.jaxb.ObjectIo;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * CompiledAcl ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class CompiledAclTest {
+
+    private static final String CELL_URL = "https://fqdn/aclTest/";
+    private static final String BASE = CELL_URL + "__role/__/";
+
+    private static String ace(String principal, String... privileges) {
+        StringBuilder sb = new StringBuilder("<D:ace><D:principal>").append(principal).append("</D:principal><D:grant>");
+        for (String privilege : privileges) {
+            sb.append("<D:privilege><D:").append(privilege).append("/></D:privilege>");
+        }
+        return sb.append("</D:grant></D:ace>").toString();
+    }
+
+    private static CompiledAcl compile(String... aces) throws Exception {
+        StringBuilder sb = new StringBuilder("<D:acl xmlns:D='DAV:' xml:base='").append(BASE).append("'>");
+        for (String ace : aces) {
+            sb.append(ace);
+        }
+        sb.append("</D:acl>");
+        return ObjectIo.unmarshal(new StringReader(sb.toString()), Acl.class).getCompiled();
+    }
+
+    private static Set<String> roles(String... names) {
+        Set<String> ret = new HashSet<String>();
+        for (String name : names) {
+            ret.add(BASE + name);
+        }
+        return ret;
+    }
+
+    /**
+     * ロールに付与した権限とその子孫の権限のみが許可されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ロールに付与した権限とその子孫の権限のみが許可されること() throws Exception {
+        CompiledAcl acl = compile(ace("<D:href>role1</D:href>", "read"), ace("<D:href>role2</D:href>", "write"));
+        assertTrue(acl.grants(roles("role1"), BoxPrivilege.READ));
+        assertTrue(acl.grants(roles("role1"), BoxPrivilege.READ_PROPERTIES));
+        assertFalse(acl.grants(roles("role1"), BoxPrivilege.WRITE));
+        assertFalse(acl.grants(roles("role1"), BoxPrivilege.READ_ACL));
+        assertTrue(acl.grants(roles("role1", "role2"), BoxPrivilege.WRITE_CONTENT));
+        assertFalse(acl.grants(roles("role3"), BoxPrivilege.READ));
+    }
+
+    /**
+     * Cellレベルの権限はCellPrivilegeとして判定されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void Cellレベルの権限はCellPrivilegeとして判定されること() throws Exception {
+        CompiledAcl acl = compile(ace("<D:href>role1</D:href>", "auth"));
+        assertTrue(acl.grants(roles("role1"), CellPrivilege.AUTH_READ));
+        assertFalse(acl.grants(roles("role1"), CellPrivilege.ALL));
+        assertFalse(acl.grants(roles("role1"), BoxPrivilege.READ));
+    }
+
+    /**
+     * ロールを持たない場合はロール指定のACEより後のallのACEが評価されないこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ロールを持たない場合はロール指定のACEより後のallのACEが評価されないこと() throws Exception {
+        CompiledAcl acl = compile(ace("<D:href>role1</D:href>", "write"), ace("<D:all/>", "read"));
+        assertFalse(acl.grants(null, BoxPrivilege.READ));
+        assertTrue(acl.grants(Collections.<String>emptySet(), BoxPrivilege.READ));
+        assertTrue(acl.grants(roles("role3"), BoxPrivilege.READ));
+
+        CompiledAcl allFirst = compile(ace("<D:all/>", "read"), ace("<D:href>role1</D:href>", "write"));
+        assertTrue(allFirst.grants(null, BoxPrivilege.READ));
+        assertFalse(allFirst.grants(null, BoxPrivilege.WRITE));
+    }
+
+    /**
+     * ロールリストの要素を入れ替えた場合は入れ替え後のロールで判定されること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void ロールリストの要素を入れ替えた場合は入れ替え後のロールで判定されること() throws Exception {
+        String xml = "<D:acl xmlns:D='DAV:' xml:base='" + BASE + "'>"
+                + ace("<D:href>role1</D:href>", "read") + "</D:acl>";
+        Acl acl = ObjectIo.unmarshal(new StringReader(xml), Acl.class);
+        AccessContext ac = AccessContext.create(null, null, null, null, null, CELL_URL, null, null);
+        ac.getRoleList().add(new Role("role1"));
+        assertTrue(ac.requirePrivilege(acl, BoxPrivilege.READ, CELL_URL));
+
+        // 件数は変わらない
+        ac.getRoleList().set(0, new Role("role2"));
+        assertFalse(ac.requirePrivilege(acl, BoxPrivilege.READ, CELL_URL));
+    }
+
+    /**
+     * ACLが未設定の場合は許可されないこと.
+     */
+    @Test
+    public void ACLが未設定の場合は許可されないこと() {
+        CompiledAcl acl = CompiledAcl.compile(null);
+        assertFalse(acl.grants(roles("role1"), BoxPrivilege.READ));
+        assertFalse(acl.grants(null, BoxPrivilege.READ));
+    }
+}
@@ -28,7 +28,8 @@ import org.junit.runners.Suite.SuiteClasses;
         BarFileValidateTest.class,
         BarFileUtilsTest.class,
         BarFileContentsTest.class,
-        RootpropsValidateTest.class
+        RootpropsValidateTest.class,
+        UserDataBulkWriterTest.class
 })
 public class AllTests {
 }
@@ -0,0 +1,230 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.bar.UserDataBulkWriter;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.model.DavCmp;
+import com.fujitsu.dc.core.odata.DcODataProducer;
+import com.fujitsu.dc.core.rs.odata.BulkRequest;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * UserDataBulkWriter ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class UserDataBulkWriterTest {
+
+    /**
+     * 実行した一括登録を記録する.
+     */
+    static class RecordingExecutor implements UserDataBulkWriter.BulkExecutor {
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final List<DcODataProducer> producers = Collections.synchronizedList(new ArrayList<DcODataProducer>());
+        int failAt = -1;
+        RuntimeException exception;
+
+        @Override
+        public boolean execute(DcODataProducer producer, String cellId,
+                LinkedHashMap<String, BulkRequest> bulkRequests, Map<String, String> fileNameMap) {
+            int index = batches.size();
+            batches.add(new ArrayList<String>(fileNameMap.values()));
+            threads.add(Thread.currentThread());
+            producers.add(producer);
+            if (index == failAt) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static DavCmp davCmp(DcODataProducer writerProducer) {
+        Cell cell = mock(Cell.class);
+        when(cell.getId()).thenReturn("bulkWriterTestCellId");
+        DavCmp davCmp = mock(DavCmp.class);
+        when(davCmp.getCell()).thenReturn(cell);
+        when(davCmp.getODataProducer()).thenReturn(writerProducer);
+        return davCmp;
+    }
+
+    private static LinkedHashMap<String, BulkRequest> requests(int batch, int size) {
+        LinkedHashMap<String, BulkRequest> ret = new LinkedHashMap<String, BulkRequest>();
+        for (int i = 0; i < size; i++) {
+            ret.put("key" + batch + "-" + i, new BulkRequest());
+        }
+        return ret;
+    }
+
+    private static Map<String, String> fileNames(int batch, int size) {
+        Map<String, String> ret = new LinkedHashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            ret.put("key" + batch + "-" + i, "entry" + batch + "-" + i);
+        }
+        return ret;
+    }
+
+    /**
+     * 一括登録が登録スレッドで登録待ちにした順に1回ずつ実行されること.
+     */
+    @Test
+    public void 一括登録が登録スレッドで登録待ちにした順に1回ずつ実行されること() {
+        RecordingExecutor executor = new RecordingExecutor();
+        UserDataBulkWriter writer = new UserDataBulkWriter(2, "bulk-writer-test", executor);
+        DcODataProducer readerProducer = mock(DcODataProducer.class);
+        DcODataProducer writerProducer = mock(DcODataProducer.class);
+        DavCmp davCmp = davCmp(writerProducer);
+        try {
+            int count = 10;
+            for (int i = 0; i < count; i++) {
+                // 最後の一括登録は件数が一括登録の単位に満たない
+                int size = 3;
+                if (i == count - 1) {
+                    size = 1;
+                }
+                assertTrue(writer.submit(davCmp, requests(i, size), fileNames(i, size), readerProducer));
+            }
+            assertTrue(writer.await());
+
+            assertEquals(count, executor.batches.size());
+            for (int i = 0; i < count; i++) {
+                List<String> batch = executor.batches.get(i);
+                assertEquals("entry" + i + "-0", batch.get(0));
+                if (i < count - 1) {
+                    assertEquals(3, batch.size());
+                } else {
+                    assertEquals(1, batch.size());
+                }
+                assertNotSame(Thread.currentThread(), executor.threads.get(i));
+                // 読み込みスレッドのプロデューサーは登録スレッドで使用しない
+                assertSame(writerProducer, executor.producers.get(i));
+            }
+            verify(davCmp, times(1)).getODataProducer();
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * ODataコレクションが変わった場合は登録スレッド用のプロデューサーを作り直すこと.
+     */
+    @Test
+    public void ODataコレクションが変わった場合は登録スレッド用のプロデューサーを作り直すこと() {
+        RecordingExecutor executor = new RecordingExecutor();
+        UserDataBulkWriter writer = new UserDataBulkWriter(2, "bulk-writer-test", executor);
+        DcODataProducer producer1 = mock(DcODataProducer.class);
+        DcODataProducer producer2 = mock(DcODataProducer.class);
+        try {
+            assertTrue(writer.submit(davCmp(producer1), requests(0, 1), fileNames(0, 1), null));
+            assertTrue(writer.await());
+            assertTrue(writer.submit(davCmp(producer2), requests(1, 1), fileNames(1, 1), null));
+            assertTrue(writer.await());
+            assertSame(producer1, executor.producers.get(0));
+            assertSame(producer2, executor.producers.get(1));
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * 一括登録が失敗した場合は以降の一括登録を実行せずに処理を中断すること.
+     */
+    @Test
+    public void 一括登録が失敗した場合は以降の一括登録を実行せずに処理を中断すること() {
+        RecordingExecutor executor = new RecordingExecutor();
+        executor.failAt = 1;
+        UserDataBulkWriter writer = new UserDataBulkWriter(1, "bulk-writer-test", executor);
+        DavCmp davCmp = davCmp(mock(DcODataProducer.class));
+        try {
+            boolean submitted = true;
+            int i = 0;
+            while (submitted && i < 10) {
+                submitted = writer.submit(davCmp, requests(i, 1), fileNames(i, 1), null);
+                i++;
+            }
+            assertFalse(writer.await());
+            // 登録待ちの数が1のため、失敗した一括登録の後に登録待ちにできるのは高々1件で、それも実行されない
+            assertEquals(2, executor.batches.size());
+            assertFalse(writer.submit(davCmp, requests(i, 1), fileNames(i, 1), null));
+            assertEquals(2, executor.batches.size());
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * 一括登録で発生した例外が読み込みスレッドから送出されること.
+     */
+    @Test
+    public void 一括登録で発生した例外が読み込みスレッドから送出されること() {
+        RecordingExecutor executor = new RecordingExecutor();
+        executor.failAt = 0;
+        executor.exception = new IllegalStateException("bulk failed");
+        UserDataBulkWriter writer = new UserDataBulkWriter(2, "bulk-writer-test", executor);
+        try {
+            assertTrue(writer.submit(davCmp(mock(DcODataProducer.class)), requests(0, 1), fileNames(0, 1), null));
+            writer.await();
+            fail("exception was not thrown");
+        } catch (IllegalStateException e) {
+            assertSame(executor.exception, e);
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * 登録待ちの数が0の場合は呼び出し元スレッドで読み込みスレッドのプロデューサーを使用して登録すること.
+     */
+    @Test
+    public void 登録待ちの数が0の場合は呼び出し元スレッドで読み込みスレッドのプロデューサーを使用して登録すること() {
+        RecordingExecutor executor = new RecordingExecutor();
+        UserDataBulkWriter writer = new UserDataBulkWriter(0, "bulk-writer-test", executor);
+        DcODataProducer readerProducer = mock(DcODataProducer.class);
+        DavCmp davCmp = davCmp(mock(DcODataProducer.class));
+        assertTrue(writer.submit(davCmp, requests(0, 2), new HashMap<String, String>(fileNames(0, 2)),
+                readerProducer));
+        assertEquals(1, executor.batches.size());
+        assertSame(Thread.currentThread(), executor.threads.get(0));
+        assertSame(readerProducer, executor.producers.get(0));
+        assertTrue(writer.await());
+        writer.shutdown();
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.read.ListAppender;
+
+import com.fujitsu.dc.core.eventbus.EventLogWriter;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * EventLogWriter ユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class EventLogWriterTest {
+
+    private static final int COUNT = 1000;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private Logger logger;
+    private ListAppender<ILoggingEvent> appender;
+
+    /**
+     * テスト用のロガーに出力内容を保持するAppenderを設定する.
+     */
+    @Before
+    public void before() {
+        logger = (Logger) LoggerFactory.getLogger("com.fujitsu.dc.test.eventlog");
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        appender = new ListAppender<ILoggingEvent>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    /**
+     * Appenderを解除する.
+     */
+    @After
+    public void after() {
+        logger.detachAppender(appender);
+    }
+
+    /**
+     * 出力先毎に追加順で全てのイベントが出力されること.
+     * @throws InterruptedException 割り込み
+     */
+    @Test
+    public void 出力先毎に追加順で全てのイベントが出力されること() throws InterruptedException {
+        for (int i = 0; i < COUNT; i++) {
+            EventLogWriter.append(logger, Level.INFO, Integer.toString(i), "cell" + (i % 2));
+        }
+        waitFor(COUNT);
+
+        List<ILoggingEvent> events = events();
+        int[] last = {-1, -1 };
+        for (ILoggingEvent event : events) {
+            int cell = event.getMDCPropertyMap().get(EventLogWriter.MDC_KEY_EVENTLOG_PATH).equals("cell0") ? 0 : 1;
+            int value = Integer.parseInt(event.getMessage());
+            assertEquals(cell, value % 2);
+            assertEquals(true, value > last[cell]);
+            last[cell] = value;
+        }
+        assertEquals(COUNT - 2, last[0]);
+        assertEquals(COUNT - 1, last[1]);
+    }
+
+    /**
+     * ロガーのレベル未満のイベントは出力されないこと.
+     * @throws InterruptedException 割り込み
+     */
+    @Test
+    public void ロガーのレベル未満のイベントは出力されないこと() throws InterruptedException {
+        logger.setLevel(Level.WARN);
+        EventLogWriter.append(logger, Level.INFO, "info", "cell0");
+        EventLogWriter.append(logger, Level.ERROR, "error", "cell0");
+        waitFor(1);
+        List<ILoggingEvent> events = events();
+        assertEquals("error", events.get(0).getMessage());
+        assertEquals(Level.ERROR, events.get(0).getLevel());
+    }
+
+    /**
+     * 同じ出力先のイベントはまとめて出力した後に1回のみフラッシュされること.
+     * @throws Exception 例外
+     */
+    @Test
+    public void 同じ出力先のイベントはまとめて出力した後に1回のみフラッシュされること() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger flushCount = new AtomicInteger();
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream os = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    // 最初のイベントの出力中に書き込みスレッドを止め、後続のイベントを待ち行列に溜める
+                    release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                synchronized (written) {
+                    written.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() {
+                flushCount.incrementAndGet();
+            }
+        };
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(logger.getLoggerContext());
+        encoder.setPattern("%msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> fileAppender = new OutputStreamAppender<ILoggingEvent>();
+        fileAppender.setContext(logger.getLoggerContext());
+        fileAppender.setEncoder(encoder);
+        fileAppender.setOutputStream(os);
+        fileAppender.start();
+        logger.addAppender(fileAppender);
+        try {
+            int count = 200;
+            for (int i = 0; i < count; i++) {
+                EventLogWriter.append(logger, Level.INFO, Integer.toString(i), "cell0");
+            }
+            release.countDown();
+            waitFor(count);
+
+            String[] lines;
+            synchronized (written) {
+                lines = written.toString("UTF-8").split("\n");
+            }
+            assertEquals(count, lines.length);
+            for (int i = 0; i < count; i++) {
+                assertEquals(Integer.toString(i), lines[i]);
+            }
+            // 最初のイベント、溜まったイベントの2回. 書き込みスレッドの開始が遅れた場合は1回
+            assertTrue("flush count: " + flushCount.get(), flushCount.get() <= 2);
+            assertTrue(encoder.isImmediateFlush());
+        } finally {
+            logger.detachAppender(fileAppender);
+            fileAppender.stop();
+        }
+    }
+
+    /**
+     * flushの呼び出し時点までに追加したイベントがflushの完了時に出力済みであること.
+     */
+    @Test
+    public void flushの呼び出し時点までに追加したイベントがflushの完了時に出力済みであること() {
+        for (int i = 0; i < COUNT; i++) {
+            EventLogWriter.append(logger, Level.INFO, Integer.toString(i), "cell0");
+        }
+        assertTrue(EventLogWriter.flush(TIMEOUT_MILLIS));
+        List<ILoggingEvent> events = events();
+        assertEquals(COUNT, events.size());
+        assertEquals(Integer.toString(COUNT - 1), events.get(COUNT - 1).getMessage());
+    }
+
+    /**
+     * 複数スレッドから同時に追加したイベントがスレッド毎に追加順で全て出力されること.
+     * @throws InterruptedException 割り込み
+     */
+    @Test
+    public void 複数スレッドから同時に追加したイベントがスレッド毎に追加順で全て出力されること() throws InterruptedException {
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final String cell = "cell" + t;
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < COUNT; i++) {
+                        EventLogWriter.append(logger, Level.INFO, Integer.toString(i), cell);
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join(TIMEOUT_MILLIS);
+        }
+        assertTrue(EventLogWriter.flush(TIMEOUT_MILLIS));
+
+        List<ILoggingEvent> events = events();
+        assertEquals(threads * COUNT, events.size());
+        int[] last = new int[threads];
+        for (int t = 0; t < threads; t++) {
+            last[t] = -1;
+        }
+        for (ILoggingEvent event : events) {
+            String cell = event.getMDCPropertyMap().get(EventLogWriter.MDC_KEY_EVENTLOG_PATH);
+            int t = Integer.parseInt(cell.substring("cell".length()));
+            int value = Integer.parseInt(event.getMessage());
+            assertEquals(last[t] + 1, value);
+            last[t] = value;
+        }
+    }
+
+    private void waitFor(int count) throws InterruptedException {
+        long limit = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (events().size() < count && System.currentTimeMillis() < limit) {
+            Thread.sleep(10);
+        }
+        // 余分な出力が無いことを確認するため少し待つ
+        Thread.sleep(50);
+        assertEquals(count, events().size());
+    }
+
+    /**
+     * 出力されたイベントの一覧を返す. Appenderは書き込みスレッドから呼ばれるため同期して複製する.
+     */
+    private List<ILoggingEvent> events() {
+        synchronized (appender) {
+            return new ArrayList<ILoggingEvent>(appender.list);
+        }
+    }
+}
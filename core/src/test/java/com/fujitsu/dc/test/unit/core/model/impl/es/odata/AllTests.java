@@ -28,7 +28,9 @@ import org.junit.runners.Suite.SuiteClasses;
         CellCtlODataProducerTest.class,
         EsQueryHandlerTest.class,
         UnitCtlODataProducerTest.class,
-        PropertyLimitCheckerTest.class
+        PropertyLimitCheckerTest.class,
+        ScrollSkipTokenTest.class,
+        ScrollContextLimiterTest.class
     })
 public class AllTests {
 }
@@ -0,0 +1,132 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.model.impl.es.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
+import com.fujitsu.dc.core.model.impl.es.odata.ScrollContextLimiter;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * ScrollContextLimiterユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class ScrollContextLimiterTest {
+
+    private static final long KEEP_ALIVE = 300000L;
+
+    /**
+     * セル毎の上限に達した場合は503エラーとなり他のセルは開けること.
+     */
+    @Test
+    public void セル毎の上限に達した場合は503エラーとなり他のセルは開けること() {
+        ScrollContextLimiter limiter = new ScrollContextLimiter(10, 2, KEEP_ALIVE);
+        limiter.reserve("cell1", 0);
+        limiter.reserve("cell1", 0);
+        try {
+            limiter.reserve("cell1", 0);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+            assertEquals(503, e.getStatus());
+        }
+        limiter.reserve("cell2", 0);
+        assertEquals(3, limiter.size());
+    }
+
+    /**
+     * 全体の上限に達した場合は503エラーとなること.
+     */
+    @Test
+    public void 全体の上限に達した場合は503エラーとなること() {
+        ScrollContextLimiter limiter = new ScrollContextLimiter(3, 2, KEEP_ALIVE);
+        limiter.reserve("cell1", 0);
+        limiter.reserve("cell2", 0);
+        limiter.reserve("cell3", 0);
+        try {
+            limiter.reserve("cell4", 0);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 保持時間を過ぎたスクロールは上限の計算から除かれること.
+     */
+    @Test
+    public void 保持時間を過ぎたスクロールは上限の計算から除かれること() {
+        ScrollContextLimiter limiter = new ScrollContextLimiter(10, 1, KEEP_ALIVE);
+        limiter.reserve("cell1", 0);
+        limiter.reserve("cell1", KEEP_ALIVE);
+        assertEquals(1, limiter.size());
+    }
+
+    /**
+     * 次ページがある場合はスクロールを保持し最終ページで解放すること.
+     */
+    @Test
+    public void 次ページがある場合はスクロールを保持し最終ページで解放すること() {
+        ScrollContextLimiter limiter = new ScrollContextLimiter(10, 1, KEEP_ALIVE);
+        EntitySetAccessor esType = mock(EntitySetAccessor.class);
+
+        // 先頭ページ
+        String key = limiter.reserve("cell1", 0);
+        limiter.finish(esType, "cell1", key, "scroll1", true, 0);
+        assertEquals(1, limiter.size());
+        verify(esType, never()).clearScroll("scroll1");
+
+        // 途中のページでは保持時間が延長される
+        limiter.finish(esType, "cell1", "scroll1", "scroll1", true, KEEP_ALIVE - 1);
+        try {
+            limiter.reserve("cell1", KEEP_ALIVE);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+        }
+
+        // 最終ページ
+        limiter.finish(esType, "cell1", "scroll1", "scroll1", false, KEEP_ALIVE);
+        assertEquals(0, limiter.size());
+        verify(esType).clearScroll("scroll1");
+        limiter.reserve("cell1", KEEP_ALIVE);
+    }
+
+    /**
+     * スクロールを開けなかった場合は確保した枠が解放されること.
+     */
+    @Test
+    public void スクロールを開けなかった場合は確保した枠が解放されること() {
+        ScrollContextLimiter limiter = new ScrollContextLimiter(10, 1, KEEP_ALIVE);
+        EntitySetAccessor esType = mock(EntitySetAccessor.class);
+        String key = limiter.reserve("cell1", 0);
+        limiter.finish(esType, "cell1", key, null, false, 0);
+        assertEquals(0, limiter.size());
+        assertFalse(key.isEmpty());
+        limiter.reserve("cell1", 0);
+    }
+}
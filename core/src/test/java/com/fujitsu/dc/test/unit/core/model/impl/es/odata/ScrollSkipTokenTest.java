@@ -0,0 +1,129 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.model.impl.es.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.auth.token.LocalToken;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.model.impl.es.odata.ScrollSkipToken;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * ScrollSkipTokenユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class ScrollSkipTokenTest {
+
+    private static final String SCOPE = ScrollSkipToken.scope("cell0123456789abcdef", "box01", "node01", "Sales");
+
+    /**
+     * テスト前処理.
+     */
+    @BeforeClass
+    public static void beforeClass() {
+        LocalToken.setKeyString("0123456789abcdef");
+    }
+
+    /**
+     * 生成したトークンを同じ有効範囲で解析するとスクロールIDと件数が復元されること.
+     */
+    @Test
+    public void 生成したトークンを同じ有効範囲で解析するとスクロールIDと件数が復元されること() {
+        String scrollId = "c2Nhbjs1OzE6cW5xX0dfQTZRdzJCSFRmSUlWM1NlQTsxO3RvdGFsX2hpdHM6MTAwMDA7";
+        String token = new ScrollSkipToken(scrollId, 25).encode(SCOPE);
+
+        assertFalse(token.contains(scrollId));
+        ScrollSkipToken parsed = ScrollSkipToken.parse(token, SCOPE);
+        assertEquals(scrollId, parsed.getScrollId());
+        assertEquals(25, parsed.getOffset());
+    }
+
+    /**
+     * 異なるエンティティセットで解析すると400エラーとなること.
+     */
+    @Test
+    public void 異なるエンティティセットで解析すると400エラーとなること() {
+        String token = new ScrollSkipToken("scrollId", 25).encode(SCOPE);
+        String otherScope = ScrollSkipToken.scope("cell0123456789abcdef", "box01", "node01", "Product");
+        try {
+            ScrollSkipToken.parse(token, otherScope);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.QUERY_INVALID_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 異なるセルで解析すると400エラーとなること.
+     */
+    @Test
+    public void 異なるセルで解析すると400エラーとなること() {
+        String token = new ScrollSkipToken("scrollId", 25).encode(SCOPE);
+        String otherScope = ScrollSkipToken.scope("cellfedcba9876543210", "box01", "node01", "Sales");
+        try {
+            ScrollSkipToken.parse(token, otherScope);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.QUERY_INVALID_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 不正な形式のトークンを解析すると400エラーとなること.
+     */
+    @Test
+    public void 不正な形式のトークンを解析すると400エラーとなること() {
+        try {
+            ScrollSkipToken.parse("invalid-token", SCOPE);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.QUERY_INVALID_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * 発行していないトークンを発行済みの場合のみ解析するとnullが返却されること.
+     */
+    @Test
+    public void 発行していないトークンを発行済みの場合のみ解析するとnullが返却されること() {
+        assertNull(ScrollSkipToken.parseIfIssued("13S35K", SCOPE));
+        assertNull(ScrollSkipToken.parseIfIssued("invalid-token", SCOPE));
+    }
+
+    /**
+     * 異なるエンティティセットで発行したトークンを発行済みの場合のみ解析すると400エラーとなること.
+     */
+    @Test
+    public void 異なるエンティティセットで発行したトークンを発行済みの場合のみ解析すると400エラーとなること() {
+        String token = new ScrollSkipToken("scrollId", 25).encode(SCOPE);
+        String otherScope = ScrollSkipToken.scope("cell0123456789abcdef", "box01", "node01", "Product");
+        try {
+            ScrollSkipToken.parseIfIssued(token, otherScope);
+            fail("Not thrown exception.");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.QUERY_INVALID_ERROR.getCode(), e.getCode());
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.runners.Suite.SuiteClasses;
         EsAcessorTest.class,
         RepairAdsTest.class,
         RepairAdsCompleteTest.class,
+        RepairAdsCheckpointTest.class,
         RepairAdsIntegrationTest.class
 })
 public class AllTests {
@@ -0,0 +1,162 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.model.impl.es.repair;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.ads.AbstractAdsWriteFailureLog;
+import com.fujitsu.dc.common.ads.RollingAdsWriteFailureLog;
+import com.fujitsu.dc.core.model.impl.es.repair.RepairAds;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * RepairAdsのチェックポイント ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class RepairAdsCheckpointTest {
+
+    private static final String PIO_VERSION_DUMMY = "1.4.1-resume";
+    private static final String TEST_ADS_LOGDIR = "./testdir-checkpoint";
+
+    private RepairAds repair = RepairAds.getInstance();
+    private File dir = new File(TEST_ADS_LOGDIR);
+    private File rotated;
+
+    /**
+     * 各テストの開始前に実行される処理.
+     * @throws Exception 設定に失敗した場合
+     */
+    @Before
+    public void before() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        assertTrue(dir.mkdir());
+        setField("adsLogBaseDir", dir);
+        setField("adsLogBaseDirPath", TEST_ADS_LOGDIR);
+        setField("pcsVersion", PIO_VERSION_DUMMY);
+        setField("logCountPerIteration", 2);
+
+        String fileName = String.format(AbstractAdsWriteFailureLog.LOGNAME_FORMAT_ROTATE, PIO_VERSION_DUMMY,
+                System.currentTimeMillis());
+        rotated = new File(dir, fileName);
+        Files.write(rotated.toPath(), Arrays.asList("line1", "line2", "line3", "line4", "line5"),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 各テストの終了時に実行される処理.
+     * @throws IOException 削除に失敗した場合
+     */
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * チェックポイントに記録した行数を読み飛ばして続きの行から読み込めること.
+     * @throws Exception 実行に失敗した場合
+     */
+    @Test
+    public void チェックポイントに記録した行数を読み飛ばして続きの行から読み込めること() throws Exception {
+        invoke("writeCheckpoint", new Class<?>[] {File.class, long.class }, rotated, 3L);
+
+        RollingAdsWriteFailureLog adsLog = new RollingAdsWriteFailureLog(rotated, TEST_ADS_LOGDIR,
+                PIO_VERSION_DUMMY, true);
+        try {
+            long skipped = (Long) invoke("skipRepairedRecords",
+                    new Class<?>[] {RollingAdsWriteFailureLog.class, File.class }, adsLog, rotated);
+            assertEquals(3L, skipped);
+            List<String> remains = adsLog.readAdsFailureLog(10);
+            assertEquals(Arrays.asList("line4", "line5"), remains);
+        } finally {
+            adsLog.closeRotatedFile();
+        }
+    }
+
+    /**
+     * 別のファイルのチェックポイントは使用されないこと.
+     * @throws Exception 実行に失敗した場合
+     */
+    @Test
+    public void 別のファイルのチェックポイントは使用されないこと() throws Exception {
+        File other = new File(dir, rotated.getName() + "0");
+        invoke("writeCheckpoint", new Class<?>[] {File.class, long.class }, other, 3L);
+
+        assertEquals(0L, invoke("readCheckpoint", new Class<?>[] {File.class }, rotated));
+        assertEquals(3L, invoke("readCheckpoint", new Class<?>[] {File.class }, other));
+    }
+
+    /**
+     * 未処理の行数がチェックポイントを考慮して集計されること.
+     * @throws Exception 実行に失敗した場合
+     */
+    @Test
+    public void 未処理の行数がチェックポイントを考慮して集計されること() throws Exception {
+        invoke("writeCheckpoint", new Class<?>[] {File.class, long.class }, rotated, 2L);
+        Map<Long, File> logFilesMap = new TreeMap<Long, File>();
+        logFilesMap.put(1L, rotated);
+        invoke("updateBacklog", new Class<?>[] {Map.class }, logFilesMap);
+
+        Map<String, Object> stats = repair.getStatistics();
+        assertEquals(1L, stats.get("backlogFiles"));
+        assertEquals(3L, stats.get("backlogRecords"));
+    }
+
+    /**
+     * チェックポイントを削除すると先頭から読み込まれること.
+     * @throws Exception 実行に失敗した場合
+     */
+    @Test
+    public void チェックポイントを削除すると先頭から読み込まれること() throws Exception {
+        invoke("writeCheckpoint", new Class<?>[] {File.class, long.class }, rotated, 4L);
+        invoke("deleteCheckpoint", new Class<?>[] {});
+
+        assertEquals(0L, invoke("readCheckpoint", new Class<?>[] {File.class }, rotated));
+        String[] names = dir.list();
+        assertEquals(1, names.length);
+        assertEquals(rotated.getName(), names[0]);
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = RepairAds.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(repair, value);
+    }
+
+    private Object invoke(String name, Class<?>[] types, Object... args) throws Exception {
+        Method method = RepairAds.class.getDeclaredMethod(name, types);
+        method.setAccessible(true);
+        return method.invoke(repair, args);
+    }
+}
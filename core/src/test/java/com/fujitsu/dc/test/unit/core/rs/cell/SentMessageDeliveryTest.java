@@ -0,0 +1,175 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.rs.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.rs.cell.SentMessageDelivery;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * SentMessageDeliveryユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class SentMessageDeliveryTest {
+
+    /**
+     * 配送結果が宛先リストと同じ順序で返却されること.
+     */
+    @Test
+    public void 配送結果が宛先リストと同じ順序で返却されること() {
+        List<String> toList = new ArrayList<String>();
+        for (int i = 0; i < 30; i++) {
+            toList.add("http://host" + (i % 3) + ".example/cell" + i + "/");
+        }
+        List<String> results = SentMessageDelivery.deliverAll(toList, new SentMessageDelivery.Task<String>() {
+            @Override
+            public String deliver(String toCellUrl) {
+                sleep((toCellUrl.length() % 5) * 10);
+                return toCellUrl;
+            }
+        });
+        assertEquals(toList, results);
+    }
+
+    /**
+     * 同一Cellへの同時配送数が上限を超えないこと.
+     */
+    @Test
+    public void 同一Cellへの同時配送数が上限を超えないこと() {
+        List<String> toList = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            toList.add("https://limited.example/cell/");
+        }
+        int maxRunning = deliverAndCountMaxRunning(toList);
+        assertTrue(maxRunning > 1);
+        assertTrue(maxRunning <= DcCoreConfig.getMessageDeliveryMaxPerCell());
+    }
+
+    /**
+     * 同一ホストの別Cellへの同時配送数がホスト毎の上限を超えないこと.
+     */
+    @Test
+    public void 同一ホストの別Cellへの同時配送数がホスト毎の上限を超えないこと() {
+        List<String> toList = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            // ポート省略時とスキームの既定ポート指定時は同じホストとして扱う
+            if (i % 2 == 0) {
+                toList.add("https://unit.example/cell" + i + "/");
+            } else {
+                toList.add("https://UNIT.example:443/cell" + i + "/");
+            }
+        }
+        int maxRunning = deliverAndCountMaxRunning(toList);
+        assertTrue(maxRunning > DcCoreConfig.getMessageDeliveryMaxPerCell());
+        assertTrue(maxRunning <= DcCoreConfig.getMessageDeliveryMaxPerHost());
+    }
+
+    /**
+     * 別ホストへの配送はホスト毎の上限を超えて並行できること.
+     */
+    @Test
+    public void 別ホストへの配送はホスト毎の上限を超えて並行できること() {
+        List<String> toList = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            toList.add("https://host" + (i % 4) + ".example/cell" + i + "/");
+        }
+        int maxRunning = deliverAndCountMaxRunning(toList);
+        assertTrue(maxRunning > Math.min(DcCoreConfig.getMessageDeliveryMaxPerHost(),
+                DcCoreConfig.getMessageDeliveryWorkers() - 1));
+    }
+
+    /**
+     * 配送完了後に宛先Cell毎とホスト毎の同時送信数が保持されないこと.
+     */
+    @Test
+    public void 配送完了後に宛先Cell毎とホスト毎の同時送信数が保持されないこと() {
+        List<String> toList = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            toList.add("https://evict.example/cell" + i + "/");
+        }
+        deliverAndCountMaxRunning(toList);
+        assertEquals(0, SentMessageDelivery.activeDestinations());
+        assertEquals(0, SentMessageDelivery.activeHosts());
+    }
+
+    private static int deliverAndCountMaxRunning(List<String> toList) {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        SentMessageDelivery.deliverAll(toList, new SentMessageDelivery.Task<String>() {
+            @Override
+            public String deliver(String toCellUrl) {
+                int current = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+                sleep(20);
+                running.decrementAndGet();
+                return toCellUrl;
+            }
+        });
+        return maxRunning.get();
+    }
+
+    /**
+     * 一部の宛先で失敗した場合も他の宛先への配送を完了してから例外が返却されること.
+     */
+    @Test
+    public void 一部の宛先で失敗した場合も他の宛先への配送を完了してから例外が返却されること() {
+        List<String> toList = Arrays.asList("http://a.example/ok1/", "http://b.example/ng/", "http://c.example/ok2/");
+        final ConcurrentMap<String, String> delivered = new ConcurrentHashMap<String, String>();
+        try {
+            SentMessageDelivery.deliverAll(toList, new SentMessageDelivery.Task<String>() {
+                @Override
+                public String deliver(String toCellUrl) {
+                    if (toCellUrl.contains("ng")) {
+                        throw DcCoreException.SentMessage.SM_CONNECTION_ERROR;
+                    }
+                    sleep(50);
+                    delivered.put(toCellUrl, toCellUrl);
+                    return toCellUrl;
+                }
+            });
+            fail("Not thrown");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.SentMessage.SM_CONNECTION_ERROR.getCode(), e.getCode());
+        }
+        assertEquals(2, delivered.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
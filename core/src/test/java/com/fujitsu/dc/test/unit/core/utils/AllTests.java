@@ -25,7 +25,9 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-        ResourceUtilTest.class
+        ResourceUtilTest.class,
+        LocalCacheTest.class,
+        EscapeControlCodeWriterTest.class
 })
 public class AllTests {
 }
@@ -0,0 +1,81 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.utils.EscapeControlCode;
+import com.fujitsu.dc.core.utils.EscapeControlCodeWriter;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * EscapeControlCodeWriterユニットテストクラス.
+ */
+@Category({Unit.class })
+public class EscapeControlCodeWriterTest {
+
+    private static final String INPUT = "{\"a\":\"x\u0000y\u001Fz\u007F\",\"b\":\"あ\t ~\"}";
+
+    /**
+     * 文字列単位で書き出した結果がEscapeControlCodeと一致すること.
+     * @throws IOException IOエラー
+     */
+    @Test
+    public void 文字列単位で書き出した結果がEscapeControlCodeと一致すること() throws IOException {
+        StringWriter sw = new StringWriter();
+        Writer writer = new EscapeControlCodeWriter(sw);
+        writer.write(INPUT);
+        writer.flush();
+        assertEquals(EscapeControlCode.escape(INPUT), sw.toString());
+    }
+
+    /**
+     * 1文字ずつ書き出した結果がEscapeControlCodeと一致すること.
+     * @throws IOException IOエラー
+     */
+    @Test
+    public void 一文字ずつ書き出した結果がEscapeControlCodeと一致すること() throws IOException {
+        StringWriter sw = new StringWriter();
+        Writer writer = new EscapeControlCodeWriter(sw);
+        for (char c : INPUT.toCharArray()) {
+            writer.write(c);
+        }
+        writer.flush();
+        assertEquals(EscapeControlCode.escape(INPUT), sw.toString());
+    }
+
+    /**
+     * 配列の一部を書き出した場合に指定範囲のみエスケープして出力されること.
+     * @throws IOException IOエラー
+     */
+    @Test
+    public void 配列の一部を書き出した場合に指定範囲のみエスケープして出力されること() throws IOException {
+        StringWriter sw = new StringWriter();
+        Writer writer = new EscapeControlCodeWriter(sw);
+        char[] cbuf = "\u0001ab\u0002cd\u0003".toCharArray();
+        writer.write(cbuf, 1, 4);
+        writer.flush();
+        assertEquals("ab\\u0002c", sw.toString());
+    }
+}
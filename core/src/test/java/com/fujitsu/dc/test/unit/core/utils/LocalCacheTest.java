@@ -0,0 +1,88 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.utils.LocalCache;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * LocalCacheユニットテストクラス.
+ */
+@Category({Unit.class })
+public class LocalCacheTest {
+
+    /**
+     * キャッシュした値が取得できること.
+     */
+    @Test
+    public void キャッシュした値が取得できること() {
+        LocalCache<String, String> cache = new LocalCache<String, String>(10);
+        cache.put("key", "value");
+        assertEquals("value", cache.get("key"));
+        assertNull(cache.get("none"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * 最大件数を超えた場合に最も参照されていないエントリが破棄されること.
+     */
+    @Test
+    public void 最大件数を超えた場合に最も参照されていないエントリが破棄されること() {
+        LocalCache<String, String> cache = new LocalCache<String, String>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    /**
+     * 最大件数が0の場合はキャッシュされないこと.
+     */
+    @Test
+    public void 最大件数が0の場合はキャッシュされないこと() {
+        LocalCache<String, String> cache = new LocalCache<String, String>(0);
+        cache.put("a", "1");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * 削除したエントリが取得できないこと.
+     */
+    @Test
+    public void 削除したエントリが取得できないこと() {
+        LocalCache<String, String> cache = new LocalCache<String, String>(10);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
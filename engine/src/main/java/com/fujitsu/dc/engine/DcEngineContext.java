@@ -42,7 +42,11 @@ import org.mozilla.javascript.WrappedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.client.http.HttpClientFactory;
 import com.fujitsu.dc.client.utils.DcLoggerFactory;
+import com.fujitsu.dc.common.inprocess.InProcessServletInvoker;
+import com.fujitsu.dc.common.inprocess.InProcessServlets;
+import com.fujitsu.dc.engine.adapter.CoreInProcessDispatcher;
 import com.fujitsu.dc.engine.adapter.DcEngineDao;
 import com.fujitsu.dc.engine.adapter.DcRequestBodyStream;
 import com.fujitsu.dc.engine.adapter.Require;
@@ -67,7 +71,8 @@ public class DcEngineContext implements Closeable {
     private static final String DC_SCOPE = "dc";
     private static final String DC_EXTENSION_SCOPE = "extension";
     private static Map<String, Script> engineLibCache = new ConcurrentHashMap<String, Script>();
-
+    /** 全リクエストで共有するsealed済みの標準オブジェクト群. */
+    private static volatile ScriptableObject sharedScope;
 
     /** Cell名. */
     private String currentCellName;
@@ -91,6 +96,9 @@ public class DcEngineContext implements Closeable {
 
     static {
         ContextFactory.initGlobal(new DcJsContextFactory());
+        HttpClientFactory.configurePool(DcEngineConfig.getHttpPoolMaxTotal(), DcEngineConfig.getHttpPoolMaxPerRoute(),
+                DcEngineConfig.getHttpPoolIdleTimeout(), DcEngineConfig.getHttpPoolKeepAlive(),
+                DcEngineConfig.getHttpPoolTimeout());
     }
 
     /**
@@ -102,8 +110,38 @@ public class DcEngineContext implements Closeable {
         this.factory = new DcJsContextFactory();
         this.cx = factory.enterContext();
 
-        this.scope = cx.initStandardObjects();
+        // 標準オブジェクトは共有スコープから継承し、リクエスト毎のグローバル変数のみを新しいスコープに持たせる
+        ScriptableObject shared = getSharedScope(cx);
+        this.scope = cx.newObject(shared);
+        this.scope.setPrototype(shared);
+        this.scope.setParentScope(null);
+    }
 
+    /**
+     * 共有スコープを取得する. 初回呼び出し時に標準オブジェクトを初期化し、sealする.
+     * sealされているため、ユーザースクリプトから標準オブジェクト(Object.prototype等)を変更することはできない.
+     * @param context RhinoのContext
+     * @return 共有スコープ
+     */
+    private static ScriptableObject getSharedScope(final org.mozilla.javascript.Context context) {
+        ScriptableObject shared = sharedScope;
+        if (shared != null) {
+            return shared;
+        }
+        synchronized (DcEngineContext.class) {
+            if (sharedScope == null) {
+                shared = context.initStandardObjects(null, true);
+                // 遅延初期化されるコンストラクタを複数スレッドから同時に初期化しないよう、ここで初期化しておく
+                for (Object id : shared.getAllIds()) {
+                    if (id instanceof String) {
+                        shared.get((String) id, shared);
+                    }
+                }
+                shared.sealObject();
+                sharedScope = shared;
+            }
+            return sharedScope;
+        }
     }
 
     /**
@@ -201,6 +239,7 @@ public class DcEngineContext implements Closeable {
     /**
      * JSGIを実行.
      * @param source 実行するユーザースクリプト
+     * @param sourceName ユーザースクリプトのファイル名
      * @param req Requestオブジェクト
      * @param res Responseオブジェクト
      * @param is リクエストストリームオブジェクト
@@ -209,6 +248,7 @@ public class DcEngineContext implements Closeable {
      * @throws DcEngineException DcEngine例外
      */
     public final Response runJsgi(final String source,
+            final String sourceName,
             final HttpServletRequest req,
             final HttpServletResponse res,
             final InputStream is,
@@ -258,7 +298,7 @@ public class DcEngineContext implements Closeable {
         try {
             Object ret;
             log.info("eval user script : script size = " + source.length());
-            ret = evalUserScript(source, dcReq);
+            ret = evalUserScript(source, sourceName, dcReq);
             log.info("[" + DcEngineConfig.getVersion() + "] " + "<<< Request Ended ");
 
             DcResponse dcRes = DcResponse.parseJsgiResponse(ret);
@@ -283,11 +323,16 @@ public class DcEngineContext implements Closeable {
     /**
      * UserScript実行.
      * @param source ユーザースクリプトソース
+     * @param sourceName ユーザースクリプトのファイル名
      * @throws IOException IO例外
      * @throws DcEngineException DcEngineException
      */
-    private Object evalUserScript(final String source, JSGIRequest dcReq) throws DcEngineException {
-        cx.evaluateString(scope, "fn_jsgi = " + source, null, 1, null);
+    private Object evalUserScript(final String source, final String sourceName, JSGIRequest dcReq)
+            throws DcEngineException {
+        // コンパイル済みスクリプトはサービスコレクションとスクリプト単位にキャッシュし、ソースが変更された場合のみ再コンパイルする
+        String key = this.sourceManager.getSourceCollectionPath() + "/" + sourceName;
+        Script script = UserScriptCache.getOrCompile(cx, key, "fn_jsgi = " + source, null);
+        script.exec(cx, scope);
 
         Object fObj = scope.get("fn_jsgi", scope);
         Object result = null;
@@ -313,6 +358,15 @@ public class DcEngineContext implements Closeable {
         DcLoggerFactory.setDefaultFactory(engLogFactory);
 
         DcEngineDao dccx = new DcEngineDao(baseUrl, currentCellName, currentSchemeUri, currentBoxName);
+        String coreInternalUrl = DcEngineConfig.getCoreInternalUrl();
+        InProcessServletInvoker core = InProcessServlets.get(InProcessServlets.CORE);
+        if (core != null) {
+            // Coreに組み込まれて動作している場合は、基底URL宛てのリクエストをソケットを使用せずにCoreで処理する
+            dccx.getDaoConfig().setInProcessDispatcher(baseUrl, new CoreInProcessDispatcher(core, baseUrl));
+        } else if (coreInternalUrl != null && coreInternalUrl.length() > 0) {
+            // 基底URL宛てのリクエストはロードバランサ等を経由せずにCoreへ直接送信する
+            dccx.getDaoConfig().setInternalRoute(baseUrl, coreInternalUrl);
+        }
         dccx.setServiceSubject(serviceSubject);
         dccx.setBoxSchema(req.getHeader("X-Dc-Box-Schema"));
         String auth = req.getHeader(HttpHeaders.AUTHORIZATION);
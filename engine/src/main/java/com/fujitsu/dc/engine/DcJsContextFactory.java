@@ -23,6 +23,7 @@ import org.mozilla.javascript.Scriptable;
 
 import com.fujitsu.dc.engine.accesscontrol.DcClassShutterImpl;
 import com.fujitsu.dc.engine.accesscontrol.PrimitiveWrapFactory;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 
 
@@ -40,6 +41,10 @@ public class DcJsContextFactory extends ContextFactory {
         DcJsContext cx = new DcJsContext();
         cx.setInstructionObserverThreshold(TIMEOUTVALUE / MVALUE);
 
+        // 最適化レベルの設定. コンパイル実行時もタイムアウト判定が行われるよう命令数のカウントを埋め込む
+        cx.setOptimizationLevel(DcEngineConfig.getScriptOptimizationLevel());
+        cx.setGenerateObserverCount(true);
+
         // ClassShutterの登録(Javaパッケージ呼び出し制御)
         cx.setClassShutter(new DcClassShutterImpl());
 
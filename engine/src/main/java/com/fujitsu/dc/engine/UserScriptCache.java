@@ -0,0 +1,128 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * コンパイル済みのユーザースクリプトをノード(JVM)内に保持するキャッシュ.
+ * サービスコレクションとスクリプト単位に保持し、取得時にソースと最適化レベルが一致する場合のみ有効とする.
+ * ソース管理側にETag等の版情報が無いため、ソース文字列そのものを版として比較する.
+ */
+public final class UserScriptCache {
+
+    private static final AtomicLong HIT_COUNT = new AtomicLong();
+    private static final AtomicLong MISS_COUNT = new AtomicLong();
+    private static final AtomicLong COMPILE_COUNT = new AtomicLong();
+    private static final AtomicLong COMPILE_TIME = new AtomicLong();
+
+    private static volatile int maxSize = DcEngineConfig.getScriptCacheMaxSize();
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private UserScriptCache() {
+    }
+
+    /**
+     * キャッシュに保持するコンパイル済みスクリプト.
+     */
+    private static final class Entry {
+        private final String source;
+        private final int optimizationLevel;
+        private final Script script;
+
+        Entry(String source, int optimizationLevel, Script script) {
+            this.source = source;
+            this.optimizationLevel = optimizationLevel;
+            this.script = script;
+        }
+    }
+
+    /**
+     * コンパイル済みのスクリプトを取得する. キャッシュに無い、またはソースが変更されている場合はコンパイルして保持する.
+     * @param cx RhinoのContext
+     * @param key サービスコレクションのパスとスクリプト名を表すキー
+     * @param source コンパイルするソース
+     * @param sourceName エラー時に表示するソース名
+     * @return コンパイル済みのスクリプト
+     */
+    static Script getOrCompile(Context cx, String key, String source, String sourceName) {
+        int level = cx.getOptimizationLevel();
+        Entry entry;
+        synchronized (ENTRIES) {
+            entry = ENTRIES.get(key);
+        }
+        if (entry != null && entry.optimizationLevel == level && entry.source.equals(source)) {
+            HIT_COUNT.incrementAndGet();
+            return entry.script;
+        }
+        MISS_COUNT.incrementAndGet();
+
+        long start = System.currentTimeMillis();
+        Script script = cx.compileString(source, sourceName, 1, null);
+        COMPILE_COUNT.incrementAndGet();
+        COMPILE_TIME.addAndGet(System.currentTimeMillis() - start);
+
+        maxSize = DcEngineConfig.getScriptCacheMaxSize();
+        if (maxSize > 0) {
+            synchronized (ENTRIES) {
+                ENTRIES.put(key, new Entry(source, level, script));
+            }
+        }
+        return script;
+    }
+
+    /**
+     * 全てのキャッシュを削除する.
+     */
+    static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+        }
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return ヒット件数、ミス件数、コンパイル回数、コンパイル合計時間(ms)、保持件数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("hit", HIT_COUNT.get());
+        stats.put("miss", MISS_COUNT.get());
+        stats.put("compileCount", COMPILE_COUNT.get());
+        stats.put("compileTimeMillis", COMPILE_TIME.get());
+        synchronized (ENTRIES) {
+            stats.put("size", ENTRIES.size());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.adapter;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import com.fujitsu.dc.client.http.InProcessDispatcher;
+import com.fujitsu.dc.common.inprocess.InProcessServletInvoker;
+
+/**
+ * Coreに組み込まれて動作する場合に、ユーザスクリプトからのリクエストをソケットを使用せずにCoreのサーブレットで処理するクラス.
+ */
+public class CoreInProcessDispatcher implements InProcessDispatcher {
+
+    private final InProcessServletInvoker core;
+    private final String url;
+
+    /**
+     * コンストラクタ.
+     * @param core Coreのサーブレットを呼び出すオブジェクト
+     * @param baseUrl 基底URL. スキームとホストはCoreへそのまま渡す
+     */
+    public CoreInProcessDispatcher(InProcessServletInvoker core, String baseUrl) {
+        this.core = core;
+        URI base = URI.create(baseUrl);
+        this.url = base.getScheme() + "://" + base.getRawAuthority() + core.getContextPath() + "/";
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public HttpResponse dispatch(HttpUriRequest request) throws IOException {
+        return core.invoke(request);
+    }
+}
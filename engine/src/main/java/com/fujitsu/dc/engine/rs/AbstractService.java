@@ -331,8 +331,9 @@ public abstract class AbstractService {
             dcContext.loadGlobalObject(baseUrl, targetCell, targetScheme, targetScheme, targetServiceName);
             // ユーザスクリプトを取得（設定及びソース）
             String source = "";
+            String sourceName;
             try {
-                String sourceName = this.sourceManager.getScriptNameForServicePath(targetServiceName);
+                sourceName = this.sourceManager.getScriptNameForServicePath(targetServiceName);
                 source = this.sourceManager.getSource(sourceName);
             } catch (DcEngineException e) {
                 return errorResponse(e);
@@ -345,7 +346,7 @@ public abstract class AbstractService {
             }
             // JSGI実行
             try {
-                response = dcContext.runJsgi(source, req, res, is, this.serviceSubject);
+                response = dcContext.runJsgi(source, sourceName, req, res, is, this.serviceSubject);
             } catch (DcEngineException e) {
                 return errorResponse(e);
             } catch (Exception e) {
@@ -36,7 +36,10 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpStatus;
 import org.json.simple.JSONObject;
 
+import com.fujitsu.dc.client.http.HttpClientFactory;
 import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.UserScriptCache;
+import com.fujitsu.dc.engine.source.ServiceSourceCache;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 /**
@@ -67,6 +70,21 @@ public class StatusResource {
         }
         responseJson.put("properties", propertiesJson);
 
+        // コンパイル済みユーザースクリプトキャッシュの利用状況
+        JSONObject scriptCacheJson = new JSONObject();
+        scriptCacheJson.putAll(UserScriptCache.getStatistics());
+        responseJson.put("scriptCache", scriptCacheJson);
+
+        // サービスコレクションの設定とスクリプトソースのキャッシュの利用状況
+        JSONObject sourceCacheJson = new JSONObject();
+        sourceCacheJson.putAll(ServiceSourceCache.getStatistics());
+        responseJson.put("sourceCache", sourceCacheJson);
+
+        // Coreへのリクエストで使用するHTTPコネクションプールの利用状況
+        JSONObject httpPoolJson = new JSONObject();
+        httpPoolJson.putAll(HttpClientFactory.getPoolStatistics());
+        responseJson.put("httpPool", httpPoolJson);
+
         sb.append(responseJson.toJSONString());
         return Response.status(HttpStatus.SC_OK).entity(sb.toString()).build();
     }
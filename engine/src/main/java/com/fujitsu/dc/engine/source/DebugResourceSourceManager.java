@@ -37,6 +37,14 @@ public class DebugResourceSourceManager implements ISourceManager {
     public DebugResourceSourceManager() {
     }
 
+    /**
+     * ソースを読み込むクラスパス上のディレクトリを返却.
+     * @return ソースのディレクトリ
+     */
+    public String getSourceCollectionPath() {
+        return "classpath:/js-lib/debug";
+    }
+
     /**
      * サービスコレクションに設定されたサービスサブジェクトの取得.
      * @return サービスサブジェクト
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -41,6 +42,8 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.engine.DcEngineException;
 import com.fujitsu.dc.engine.EsModel;
+import com.fujitsu.dc.engine.source.ServiceSourceCache.CollectionEntry;
+import com.fujitsu.dc.engine.source.ServiceSourceCache.SourceEntry;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 /**
@@ -65,11 +68,8 @@ public class EsServiceResourceSourceManager implements ISourceManager {
     /** ESアクセッサtype. */
     private EsType typ;
 
-    /** ODataコレクションのPROPPATCH情報. */
-    private String serviceCollectionInfo;
-
-    /** ESから取得したODataコレクションの配下のソース情報. */
-    private Map<?, ?> sourceInfo;
+    /** サービスコレクションの設定(ノード内キャッシュと共有). */
+    private CollectionEntry collectionInfo;
 
     /**
      * コンストラクタ.
@@ -93,7 +93,7 @@ public class EsServiceResourceSourceManager implements ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     private void loadServiceCollectionInfo() throws DcEngineException {
-        if (this.sourceInfo != null) {
+        if (this.collectionInfo != null) {
             return;
         }
         // elasticsearchからPROPを取得する
@@ -104,6 +104,15 @@ public class EsServiceResourceSourceManager implements ISourceManager {
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
+        // 有効期間内であればノード内キャッシュの設定をそのまま利用する
+        String cacheKey = this.index + "/" + this.id;
+        CollectionEntry cached = ServiceSourceCache.getCollection(cacheKey);
+        if (cached != null && cached.isFresh()) {
+            ServiceSourceCache.recordHit();
+            this.collectionInfo = cached;
+            return;
+        }
+
         // サービスコレクションを取得
         DcGetResponse getResp = this.typ.get(this.id);
         if (!getResp.isExists()) {
@@ -113,14 +122,16 @@ public class EsServiceResourceSourceManager implements ISourceManager {
         }
 
         // スクリプトの情報を取得する
-        this.serviceCollectionInfo = (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
-        if (null == this.serviceCollectionInfo) {
+        String serviceCollectionInfo =
+                (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
+        if (null == serviceCollectionInfo) {
             log.info("Service property Invalid ");
             throw new DcEngineException("404 Not Found (Service property invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
+        long collectionVersion = getResp.getVersion();
 
-        log.debug("scriptPath: [" + this.serviceCollectionInfo + "] ");
+        log.debug("scriptPath: [" + serviceCollectionInfo + "] ");
         // childrenを取る （__src）
         String children = (String) ((Map<?, ?>) getResp.getSource().get("o")).get("__src");
         // __src の情報を取得
@@ -130,7 +141,27 @@ public class EsServiceResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found (Service Source Collection invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
-        this.sourceInfo = (Map<?, ?>) getResp.getSource().get("o");
+
+        // サービスコレクションと__srcのいずれも更新されていなければ、解析済みの設定を再利用する
+        String version = collectionVersion + ":" + getResp.getVersion();
+        if (cached != null && cached.isVersionOf(version)) {
+            ServiceSourceCache.recordRevalidate();
+            cached.markChecked();
+            this.collectionInfo = cached;
+            return;
+        }
+        ServiceSourceCache.recordMiss();
+        this.collectionInfo = parseServiceCollectionInfo(version, serviceCollectionInfo,
+                (Map<?, ?>) getResp.getSource().get("o"));
+        ServiceSourceCache.putCollection(cacheKey, this.collectionInfo);
+    }
+
+    /**
+     * サービスコレクションをESのインデックスとIDで表したパスを返却.
+     * @return サービスコレクションのパス
+     */
+    public String getSourceCollectionPath() {
+        return this.index + "/" + this.id;
     }
 
     /**
@@ -141,7 +172,7 @@ public class EsServiceResourceSourceManager implements ISourceManager {
     public String getServiceSubject() throws DcEngineException {
         this.loadServiceCollectionInfo();
         // サービスサブジェクトの取得
-        return getServiceSubject(this.serviceCollectionInfo);
+        return this.collectionInfo.getServiceSubject();
     }
 
     /**
@@ -152,7 +183,11 @@ public class EsServiceResourceSourceManager implements ISourceManager {
      */
     public String getScriptNameForServicePath(String servicePath) throws DcEngineException {
         this.loadServiceCollectionInfo();
-        return getScriptName(this.serviceCollectionInfo, servicePath);
+        String scriptName = this.collectionInfo.getPathMap().get(servicePath);
+        if (scriptName == null) {
+            return "";
+        }
+        return scriptName;
     }
 
     /**
@@ -164,23 +199,42 @@ public class EsServiceResourceSourceManager implements ISourceManager {
     public String getSource(String sourceName) throws DcEngineException {
         this.loadServiceCollectionInfo();
         // 対象のスクリプトの情報を取得する
-        String sourceNodeId = (String) this.sourceInfo.get(sourceName);
+        String sourceNodeId = (String) this.collectionInfo.getSourceInfo().get(sourceName);
         if (sourceNodeId == null) {
             log.info("Service Source not found (" + sourceName + ")");
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
         }
+
+        // 有効期間内であればノード内キャッシュのソースをそのまま利用する
+        String cacheKey = this.index + "/" + sourceNodeId;
+        SourceEntry cached = ServiceSourceCache.getSource(cacheKey);
+        if (cached != null && cached.isFresh()) {
+            ServiceSourceCache.recordHit();
+            return cached.getSource();
+        }
+
         DcGetResponse getResp = this.typ.get(sourceNodeId);
         if (!getResp.isExists()) {
             log.info("Service Source not found (" + sourceName + ")");
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
         }
+        // ソースのドキュメントが更新されていなければ、保持しているソースを再利用する
+        Long version = getResp.getVersion();
+        if (cached != null && cached.isVersionOf(version)) {
+            ServiceSourceCache.recordRevalidate();
+            cached.markChecked();
+            return cached.getSource();
+        }
+        ServiceSourceCache.recordMiss();
 
         BinaryDataAccessor binaryAccessor = new BinaryDataAccessor(DcEngineConfig.getBlobStoreRoot(), this.index
                 .substring(DcEngineConfig.getUnitPrefix().length() + 1), DcEngineConfig.getFsyncEnabled());
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try {
             binaryAccessor.copy(sourceNodeId, baos);
-            return baos.toString("UTF-8");
+            String source = baos.toString("UTF-8");
+            ServiceSourceCache.putSource(cacheKey, new SourceEntry(version, source));
+            return source;
         } catch (BinaryDataAccessException e) {
             log.info("UserScript Encoding error(UnsupportedEncodingException) ", e);
             throw new DcEngineException("404 UserScript Encoding error", DcEngineException.STATUSCODE_NOTFOUND, e);
@@ -193,13 +247,15 @@ public class EsServiceResourceSourceManager implements ISourceManager {
     }
 
     /**
-     * サービス名からスクリプトファイルのパスを取得する.
+     * サービス設定を解析し、サービスサブジェクトとサービス名毎のスクリプトファイル名を取得する.
+     * @param version サービスコレクションと__srcのバージョン
      * @param xml XML文字列
-     * @param svcName サービス名
-     * @return スクリプトファイルパス
+     * @param sourceInfo __src配下のソース情報
+     * @return 解析結果
      */
-    private String getScriptName(final String xml, final String svcName) {
-        String scriptName = "";
+    private CollectionEntry parseServiceCollectionInfo(final String version,
+            final String xml,
+            final Map<?, ?> sourceInfo) {
         DocumentBuilder builder = null;
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -213,42 +269,15 @@ public class EsServiceResourceSourceManager implements ISourceManager {
         try {
             doc = builder.parse(is);
 
+            Element el = doc.getDocumentElement();
+            String serviceSubject = el.getAttribute("subject");
+            Map<String, String> pathMap = new HashMap<String, String>();
             NodeList nl = doc.getElementsByTagNameNS("*", "path");
             for (int i = 0; i < nl.getLength(); i++) {
                 NamedNodeMap nnm = nl.item(i).getAttributes();
-                if (nnm.getNamedItem("name").getNodeValue().equals(svcName)) {
-                    scriptName = nnm.getNamedItem("src").getNodeValue();
-                }
+                pathMap.put(nnm.getNamedItem("name").getNodeValue(), nnm.getNamedItem("src").getNodeValue());
             }
-        } catch (SAXException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return scriptName;
-    }
-
-    /**
-     * サービス設定からサービスサブジェクトの値を取得する.
-     * @param xml XML文字列
-     */
-    private String getServiceSubject(final String xml) {
-        DocumentBuilder builder = null;
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            builder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new RuntimeException(e);
-        }
-        Document doc = null;
-        InputStream is = new ByteArrayInputStream(xml.getBytes());
-        try {
-            doc = builder.parse(is);
-
-            Element el = doc.getDocumentElement();
-            return el.getAttribute("subject");
+            return new CollectionEntry(version, serviceSubject, pathMap, sourceInfo);
         } catch (SAXException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -256,4 +285,3 @@ public class EsServiceResourceSourceManager implements ISourceManager {
         }
     }
 }
-
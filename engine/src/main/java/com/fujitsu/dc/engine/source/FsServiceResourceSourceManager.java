@@ -42,6 +42,8 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.source.ServiceSourceCache.CollectionEntry;
+import com.fujitsu.dc.engine.source.ServiceSourceCache.SourceEntry;
 
 /**
  * Service resource source management using file system.
@@ -50,15 +52,12 @@ public class FsServiceResourceSourceManager implements ISourceManager {
     /** ログオブジェクト. */
     private static Logger log = LoggerFactory.getLogger(FsServiceResourceSourceManager.class);
 
-    private String fsPath;
+    private static final String META_FILE_NAME = ".pmeta";
 
-    /** コレクションのPROPPATCH情報. */
-    private String serviceCollectionInfo;
+    private String fsPath;
 
-    /** Mapping from path to source file. */
-    private Map<String, String> pathMap = new HashMap<>();
-    
-    private String serviceSubject;
+    /** サービスコレクションの設定(ノード内キャッシュと共有). */
+    private CollectionEntry collectionInfo;
 
     /**
      * コンストラクタ.
@@ -69,7 +68,6 @@ public class FsServiceResourceSourceManager implements ISourceManager {
         this.fsPath = filePath;
         log.info("Source File Path: [" + this.fsPath + "]");
         this.loadServiceCollectionInfo();
-        this.parseServiceTag();
     }
 
     /**
@@ -84,12 +82,20 @@ public class FsServiceResourceSourceManager implements ISourceManager {
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
+        // 有効期間内であればノード内キャッシュの設定をそのまま利用する
+        String cacheKey = this.fsPath;
+        CollectionEntry cached = ServiceSourceCache.getCollection(cacheKey);
+        if (cached != null && cached.isFresh()) {
+            ServiceSourceCache.recordHit();
+            this.collectionInfo = cached;
+            return;
+        }
+
         // サービスコレクションを取得
-        File metaFile = new File(this.fsPath + "/.pmeta");
+        File metaFile = new File(this.fsPath + File.separator + META_FILE_NAME);
         JSONObject json = null;
-        try (Reader reader = Files.newBufferedReader(metaFile.toPath(), Charsets.UTF_8)) {
-            JSONParser parser = new JSONParser();
-            json = (JSONObject) parser.parse(reader);
+        try {
+            json = readMetaFile(metaFile);
         } catch (IOException | ParseException e) {
             // IO failure or JSON is broken
             log.info("Meta file not found or invalid (" + this.fsPath + ")");
@@ -97,15 +103,41 @@ public class FsServiceResourceSourceManager implements ISourceManager {
             DcEngineException.STATUSCODE_SERVER_ERROR);
         }
 
+        // メタデータが更新されていなければ、解析済みの設定を再利用する
+        Object version = json.get("v");
+        if (cached != null && cached.isVersionOf(version)) {
+            ServiceSourceCache.recordRevalidate();
+            cached.markChecked();
+            this.collectionInfo = cached;
+            return;
+        }
+
         // スクリプトの情報を取得する
-        this.serviceCollectionInfo = (String) ((Map<?, ?>) json.get("d")).get("service@urn:x-dc1:xmlns");
-        if (null == this.serviceCollectionInfo) {
+        String serviceCollectionInfo = (String) ((Map<?, ?>) json.get("d")).get("service@urn:x-dc1:xmlns");
+        if (null == serviceCollectionInfo) {
             log.info("Service property Invalid ");
             throw new DcEngineException("404 Not Found (Service property invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
-        log.debug("scriptPath: [" + this.serviceCollectionInfo + "] ");
+        log.debug("scriptPath: [" + serviceCollectionInfo + "] ");
+        ServiceSourceCache.recordMiss();
+        this.collectionInfo = parseServiceTag(version, serviceCollectionInfo);
+        ServiceSourceCache.putCollection(cacheKey, this.collectionInfo);
+    }
+
+    /**
+     * メタデータファイルを読み込む.
+     * @param metaFile メタデータファイル
+     * @return メタデータ
+     * @throws IOException 読み込みに失敗した場合
+     * @throws ParseException JSONとして不正な場合
+     */
+    private static JSONObject readMetaFile(File metaFile) throws IOException, ParseException {
+        try (Reader reader = Files.newBufferedReader(metaFile.toPath(), Charsets.UTF_8)) {
+            JSONParser parser = new JSONParser();
+            return (JSONObject) parser.parse(reader);
+        }
     }
 
     /**
@@ -114,7 +146,7 @@ public class FsServiceResourceSourceManager implements ISourceManager {
      * @return スクリプトファイル名
      */
     public String getScriptNameForServicePath(String servicePath) {
-        return this.pathMap.get(servicePath);
+        return this.collectionInfo.getPathMap().get(servicePath);
     }
 
     /**
@@ -125,38 +157,69 @@ public class FsServiceResourceSourceManager implements ISourceManager {
      */
     public String getSource(String sourceName) throws DcEngineException {
         // 対象のスクリプトの情報を取得する
-        String sourcePath = this.fsPath + File.separator + "__src" + File.separator + sourceName
-            + File.separator + "content";
-        File sourceFile = new File(sourcePath);
+        String sourceDir = this.fsPath + File.separator + "__src" + File.separator + sourceName;
+        File sourceFile = new File(sourceDir + File.separator + "content");
+
+        // 有効期間内であればノード内キャッシュのソースをそのまま利用する
+        String cacheKey = sourceFile.getPath();
+        SourceEntry cached = ServiceSourceCache.getSource(cacheKey);
+        if (cached != null && cached.isFresh()) {
+            ServiceSourceCache.recordHit();
+            return cached.getSource();
+        }
 
         if (!sourceFile.exists()) {
             log.info("Service Source not found (" + sourceName + ")");
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
         }
 
+        // ソースのメタデータが更新されていなければ、保持しているソースを再利用する
+        Object version = null;
         try {
-            return new String(Files.readAllBytes(sourceFile.toPath()), Charsets.UTF_8);
+            version = readMetaFile(new File(sourceDir + File.separator + META_FILE_NAME)).get("v");
+        } catch (IOException | ParseException e) {
+            log.debug("Meta file of the source not found or invalid (" + sourceName + ")");
+        }
+        if (cached != null && cached.isVersionOf(version)) {
+            ServiceSourceCache.recordRevalidate();
+            cached.markChecked();
+            return cached.getSource();
+        }
+
+        try {
+            ServiceSourceCache.recordMiss();
+            String source = new String(Files.readAllBytes(sourceFile.toPath()), Charsets.UTF_8);
+            ServiceSourceCache.putSource(cacheKey, new SourceEntry(version, source));
+            return source;
         } catch (IOException e) {
           log.info("UserScript Encoding error(UnsupportedEncodingException) ", e);
           throw new DcEngineException("404 UserScript Encoding error", DcEngineException.STATUSCODE_NOTFOUND, e);
         }
     }
 
+    /**
+     * サービスコレクションのFile System Pathを返却.
+     * @return サービスコレクションのパス
+     */
+    public String getSourceCollectionPath() {
+        return this.fsPath;
+    }
+
     /**
      * サービスコレクションに設定されたサービスサブジェクトの取得.
      * @return サービスサブジェクト
      */
     public String getServiceSubject() {
-      return this.serviceSubject;
+      return this.collectionInfo.getServiceSubject();
     }
 
     /**
-     * サービス名からスクリプトファイルのパスを取得する.
+     * サービス設定を解析し、サービスサブジェクトとサービス名毎のスクリプトファイル名を取得する.
+     * @param version メタデータのバージョン
      * @param xml XML文字列
-     * @param svcName サービス名
-     * @return スクリプトファイルパス
+     * @return 解析結果
      */
-    private void parseServiceTag() {
+    private CollectionEntry parseServiceTag(Object version, String xml) {
         DocumentBuilder builder = null;
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -166,16 +229,18 @@ public class FsServiceResourceSourceManager implements ISourceManager {
             throw new RuntimeException(e);
         }
         Document doc = null;
-        InputStream is = new ByteArrayInputStream(this.serviceCollectionInfo.getBytes());
+        InputStream is = new ByteArrayInputStream(xml.getBytes());
         try {
             doc = builder.parse(is);
             Element el = doc.getDocumentElement();
-            this.serviceSubject = el.getAttribute("subject");
+            String serviceSubject = el.getAttribute("subject");
+            Map<String, String> pathMap = new HashMap<>();
             NodeList nl = doc.getElementsByTagNameNS("*", "path");
             for (int i = 0; i < nl.getLength(); i++) {
                 NamedNodeMap nnm = nl.item(i).getAttributes();
                 pathMap.put(nnm.getNamedItem("name").getNodeValue(),nnm.getNamedItem("src").getNodeValue());
             }
+            return new CollectionEntry(version, serviceSubject, pathMap, null);
         } catch (SAXException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -29,6 +29,13 @@ public interface ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     String getServiceSubject() throws DcEngineException;
+
+    /**
+     * ソースを保持するサービスコレクションを一意に表すパスを返却.
+     * @return サービスコレクションのパス
+     */
+    String getSourceCollectionPath();
+
     /**
      * サービス名に対応したスクリプトを返却.
      * @param servicePath サービス名
@@ -0,0 +1,254 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.source;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * サービスコレクションの設定とスクリプトソースをノード(JVM)内に保持するキャッシュ.
+ * 各エントリは保持元(ElasticSearchのドキュメントやファイルシステム上のメタデータ)のバージョンと共に保持し、
+ * 有効期間内はデータストアへアクセスせずに利用する. 有効期間を過ぎた場合は呼び出し側でバージョンを取得して再検証する.
+ */
+public final class ServiceSourceCache {
+
+    private static final AtomicLong HIT_COUNT = new AtomicLong();
+    private static final AtomicLong REVALIDATE_COUNT = new AtomicLong();
+    private static final AtomicLong MISS_COUNT = new AtomicLong();
+
+    private static volatile int maxSize = DcEngineConfig.getSourceCacheMaxSize();
+
+    private static final Map<String, CollectionEntry> COLLECTIONS = createLruMap();
+    private static final Map<String, SourceEntry> SOURCES = createLruMap();
+
+    private ServiceSourceCache() {
+    }
+
+    /**
+     * キャッシュエントリの基底クラス.
+     */
+    abstract static class Entry {
+        private final Object version;
+        private volatile long checkedAt;
+
+        Entry(Object version) {
+            this.version = version;
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @param currentVersion 保持元から取得したバージョン
+         * @return 保持しているバージョンと一致する場合はtrue
+         */
+        boolean isVersionOf(Object currentVersion) {
+            return version != null && version.equals(currentVersion);
+        }
+
+        /**
+         * @return 前回の検証から有効期間内であればtrue
+         */
+        boolean isFresh() {
+            return System.currentTimeMillis() - checkedAt < DcEngineConfig.getSourceCacheTtlInMillis();
+        }
+
+        /**
+         * 保持元のバージョンと一致したことを記録する.
+         */
+        void markChecked() {
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * サービスコレクションの設定を解析した結果.
+     */
+    static final class CollectionEntry extends Entry {
+        private final String serviceSubject;
+        private final Map<String, String> pathMap;
+        private final Map<?, ?> sourceInfo;
+
+        /**
+         * コンストラクタ.
+         * @param version 保持元のバージョン
+         * @param serviceSubject サービスサブジェクト
+         * @param pathMap サービス名とスクリプトファイル名の対応Map
+         * @param sourceInfo スクリプトファイル名とソースの格納先の対応Map
+         */
+        CollectionEntry(Object version, String serviceSubject, Map<String, String> pathMap, Map<?, ?> sourceInfo) {
+            super(version);
+            this.serviceSubject = serviceSubject;
+            this.pathMap = Collections.unmodifiableMap(new HashMap<String, String>(pathMap));
+            if (sourceInfo == null) {
+                this.sourceInfo = null;
+            } else {
+                this.sourceInfo = Collections.unmodifiableMap(new HashMap<Object, Object>(sourceInfo));
+            }
+        }
+
+        String getServiceSubject() {
+            return serviceSubject;
+        }
+
+        Map<String, String> getPathMap() {
+            return pathMap;
+        }
+
+        Map<?, ?> getSourceInfo() {
+            return sourceInfo;
+        }
+    }
+
+    /**
+     * スクリプトソース.
+     */
+    static final class SourceEntry extends Entry {
+        private final String source;
+
+        /**
+         * コンストラクタ.
+         * @param version 保持元のバージョン
+         * @param source スクリプトソース
+         */
+        SourceEntry(Object version, String source) {
+            super(version);
+            this.source = source;
+        }
+
+        String getSource() {
+            return source;
+        }
+    }
+
+    /**
+     * サービスコレクションの設定を取得する.
+     * @param key サービスコレクションを表すキー
+     * @return 保持している設定. 存在しない場合はnull
+     */
+    static CollectionEntry getCollection(String key) {
+        synchronized (COLLECTIONS) {
+            return COLLECTIONS.get(key);
+        }
+    }
+
+    /**
+     * サービスコレクションの設定を保持する.
+     * @param key サービスコレクションを表すキー
+     * @param entry 設定
+     */
+    static void putCollection(String key, CollectionEntry entry) {
+        maxSize = DcEngineConfig.getSourceCacheMaxSize();
+        if (maxSize <= 0) {
+            return;
+        }
+        synchronized (COLLECTIONS) {
+            COLLECTIONS.put(key, entry);
+        }
+    }
+
+    /**
+     * スクリプトソースを取得する.
+     * @param key スクリプトソースを表すキー
+     * @return 保持しているソース. 存在しない場合はnull
+     */
+    static SourceEntry getSource(String key) {
+        synchronized (SOURCES) {
+            return SOURCES.get(key);
+        }
+    }
+
+    /**
+     * スクリプトソースを保持する.
+     * @param key スクリプトソースを表すキー
+     * @param entry ソース
+     */
+    static void putSource(String key, SourceEntry entry) {
+        maxSize = DcEngineConfig.getSourceCacheMaxSize();
+        if (maxSize <= 0) {
+            return;
+        }
+        synchronized (SOURCES) {
+            SOURCES.put(key, entry);
+        }
+    }
+
+    /**
+     * 有効期間内のエントリを利用したことを記録する.
+     */
+    static void recordHit() {
+        HIT_COUNT.incrementAndGet();
+    }
+
+    /**
+     * 保持元のバージョンを確認した上でエントリを利用したことを記録する.
+     */
+    static void recordRevalidate() {
+        REVALIDATE_COUNT.incrementAndGet();
+    }
+
+    /**
+     * 保持元から読み直したことを記録する.
+     */
+    static void recordMiss() {
+        MISS_COUNT.incrementAndGet();
+    }
+
+    /**
+     * 全てのキャッシュを削除する.
+     */
+    static void clear() {
+        synchronized (COLLECTIONS) {
+            COLLECTIONS.clear();
+        }
+        synchronized (SOURCES) {
+            SOURCES.clear();
+        }
+    }
+
+    /**
+     * キャッシュの利用状況を返す.
+     * @return ヒット件数、再検証件数、ミス件数、保持件数を格納したMap
+     */
+    public static Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<String, Object>();
+        stats.put("hit", HIT_COUNT.get());
+        stats.put("revalidate", REVALIDATE_COUNT.get());
+        stats.put("miss", MISS_COUNT.get());
+        synchronized (COLLECTIONS) {
+            stats.put("collectionSize", COLLECTIONS.size());
+        }
+        synchronized (SOURCES) {
+            stats.put("sourceSize", SOURCES.size());
+        }
+        return stats;
+    }
+
+    private static <V> Map<String, V> createLruMap() {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
@@ -37,6 +37,14 @@ public class TestResourceSourceManager implements ISourceManager {
     public TestResourceSourceManager() {
     }
 
+    /**
+     * ソースを読み込むクラスパス上のディレクトリを返却.
+     * @return ソースのディレクトリ
+     */
+    public String getSourceCollectionPath() {
+        return "classpath:/service";
+    }
+
     /**
      * サービスコレクションに設定されたサービスサブジェクトの取得.
      * @return サービスサブジェクト
@@ -21,7 +21,10 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -157,6 +160,70 @@ public class DcEngineConfig {
 
     }
 
+    /**
+     * ユーザースクリプト実行廻りの設定.
+     */
+    public static final class Script {
+        /**
+         * Rhinoの最適化レベル(-1:インタプリタ実行 0～9:クラスへのコンパイル).
+         */
+        public static final String OPTIMIZATION_LEVEL = KEY_ROOT + "script.optimizationLevel";
+        /**
+         * コンパイル済みユーザースクリプトをノード内に保持する最大件数(0以下の場合はキャッシュしない).
+         */
+        public static final String CACHE_MAX_SIZE = KEY_ROOT + "script.cache.maxSize";
+    }
+
+    /**
+     * サービスコレクションの設定とスクリプトソースのキャッシュ設定.
+     */
+    public static final class SourceCache {
+        /**
+         * ノード内に保持する最大件数(0以下の場合はキャッシュしない).
+         */
+        public static final String MAX_SIZE = KEY_ROOT + "source.cache.maxSize";
+        /**
+         * 保持元のバージョンを確認せずに利用する有効期間(ms).
+         */
+        public static final String TTL_IN_MILLIS = KEY_ROOT + "source.cache.ttlInMillis";
+    }
+
+    /**
+     * ユーザースクリプトからCoreへのリクエストで使用するHTTPコネクションプールの設定.
+     */
+    public static final class HttpPool {
+        /**
+         * 保持するコネクションの最大数.
+         */
+        public static final String MAX_TOTAL = KEY_ROOT + "http.pool.maxTotal";
+        /**
+         * 宛先毎に保持するコネクションの最大数.
+         */
+        public static final String MAX_PER_ROUTE = KEY_ROOT + "http.pool.maxPerRoute";
+        /**
+         * アイドル状態のコネクションを切断するまでの時間(ms).
+         */
+        public static final String IDLE_TIMEOUT = KEY_ROOT + "http.pool.idleTimeoutInMillis";
+        /**
+         * 応答にKeep-Aliveヘッダが無い場合にコネクションを再利用する期間(ms).
+         */
+        public static final String KEEP_ALIVE = KEY_ROOT + "http.pool.keepAliveInMillis";
+        /**
+         * プールからコネクションを取得するまでの待ち時間の上限(ms).
+         */
+        public static final String TIMEOUT = KEY_ROOT + "http.pool.timeoutInMillis";
+    }
+
+    /**
+     * ユーザースクリプトからCoreへのリクエストの送信先の設定.
+     */
+    public static final class Core {
+        /**
+         * 同一ホスト等に配置したCoreのURL. 指定した場合、基底URL宛てのリクエストを公開URLを経由せずに送信する(未指定の場合は無効).
+         */
+        public static final String INTERNAL_URL = KEY_ROOT + "core.internalUrl";
+    }
+
     /**
      * バージョン廻りの設定.
      */
@@ -284,20 +351,35 @@ public class DcEngineConfig {
 
     /**
      * dc-config-default.propertiesファイルを読み込む.
+     * Coreに組み込んで動作させる場合はCoreの同名ファイルが優先して見つかるため、クラスパス上の全てのファイルを読み込む.
+     * キーはCore/Engineで接頭辞が異なるため重複しない. 重複した場合はクラスパス上で先に見つかった値を使用する.
      * @return dc-config-default.properties
      */
     protected Properties getDcConfigDefaultProperties() {
         Properties properties = new Properties();
-        InputStream is = DcEngineConfig.class.getClassLoader().getResourceAsStream("dc-config-default.properties");
+        List<URL> urls;
         try {
-            properties.load(is);
+            urls = Collections.list(
+                    DcEngineConfig.class.getClassLoader().getResources("dc-config-default.properties"));
         } catch (IOException e) {
             throw new RuntimeException("failed to load config!", e);
-        } finally {
+        }
+        Collections.reverse(urls);
+        for (URL url : urls) {
+            InputStream is = null;
             try {
-                is.close();
+                is = url.openStream();
+                properties.load(is);
             } catch (IOException e) {
-                throw new RuntimeException("failed to close config stream", e);
+                throw new RuntimeException("failed to load config!", e);
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException e) {
+                        throw new RuntimeException("failed to close config stream", e);
+                    }
+                }
             }
         }
         return properties;
@@ -450,4 +532,74 @@ public class DcEngineConfig {
     public static boolean getFsyncEnabled() {
         return Boolean.parseBoolean(get(BinaryData.FSYNC_ENABLED));
     }
+
+    /**
+     * @return Rhinoの最適化レベル
+     */
+    public static int getScriptOptimizationLevel() {
+        return Integer.parseInt(get(Script.OPTIMIZATION_LEVEL));
+    }
+
+    /**
+     * @return コンパイル済みユーザースクリプトをノード内に保持する最大件数
+     */
+    public static int getScriptCacheMaxSize() {
+        return Integer.parseInt(get(Script.CACHE_MAX_SIZE));
+    }
+
+    /**
+     * @return サービスコレクションの設定とスクリプトソースをノード内に保持する最大件数
+     */
+    public static int getSourceCacheMaxSize() {
+        return Integer.parseInt(get(SourceCache.MAX_SIZE));
+    }
+
+    /**
+     * @return サービスコレクションの設定とスクリプトソースを保持元に確認せず利用する有効期間(ms)
+     */
+    public static long getSourceCacheTtlInMillis() {
+        return Long.parseLong(get(SourceCache.TTL_IN_MILLIS));
+    }
+
+    /**
+     * @return HTTPコネクションプールに保持するコネクションの最大数
+     */
+    public static int getHttpPoolMaxTotal() {
+        return Integer.parseInt(get(HttpPool.MAX_TOTAL));
+    }
+
+    /**
+     * @return HTTPコネクションプールに宛先毎に保持するコネクションの最大数
+     */
+    public static int getHttpPoolMaxPerRoute() {
+        return Integer.parseInt(get(HttpPool.MAX_PER_ROUTE));
+    }
+
+    /**
+     * @return アイドル状態のHTTPコネクションを切断するまでの時間(ms)
+     */
+    public static long getHttpPoolIdleTimeout() {
+        return Long.parseLong(get(HttpPool.IDLE_TIMEOUT));
+    }
+
+    /**
+     * @return 応答にKeep-Aliveヘッダが無い場合にHTTPコネクションを再利用する期間(ms)
+     */
+    public static long getHttpPoolKeepAlive() {
+        return Long.parseLong(get(HttpPool.KEEP_ALIVE));
+    }
+
+    /**
+     * @return HTTPコネクションプールからコネクションを取得するまでの待ち時間の上限(ms)
+     */
+    public static long getHttpPoolTimeout() {
+        return Long.parseLong(get(HttpPool.TIMEOUT));
+    }
+
+    /**
+     * @return ユーザースクリプトからのリクエストを送信するCoreのURL(未指定の場合は空文字またはnull)
+     */
+    public static String getCoreInternalUrl() {
+        return get(Core.INTERNAL_URL);
+    }
 }
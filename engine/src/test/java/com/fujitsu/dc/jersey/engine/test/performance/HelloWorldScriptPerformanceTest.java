@@ -0,0 +1,120 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.jersey.engine.test.performance;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.engine.DcEngineContext;
+import com.fujitsu.dc.engine.DcEngineException;
+import com.fujitsu.dc.engine.UserScriptCache;
+import com.fujitsu.dc.engine.source.TestResourceSourceManager;
+import com.fujitsu.dc.jersey.engine.test.categories.Performance;
+
+/**
+ * Hello Worldを返すサービスのスループット測定.
+ * コンパイル済みユーザースクリプトがキャッシュされる場合と、毎回ソースが異なりコンパイルが発生する場合を比較する.
+ */
+@Category({Performance.class })
+public class HelloWorldScriptPerformanceTest {
+
+    private static final int WARMUP_COUNT = 200;
+    private static final int REQUEST_COUNT = 2000;
+
+    private static final String SOURCE = "function(request) {"
+            + "  return {status: 200, headers: {\"Content-Type\": \"text/plain\"}, body: [\"Hello World\"]};"
+            + "}";
+
+    /**
+     * コンパイル済みスクリプトをキャッシュした場合のスループットを測定する.
+     * @throws Exception 例外
+     */
+    @Test
+    public void キャッシュありのスループット測定() throws Exception {
+        run("hello", WARMUP_COUNT, false);
+        long hit = ((Long) UserScriptCache.getStatistics().get("hit"));
+        long elapsed = run("hello", REQUEST_COUNT, false);
+        long hitAfter = ((Long) UserScriptCache.getStatistics().get("hit"));
+        assertEquals(REQUEST_COUNT, hitAfter - hit);
+        report("cached", elapsed);
+    }
+
+    /**
+     * リクエスト毎にソースが異なり、毎回コンパイルが発生する場合のスループットを測定する.
+     * @throws Exception 例外
+     */
+    @Test
+    public void キャッシュなしのスループット測定() throws Exception {
+        run("hello-nocache", WARMUP_COUNT, true);
+        long elapsed = run("hello-nocache", REQUEST_COUNT, true);
+        report("compiled per request", elapsed);
+    }
+
+    private long run(String service, int count, boolean changeSource) throws DcEngineException, Exception {
+        HttpServletRequest req = mockRequest(service);
+        HttpServletResponse res = mock(HttpServletResponse.class);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            String source = SOURCE;
+            if (changeSource) {
+                source = source + "\n// " + i;
+            }
+            DcEngineContext dcContext = new DcEngineContext();
+            try {
+                dcContext.setSourceManager(new TestResourceSourceManager());
+                dcContext.loadGlobalObject("http://localhost:9998/", "perfcell", "box", "box", service);
+                Response response = dcContext.runJsgi(source, service + ".js", req, res,
+                        new ByteArrayInputStream(new byte[0]), null);
+                assertEquals(200, response.getStatus());
+            } finally {
+                dcContext.close();
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private HttpServletRequest mockRequest(String service) {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getPathInfo()).thenReturn("/" + service);
+        when(req.getAttribute("host")).thenReturn("localhost");
+        when(req.getAttribute("port")).thenReturn("9998");
+        when(req.getAttribute("scriptName")).thenReturn("");
+        when(req.getAttribute("scheme")).thenReturn("http");
+        when(req.getAttribute("env.requestUri")).thenReturn("/perfcell/box/service/" + service);
+        when(req.getHeaderNames()).thenReturn(Collections.enumeration(Collections.<String>emptyList()));
+        return req;
+    }
+
+    private void report(String label, long elapsed) {
+        Map<String, Object> stats = UserScriptCache.getStatistics();
+        System.out.println(String.format("[%s] %d requests in %d ms (%.1f req/s) scriptCache=%s",
+                label, REQUEST_COUNT, elapsed, REQUEST_COUNT * 1000.0 / Math.max(elapsed, 1), stats));
+    }
+}
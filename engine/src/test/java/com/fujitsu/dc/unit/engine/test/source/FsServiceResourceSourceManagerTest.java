@@ -0,0 +1,126 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.unit.engine.test.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.Charsets;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.fujitsu.dc.engine.source.FsServiceResourceSourceManager;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+import com.fujitsu.dc.jersey.engine.test.categories.Integration;
+
+/**
+ * FsServiceResourceSourceManager ユニットテストクラス.
+ */
+@Category({Integration.class })
+public class FsServiceResourceSourceManagerTest {
+
+    /** テスト用のサービスコレクション. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String ttl;
+    private File collection;
+
+    /**
+     * 毎回メタデータのバージョンを確認するよう有効期間を0にする.
+     * @throws IOException IO例外
+     */
+    @Before
+    public void before() throws IOException {
+        ttl = DcEngineConfig.get(DcEngineConfig.SourceCache.TTL_IN_MILLIS);
+        DcEngineConfig.getProperties().setProperty(DcEngineConfig.SourceCache.TTL_IN_MILLIS, "0");
+        collection = folder.newFolder("service");
+    }
+
+    /**
+     * 有効期間を元に戻す.
+     */
+    @After
+    public void after() {
+        DcEngineConfig.getProperties().setProperty(DcEngineConfig.SourceCache.TTL_IN_MILLIS, ttl);
+    }
+
+    /**
+     * メタデータのバージョンが変わらない場合_保持しているソースを返すこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void メタデータのバージョンが変わらない場合_保持しているソースを返すこと() throws Exception {
+        writeCollection(0, "hello", "hello.js");
+        writeSource("hello.js", 0, "function(req) {return 'A';}");
+        assertEquals("function(req) {return 'A';}", new FsServiceResourceSourceManager(collection.getPath())
+                .getSource("hello.js"));
+
+        writeSource("hello.js", 0, "function(req) {return 'B';}");
+        assertEquals("function(req) {return 'A';}", new FsServiceResourceSourceManager(collection.getPath())
+                .getSource("hello.js"));
+
+        writeSource("hello.js", 1, "function(req) {return 'B';}");
+        assertEquals("function(req) {return 'B';}", new FsServiceResourceSourceManager(collection.getPath())
+                .getSource("hello.js"));
+    }
+
+    /**
+     * サービスコレクションのメタデータのバージョンが変わった場合_サービス設定を解析し直すこと.
+     * @throws Exception 例外
+     */
+    @Test
+    public void サービスコレクションのメタデータのバージョンが変わった場合_サービス設定を解析し直すこと() throws Exception {
+        writeCollection(0, "hello", "hello.js");
+        FsServiceResourceSourceManager manager = new FsServiceResourceSourceManager(collection.getPath());
+        assertEquals("hello.js", manager.getScriptNameForServicePath("hello"));
+        assertEquals("subject", manager.getServiceSubject());
+
+        writeCollection(1, "hello", "hello2.js");
+        manager = new FsServiceResourceSourceManager(collection.getPath());
+        assertEquals("hello2.js", manager.getScriptNameForServicePath("hello"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeCollection(long version, String name, String src) throws IOException {
+        JSONObject d = new JSONObject();
+        d.put("service@urn:x-dc1:xmlns", "<dc:service xmlns:dc=\"urn:x-dc1:xmlns\" subject=\"subject\">"
+                + "<dc:path name=\"" + name + "\" src=\"" + src + "\"/></dc:service>");
+        JSONObject meta = new JSONObject();
+        meta.put("v", version);
+        meta.put("d", d);
+        Files.write(new File(collection, ".pmeta").toPath(), meta.toJSONString().getBytes(Charsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeSource(String sourceName, long version, String source) throws IOException {
+        File dir = new File(collection, "__src" + File.separator + sourceName);
+        dir.mkdirs();
+        JSONObject meta = new JSONObject();
+        meta.put("v", version);
+        Files.write(new File(dir, ".pmeta").toPath(), meta.toJSONString().getBytes(Charsets.UTF_8));
+        Files.write(new File(dir, "content").toPath(), source.getBytes(Charsets.UTF_8));
+    }
+}
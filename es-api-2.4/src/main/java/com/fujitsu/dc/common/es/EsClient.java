@@ -47,6 +47,14 @@ public class EsClient {
         internalClient = InternalEsClient.getInstance(cluster, hosts);
     }
 
+    /**
+     * refresh方針COALESCED指定時に、refreshをまとめる時間を設定する.
+     * @param millis refreshをまとめる時間(ms)
+     */
+    public void setRefreshCoalesceWindow(long millis) {
+        internalClient.setRefreshCoalesceWindow(millis);
+    }
+
     /**
      * ESとのコネクションを一度明示的に閉じる.
      */
@@ -110,4 +110,16 @@ public interface EsIndex {
      * @return Void
      */
     Void updateSettings(String index, Map<String, String> settings);
+
+    /**
+     * 登録/更新/削除時のrefresh方針を設定する. 未設定の場合はIMMEDIATE.
+     * @param refreshPolicy refresh方針
+     */
+    void setRefreshPolicy(EsRefreshPolicy refreshPolicy);
+
+    /**
+     * 登録/更新/削除時のrefresh方針を取得する.
+     * @return refresh方針
+     */
+    EsRefreshPolicy getRefreshPolicy();
 }
@@ -0,0 +1,52 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+/**
+ * 登録/更新/削除時のElasticsearchのrefresh方針.
+ */
+public enum EsRefreshPolicy {
+    /**
+     * リクエストごとにrefreshを行う(refresh=true). 書き込み直後の検索で必ず結果に反映される.
+     */
+    IMMEDIATE,
+    /**
+     * refreshを行わずindexのrefresh_intervalに任せる. 検索結果への反映は遅延するが書き込み負荷は最小となる.
+     */
+    DEFERRED,
+    /**
+     * 一定時間内の書き込みを束ねてindex単位に1回refreshし、その完了を待ってから応答する.
+     * 書き込み直後の検索への反映を保ちつつ、refresh回数を削減する.
+     */
+    COALESCED;
+
+    /**
+     * 設定値の文字列から対応するrefresh方針を返す.
+     * @param value 設定値(immediate/deferred/coalesced). 大文字小文字は区別しない
+     * @return refresh方針. 該当しない場合はIMMEDIATE
+     */
+    public static EsRefreshPolicy fromString(String value) {
+        if (value != null) {
+            for (EsRefreshPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value.trim())) {
+                    return policy;
+                }
+            }
+        }
+        return IMMEDIATE;
+    }
+}
@@ -105,6 +105,28 @@ public interface EsType {
      */
     DcMultiSearchResponse multiSearch(List<Map<String, Object>> queryList);
 
+    /**
+     * ソート順を保持したスクロールサーチを開始する.
+     * @param query クエリ情報
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return ES応答(スクロールIDを含む)
+     */
+    DcSearchResponse scrollSearch(Map<String, Object> query, long keepAliveMillis);
+
+    /**
+     * スクロールサーチを継続する.
+     * @param scrollId スクロールID
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return ES応答(スクロールIDを含む)
+     */
+    DcSearchResponse scrollSearch(String scrollId, long keepAliveMillis);
+
+    /**
+     * スクロールを解放する.
+     * @param scrollId スクロールID
+     */
+    void clearScroll(String scrollId);
+
     /**
      * Delete a document.
      * @param docId Document id to delete
@@ -132,4 +154,16 @@ public interface EsType {
      * @return ES応答
      */
     DcPutMappingResponse putMapping(Map<String, Object> mappings);
+
+    /**
+     * 登録/更新/削除時のrefresh方針を設定する. 未設定の場合はIMMEDIATE.
+     * @param refreshPolicy refresh方針
+     */
+    void setRefreshPolicy(EsRefreshPolicy refreshPolicy);
+
+    /**
+     * 登録/更新/削除時のrefresh方針を取得する.
+     * @return refresh方針
+     */
+    EsRefreshPolicy getRefreshPolicy();
 }
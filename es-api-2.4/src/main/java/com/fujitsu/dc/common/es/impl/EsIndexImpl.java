@@ -45,6 +45,7 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.EsBulkRequest;
 import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
 import com.fujitsu.dc.common.es.query.DcQueryBuilder;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
@@ -75,6 +76,9 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
 
     private EsTranslogHandler requestOwner;
 
+    // 登録/更新/削除時のrefresh方針
+    private EsRefreshPolicy refreshPolicy = EsRefreshPolicy.IMMEDIATE;
+
     /**
      * インデックス名とカテゴリを指定してインスタンスを生成する.
      * @param name インデックス名
@@ -96,6 +100,16 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         this.requestOwner = this;
     }
 
+    @Override
+    public void setRefreshPolicy(EsRefreshPolicy policy) {
+        this.refreshPolicy = policy;
+    }
+
+    @Override
+    public EsRefreshPolicy getRefreshPolicy() {
+        return this.refreshPolicy;
+    }
+
     @Override
     public String getName() {
         return this.name;
@@ -598,7 +612,7 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
 
         @Override
         BulkResponse doProcess() {
-            return esClient.bulkRequest(name, routingId, datas, isWriteLog);
+            return esClient.bulkRequest(name, routingId, datas, isWriteLog, refreshPolicy);
         }
 
         @Override
@@ -0,0 +1,138 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一定時間内に発生した書き込みのrefreshをindex単位で1回にまとめるクラス.
+ * 書き込みを行ったスレッドは{@link #awaitRefresh(String)}で、自身の書き込み後に開始されたrefreshの完了を待つ.
+ */
+class EsRefreshCoalescer {
+
+    static Logger log = LoggerFactory.getLogger(EsRefreshCoalescer.class);
+
+    /** refresh完了を待つ最大時間(ms). */
+    private static final long AWAIT_TIMEOUT = 30000;
+
+    private final InternalEsClient esClient;
+    private volatile long windowMillis;
+    private final ConcurrentMap<String, PendingRefresh> pendings = new ConcurrentHashMap<String, PendingRefresh>();
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param esClient refreshを発行するクライアント
+     * @param windowMillis refreshをまとめる時間(ms)
+     */
+    EsRefreshCoalescer(InternalEsClient esClient, long windowMillis) {
+        this.esClient = esClient;
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "es-refresh-coalescer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * refreshをまとめる時間を変更する.
+     * @param millis refreshをまとめる時間(ms)
+     */
+    void setWindowMillis(long millis) {
+        this.windowMillis = millis;
+    }
+
+    /**
+     * 指定indexに対して、呼び出し以降に開始されるrefreshの完了を待つ.
+     * @param index インデックス名
+     */
+    void awaitRefresh(final String index) {
+        requestCount.incrementAndGet();
+        PendingRefresh pending = pendings.get(index);
+        if (pending == null) {
+            PendingRefresh created = new PendingRefresh();
+            pending = pendings.putIfAbsent(index, created);
+            if (pending == null) {
+                pending = created;
+                schedule(index, created);
+            }
+        }
+        try {
+            if (!pending.latch.await(AWAIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.info("Timed out waiting for coalesced refresh. index[" + index + "]");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedule(final String index, final PendingRefresh pending) {
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // 以降の書き込みは次のrefreshで反映させるため、refresh開始前に待ち合わせ対象から外す
+                pendings.remove(index, pending);
+                try {
+                    esClient.refresh(index);
+                    refreshCount.incrementAndGet();
+                } catch (RuntimeException e) {
+                    log.info("Coalesced refresh failed. index[" + index + "] cause[" + e.toString() + "]");
+                } finally {
+                    pending.latch.countDown();
+                }
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return refresh待ちの要求回数
+     */
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return 実際に発行したrefresh回数
+     */
+    long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * 待ち合わせ中のrefresh.
+     */
+    private static class PendingRefresh {
+        private final CountDownLatch latch = new CountDownLatch(1);
+    }
+}
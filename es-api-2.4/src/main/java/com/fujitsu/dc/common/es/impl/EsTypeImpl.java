@@ -40,6 +40,7 @@ import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
 import com.fujitsu.dc.common.es.EsType;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
@@ -84,6 +85,9 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
 
     private EsTranslogHandler requestOwner;
 
+    // 登録/更新/削除時のrefresh方針
+    private EsRefreshPolicy refreshPolicy = EsRefreshPolicy.IMMEDIATE;
+
     /**
      * コンストラクタ.
      * @param index インデックス名
@@ -117,6 +121,16 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         return this.name;
     }
 
+    @Override
+    public void setRefreshPolicy(EsRefreshPolicy policy) {
+        this.refreshPolicy = policy;
+    }
+
+    @Override
+    public EsRefreshPolicy getRefreshPolicy() {
+        return this.refreshPolicy;
+    }
+
     @Override
     public DcGetResponse get(final String id) {
         // Realtime指定はtrue, // 高速さよりも一貫性を取得
@@ -179,6 +193,29 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         return DcMultiSearchResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public DcSearchResponse scrollSearch(final Map<String, Object> query, final long keepAliveMillis) {
+        ScrollSearchRetryableRequest request =
+                new ScrollSearchRetryableRequest(retryCount, retryInterval, query, keepAliveMillis);
+        // 必要な場合、メソッド内でリトライが行われる.
+        return DcSearchResponseImpl.getInstance(request.doRequest());
+    }
+
+    @Override
+    public DcSearchResponse scrollSearch(final String scrollId, final long keepAliveMillis) {
+        // 継続要求はリトライするとページを読み飛ばす可能性があるため、リトライしない
+        try {
+            return DcSearchResponseImpl.getInstance(esClient.asyncScrollSearch(scrollId, keepAliveMillis).actionGet());
+        } catch (SearchPhaseExecutionException e) {
+            throw new EsClientException("scroll context was not found.", new DcSearchPhaseExecutionException(e));
+        }
+    }
+
+    @Override
+    public void clearScroll(final String scrollId) {
+        esClient.asyncClearScroll(scrollId).actionGet();
+    }
+
     @Override
     public DcDeleteResponse delete(final String docId) {
         return this.delete(docId, -1);
@@ -264,7 +301,9 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         @SuppressWarnings("unchecked")
         @Override
         IndexResponse doProcess() {
-            return (IndexResponse)asyncIndex(id, data, OpType.CREATE, -1).actionGet();
+            IndexResponse response = (IndexResponse) asyncIndex(id, data, OpType.CREATE, -1).actionGet();
+            esClient.awaitRefresh(indexName, refreshPolicy);
+            return response;
         }
 
         @Override
@@ -354,7 +393,9 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         @SuppressWarnings("unchecked")
         @Override
         IndexResponse doProcess() {
-            return (IndexResponse)asyncIndex(id, data, OpType.INDEX, version).actionGet();
+            IndexResponse response = (IndexResponse) asyncIndex(id, data, OpType.INDEX, version).actionGet();
+            esClient.awaitRefresh(indexName, refreshPolicy);
+            return response;
         }
 
         @Override
@@ -425,6 +466,49 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         }
     }
 
+    /**
+     * Elasticsearchへの scroll search開始処理実装.
+     */
+    class ScrollSearchRetryableRequest extends AbstractRetryableEsRequest<SearchResponse> {
+        Map<String, Object> query;
+        long keepAliveMillis;
+
+        ScrollSearchRetryableRequest(int retryCount, long retryInterval,
+                Map<String, Object> argQuery, long argKeepAliveMillis) {
+            super(retryCount, retryInterval, "EsType scroll search");
+            query = argQuery;
+            keepAliveMillis = argKeepAliveMillis;
+        }
+
+        @Override
+        SearchResponse doProcess() {
+            return esClient.asyncScrollSearch(indexName, name, routingId, query, keepAliveMillis).actionGet();
+        }
+
+        @Override
+        boolean isParticularError(ElasticsearchException e) {
+            return e instanceof IndexNotFoundException
+                    || e.getCause() instanceof IndexNotFoundException
+                    || e instanceof SearchPhaseExecutionException;
+        }
+
+        @Override
+        SearchResponse onParticularError(ElasticsearchException e) {
+            if (e instanceof IndexNotFoundException || e.getCause() instanceof IndexNotFoundException) {
+                return new DcNullSearchResponse();
+            }
+            if (e instanceof SearchPhaseExecutionException) {
+                throw new EsClientException("unknown property was appointed.", new DcSearchPhaseExecutionException(e));
+            }
+            throw e;
+        }
+
+        @Override
+        EsTranslogHandler getEsTranslogHandler() {
+            return requestOwner;
+        }
+    }
+
     /**
      * Elasticsearchへの multisearch処理実装.
      */
@@ -475,7 +559,9 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
 
         @Override
         DeleteResponse doProcess() {
-            return asyncDelete(docId, version).actionGet();
+            DeleteResponse response = asyncDelete(docId, version).actionGet();
+            esClient.awaitRefresh(indexName, refreshPolicy);
+            return response;
         }
 
         @Override
@@ -592,7 +678,8 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
             final OpType opType,
             final long version) {
 
-        return esClient.asyncIndex(this.indexName, this.name, id, this.routingId, data, opType, version);
+        return esClient.asyncIndex(this.indexName, this.name, id, this.routingId, data, opType, version,
+                this.refreshPolicy);
     }
 
     /**
@@ -602,7 +689,7 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
      * @return 非同期応答
      */
     public ActionFuture<DeleteResponse> asyncDelete(final String id, final long version) {
-        return esClient.asyncDelete(this.indexName, this.name, id, this.routingId, version);
+        return esClient.asyncDelete(this.indexName, this.name, id, this.routingId, version, this.refreshPolicy);
     }
 
     /**
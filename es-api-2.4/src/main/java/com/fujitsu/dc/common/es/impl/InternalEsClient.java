@@ -58,6 +58,7 @@ import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollResponse;
 import org.elasticsearch.action.search.MultiSearchRequest;
 import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
@@ -80,6 +81,7 @@ import org.json.simple.JSONObject;
 import com.fujitsu.dc.common.es.EsBulkRequest;
 import com.fujitsu.dc.common.es.EsClient.Event;
 import com.fujitsu.dc.common.es.EsClient.EventHandler;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
 import com.fujitsu.dc.common.es.EsRequestLogInfo;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcRefreshResponse;
@@ -93,9 +95,12 @@ import com.fujitsu.dc.common.es.response.impl.DcRefreshResponseImpl;
  */
 public class InternalEsClient {
     private static final int DEFAULT_ES_PORT = 9300;
+    private static final long DEFAULT_REFRESH_COALESCE_WINDOW = 100;
 
     private TransportClient esTransportClient;
     private boolean routingFlag;
+    private long refreshCoalesceWindow = DEFAULT_REFRESH_COALESCE_WINDOW;
+    private EsRefreshCoalescer refreshCoalescer;
 
     /**
      * デフォルトコンストラクタ.
@@ -553,6 +558,57 @@ public class InternalEsClient {
         return ret;
     }
 
+    /**
+     * ソート順を保持したままスクロールサーチを開始する.
+     * SCANと異なり初回の応答から検索結果を返却するため、一覧取得のページングに使用する.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param routingId routingId
+     * @param query 検索クエリ
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return 非同期応答
+     */
+    public ActionFuture<SearchResponse> asyncScrollSearch(
+            String index,
+            String type,
+            String routingId,
+            Map<String, Object> query,
+            long keepAliveMillis) {
+        SearchRequest req = new SearchRequest(index).types(type)
+                .searchType(SearchType.DEFAULT)
+                .scroll(new TimeValue(keepAliveMillis));
+        if (query != null) {
+            req.source(query);
+        }
+        if (routingFlag) {
+            req = req.routing(routingId);
+        }
+        ActionFuture<SearchResponse> ret = esTransportClient.search(req);
+        this.fireEvent(Event.afterRequest, index, type, null, JSONObject.toJSONString(query), "ScrollSearch");
+        return ret;
+    }
+
+    /**
+     * スクロールIDと保持時間を指定してスクロールサーチを継続する.
+     * @param scrollId スクロールID
+     * @param keepAliveMillis スクロールの保持時間(ms)
+     * @return 非同期応答
+     */
+    public ActionFuture<SearchResponse> asyncScrollSearch(String scrollId, long keepAliveMillis) {
+        return esTransportClient.prepareSearchScroll(scrollId)
+                .setScroll(new TimeValue(keepAliveMillis))
+                .execute();
+    }
+
+    /**
+     * スクロールを解放する.
+     * @param scrollId スクロールID
+     * @return 非同期応答
+     */
+    public ActionFuture<ClearScrollResponse> asyncClearScroll(String scrollId) {
+        return esTransportClient.prepareClearScroll().addScrollId(scrollId).execute();
+    }
+
     /**
      * 非同期でドキュメントを検索.
      * @param index インデックス名
@@ -587,8 +643,33 @@ public class InternalEsClient {
             Map<String, Object> data,
             OpType opType,
             long version) {
+        return asyncIndex(index, type, id, routingId, data, opType, version, EsRefreshPolicy.IMMEDIATE);
+    }
+
+    /**
+     * 非同期でドキュメントを登録する.
+     * COALESCEDの場合は応答取得後に{@link #awaitRefresh(String, EsRefreshPolicy)}を呼び出すこと.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id ドキュメントのid
+     * @param routingId routingId
+     * @param data データ
+     * @param opType 操作タイプ
+     * @param version version番号
+     * @param refreshPolicy refresh方針
+     * @return 非同期応答
+     */
+    public ActionFuture<IndexResponse> asyncIndex(String index,
+            String type,
+            String id,
+            String routingId,
+            Map<String, Object> data,
+            OpType opType,
+            long version,
+            EsRefreshPolicy refreshPolicy) {
         IndexRequestBuilder req = esTransportClient.prepareIndex(index, type, id).setSource(data).setOpType(opType)
-                .setConsistencyLevel(WriteConsistencyLevel.DEFAULT).setRefresh(true);
+                .setConsistencyLevel(WriteConsistencyLevel.DEFAULT)
+                .setRefresh(refreshPolicy == EsRefreshPolicy.IMMEDIATE);
         if (routingFlag) {
             req = req.setRouting(routingId);
         }
@@ -615,8 +696,24 @@ public class InternalEsClient {
      */
     public ActionFuture<DeleteResponse> asyncDelete(String index, String type,
             String id, String routingId, long version) {
+        return asyncDelete(index, type, id, routingId, version, EsRefreshPolicy.IMMEDIATE);
+    }
+
+    /**
+     * 非同期でversionつきでdocumentを削除します.
+     * COALESCEDの場合は応答取得後に{@link #awaitRefresh(String, EsRefreshPolicy)}を呼び出すこと.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param id Document id to delete
+     * @param routingId routingId
+     * @param version The version of the document to delete
+     * @param refreshPolicy refresh方針
+     * @return 非同期応答
+     */
+    public ActionFuture<DeleteResponse> asyncDelete(String index, String type,
+            String id, String routingId, long version, EsRefreshPolicy refreshPolicy) {
         DeleteRequestBuilder req = esTransportClient.prepareDelete(index, type, id)
-                .setRefresh(true);
+                .setRefresh(refreshPolicy == EsRefreshPolicy.IMMEDIATE);
         if (routingFlag) {
             req = req.setRouting(routingId);
         }
@@ -636,8 +733,22 @@ public class InternalEsClient {
      * @param isWriteLog リクエスト情報のログ出力有無
      * @return ES応答
      */
-    @SuppressWarnings("unchecked")
     public BulkResponse bulkRequest(String index, String routingId, List<EsBulkRequest> datas, boolean isWriteLog) {
+        return bulkRequest(index, routingId, datas, isWriteLog, EsRefreshPolicy.IMMEDIATE);
+    }
+
+    /**
+     * バルクでドキュメントを登録/更新/削除.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @param isWriteLog リクエスト情報のログ出力有無
+     * @param refreshPolicy refresh方針
+     * @return ES応答
+     */
+    @SuppressWarnings("unchecked")
+    public BulkResponse bulkRequest(String index, String routingId, List<EsBulkRequest> datas, boolean isWriteLog,
+            EsRefreshPolicy refreshPolicy) {
         BulkRequestBuilder bulkRequest = esTransportClient.prepareBulk();
         List<Map<String, Object>> bulkList = new ArrayList<Map<String, Object>>();
         for (EsBulkRequest data : datas) {
@@ -657,7 +768,8 @@ public class InternalEsClient {
         Map<String, Object> debug = new HashMap<String, Object>();
         debug.put("bulk", bulkList);
 
-        BulkResponse ret = bulkRequest.setRefresh(true).execute().actionGet();
+        BulkResponse ret = bulkRequest.setRefresh(refreshPolicy == EsRefreshPolicy.IMMEDIATE).execute().actionGet();
+        awaitRefresh(index, refreshPolicy);
         if (isWriteLog) {
             this.fireEvent(Event.afterRequest, index, "none", "none", debug, "bulkRequest");
         }
@@ -732,6 +844,38 @@ public class InternalEsClient {
         return DcRefreshResponseImpl.getInstance(response);
     }
 
+    /**
+     * refresh方針がCOALESCEDの場合に、呼び出し以降に開始されるindexのrefreshの完了を待つ.
+     * 一定時間内に同一indexへ書き込んだ複数のリクエストのrefreshは1回にまとめられる.
+     * IMMEDIATE/DEFERREDの場合は何もしない.
+     * @param index インデックス名
+     * @param refreshPolicy refresh方針
+     */
+    public void awaitRefresh(String index, EsRefreshPolicy refreshPolicy) {
+        if (refreshPolicy != EsRefreshPolicy.COALESCED) {
+            return;
+        }
+        getRefreshCoalescer().awaitRefresh(index);
+    }
+
+    /**
+     * COALESCED指定時にrefreshをまとめる時間を設定する.
+     * @param millis refreshをまとめる時間(ms)
+     */
+    public synchronized void setRefreshCoalesceWindow(long millis) {
+        this.refreshCoalesceWindow = millis;
+        if (refreshCoalescer != null) {
+            refreshCoalescer.setWindowMillis(millis);
+        }
+    }
+
+    private synchronized EsRefreshCoalescer getRefreshCoalescer() {
+        if (refreshCoalescer == null) {
+            refreshCoalescer = new EsRefreshCoalescer(this, refreshCoalesceWindow);
+        }
+        return refreshCoalescer;
+    }
+
     /**
      * 指定されたクエリを使用してデータの削除を行う.
      * @param index 削除対象のインデックス
@@ -0,0 +1,173 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fujitsu.dc.common.es.EsClient;
+import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
+import com.fujitsu.dc.common.es.EsType;
+import com.fujitsu.dc.common.es.response.DcGetResponse;
+import com.fujitsu.dc.common.es.test.util.EsTestNode;
+
+/**
+ * 書き込み時のリフレッシュポリシーのテストクラス.
+ */
+public class EsRefreshPolicyTest {
+    private static final String INDEX_FOR_TEST = "index_for_test";
+    private static final String TYPE_FOR_TEST = "TypeForTest";
+    private static final String ROUTING_ID = "routingId";
+    private static final int WRITER_THREADS = 4;
+    private static EsTestNode node;
+    private EsClient esClient;
+    private EsIndex index;
+
+    /**
+     * テストケース共通の初期化処理. テスト用のElasticsearchのNodeを初期化する
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        node = new EsTestNode();
+        node.create();
+    }
+
+    /**
+     * テストケース共通のクリーンアップ処理. テスト用のElasticsearchのNodeをクローズする
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        node.close();
+    }
+
+    /**
+     * 各テスト実行前の初期化処理.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Before
+    public void setUp() throws Exception {
+        esClient = new EsClient("testingCluster", "localhost:9399");
+        index = esClient.idxAdmin(INDEX_FOR_TEST);
+        index.create();
+    }
+
+    /**
+     * 各テスト実行後のクリーンアップ処理.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @After
+    public void tearDown() throws Exception {
+        index.delete();
+        esClient.closeConnection();
+    }
+
+    /**
+     * ポリシー名の文字列から対応するポリシーが取得できること.
+     */
+    @Test
+    public void ポリシー名の文字列から対応するポリシーが取得できること() {
+        assertEquals(EsRefreshPolicy.IMMEDIATE, EsRefreshPolicy.fromString("immediate"));
+        assertEquals(EsRefreshPolicy.DEFERRED, EsRefreshPolicy.fromString("Deferred"));
+        assertEquals(EsRefreshPolicy.COALESCED, EsRefreshPolicy.fromString("COALESCED"));
+        assertEquals(EsRefreshPolicy.IMMEDIATE, EsRefreshPolicy.fromString("unknown"));
+        assertEquals(EsRefreshPolicy.IMMEDIATE, EsRefreshPolicy.fromString(null));
+    }
+
+    /**
+     * IMMEDIATE指定の場合に登録直後のドキュメントが検索できること.
+     */
+    @Test
+    public void IMMEDIATE指定の場合に登録直後のドキュメントが検索できること() {
+        EsType type = createType(EsRefreshPolicy.IMMEDIATE);
+        type.create("doc1", createData("doc1"));
+        assertEquals(1, countAll(type));
+    }
+
+    /**
+     * COALESCED指定の場合に登録直後のドキュメントが検索できること.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void COALESCED指定の場合に登録直後のドキュメントが検索できること() throws Exception {
+        esClient.setRefreshCoalesceWindow(50);
+        final EsType type = createType(EsRefreshPolicy.COALESCED);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITER_THREADS);
+        // 並行した登録のリフレッシュがまとめられるよう、全て投入してから完了を待つ
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < WRITER_THREADS; i++) {
+            final String id = "doc" + i;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    type.create(id, createData(id));
+                    // 書き込みを行ったスレッドからは自身の登録内容が検索可能であること
+                    assertTrue(countAll(type) >= 1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(WRITER_THREADS, countAll(type));
+    }
+
+    /**
+     * DEFERRED指定の場合に登録直後のドキュメントがIDで取得できること.
+     */
+    @Test
+    public void DEFERRED指定の場合に登録直後のドキュメントがIDで取得できること() {
+        EsType type = createType(EsRefreshPolicy.DEFERRED);
+        type.create("doc1", createData("doc1"));
+        DcGetResponse response = type.get("doc1");
+        assertTrue(response.exists());
+        assertEquals("doc1", response.getSource().get("name"));
+    }
+
+    private EsType createType(EsRefreshPolicy policy) {
+        EsType type = esClient.type(index.getName(), TYPE_FOR_TEST, ROUTING_ID, 0, 0);
+        type.setRefreshPolicy(policy);
+        return type;
+    }
+
+    private static Map<String, Object> createData(String name) {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("name", name);
+        return data;
+    }
+
+    private static long countAll(EsType type) {
+        return type.search(new HashMap<String, Object>()).getHits().getAllPages();
+    }
+}
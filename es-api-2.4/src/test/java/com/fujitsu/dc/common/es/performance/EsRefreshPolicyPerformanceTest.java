@@ -0,0 +1,138 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.performance;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.es.EsClient;
+import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
+import com.fujitsu.dc.common.es.EsType;
+import com.fujitsu.dc.common.es.test.categories.Performance;
+import com.fujitsu.dc.common.es.test.util.EsTestNode;
+
+/**
+ * リフレッシュポリシー毎の登録スループットを計測する.
+ */
+@Category({Performance.class })
+public class EsRefreshPolicyPerformanceTest {
+    static Logger log = LoggerFactory.getLogger(EsRefreshPolicyPerformanceTest.class);
+
+    private static final String INDEX_FOR_TEST = "index_for_test";
+    private static final String TYPE_FOR_TEST = "TypeForTest";
+    private static final String ROUTING_ID = "routingId";
+    private static final int THREADS = 4;
+    private static final int DOCS_PER_THREAD = 50;
+    private static EsTestNode node;
+    private EsClient esClient;
+    private EsIndex index;
+
+    /**
+     * テスト用のElasticsearchのNodeを初期化する.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        node = new EsTestNode();
+        node.create();
+    }
+
+    /**
+     * テスト用のElasticsearchのNodeをクローズする.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        node.close();
+    }
+
+    /**
+     * 各テスト実行前の初期化処理.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Before
+    public void setUp() throws Exception {
+        esClient = new EsClient("testingCluster", "localhost:9399");
+        index = esClient.idxAdmin(INDEX_FOR_TEST);
+        index.create();
+    }
+
+    /**
+     * 各テスト実行後のクリーンアップ処理.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @After
+    public void tearDown() throws Exception {
+        index.delete();
+        esClient.closeConnection();
+    }
+
+    /**
+     * リフレッシュポリシー毎の登録スループットを計測する.
+     * @throws Exception 異常が発生した場合の例外
+     */
+    @Test
+    public void リフレッシュポリシー毎の登録スループットを計測する() throws Exception {
+        esClient.setRefreshCoalesceWindow(20);
+        for (EsRefreshPolicy policy : EsRefreshPolicy.values()) {
+            final EsType type = esClient.type(index.getName(), TYPE_FOR_TEST, ROUTING_ID, 0, 0);
+            type.setRefreshPolicy(policy);
+            final String prefix = policy.name();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                final int threadNo = t;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < DOCS_PER_THREAD; i++) {
+                            String id = prefix + "_" + threadNo + "_" + i;
+                            type.create(id, createData(id));
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            int total = THREADS * DOCS_PER_THREAD;
+            log.info(String.format("refresh policy [%s]: %d docs in %d ms (%.1f docs/sec)",
+                    policy, total, elapsed, total * 1000.0 / Math.max(elapsed, 1)));
+        }
+    }
+
+    private static Map<String, Object> createData(String name) {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("name", name);
+        return data;
+    }
+}